@@ -34,8 +34,10 @@ import com.microsoftopentechnologies.tooling.msservices.components.AppSettingsNa
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
 import com.microsoftopentechnologies.tooling.msservices.components.PluginComponent;
 import com.microsoftopentechnologies.tooling.msservices.components.PluginSettings;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
 import com.microsoftopentechnologies.tooling.msservices.helpers.IDEHelper;
 import com.microsoftopentechnologies.tooling.msservices.helpers.StringHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.ServiceMetrics;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.BufferedReader;
@@ -86,6 +88,13 @@ public class MSOpenTechToolsApplication extends ApplicationComponent.Adapter imp
 
         cleanTempData(DefaultLoader.getIdeHelper());
 
+        ServiceMetrics.getManager().loadSettings();
+        ExecutionService.getManager().loadSettings();
+    }
+
+    @Override
+    public void disposeComponent() {
+        ExecutionService.getManager().shutdown();
     }
 
     @Override
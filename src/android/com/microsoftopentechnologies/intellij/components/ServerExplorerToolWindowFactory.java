@@ -25,11 +25,11 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.openapi.wm.ex.ToolWindowEx;
+import com.intellij.ui.SimpleTextAttributes;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.treeStructure.Tree;
 import com.microsoftopentechnologies.intellij.forms.ManageSubscriptionForm;
 import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
-import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.collections.ListChangeListener;
 import com.microsoftopentechnologies.tooling.msservices.helpers.collections.ListChangedEvent;
 import com.microsoftopentechnologies.tooling.msservices.helpers.collections.ObservableList;
@@ -83,15 +83,16 @@ public class ServerExplorerToolWindowFactory implements ToolWindowFactory, Prope
         // setup toolbar icons
         addToolbarItems(toolWindow);
 
-        try {
-            azureServiceModule.registerSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        azureServiceModule.registerSubscriptionsChanged();
     }
 
     private DefaultMutableTreeNode initRoot() {
         DefaultMutableTreeNode root = new DefaultMutableTreeNode();
 
+        // show the nodes saved by the last session right away; they are
+        // revalidated by the load below
+        azureServiceModule.restoreSnapshot();
+
         // add the azure service root service module
         root.add(createTreeNode(azureServiceModule));
 
@@ -250,13 +251,22 @@ public class ServerExplorerToolWindowFactory implements ToolWindowFactory, Prope
                     }
                     break;
                 case remove:
+                    Collection<Node> oldItems = (Collection<Node>) e.getOldItems();
+
                     // unregister all event handlers recursively and remove
                     // child nodes from the tree
-                    for (Node childNode : (Collection<Node>) e.getOldItems()) {
+                    for (Node childNode : oldItems) {
                         removeEventHandlers(childNode);
+                    }
 
-                        // remove this node from the tree
-                        treeNode.remove((MutableTreeNode) childNode.getViewData());
+                    if (oldItems.size() == treeNode.getChildCount()) {
+                        // the whole list was cleared, skip the per-node index lookups
+                        treeNode.removeAllChildren();
+                    } else {
+                        for (Node childNode : oldItems) {
+                            // remove this node from the tree
+                            treeNode.remove((MutableTreeNode) childNode.getViewData());
+                        }
                     }
                     break;
             }
@@ -292,6 +302,12 @@ public class ServerExplorerToolWindowFactory implements ToolWindowFactory, Prope
                 return;
             }
 
+            // nodes restored from the last session are greyed out till their module refreshes
+            if (node.isStale()) {
+                clear();
+                append(node.getName(), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            }
+
             String iconPath = node.getIconPath();
             if (iconPath != null && !iconPath.isEmpty()) {
                 setIcon(loadIcon(iconPath));
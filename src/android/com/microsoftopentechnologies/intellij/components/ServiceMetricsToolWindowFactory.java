@@ -0,0 +1,174 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.intellij.components;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.components.JBScrollPane;
+import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.ServiceMetrics;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+
+/**
+ * Shows the request statistics recorded by {@link ServiceMetrics}, refreshed every couple of seconds
+ * while recording is enabled.
+ */
+public class ServiceMetricsToolWindowFactory implements ToolWindowFactory {
+    private static final int REFRESH_INTERVAL_MILLIS = 2000;
+
+    private JCheckBox enabledCheckBox;
+    private JLabel statusLabel;
+    private DefaultTableModel model;
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        final ServiceMetrics metrics = ServiceMetrics.getManager();
+
+        enabledCheckBox = new JCheckBox("Record requests", metrics.isEnabled());
+        enabledCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                metrics.setEnabled(enabledCheckBox.isSelected());
+                refresh();
+            }
+        });
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                metrics.reset();
+                refresh();
+            }
+        });
+
+        final JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                JFileChooser jFileChooser = new JFileChooser(metrics.getSnapshotFile());
+                jFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+                if (jFileChooser.showSaveDialog(exportButton) != JFileChooser.APPROVE_OPTION) {
+                    return;
+                }
+
+                File file = jFileChooser.getSelectedFile();
+
+                try {
+                    metrics.writeSnapshot(file);
+                    metrics.setSnapshotFile(file);
+                    refresh();
+                } catch (AzureCmdException ex) {
+                    DefaultLoader.getUIHelper().showException("Error exporting service metrics", ex,
+                            "Service Metrics", false, true);
+                }
+            }
+        });
+
+        statusLabel = new JLabel();
+
+        JPanel toolbarPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbarPanel.add(enabledCheckBox);
+        toolbarPanel.add(resetButton);
+        toolbarPanel.add(exportButton);
+        toolbarPanel.add(statusLabel);
+
+        model = new DefaultTableModel() {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        model.addColumn("Subscription / Account");
+        model.addColumn("Operation");
+        model.addColumn("Count");
+        model.addColumn("Errors");
+        model.addColumn("Retries");
+        model.addColumn("Received");
+        model.addColumn("Sent");
+        model.addColumn("Mean (ms)");
+        model.addColumn("p50 (ms)");
+        model.addColumn("p90 (ms)");
+        model.addColumn("p99 (ms)");
+        model.addColumn("Max (ms)");
+
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(toolbarPanel, BorderLayout.NORTH);
+        panel.add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        toolWindow.getComponent().add(panel);
+
+        Timer timer = new Timer(REFRESH_INTERVAL_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (metrics.isEnabled()) {
+                    refresh();
+                }
+            }
+        });
+
+        timer.start();
+        refresh();
+    }
+
+    private void refresh() {
+        ServiceMetrics metrics = ServiceMetrics.getManager();
+
+        enabledCheckBox.setSelected(metrics.isEnabled());
+        statusLabel.setText(metrics.isEnabled()
+                ? "Snapshot written every minute to " + metrics.getSnapshotFile().getPath()
+                : "Recording is off");
+
+        model.setRowCount(0);
+
+        for (ServiceMetrics.OperationStats stats : metrics.snapshot()) {
+            model.addRow(new Object[]{
+                    stats.getTag(),
+                    stats.getOperation(),
+                    stats.getCount(),
+                    stats.getErrors(),
+                    stats.getRetries(),
+                    UIHelperImpl.readableFileSize(stats.getBytesIn()),
+                    UIHelperImpl.readableFileSize(stats.getBytesOut()),
+                    formatMillis(stats.getMeanMillis()),
+                    formatMillis(stats.getP50Millis()),
+                    formatMillis(stats.getP90Millis()),
+                    formatMillis(stats.getP99Millis()),
+                    formatMillis(stats.getMaxMillis())
+            });
+        }
+    }
+
+    @NotNull
+    private static String formatMillis(double millis) {
+        return String.format("%.1f", millis);
+    }
+}
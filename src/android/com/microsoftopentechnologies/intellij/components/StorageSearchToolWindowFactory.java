@@ -0,0 +1,212 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.intellij.components;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.components.JBScrollPane;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageSearch;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.StorageServiceTreeItem;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches every known storage account for containers, queues, tables and blobs, listing the matches
+ * as they are found. Double clicking a match opens the container, queue or table holding it.
+ */
+public class StorageSearchToolWindowFactory implements ToolWindowFactory {
+    private Project project;
+    private JTextField searchTextField;
+    private JCheckBox blobsCheckBox;
+    private JButton searchButton;
+    private JButton cancelButton;
+    private JLabel statusLabel;
+    private DefaultTableModel model;
+    private final List<StorageSearch.Match> matches = new ArrayList<StorageSearch.Match>();
+
+    private StorageSearch search;
+    private int failedAccounts;
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        this.project = project;
+
+        searchTextField = new JTextField(30);
+        blobsCheckBox = new JCheckBox("Blobs starting with the text");
+        searchButton = new JButton("Search");
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        statusLabel = new JLabel();
+
+        ActionListener searchAction = new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                startSearch();
+            }
+        };
+
+        searchTextField.addActionListener(searchAction);
+        searchButton.addActionListener(searchAction);
+        cancelButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (search != null) {
+                    search.cancel();
+                }
+            }
+        });
+
+        JPanel searchPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        searchPanel.add(searchTextField);
+        searchPanel.add(blobsCheckBox);
+        searchPanel.add(searchButton);
+        searchPanel.add(cancelButton);
+        searchPanel.add(statusLabel);
+
+        model = new DefaultTableModel() {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        model.addColumn("Account");
+        model.addColumn("Type");
+        model.addColumn("Name");
+        model.addColumn("URL");
+
+        final JTable resultsTable = new JTable(model);
+        resultsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        resultsTable.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = resultsTable.getSelectedRow();
+
+                if (e.getClickCount() == 2 && row >= 0 && row < matches.size()) {
+                    openMatch(matches.get(row));
+                }
+            }
+        });
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(searchPanel, BorderLayout.NORTH);
+        panel.add(new JBScrollPane(resultsTable), BorderLayout.CENTER);
+
+        toolWindow.getComponent().add(panel);
+    }
+
+    private void startSearch() {
+        String text = searchTextField.getText().trim();
+
+        if (text.isEmpty()) {
+            return;
+        }
+
+        if (search != null) {
+            search.cancel();
+        }
+
+        matches.clear();
+        model.setRowCount(0);
+        failedAccounts = 0;
+        statusLabel.setText("Searching...");
+        searchButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+
+        final StorageSearch[] current = new StorageSearch[1];
+
+        current[0] = new StorageSearch(text, blobsCheckBox.isSelected(), new StorageSearch.SearchListener() {
+            @Override
+            public void matchFound(@NotNull final StorageSearch.Match match) {
+                ApplicationManager.getApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        // drop matches of a search that was replaced by a newer one
+                        if (search == current[0] && !current[0].isCancelled()) {
+                            matches.add(match);
+                            model.addRow(new Object[]{
+                                    match.getStorageAccount().getName(),
+                                    match.getKind().toString(),
+                                    match.getName(),
+                                    match.getUri()
+                            });
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void accountFailed(@NotNull ClientStorageAccount storageAccount, @NotNull Throwable error) {
+                ApplicationManager.getApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (search == current[0]) {
+                            failedAccounts++;
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void searchCompleted(final boolean cancelled) {
+                ApplicationManager.getApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (search == current[0]) {
+                            searchButton.setEnabled(true);
+                            cancelButton.setEnabled(false);
+                            statusLabel.setText(String.format("%d matches%s%s", matches.size(),
+                                    failedAccounts > 0 ? ", " + failedAccounts + " accounts could not be searched" : "",
+                                    cancelled ? ", cancelled" : ""));
+                        }
+                    }
+                });
+            }
+        });
+
+        search = current[0];
+        search.start();
+    }
+
+    private void openMatch(@NotNull StorageSearch.Match match) {
+        ClientStorageAccount storageAccount = match.getStorageAccount();
+        StorageServiceTreeItem item = match.getItem();
+        Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, item);
+
+        if (openedFile != null) {
+            DefaultLoader.getIdeHelper().openItem(project, openedFile);
+        } else if (match.getKind() == StorageSearch.MatchKind.Queue) {
+            DefaultLoader.getIdeHelper().openItem(project, storageAccount, item, " [Queue]", "Queue", "container.png");
+        } else if (match.getKind() == StorageSearch.MatchKind.Table) {
+            DefaultLoader.getIdeHelper().openItem(project, storageAccount, item, " [Table]", "Table", "container.png");
+        } else {
+            DefaultLoader.getIdeHelper().openItem(project, storageAccount, item, " [Container]", "BlobContainer", "container.png");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.intellij.forms;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.BlobRangeReader;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+
+import javax.swing.*;
+import java.awt.event.*;
+
+/**
+ * Shows a window of a blob's text without downloading the whole blob. Only the bytes in the window
+ * are fetched, and follow mode polls the blob size to show what gets appended to it.
+ */
+public class BlobPreviewForm extends JDialog {
+    private interface WindowLoader {
+        BlobRangeReader.TextWindow load() throws AzureCmdException;
+    }
+
+    private JPanel contentPane;
+    private JButton headButton;
+    private JButton previousButton;
+    private JButton nextButton;
+    private JButton tailButton;
+    private JCheckBox followCheckBox;
+    private JLabel positionLabel;
+    private JTextArea previewTextArea;
+
+    private static final int WINDOW_SIZE = 256 * 1024;
+    private static final int FOLLOW_INTERVAL_MILLIS = 2000;
+
+    private BlobRangeReader reader;
+    private BlobRangeReader.TextWindow window;
+    private boolean loading;
+    private final Timer followTimer;
+
+    public BlobPreviewForm() {
+        setContentPane(contentPane);
+        setModal(false);
+
+        headButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                load(new WindowLoader() {
+                    @Override
+                    public BlobRangeReader.TextWindow load() throws AzureCmdException {
+                        return reader.head(WINDOW_SIZE);
+                    }
+                });
+            }
+        });
+
+        previousButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                final long start = window != null ? Math.max(0, window.getStartOffset() - WINDOW_SIZE) : 0;
+
+                load(new WindowLoader() {
+                    @Override
+                    public BlobRangeReader.TextWindow load() throws AzureCmdException {
+                        return reader.readText(start, WINDOW_SIZE);
+                    }
+                });
+            }
+        });
+
+        nextButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                final long start = window != null ? window.getEndOffset() : 0;
+
+                load(new WindowLoader() {
+                    @Override
+                    public BlobRangeReader.TextWindow load() throws AzureCmdException {
+                        return reader.readText(start, WINDOW_SIZE);
+                    }
+                });
+            }
+        });
+
+        tailButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                loadTail(false);
+            }
+        });
+
+        followTimer = new Timer(FOLLOW_INTERVAL_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                loadTail(true);
+            }
+        });
+
+        followCheckBox.addItemListener(new ItemListener() {
+            @Override
+            public void itemStateChanged(ItemEvent e) {
+                if (followCheckBox.isSelected()) {
+                    loadTail(true);
+                    followTimer.start();
+                } else {
+                    followTimer.stop();
+                }
+            }
+        });
+
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                followTimer.stop();
+            }
+        });
+
+        contentPane.registerKeyboardAction(new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                dispose();
+            }
+        }, KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT);
+    }
+
+    public void setBlob(ClientStorageAccount storageAccount, BlobFile blobFile) {
+        reader = new BlobRangeReader(storageAccount, blobFile);
+        setTitle("Preview - " + blobFile.getName());
+
+        load(new WindowLoader() {
+            @Override
+            public BlobRangeReader.TextWindow load() throws AzureCmdException {
+                return reader.head(WINDOW_SIZE);
+            }
+        });
+    }
+
+    private void loadTail(final boolean refresh) {
+        load(new WindowLoader() {
+            @Override
+            public BlobRangeReader.TextWindow load() throws AzureCmdException {
+                if (refresh && !reader.refresh() && window != null && window.getEndOffset() == reader.getSize()) {
+                    // nothing was appended since the last poll
+                    return null;
+                }
+
+                return reader.tail(WINDOW_SIZE);
+            }
+        });
+    }
+
+    private void load(final WindowLoader loader) {
+        if (loading) {
+            return;
+        }
+
+        loading = true;
+        setButtonsEnabled(false);
+
+        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                BlobRangeReader.TextWindow loaded = null;
+                Throwable error = null;
+
+                try {
+                    loaded = loader.load();
+                } catch (Throwable t) {
+                    error = t;
+                } finally {
+                    final BlobRangeReader.TextWindow result = loaded;
+                    final Throwable failure = error;
+
+                    // always runs, so an unexpected exception can't leave the form stuck in the loading state
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            loading = false;
+
+                            if (failure != null) {
+                                followCheckBox.setSelected(false);
+                                DefaultLoader.getUIHelper().showException("Error previewing Blob", failure, "Error previewing Blob", false, true);
+                            } else if (result != null) {
+                                showWindow(result);
+                            }
+
+                            setButtonsEnabled(true);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    private void showWindow(BlobRangeReader.TextWindow textWindow) {
+        window = textWindow;
+        previewTextArea.setText(textWindow.getText());
+        previewTextArea.setCaretPosition(followCheckBox.isSelected() ? previewTextArea.getDocument().getLength() : 0);
+
+        positionLabel.setText(String.format("%s - %s of %s",
+                UIHelperImpl.readableFileSize(textWindow.getStartOffset()),
+                UIHelperImpl.readableFileSize(textWindow.getEndOffset()),
+                UIHelperImpl.readableFileSize(reader.getSize())));
+    }
+
+    private void setButtonsEnabled(boolean enabled) {
+        boolean atStart = window == null || window.getStartOffset() == 0;
+        boolean atEnd = window == null || window.getEndOffset() >= reader.getSize();
+
+        headButton.setEnabled(enabled);
+        previousButton.setEnabled(enabled && !atStart);
+        nextButton.setEnabled(enabled && !atEnd);
+        tailButton.setEnabled(enabled);
+    }
+}
@@ -28,6 +28,7 @@ import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientSDKManagerImpl;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.CompactTableEntityList;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity;
 import org.jetbrains.annotations.NotNull;
 
@@ -54,7 +55,7 @@ public class TableEntityForm extends JDialog {
     private ClientStorageAccount storageAccount;
     private Runnable onFinish;
     private String tableName;
-    private List<TableEntity> tableEntityList;
+    private CompactTableEntityList tableEntityList;
 
 
     private static String[] INVALID_KEYWORDS = {
@@ -210,8 +211,8 @@ public class TableEntityForm extends JDialog {
         }
 
         if(tableEntity == null) {
-            for(TableEntity te : tableEntityList) {
-                if(te.getPartitionKey().equals(partitionKey) && te.getRowKey().equals(rowKey)) {
+            for(int i = 0; i < tableEntityList.size(); i++) {
+                if(tableEntityList.getPartitionKey(i).equals(partitionKey) && tableEntityList.getRowKey(i).equals(rowKey)) {
                     errors = errors + "An entity already exists with this partition key and row key pair.";
                 }
             }
@@ -314,7 +315,7 @@ public class TableEntityForm extends JDialog {
         this.tableName = tableName;
     }
 
-    public void setTableEntityList(List<TableEntity> tableEntityList) {
+    public void setTableEntityList(CompactTableEntityList tableEntityList) {
         this.tableEntityList = tableEntityList;
     }
 
@@ -15,96 +15,252 @@
  */
 package com.microsoftopentechnologies.intellij.forms;
 
-import com.microsoftopentechnologies.intellij.helpers.ReadOnlyCellTableModel;
 import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
-import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.MobileServiceLogTailer;
+import com.microsoftopentechnologies.tooling.msservices.helpers.collections.BoundedRingBuffer;
 import com.microsoftopentechnologies.tooling.msservices.model.ms.LogEntry;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
 import java.awt.*;
-import java.util.Vector;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 public class ViewLogForm extends JDialog {
+    private static final int LOG_BUFFER_CAPACITY = 5000;
+    private static final String ALL_LEVELS = "All";
+
+    private static class LogTableModel extends AbstractTableModel {
+        private static final String[] COLUMNS = {"Level", "Message", "Source", "Time Stamp"};
+        private List<LogEntry> rows = new ArrayList<LogEntry>();
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == 3 ? Date.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            LogEntry log = rows.get(row);
+
+            switch (column) {
+                case 0:
+                    return log.getType();
+                case 1:
+                    return log.getMessage();
+                case 2:
+                    return log.getSource();
+                default:
+                    return log.getTimeCreated();
+            }
+        }
+
+        public void append(@NotNull List<LogEntry> entries, @NotNull BoundedRingBuffer<LogEntry> buffer) {
+            if (rows.size() + entries.size() <= buffer.capacity()) {
+                int first = rows.size();
+                rows.addAll(entries);
+                fireTableRowsInserted(first, rows.size() - 1);
+            } else {
+                // the buffer evicted old entries, take its current contents instead
+                rows = buffer.snapshot();
+                fireTableDataChanged();
+            }
+        }
+    }
+
     private JTable logTable;
     private JPanel mainPanel;
-    private Icon warningIcon = UIHelperImpl.loadIcon("logwarn.png");
-    private Icon errorIcon = UIHelperImpl.loadIcon("logerr.png");
-    private Icon infoIcon = UIHelperImpl.loadIcon("loginfo.png");
+    private JComboBox levelComboBox;
+    private JTextField sourceTextField;
+    private JCheckBox followCheckBox;
+    private JLabel statusLabel;
+    private final Icon warningIcon = UIHelperImpl.loadIcon("logwarn.png");
+    private final Icon errorIcon = UIHelperImpl.loadIcon("logerr.png");
+    private final Icon infoIcon = UIHelperImpl.loadIcon("loginfo.png");
+
+    private final LogTableModel model = new LogTableModel();
+    private final TableRowSorter<LogTableModel> sorter = new TableRowSorter<LogTableModel>(model);
+    private MobileServiceLogTailer tailer;
 
     public ViewLogForm() {
         this.setContentPane(mainPanel);
         this.setTitle("Service log");
 
-        try {
-            logTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        logTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        logTable.setModel(model);
+        logTable.setRowSorter(sorter);
 
-            ReadOnlyCellTableModel model = new ReadOnlyCellTableModel();
+        logTable.getColumn("Level").setCellRenderer(new DefaultTableCellRenderer() {
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+                setIcon(null);
 
-            model.addColumn("Level");
-            model.addColumn("Message");
-            model.addColumn("Source");
-            model.addColumn("Time Stamp");
+                if ("information".equals(value)) {
+                    setIcon(infoIcon);
+                    value = "Information";
+                } else if ("error".equals(value)) {
+                    setIcon(errorIcon);
+                    value = "Error";
+                } else if ("warning".equals(value)) {
+                    setIcon(warningIcon);
+                    value = "Warning";
+                }
 
-            Vector<Object> loadingRow = new Vector<Object>();
-            loadingRow.add("loading...");
+                super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
 
-            model.addRow(loadingRow);
-            logTable.setModel(model);
+                return this;
+            }
+        });
 
-            logTable.getColumn("Level").setCellRenderer(new DefaultTableCellRenderer() {
-                public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column) {
+        logTable.getColumn("Time Stamp").setCellRenderer(new DefaultTableCellRenderer() {
+            private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.MEDIUM);
 
-                    if (value.toString().equals("information")) {
-                        setIcon(UIHelperImpl.loadIcon("loginfo.png"));
-                        value = "Information";
-                    } else if (value.toString().equals("error")) {
-                        setIcon(UIHelperImpl.loadIcon("logerr.png"));
-                        value = "Error";
-                    } else if (value.toString().equals("warning")) {
-                        setIcon(UIHelperImpl.loadIcon("logwarn.png"));
-                        value = "Warning";
-                    }
+            @Override
+            protected void setValue(Object value) {
+                setText(value == null ? "" : dateFormat.format((Date) value));
+            }
+        });
+
+        levelComboBox.setModel(new DefaultComboBoxModel(new String[]{ALL_LEVELS, "Information", "Warning", "Error"}));
+        levelComboBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                updateFilter();
+            }
+        });
 
-                    super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+        sourceTextField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent documentEvent) {
+                updateFilter();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent documentEvent) {
+                updateFilter();
+            }
 
-                    return this;
+            @Override
+            public void changedUpdate(DocumentEvent documentEvent) {
+                updateFilter();
+            }
+        });
+
+        followCheckBox.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                if (tailer == null) {
+                    return;
                 }
-            });
-        } catch (Throwable ex) {
-            this.setCursor(Cursor.getDefaultCursor());
-            DefaultLoader.getUIHelper().showException("Error loading logs", ex);
-        }
-    }
 
+                if (followCheckBox.isSelected()) {
+                    startTailer();
+                } else {
+                    tailer.stop();
+                    statusLabel.setText("Paused");
+                }
+            }
+        });
 
-    public void queryLog(String subscriptionId, String serviceName, String runtime) {
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                if (tailer != null) {
+                    tailer.stop();
+                }
+            }
+        });
+    }
 
-        try {
-            this.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+    public void queryLog(String subscriptionId, String serviceName, String runtime) {
+        tailer = new MobileServiceLogTailer(subscriptionId, serviceName, runtime, LOG_BUFFER_CAPACITY);
 
-            ReadOnlyCellTableModel model = (ReadOnlyCellTableModel) logTable.getModel();
+        if (followCheckBox.isSelected()) {
+            startTailer();
+        }
+    }
 
-            while (model.getRowCount() > 0)
-                model.removeRow(0);
+    private void startTailer() {
+        statusLabel.setText("Loading...");
+        statusLabel.setToolTipText(null);
 
-            for (LogEntry log : AzureManagerImpl.getManager().listLog(subscriptionId, serviceName, runtime)) {
+        // polling happens on the tailer's own thread, only the table update goes through the EDT
+        tailer.start(new MobileServiceLogTailer.LogTailListener() {
+            @Override
+            public void entriesAdded(@NotNull final List<LogEntry> entries) {
+                DefaultLoader.getIdeHelper().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        model.append(entries, tailer.getBuffer());
+                        statusLabel.setText(String.format("%d entries", model.getRowCount()));
+                        statusLabel.setToolTipText(null);
 
-                Vector<Object> row = new Vector<Object>();
-                row.add(log.getType());
-                row.add(log.getMessage());
-                row.add(log.getSource());
-                row.add(log.getTimeCreated());
+                        if (followCheckBox.isSelected() && logTable.getRowCount() > 0) {
+                            logTable.scrollRectToVisible(logTable.getCellRect(logTable.getRowCount() - 1, 0, true));
+                        }
+                    }
+                });
+            }
 
-                model.addRow(row);
+            @Override
+            public void pollFailed(@NotNull final AzureCmdException ex) {
+                DefaultLoader.getIdeHelper().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        statusLabel.setText("Error querying logs, retrying");
+                        statusLabel.setToolTipText(ex.getMessage());
+                    }
+                });
             }
+        });
+    }
+
+    private void updateFilter() {
+        final String level = (String) levelComboBox.getSelectedItem();
+        final String source = sourceTextField.getText().trim().toLowerCase();
 
-            this.setCursor(Cursor.getDefaultCursor());
-        } catch (Throwable ex) {
-            this.setCursor(Cursor.getDefaultCursor());
-            DefaultLoader.getUIHelper().showException("Error quering logs", ex);
+        if ((level == null || ALL_LEVELS.equals(level)) && source.isEmpty()) {
+            sorter.setRowFilter(null);
+            return;
         }
-    }
 
+        sorter.setRowFilter(new RowFilter<LogTableModel, Integer>() {
+            @Override
+            public boolean include(Entry<? extends LogTableModel, ? extends Integer> entry) {
+                String type = entry.getStringValue(0);
+                String entrySource = entry.getStringValue(2);
+
+                return (level == null || ALL_LEVELS.equals(level) || level.equalsIgnoreCase(type))
+                        && (source.isEmpty() || entrySource.toLowerCase().contains(source));
+            }
+        });
+    }
 }
@@ -39,6 +39,7 @@ import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.helpers.ServiceCodeReferenceHelper;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.*;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -47,8 +48,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collection;
 import java.util.Enumeration;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -157,6 +162,11 @@ public class IDEHelperImpl implements IDEHelper {
         return fileIsEditing;
     }
 
+    @Override
+    public void refreshFiles(@NotNull Collection<File> files) {
+        LocalFileSystem.getInstance().refreshIoFiles(files);
+    }
+
     @Override
     public <T extends StorageServiceTreeItem> void openItem(@NotNull Object projectObject,
                                                             @Nullable ClientStorageAccount storageAccount,
@@ -358,6 +368,37 @@ public class IDEHelperImpl implements IDEHelper {
         }, ModalityState.any());
     }
 
+    @Override
+    public void showProgress(@Nullable final Object project, @NotNull final String name,
+                             @NotNull final CancellationToken token, @NotNull final Future<?> done) {
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                ProgressManager.getInstance().run(new Task.Backgroundable((Project) project, name, true) {
+                    @Override
+                    public void run(@NotNull ProgressIndicator indicator) {
+                        indicator.setIndeterminate(true);
+
+                        // the work runs elsewhere; poll so the cancel button stays responsive
+                        while (!done.isDone()) {
+                            if (indicator.isCanceled()) {
+                                token.cancel();
+                                return;
+                            }
+
+                            try {
+                                done.get(100, TimeUnit.MILLISECONDS);
+                            } catch (TimeoutException ignored) {
+                            } catch (Exception e) {
+                                return;
+                            }
+                        }
+                    }
+                });
+            }
+        }, ModalityState.any());
+    }
+
     @Nullable
     @Override
     public String getProperty(@NotNull String name) {
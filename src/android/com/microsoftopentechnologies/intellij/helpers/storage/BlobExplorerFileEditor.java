@@ -18,6 +18,7 @@ package com.microsoftopentechnologies.intellij.helpers.storage;
 import com.intellij.codeHighlighting.BackgroundEditorHighlighter;
 import com.intellij.ide.structureView.StructureViewBuilder;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.PathManager;
 import com.intellij.openapi.fileEditor.FileEditor;
 import com.intellij.openapi.fileEditor.FileEditorLocation;
 import com.intellij.openapi.fileEditor.FileEditorState;
@@ -27,15 +28,22 @@ import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Key;
+import com.microsoft.azure.storage.blob.BlobType;
+import com.microsoftopentechnologies.intellij.forms.BlobPreviewForm;
 import com.microsoftopentechnologies.intellij.forms.UploadBlobFileForm;
 import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
 import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExternalStorageHelper;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.BlobCopyManager;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.BlobIndex;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.BlobTransferManager;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.PageBlobTransfer;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientSDKManagerImpl;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.*;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import sun.misc.IOUtils;
@@ -57,6 +65,7 @@ import java.net.SocketTimeoutException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
@@ -67,6 +76,7 @@ public class BlobExplorerFileEditor implements FileEditor {
     private JTextField queryTextField;
     private JTable blobListTable;
     private JButton queryButton;
+    private JButton searchIndexButton;
     private JButton refreshButton;
     private JButton uploadButton;
     private JButton deleteButton;
@@ -75,6 +85,10 @@ public class BlobExplorerFileEditor implements FileEditor {
     private JButton backButton;
     private JLabel pathLabel;
 
+    private static final String BLOB_INDEX_DIRECTORY = "azure-blob-index";
+    private static final int MAX_SEARCH_RESULTS = 5000;
+    private static final String VHD_EXTENSION = ".vhd";
+
     private ClientStorageAccount storageAccount;
     private BlobContainer blobContainer;
     private Project project;
@@ -82,9 +96,18 @@ public class BlobExplorerFileEditor implements FileEditor {
     private LinkedList<BlobDirectory> directoryQueue = new LinkedList<BlobDirectory>();
     private List<BlobItem> blobItems;
 
-    private EventWaitHandle subscriptionsChanged;
-    private boolean registeredSubscriptionsChanged;
+    private CancellationToken subscriptionsChanged;
     private final Object subscriptionsChangedSync = new Object();
+    private final Runnable subscriptionsChangedListener = new Runnable() {
+        @Override
+        public void run() {
+            Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, blobContainer);
+
+            if (openedFile != null) {
+                DefaultLoader.getIdeHelper().closeFile(project, openedFile);
+            }
+        }
+    };
 
     public BlobExplorerFileEditor() {
         blobListTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -215,10 +238,14 @@ public class BlobExplorerFileEditor implements FileEditor {
 
                     if (me.getButton() == 3) {
                         BlobFile fileSelection = getFileSelection();
+                        BlobDirectory folderSelection = getFolderSelection();
 
                         if (fileSelection != null) {
                             JPopupMenu popup = createTablePopUp();
                             popup.show(me.getComponent(), me.getX(), me.getY());
+                        } else if (folderSelection != null) {
+                            JPopupMenu popup = createFolderPopUp(folderSelection);
+                            popup.show(me.getComponent(), me.getX(), me.getY());
                         }
                     }
                 }
@@ -252,6 +279,13 @@ public class BlobExplorerFileEditor implements FileEditor {
         refreshButton.addActionListener(queryAction);
         queryButton.addActionListener(queryAction);
 
+        searchIndexButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                searchIndex();
+            }
+        });
+
         deleteButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
@@ -280,10 +314,7 @@ public class BlobExplorerFileEditor implements FileEditor {
             }
         });
 
-        try {
-            registerSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        registerSubscriptionsChanged();
     }
 
     public void fillGrid() {
@@ -358,11 +389,117 @@ public class BlobExplorerFileEditor implements FileEditor {
         });
     }
 
+    private void searchIndex() {
+        final BlobIndex index = BlobIndex.getIndex(new File(PathManager.getSystemPath(), BLOB_INDEX_DIRECTORY),
+                storageAccount, blobContainer.getName());
+
+        JTextField queryField = new JTextField(queryTextField.getText());
+        JCheckBox refreshCheckBox = new JCheckBox("Refresh the index before searching", !index.exists());
+        refreshCheckBox.setEnabled(index.exists());
+
+        JPanel panel = new JPanel(new GridLayout(0, 1));
+        panel.add(new JLabel("Search terms, for example: logs/*.txt size>10MB after:2015-01-31"));
+        panel.add(queryField);
+        panel.add(refreshCheckBox);
+
+        if (JOptionPane.showConfirmDialog(mainPanel, panel, "Search All Blobs", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        final String queryText = queryField.getText();
+        final boolean refresh = refreshCheckBox.isSelected();
+
+        setUIState(true);
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Searching blobs...", true) {
+            @Override
+            public void run(@NotNull final ProgressIndicator progressIndicator) {
+                try {
+                    BlobIndex.Query query = BlobIndex.Query.parse(queryText);
+
+                    if (refresh) {
+                        progressIndicator.setText("Indexing blobs...");
+
+                        index.refresh(new BlobIndex.ProgressListener() {
+                            @Override
+                            public void progress(int listedBlobs) {
+                                progressIndicator.setText2(String.format("%d blobs listed", listedBlobs));
+                            }
+
+                            @Override
+                            public boolean isCancelled() {
+                                return progressIndicator.isCanceled();
+                            }
+                        });
+                    }
+
+                    List<BlobFile> results = index.search(query, MAX_SEARCH_RESULTS);
+                    final List<BlobItem> items = new ArrayList<BlobItem>();
+
+                    for (BlobFile blobFile : results) {
+                        // results come from many folders, so they are shown and selected by their full path
+                        items.add(new BlobFile(blobFile.getPath(), blobFile.getUri(), blobFile.getContainerName(),
+                                blobFile.getPath(), blobFile.getType(), blobFile.getCacheControlHeader(),
+                                blobFile.getContentEncoding(), blobFile.getContentLanguage(), blobFile.getContentType(),
+                                blobFile.getContentMD5Header(), blobFile.getETag(), blobFile.getLastModified(),
+                                blobFile.getSize()));
+                    }
+
+                    final String summary = String.format("Search results for \"%s\": %d%s of %d blobs, indexed %s",
+                            queryText, items.size(), items.size() == MAX_SEARCH_RESULTS ? "+" : "", index.size(),
+                            new SimpleDateFormat().format(new Date(index.getBuiltTime())));
+
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            blobItems = items;
+                            pathLabel.setText(summary);
+
+                            DefaultTableModel model = (DefaultTableModel) blobListTable.getModel();
+
+                            while (model.getRowCount() > 0) {
+                                model.removeRow(0);
+                            }
+
+                            for (BlobItem blobItem : items) {
+                                BlobFile blobFile = (BlobFile) blobItem;
+
+                                model.addRow(new String[]{
+                                        "",
+                                        blobFile.getName(),
+                                        UIHelperImpl.readableFileSize(blobFile.getSize()),
+                                        new SimpleDateFormat().format(blobFile.getLastModified().getTime()),
+                                        blobFile.getContentType(),
+                                        blobFile.getUri()
+                                });
+                            }
+
+                            setUIState(false);
+
+                            blobListTable.clearSelection();
+                        }
+                    });
+                } catch (AzureCmdException ex) {
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            setUIState(false);
+                        }
+                    });
+
+                    DefaultLoader.getUIHelper().showException("Error searching blobs", ex, "Error searching blobs", false, true);
+                }
+            }
+        });
+    }
+
     private void setUIState(boolean loading) {
         if (loading) {
             blobListTable.setEnabled(false);
             backButton.setEnabled(false);
             queryButton.setEnabled(false);
+            searchIndexButton.setEnabled(false);
             refreshButton.setEnabled(false);
             uploadButton.setEnabled(false);
             deleteButton.setEnabled(false);
@@ -373,6 +510,7 @@ public class BlobExplorerFileEditor implements FileEditor {
         } else {
             blobListTable.setEnabled(true);
             queryButton.setEnabled(true);
+            searchIndexButton.setEnabled(true);
             refreshButton.setEnabled(true);
             uploadButton.setEnabled(true);
             blobListTable.setEnabled(true);
@@ -442,6 +580,14 @@ public class BlobExplorerFileEditor implements FileEditor {
             }
         });
 
+        JMenuItem previewMenu = new JMenuItem("Preview");
+        previewMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                previewSelectedFile();
+            }
+        });
+
         JMenuItem saveAsMenu = new JMenuItem("Save As");
         saveAsMenu.addActionListener(new ActionListener() {
             @Override
@@ -466,14 +612,356 @@ public class BlobExplorerFileEditor implements FileEditor {
             }
         });
 
+        JMenuItem copyToMenu = new JMenuItem("Copy To...");
+        copyToMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                BlobFile fileSelection = getFileSelection();
+
+                if (fileSelection != null) {
+                    copyTo(fileSelection);
+                }
+            }
+        });
+
         menu.add(openMenu);
+        menu.add(previewMenu);
         menu.add(saveAsMenu);
         menu.add(copyMenu);
+        menu.add(copyToMenu);
+        menu.add(deleteMenu);
+
+        return menu;
+    }
+
+    private JPopupMenu createFolderPopUp(final BlobDirectory blobDirectory) {
+        JPopupMenu menu = new JPopupMenu();
+
+        JMenuItem uploadMenu = new JMenuItem("Upload Folder Here...");
+        uploadMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                uploadFolder(blobDirectory);
+            }
+        });
+
+        JMenuItem downloadMenu = new JMenuItem("Download Folder...");
+        downloadMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                downloadFolder(blobDirectory);
+            }
+        });
+
+        JMenuItem deleteMenu = new JMenuItem("Delete Folder");
+        deleteMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                deleteFolder(blobDirectory);
+            }
+        });
+
+        JMenuItem copyToMenu = new JMenuItem("Copy Folder To...");
+        copyToMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                copyTo(blobDirectory);
+            }
+        });
+
+        menu.add(uploadMenu);
+        menu.add(downloadMenu);
+        menu.add(copyToMenu);
         menu.add(deleteMenu);
 
         return menu;
     }
 
+    private void uploadFolder(final BlobDirectory blobDirectory) {
+        JFileChooser jFileChooser = new JFileChooser();
+        jFileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        jFileChooser.setDialogTitle("Select the folder to upload");
+
+        if (jFileChooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        final File localFolder = jFileChooser.getSelectedFile();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Uploading folder...", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    BlobTransferManager.TransferResult result = new BlobTransferManager(storageAccount)
+                            .uploadDirectory(localFolder, blobDirectory, getTransferProgressListener(progressIndicator));
+
+                    showTransferResult("Uploaded", result);
+                } catch (AzureCmdException ex) {
+                    DefaultLoader.getUIHelper().showException("Error uploading folder", ex, "Error uploading folder", false, true);
+                }
+            }
+        });
+    }
+
+    private void downloadFolder(final BlobDirectory blobDirectory) {
+        JFileChooser jFileChooser = new JFileChooser();
+        jFileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        jFileChooser.setDialogTitle("Select the folder to download to");
+
+        if (jFileChooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        final File localFolder = jFileChooser.getSelectedFile();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Downloading folder...", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    BlobTransferManager.TransferResult result = new BlobTransferManager(storageAccount)
+                            .downloadDirectory(blobDirectory, localFolder, getTransferProgressListener(progressIndicator));
+
+                    showTransferResult("Downloaded", result);
+                } catch (AzureCmdException ex) {
+                    DefaultLoader.getUIHelper().showException("Error downloading folder", ex, "Error downloading folder", false, true);
+                }
+            }
+        });
+    }
+
+    private void deleteFolder(final BlobDirectory blobDirectory) {
+        if (JOptionPane.showConfirmDialog(mainPanel,
+                "Are you sure you want to delete every blob in the folder \"" + blobDirectory.getName() + "\"?",
+                "Delete Folder", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        setUIState(true);
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Deleting folder...", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    new BlobTransferManager(storageAccount)
+                            .deleteDirectory(blobDirectory, getTransferProgressListener(progressIndicator));
+                } catch (AzureCmdException ex) {
+                    DefaultLoader.getUIHelper().showException("Error deleting folder", ex, "Error deleting folder", false, true);
+                }
+
+                ApplicationManager.getApplication().invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        fillGrid();
+                    }
+                });
+            }
+        });
+    }
+
+    private void copyTo(final BlobItem blobItem) {
+        final List<ClientStorageAccount> accounts = new ArrayList<ClientStorageAccount>();
+        accounts.add(storageAccount);
+
+        for (ClientStorageAccount account : ExternalStorageHelper.getList()) {
+            if (!account.getName().equals(storageAccount.getName())) {
+                accounts.add(account);
+            }
+        }
+
+        final JComboBox accountComboBox = new JComboBox(accounts.toArray());
+        final JTextField targetTextField = new JTextField(blobContainer.getName() + "/" + blobItem.getPath());
+
+        JPanel panel = new JPanel(new GridLayout(0, 1));
+        panel.add(new JLabel("Target storage account:"));
+        panel.add(accountComboBox);
+        panel.add(new JLabel("Target container and path:"));
+        panel.add(targetTextField);
+
+        if (JOptionPane.showConfirmDialog(mainPanel, panel, "Copy Blobs", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+            return;
+        }
+
+        String target = targetTextField.getText().trim();
+        int separator = target.indexOf('/');
+
+        if (separator <= 0 || separator == target.length() - 1 && blobItem instanceof BlobFile) {
+            JOptionPane.showMessageDialog(mainPanel, "Enter the target as container/path.", "Service Explorer",
+                    JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        final ClientStorageAccount targetAccount = (ClientStorageAccount) accountComboBox.getSelectedItem();
+        final String targetContainerName = target.substring(0, separator);
+        final String targetPath = target.substring(separator + 1);
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Copying blobs...", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                progressIndicator.setIndeterminate(false);
+
+                try {
+                    BlobCopyManager copyManager = new BlobCopyManager();
+                    List<BlobCopyManager.CopyJob> jobs;
+
+                    if (blobItem instanceof BlobDirectory) {
+                        jobs = copyManager.copyDirectory(storageAccount, (BlobDirectory) blobItem, targetAccount,
+                                targetContainerName, targetPath, null);
+                    } else {
+                        jobs = new ArrayList<BlobCopyManager.CopyJob>();
+                        jobs.add(copyManager.copy(storageAccount, (BlobFile) blobItem, targetAccount,
+                                targetContainerName, targetPath, null));
+                    }
+
+                    waitForCopies(copyManager, jobs, progressIndicator);
+                    showCopyResult(jobs);
+                } catch (Throwable t) {
+                    DefaultLoader.getUIHelper().showException("Error copying blobs", t, "Error copying blobs", false, true);
+                }
+            }
+        });
+    }
+
+    private static void waitForCopies(BlobCopyManager copyManager, List<BlobCopyManager.CopyJob> jobs,
+                                      ProgressIndicator progressIndicator)
+            throws AzureCmdException, InterruptedException {
+        while (true) {
+            long copiedBytes = 0;
+            long totalBytes = 0;
+            int doneCount = 0;
+            BlobCopyManager.CopyJob slowest = null;
+
+            for (BlobCopyManager.CopyJob job : jobs) {
+                copiedBytes += job.getBytesCopied();
+                totalBytes += job.getTotalBytes();
+
+                if (job.isDone()) {
+                    doneCount++;
+                } else if (slowest == null || job.getBytesPerSecond() < slowest.getBytesPerSecond()) {
+                    slowest = job;
+                }
+            }
+
+            if (doneCount == jobs.size()) {
+                return;
+            }
+
+            if (progressIndicator.isCanceled()) {
+                AzureCmdException abortError = null;
+
+                // every job has to be cancelled, even when aborting one of them fails
+                for (BlobCopyManager.CopyJob job : jobs) {
+                    try {
+                        copyManager.abort(job);
+                    } catch (AzureCmdException e) {
+                        if (abortError == null) {
+                            abortError = e;
+                        }
+                    }
+                }
+
+                if (abortError != null) {
+                    throw abortError;
+                }
+
+                return;
+            }
+
+            progressIndicator.setFraction(totalBytes > 0 ? (double) copiedBytes / totalBytes : 0);
+            progressIndicator.setText(String.format("%d of %d copies done, %s copied", doneCount, jobs.size(),
+                    UIHelperImpl.readableFileSize(copiedBytes)));
+
+            if (slowest != null) {
+                progressIndicator.setText2(String.format("%s: %s of %s at %s/s", slowest.getSource().getName(),
+                        UIHelperImpl.readableFileSize(slowest.getBytesCopied()),
+                        UIHelperImpl.readableFileSize(slowest.getTotalBytes()),
+                        UIHelperImpl.readableFileSize(slowest.getBytesPerSecond())));
+            }
+
+            Thread.sleep(500);
+        }
+    }
+
+    private void showCopyResult(final List<BlobCopyManager.CopyJob> jobs) {
+        final StringBuilder sb = new StringBuilder();
+        int succeeded = 0;
+
+        for (BlobCopyManager.CopyJob job : jobs) {
+            if (job.isSucceeded()) {
+                succeeded++;
+            }
+        }
+
+        sb.append(String.format("%d of %d blobs copied.", succeeded, jobs.size()));
+
+        int listed = 0;
+
+        for (BlobCopyManager.CopyJob job : jobs) {
+            if (listed++ == 10) {
+                sb.append("\n...");
+                break;
+            }
+
+            String status;
+
+            if (job.getError() != null) {
+                status = "failed: " + job.getError().getMessage();
+            } else if (!job.isDone() || job.getState() == null) {
+                status = "cancelled";
+            } else {
+                status = job.getState().getStatus().toString().toLowerCase();
+            }
+
+            sb.append(String.format("\n%s: %s, %s at %s/s", job.getTargetPath(), status,
+                    UIHelperImpl.readableFileSize(job.getBytesCopied()),
+                    UIHelperImpl.readableFileSize(job.getBytesPerSecond())));
+        }
+
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                fillGrid();
+
+                JOptionPane.showMessageDialog(mainPanel, sb.toString(), "Service Explorer",
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+
+    private static BlobTransferManager.ProgressListener getTransferProgressListener(final ProgressIndicator progressIndicator) {
+        progressIndicator.setIndeterminate(false);
+
+        return new BlobTransferManager.ProgressListener() {
+            @Override
+            public void progress(int completedFiles, int totalFiles, long transferredBytes) {
+                progressIndicator.setFraction(totalFiles > 0 ? (double) completedFiles / totalFiles : 1);
+                progressIndicator.setText2(String.format("%d of %d files, %s", completedFiles, totalFiles,
+                        UIHelperImpl.readableFileSize(transferredBytes)));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return progressIndicator.isCanceled();
+            }
+        };
+    }
+
+    private void showTransferResult(final String operation, final BlobTransferManager.TransferResult result) {
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                fillGrid();
+
+                JOptionPane.showMessageDialog(mainPanel,
+                        String.format("%s %d files (%s), %d unchanged files skipped%s.", operation,
+                                result.getTransferredFiles(), UIHelperImpl.readableFileSize(result.getTransferredBytes()),
+                                result.getSkippedFiles(), result.isCancelled() ? ", cancelled" : ""),
+                        "Service Explorer",
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+
     private void deleteSelectedFile() {
         final BlobFile blobItem = getFileSelection();
 
@@ -520,6 +1008,18 @@ public class BlobExplorerFileEditor implements FileEditor {
         }
     }
 
+    private void previewSelectedFile() {
+        BlobFile fileSelection = getFileSelection();
+
+        if (fileSelection != null) {
+            BlobPreviewForm form = new BlobPreviewForm();
+            form.setBlob(storageAccount, fileSelection);
+
+            UIHelperImpl.packAndCenterJDialog(form);
+            form.setVisible(true);
+        }
+    }
+
     private void saveAsSelectedFile() {
         BlobFile fileSelection = getFileSelection();
 
@@ -545,7 +1045,9 @@ public class BlobExplorerFileEditor implements FileEditor {
     private void downloadSelectedFile(final File targetFile, final boolean open) {
         final BlobFile fileSelection = getFileSelection();
 
-        if (fileSelection != null) {
+        if (fileSelection != null && BlobType.PAGE_BLOB.toString().equals(fileSelection.getType())) {
+            downloadPageBlob(fileSelection, targetFile, open);
+        } else if (fileSelection != null) {
             ProgressManager.getInstance().run(new Task.Backgroundable(project, "Downloading blob...", true) {
                 @Override
                 public void run(@NotNull final ProgressIndicator progressIndicator) {
@@ -629,6 +1131,38 @@ public class BlobExplorerFileEditor implements FileEditor {
         }
     }
 
+    private void downloadPageBlob(final BlobFile blobFile, final File targetFile, final boolean open) {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Downloading Page Blob...", true) {
+            @Override
+            public void run(@NotNull final ProgressIndicator progressIndicator) {
+                progressIndicator.setIndeterminate(false);
+
+                try {
+                    PageBlobTransfer.TransferResult result = new PageBlobTransfer(storageAccount).download(blobFile, targetFile,
+                            new PageBlobTransfer.ProgressListener() {
+                                @Override
+                                public void progress(long processedBytes, long totalBytes, long transferredBytes) {
+                                    progressIndicator.setFraction(totalBytes == 0 ? 1 : (double) processedBytes / totalBytes);
+                                    progressIndicator.setText2(String.format("%s of %s in use downloaded",
+                                            UIHelperImpl.readableFileSize(processedBytes), UIHelperImpl.readableFileSize(totalBytes)));
+                                }
+
+                                @Override
+                                public boolean isCancelled() {
+                                    return progressIndicator.isCanceled();
+                                }
+                            });
+
+                    if (open && !result.isCancelled() && targetFile.exists()) {
+                        Desktop.getDesktop().open(targetFile);
+                    }
+                } catch (Throwable t) {
+                    DefaultLoader.getUIHelper().showException("Error downloading Page Blob", t, "Error downloading Page Blob", false, true);
+                }
+            }
+        });
+    }
+
     private void uploadFile() {
         final UploadBlobFileForm form = new UploadBlobFileForm();
         UIHelperImpl.packAndCenterJDialog(form);
@@ -655,6 +1189,12 @@ public class BlobExplorerFileEditor implements FileEditor {
     }
 
     private void uploadFile(final String path, final File selectedFile) {
+        // virtual machine disks have to be page blobs
+        if (selectedFile.getName().toLowerCase().endsWith(VHD_EXTENSION)) {
+            uploadPageBlob(path, selectedFile);
+            return;
+        }
+
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "Uploading blob...", true) {
             @Override
             public void run(@NotNull final ProgressIndicator progressIndicator) {
@@ -723,12 +1263,12 @@ public class BlobExplorerFileEditor implements FileEditor {
                             directoryQueue.clear();
                             directoryQueue.addLast(StorageClientSDKManagerImpl.getManager().getRootDirectory(storageAccount, blobContainer));
 
-                            for (String pathDir : path.split("/")) {
-                                for (BlobItem blobItem : StorageClientSDKManagerImpl.getManager().getBlobItems(storageAccount, directoryQueue.getLast())) {
-                                    if (blobItem instanceof BlobDirectory && blobItem.getName().equals(pathDir)) {
-                                        directoryQueue.addLast((BlobDirectory) blobItem);
-                                    }
-                                }
+                            String[] pathDirs = path.split("/");
+
+                            // the directories are built from the path, there's no need to list them
+                            for (int i = 0; i < pathDirs.length - 1; i++) {
+                                directoryQueue.addLast(StorageClientSDKManagerImpl.getManager().createBlobDirectory(
+                                        storageAccount, directoryQueue.getLast(), new BlobDirectory(pathDirs[i], "", "", "")));
                             }
                         } catch (AzureCmdException e) {
                             DefaultLoader.getUIHelper().showException("Error showing new blob", e, "Error showing new blob", false, true);
@@ -764,6 +1304,45 @@ public class BlobExplorerFileEditor implements FileEditor {
         });
     }
 
+    private void uploadPageBlob(final String path, final File selectedFile) {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Uploading Page Blob...", true) {
+            @Override
+            public void run(@NotNull final ProgressIndicator progressIndicator) {
+                progressIndicator.setIndeterminate(false);
+
+                try {
+                    PageBlobTransfer.TransferResult result = new PageBlobTransfer(storageAccount).upload(selectedFile,
+                            blobContainer.getName(), path, new PageBlobTransfer.ProgressListener() {
+                                @Override
+                                public void progress(long processedBytes, long totalBytes, long transferredBytes) {
+                                    progressIndicator.setFraction(totalBytes == 0 ? 1 : (double) processedBytes / totalBytes);
+                                    progressIndicator.setText2(String.format("%s of %s read, %s in use uploaded",
+                                            UIHelperImpl.readableFileSize(processedBytes),
+                                            UIHelperImpl.readableFileSize(totalBytes),
+                                            UIHelperImpl.readableFileSize(transferredBytes)));
+                                }
+
+                                @Override
+                                public boolean isCancelled() {
+                                    return progressIndicator.isCanceled();
+                                }
+                            });
+
+                    if (!result.isCancelled()) {
+                        ApplicationManager.getApplication().invokeLater(new Runnable() {
+                            @Override
+                            public void run() {
+                                fillGrid();
+                            }
+                        });
+                    }
+                } catch (AzureCmdException e) {
+                    DefaultLoader.getUIHelper().showException("Error uploading Page Blob", e, "Error uploading Page Blob", false, true);
+                }
+            }
+        });
+    }
+
     @NotNull
     @Override
     public JComponent getComponent() {
@@ -838,10 +1417,7 @@ public class BlobExplorerFileEditor implements FileEditor {
 
     @Override
     public void dispose() {
-        try {
-            unregisterSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        unregisterSubscriptionsChanged();
     }
 
     @Nullable
@@ -866,45 +1442,19 @@ public class BlobExplorerFileEditor implements FileEditor {
         this.project = project;
     }
 
-    private void registerSubscriptionsChanged()
-            throws AzureCmdException {
+    private void registerSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
             if (subscriptionsChanged == null) {
-                subscriptionsChanged = AzureManagerImpl.getManager().registerSubscriptionsChanged();
+                subscriptionsChanged = AzureManagerImpl.getManager().getSubscriptionsChangedToken();
+                subscriptionsChanged.addListener(subscriptionsChangedListener);
             }
-
-            registeredSubscriptionsChanged = true;
-
-            DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        subscriptionsChanged.waitEvent(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (registeredSubscriptionsChanged) {
-                                    Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, blobContainer);
-
-                                    if (openedFile != null) {
-                                        DefaultLoader.getIdeHelper().closeFile(project, openedFile);
-                                    }
-                                }
-                            }
-                        });
-                    } catch (AzureCmdException ignored) {
-                    }
-                }
-            });
         }
     }
 
-    private void unregisterSubscriptionsChanged()
-            throws AzureCmdException {
+    private void unregisterSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
-            registeredSubscriptionsChanged = false;
-
             if (subscriptionsChanged != null) {
-                AzureManagerImpl.getManager().unregisterSubscriptionsChanged(subscriptionsChanged);
+                subscriptionsChanged.removeListener(subscriptionsChangedListener);
                 subscriptionsChanged = null;
             }
         }
@@ -33,11 +33,13 @@ import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.QueueBrowser;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.QueueWorkbench;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientSDKManagerImpl;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.Queue;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.QueueMessage;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -47,10 +49,13 @@ import javax.swing.table.JTableHeader;
 import java.awt.*;
 import java.awt.event.*;
 import java.beans.PropertyChangeListener;
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.List;
 
 public class QueueFileEditor implements FileEditor {
+    private static final int QUEUE_MESSAGE_TIME_TO_LIVE_SECONDS = 7 * 24 * 60 * 60;
+
     private Project project;
     private ClientStorageAccount storageAccount;
     private Queue queue;
@@ -59,12 +64,27 @@ public class QueueFileEditor implements FileEditor {
     private JButton refreshButton;
     private JButton addMessageButton;
     private JButton clearQueueButton;
+    private JButton bulkOperationsButton;
+    private JButton previousPageButton;
+    private JButton nextPageButton;
+    private JLabel pageLabel;
     private JTable queueTable;
     private List<QueueMessage> queueMessages;
+    private QueueBrowser queueBrowser;
+    private boolean confirmedReceivingPages;
 
-    private EventWaitHandle subscriptionsChanged;
-    private boolean registeredSubscriptionsChanged;
+    private CancellationToken subscriptionsChanged;
     private final Object subscriptionsChangedSync = new Object();
+    private final Runnable subscriptionsChangedListener = new Runnable() {
+        @Override
+        public void run() {
+            Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, queue);
+
+            if (openedFile != null) {
+                DefaultLoader.getIdeHelper().closeFile(project, openedFile);
+            }
+        }
+    };
 
     public QueueFileEditor() {
         queueTable.getSelectionModel().setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
@@ -123,7 +143,7 @@ public class QueueFileEditor implements FileEditor {
                         QueueMessage message = getSelectedQueueMessage();
 
                         if (message != null) {
-                            JPopupMenu popup = createTablePopUp(r == 0);
+                            JPopupMenu popup = createTablePopUp(r == 0 && getQueueBrowser().getPageIndex() == 0);
                             popup.show(me.getComponent(), me.getX(), me.getY());
                         }
                     }
@@ -219,10 +239,31 @@ public class QueueFileEditor implements FileEditor {
             }
         });
 
-        try {
-            registerSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        previousPageButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                fillPage(getQueueBrowser().previousPage());
+            }
+        });
+
+        nextPageButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                showNextPage();
+            }
+        });
+
+        previousPageButton.setEnabled(false);
+        nextPageButton.setEnabled(false);
+
+        bulkOperationsButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                createBulkOperationsPopUp().show(bulkOperationsButton, 0, bulkOperationsButton.getHeight());
+            }
+        });
+
+        registerSubscriptionsChanged();
     }
 
     public void fillGrid() {
@@ -230,35 +271,51 @@ public class QueueFileEditor implements FileEditor {
             @Override
             public void run(@NotNull ProgressIndicator progressIndicator) {
                 try {
-                    queueMessages = StorageClientSDKManagerImpl.getManager().getQueueMessages(storageAccount, queue);
+                    final List<QueueMessage> page = getQueueBrowser().firstPage();
 
                     ApplicationManager.getApplication().invokeLater(new Runnable() {
                         @Override
                         public void run() {
-                            DefaultTableModel model = (DefaultTableModel) queueTable.getModel();
+                            fillPage(page);
+                        }
+                    });
+                } catch (AzureCmdException e) {
+                    DefaultLoader.getUIHelper().showException("Error getting queue messages", e, "Service Explorer", false, true);
+                }
+            }
+        });
+    }
 
-                            while (model.getRowCount() > 0) {
-                                model.removeRow(0);
-                            }
+    private void showNextPage() {
+        final QueueBrowser browser = getQueueBrowser();
+
+        if (browser.isNextPageReceived() && !confirmedReceivingPages) {
+            if (JOptionPane.showConfirmDialog(mainPanel,
+                    String.format("Browsing past the first %d messages receives them: the messages you page through " +
+                                    "are hidden from consumers for up to %d minutes, until you refresh or close the " +
+                                    "queue, and their dequeue count goes up by one.\nDo you want to continue?",
+                            QueueBrowser.PAGE_SIZE, QueueBrowser.VISIBILITY_TIMEOUT_SECONDS / 60),
+                    "Service Explorer",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+                return;
+            }
 
-                            for (QueueMessage queueMessage : queueMessages) {
-                                String[] values = {
-                                        queueMessage.getId(),
-                                        queueMessage.getContent(),
-                                        UIHelperImpl.readableFileSize(queueMessage.getContent().length()),
-                                        new SimpleDateFormat().format(queueMessage.getInsertionTime().getTime()),
-                                        new SimpleDateFormat().format(queueMessage.getExpirationTime().getTime()),
-                                        String.valueOf(queueMessage.getDequeueCount()),
-                                };
-
-                                model.addRow(values);
-                            }
+            confirmedReceivingPages = true;
+        }
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Loading queue messages", false) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    final List<QueueMessage> page = browser.nextPage();
 
-                            clearQueueButton.setEnabled(queueMessages.size() != 0);
-                            dequeueMessageButton.setEnabled(queueMessages.size() != 0);
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            fillPage(page);
                         }
                     });
-
                 } catch (AzureCmdException e) {
                     DefaultLoader.getUIHelper().showException("Error getting queue messages", e, "Service Explorer", false, true);
                 }
@@ -266,6 +323,50 @@ public class QueueFileEditor implements FileEditor {
         });
     }
 
+    private void fillPage(@NotNull List<QueueMessage> page) {
+        QueueBrowser browser = getQueueBrowser();
+        queueMessages = page;
+
+        DefaultTableModel model = (DefaultTableModel) queueTable.getModel();
+        model.setRowCount(0);
+
+        for (QueueMessage queueMessage : queueMessages) {
+            String[] values = {
+                    queueMessage.getId(),
+                    queueMessage.getContent(),
+                    UIHelperImpl.readableFileSize(queueMessage.getContent().length()),
+                    new SimpleDateFormat().format(queueMessage.getInsertionTime().getTime()),
+                    new SimpleDateFormat().format(queueMessage.getExpirationTime().getTime()),
+                    String.valueOf(queueMessage.getDequeueCount()),
+            };
+
+            model.addRow(values);
+        }
+
+        pageLabel.setText("Page " + (browser.getPageIndex() + 1));
+        previousPageButton.setEnabled(browser.hasPreviousPage());
+        nextPageButton.setEnabled(browser.hasNextPage());
+        clearQueueButton.setEnabled(queueMessages.size() != 0);
+        dequeueMessageButton.setEnabled(queueMessages.size() != 0 && browser.getPageIndex() == 0);
+    }
+
+    @NotNull
+    private synchronized QueueBrowser getQueueBrowser() {
+        if (queueBrowser == null) {
+            queueBrowser = new QueueBrowser(storageAccount, queue);
+        }
+
+        return queueBrowser;
+    }
+
+    private void releaseBrowsedMessages() {
+        try {
+            getQueueBrowser().release();
+        } catch (AzureCmdException e) {
+            DefaultLoader.getUIHelper().showException("Error releasing browsed queue messages", e, "Service Explorer", false, true);
+        }
+    }
+
     private JPopupMenu createTablePopUp(boolean isFirstRow) {
         JPopupMenu menu = new JPopupMenu();
 
@@ -292,6 +393,161 @@ public class QueueFileEditor implements FileEditor {
         return menu;
     }
 
+    private JPopupMenu createBulkOperationsPopUp() {
+        JPopupMenu menu = new JPopupMenu();
+
+        JMenuItem importMenu = new JMenuItem("Enqueue Messages from File...");
+        importMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                enqueueMessagesFromFile();
+            }
+        });
+
+        JMenuItem exportMenu = new JMenuItem("Export Messages to JSON Lines...");
+        exportMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                exportMessages();
+            }
+        });
+
+        JMenuItem drainMenu = new JMenuItem("Drain Queue");
+        drainMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                drainQueue();
+            }
+        });
+
+        menu.add(importMenu);
+        menu.add(exportMenu);
+        menu.addSeparator();
+        menu.add(drainMenu);
+
+        return menu;
+    }
+
+    private void enqueueMessagesFromFile() {
+        JFileChooser jFileChooser = new JFileChooser();
+        jFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        jFileChooser.setDialogTitle("Select a text file with one message per line");
+
+        if (jFileChooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        final File file = jFileChooser.getSelectedFile();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Enqueuing messages", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    QueueWorkbench.Result result = new QueueWorkbench(storageAccount, queue)
+                            .enqueueFromFile(file, QUEUE_MESSAGE_TIME_TO_LIVE_SECONDS, getProgressListener(progressIndicator));
+
+                    showBulkOperationResult("Enqueued", result);
+                } catch (AzureCmdException e) {
+                    DefaultLoader.getUIHelper().showException("Error enqueuing messages", e, "Service Explorer", false, true);
+                }
+            }
+        });
+    }
+
+    private void exportMessages() {
+        if (JOptionPane.showConfirmDialog(mainPanel,
+                String.format("Exporting a queue with more than %d messages receives up to %d of them: they are " +
+                                "hidden from consumers until the export ends and their dequeue count goes up by one, " +
+                                "which can move them to a poison queue.\nDo you want to continue?",
+                        QueueBrowser.PAGE_SIZE - 1, QueueWorkbench.MAX_DUMP_MESSAGES),
+                "Service Explorer",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        JFileChooser jFileChooser = new JFileChooser(new File(queue.getName() + ".jsonl"));
+        jFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+
+        if (jFileChooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+
+        final File file = jFileChooser.getSelectedFile();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Exporting queue messages", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    getQueueBrowser().release();
+
+                    QueueWorkbench.Result result = new QueueWorkbench(storageAccount, queue)
+                            .dumpToJsonl(file, getProgressListener(progressIndicator));
+
+                    showBulkOperationResult("Exported", result);
+                } catch (AzureCmdException e) {
+                    DefaultLoader.getUIHelper().showException("Error exporting queue messages", e, "Service Explorer", false, true);
+                }
+            }
+        });
+    }
+
+    private void drainQueue() {
+        if (JOptionPane.showConfirmDialog(mainPanel,
+                "Are you sure you want to dequeue and delete every message in the queue?",
+                "Service Explorer",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.WARNING_MESSAGE) != JOptionPane.YES_OPTION) {
+            return;
+        }
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Draining queue", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    getQueueBrowser().release();
+
+                    QueueWorkbench.Result result = new QueueWorkbench(storageAccount, queue)
+                            .drain(getProgressListener(progressIndicator));
+
+                    showBulkOperationResult("Deleted", result);
+                } catch (AzureCmdException e) {
+                    DefaultLoader.getUIHelper().showException("Error draining queue", e, "Service Explorer", false, true);
+                }
+            }
+        });
+    }
+
+    @NotNull
+    private static QueueWorkbench.ProgressListener getProgressListener(@NotNull final ProgressIndicator progressIndicator) {
+        return new QueueWorkbench.ProgressListener() {
+            @Override
+            public void progress(long processed, double messagesPerSecond) {
+                progressIndicator.setText2(String.format("%d messages (%.1f messages/sec)", processed, messagesPerSecond));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return progressIndicator.isCanceled();
+            }
+        };
+    }
+
+    private void showBulkOperationResult(@NotNull final String operation, @NotNull final QueueWorkbench.Result result) {
+        ApplicationManager.getApplication().invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                fillGrid();
+
+                JOptionPane.showMessageDialog(mainPanel,
+                        String.format("%s %d messages in %.1f seconds (%.1f messages/sec).", operation,
+                                result.getProcessed(), result.getElapsedMillis() / 1000.0, result.getMessagesPerSecond()),
+                        "Service Explorer",
+                        JOptionPane.INFORMATION_MESSAGE);
+            }
+        });
+    }
+
     private void dequeueFirstMessage() {
         if (JOptionPane.showConfirmDialog(mainPanel,
                 "Are you sure you want to dequeue the first message in the queue?",
@@ -418,10 +674,14 @@ public class QueueFileEditor implements FileEditor {
 
     @Override
     public void dispose() {
-        try {
-            unregisterSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        unregisterSubscriptionsChanged();
+
+        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                releaseBrowsedMessages();
+            }
+        });
     }
 
     @Nullable
@@ -434,45 +694,19 @@ public class QueueFileEditor implements FileEditor {
     public <T> void putUserData(@NotNull Key<T> key, @Nullable T t) {
     }
 
-    private void registerSubscriptionsChanged()
-            throws AzureCmdException {
+    private void registerSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
             if (subscriptionsChanged == null) {
-                subscriptionsChanged = AzureManagerImpl.getManager().registerSubscriptionsChanged();
+                subscriptionsChanged = AzureManagerImpl.getManager().getSubscriptionsChangedToken();
+                subscriptionsChanged.addListener(subscriptionsChangedListener);
             }
-
-            registeredSubscriptionsChanged = true;
-
-            DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        subscriptionsChanged.waitEvent(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (registeredSubscriptionsChanged) {
-                                    Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, queue);
-
-                                    if (openedFile != null) {
-                                        DefaultLoader.getIdeHelper().closeFile(project, openedFile);
-                                    }
-                                }
-                            }
-                        });
-                    } catch (AzureCmdException ignored) {
-                    }
-                }
-            });
         }
     }
 
-    private void unregisterSubscriptionsChanged()
-            throws AzureCmdException {
+    private void unregisterSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
-            registeredSubscriptionsChanged = false;
-
             if (subscriptionsChanged != null) {
-                AzureManagerImpl.getManager().unregisterSubscriptionsChanged(subscriptionsChanged);
+                subscriptionsChanged.removeListener(subscriptionsChangedListener);
                 subscriptionsChanged = null;
             }
         }
@@ -34,19 +34,23 @@ import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientSDKManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.TableBatchWriter;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.TableEntityTransfer;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.CompactTableEntityList;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.Table;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.table.AbstractTableModel;
 import java.awt.event.*;
 import java.beans.PropertyChangeListener;
+import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
@@ -54,6 +58,7 @@ public class TableFileEditor implements FileEditor {
     public static final String PARTITION_KEY = "Partition key";
     public static final String ROW_KEY = "Row key";
     private static final String TIMESTAMP = "Timestamp";
+    private static final int BULK_CONCURRENCY = 8;
 
     private ClientStorageAccount storageAccount;
     private Project project;
@@ -65,12 +70,22 @@ public class TableFileEditor implements FileEditor {
     private JTextField queryTextField;
     private JButton queryButton;
     private JButton queryDesignerButton;
+    private JButton bulkOperationsButton;
     private JTable entitiesTable;
-    private List<TableEntity> tableEntities;
+    private CompactTableEntityList tableEntities;
 
-    private EventWaitHandle subscriptionsChanged;
-    private boolean registeredSubscriptionsChanged;
+    private CancellationToken subscriptionsChanged;
     private final Object subscriptionsChangedSync = new Object();
+    private final Runnable subscriptionsChangedListener = new Runnable() {
+        @Override
+        public void run() {
+            Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, table);
+
+            if (openedFile != null) {
+                DefaultLoader.getIdeHelper().closeFile(project, openedFile);
+            }
+        }
+    };
 
     public TableFileEditor() {
         ActionListener queryActionListener = new ActionListener() {
@@ -117,6 +132,13 @@ public class TableFileEditor implements FileEditor {
             }
         });
 
+        bulkOperationsButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                createBulkOperationsPopUp().show(bulkOperationsButton, 0, bulkOperationsButton.getHeight());
+            }
+        });
+
         queryDesignerButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent actionEvent) {
@@ -185,10 +207,7 @@ public class TableFileEditor implements FileEditor {
             }
         });
 
-        try {
-            registerSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        registerSubscriptionsChanged();
     }
 
     private JPopupMenu createTablePopUp() {
@@ -217,10 +236,11 @@ public class TableFileEditor implements FileEditor {
     }
 
     private void editEntity() {
-        TableEntity[] selectedEntities = getSelectedEntities();
+        final int[] selectedIndexes = getSelectedIndexes();
 
-        if (selectedEntities != null && selectedEntities.length > 0) {
-            final TableEntity selectedEntity = selectedEntities[0];
+        if (selectedIndexes != null && selectedIndexes.length > 0) {
+            final CompactTableEntityList entities = tableEntities;
+            final TableEntity selectedEntity = entities.get(selectedIndexes[0]);
 
             final TableEntityForm form = new TableEntityForm();
             form.setProject(project);
@@ -233,8 +253,10 @@ public class TableFileEditor implements FileEditor {
             form.setOnFinish(new Runnable() {
                 @Override
                 public void run() {
-                    tableEntities.set(entitiesTable.getSelectedRow(), form.getTableEntity());
-                    refreshGrid();
+                    if (entities == tableEntities) {
+                        tableEntities.set(selectedIndexes[0], form.getTableEntity());
+                        refreshGrid();
+                    }
                 }
             });
 
@@ -267,46 +289,7 @@ public class TableFileEditor implements FileEditor {
         ApplicationManager.getApplication().invokeLater(new Runnable() {
             @Override
             public void run() {
-                Map<String, List<String>> columnData = new LinkedHashMap<String, List<String>>();
-                columnData.put(PARTITION_KEY, new ArrayList<String>());
-                columnData.put(ROW_KEY, new ArrayList<String>());
-                columnData.put(TIMESTAMP, new ArrayList<String>());
-
-                for (TableEntity tableEntity : tableEntities) {
-                    columnData.get(PARTITION_KEY).add(tableEntity.getPartitionKey());
-                    columnData.get(ROW_KEY).add(tableEntity.getRowKey());
-                    columnData.get(TIMESTAMP).add(new SimpleDateFormat().format(tableEntity.getTimestamp().getTime()));
-
-                    for (String entityColumn : tableEntity.getProperties().keySet()) {
-                        if (!columnData.keySet().contains(entityColumn)) {
-                            columnData.put(entityColumn, new ArrayList<String>());
-                        }
-                    }
-
-                }
-
-                for (TableEntity tableEntity : tableEntities) {
-                    for (String column : columnData.keySet()) {
-                        if (!column.equals(PARTITION_KEY) && !column.equals(ROW_KEY) && !column.equals(TIMESTAMP)) {
-                            columnData.get(column).add(tableEntity.getProperties().containsKey(column)
-                                    ? getFormattedProperty(tableEntity.getProperties().get(column))
-                                    : "");
-                        }
-                    }
-                }
-
-                DefaultTableModel model = new DefaultTableModel() {
-                    @Override
-                    public boolean isCellEditable(int i, int i1) {
-                        return false;
-                    }
-                };
-
-                for (String column : columnData.keySet()) {
-                    model.addColumn(column, columnData.get(column).toArray());
-                }
-
-                entitiesTable.setModel(model);
+                entitiesTable.setModel(new EntityTableModel(tableEntities));
 
                 for (int i = 0; i != entitiesTable.getColumnCount(); i++) {
                     entitiesTable.getColumnModel().getColumn(i).setPreferredWidth(100);
@@ -316,7 +299,9 @@ public class TableFileEditor implements FileEditor {
     }
 
     private void deleteSelection() {
-        final TableEntity[] selectedEntities = getSelectedEntities();
+        final CompactTableEntityList entities = tableEntities;
+        final int[] selectedIndexes = getSelectedIndexes();
+        final TableEntity[] selectedEntities = getSelectedEntities(selectedIndexes);
 
         ProgressManager.getInstance().run(new Task.Backgroundable(project, "Deleting entities", false) {
             @Override
@@ -325,63 +310,196 @@ public class TableFileEditor implements FileEditor {
 
                 try {
                     if (selectedEntities != null) {
-                        for (int i = 0; i < selectedEntities.length; i++) {
-                            progressIndicator.setFraction((double) i / selectedEntities.length);
+                        TableBatchWriter writer = new TableBatchWriter(storageAccount, table.getName(),
+                                TableBatchWriter.Operation.DELETE, BULK_CONCURRENCY);
+
+                        boolean added = false;
+
+                        try {
+                            for (TableEntity selectedEntity : selectedEntities) {
+                                writer.add(selectedEntity);
+                                progressIndicator.setFraction((double) writer.getWrittenCount() / selectedEntities.length);
+                            }
 
-                            StorageClientSDKManagerImpl.getManager().deleteTableEntity(storageAccount, selectedEntities[i]);
+                            added = true;
+                        } finally {
+                            if (!added) {
+                                writer.abort();
+                            }
                         }
 
+                        writer.close();
+
                         ApplicationManager.getApplication().invokeLater(new Runnable() {
                             @Override
                             public void run() {
-                                tableEntities.removeAll(Arrays.asList(selectedEntities));
+                                // a reload in the meantime has replaced the list the indexes refer to
+                                if (entities == tableEntities) {
+                                    tableEntities.removeRows(selectedIndexes);
 
-                                refreshGrid();
+                                    refreshGrid();
+                                }
                             }
                         });
                     }
                 } catch (AzureCmdException ex) {
+                    // some batches may have gone through, so the grid has to be reloaded from the table
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            fillGrid();
+                        }
+                    });
+
                     DefaultLoader.getUIHelper().showException("Error deleting entities", ex, "Service Explorer", false, true);
                 }
             }
         });
     }
 
-    private TableEntity[] getSelectedEntities() {
-        if (tableEntities == null) {
-            return null;
+    private JPopupMenu createBulkOperationsPopUp() {
+        JPopupMenu menu = new JPopupMenu();
+
+        JMenuItem importMenu = new JMenuItem("Import Entities...");
+        importMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                importEntities();
+            }
+        });
+
+        JMenuItem exportMenu = new JMenuItem("Export Entities...");
+        exportMenu.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent actionEvent) {
+                exportEntities();
+            }
+        });
+
+        menu.add(importMenu);
+        menu.add(exportMenu);
+
+        return menu;
+    }
+
+    private void importEntities() {
+        JFileChooser jFileChooser = new JFileChooser();
+        jFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        jFileChooser.setDialogTitle("Select a CSV or JSON lines file");
+
+        if (jFileChooser.showOpenDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
         }
 
-        int partitionIdIndex = -1;
-        int rowIdIndex = -1;
+        final File file = jFileChooser.getSelectedFile();
 
-        for (int i = 0; i < entitiesTable.getColumnCount(); i++) {
-            String columnName = entitiesTable.getColumnName(i);
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Importing entities", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    final long count = new TableEntityTransfer(storageAccount, table)
+                            .importEntities(file, getProgressListener(progressIndicator));
 
-            if (columnName.equals(PARTITION_KEY)) {
-                partitionIdIndex = i;
-            }
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            fillGrid();
 
-            if (columnName.equals(ROW_KEY)) {
-                rowIdIndex = i;
+                            JOptionPane.showMessageDialog(mainPanel, String.format("Imported %d entities.", count),
+                                    "Service Explorer", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    });
+                } catch (AzureCmdException ex) {
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            fillGrid();
+                        }
+                    });
+
+                    DefaultLoader.getUIHelper().showException("Error importing entities", ex, "Service Explorer", false, true);
+                }
             }
-        }
+        });
+    }
 
-        ArrayList<TableEntity> selectedEntities = new ArrayList<TableEntity>();
+    private void exportEntities() {
+        final String queryText = queryTextField.getText();
+
+        JFileChooser jFileChooser = new JFileChooser(new File(table.getName() + ".jsonl"));
+        jFileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        jFileChooser.setDialogTitle("Export to a CSV (.csv) or JSON lines file");
 
-        for (int i : entitiesTable.getSelectedRows()) {
-            for (TableEntity tableEntity : tableEntities) {
-                String partitionValue = entitiesTable.getValueAt(i, partitionIdIndex).toString();
-                String rowIdValue = entitiesTable.getValueAt(i, rowIdIndex).toString();
+        if (jFileChooser.showSaveDialog(mainPanel) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
 
-                if (tableEntity.getPartitionKey().equals(partitionValue)
-                        && tableEntity.getRowKey().equals(rowIdValue)) {
-                    selectedEntities.add(tableEntity);
+        final File file = jFileChooser.getSelectedFile();
+
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Exporting entities", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator progressIndicator) {
+                try {
+                    final long count = new TableEntityTransfer(storageAccount, table)
+                            .exportEntities(file, queryText, getProgressListener(progressIndicator));
+
+                    ApplicationManager.getApplication().invokeLater(new Runnable() {
+                        @Override
+                        public void run() {
+                            JOptionPane.showMessageDialog(mainPanel, String.format("Exported %d entities.", count),
+                                    "Service Explorer", JOptionPane.INFORMATION_MESSAGE);
+                        }
+                    });
+                } catch (AzureCmdException ex) {
+                    DefaultLoader.getUIHelper().showException("Error exporting entities", ex, "Service Explorer", false, true);
                 }
             }
+        });
+    }
+
+    @NotNull
+    private static TableEntityTransfer.ProgressListener getProgressListener(@NotNull final ProgressIndicator progressIndicator) {
+        return new TableEntityTransfer.ProgressListener() {
+            @Override
+            public void progress(long processed) {
+                progressIndicator.setText2(String.format("%d entities", processed));
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return progressIndicator.isCanceled();
+            }
+        };
+    }
+
+    @Nullable
+    private int[] getSelectedIndexes() {
+        if (tableEntities == null) {
+            return null;
+        }
+
+        int[] selectedRows = entitiesTable.getSelectedRows();
+
+        for (int i = 0; i < selectedRows.length; i++) {
+            selectedRows[i] = entitiesTable.convertRowIndexToModel(selectedRows[i]);
+        }
+
+        return selectedRows;
+    }
+
+    @Nullable
+    private TableEntity[] getSelectedEntities(@Nullable int[] selectedIndexes) {
+        if (selectedIndexes == null) {
+            return null;
         }
 
-        return selectedEntities.toArray(new TableEntity[selectedEntities.size()]);
+        TableEntity[] selectedEntities = new TableEntity[selectedIndexes.length];
+
+        for (int i = 0; i < selectedIndexes.length; i++) {
+            selectedEntities[i] = tableEntities.get(selectedIndexes[i]);
+        }
+
+        return selectedEntities;
     }
 
     @NotNull
@@ -495,10 +613,7 @@ public class TableFileEditor implements FileEditor {
 
     @Override
     public void dispose() {
-        try {
-            unregisterSubscriptionsChanged();
-        } catch (AzureCmdException ignored) {
-        }
+        unregisterSubscriptionsChanged();
     }
 
     @Nullable
@@ -511,45 +626,82 @@ public class TableFileEditor implements FileEditor {
     public <T> void putUserData(@NotNull Key<T> key, @Nullable T t) {
     }
 
-    private void registerSubscriptionsChanged()
-            throws AzureCmdException {
-        synchronized (subscriptionsChangedSync) {
-            if (subscriptionsChanged == null) {
-                subscriptionsChanged = AzureManagerImpl.getManager().registerSubscriptionsChanged();
-            }
+    /**
+     * Reads the cells straight from the columns of the list, so entities are never created for the rows
+     * that are only displayed.
+     */
+    private static class EntityTableModel extends AbstractTableModel {
+        private static final int FIXED_COLUMNS = 3;
+
+        private final CompactTableEntityList entities;
+        private final List<String> propertyNames;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat();
+
+        private EntityTableModel(@Nullable CompactTableEntityList entities) {
+            this.entities = entities;
+            this.propertyNames = entities != null
+                    ? new ArrayList<String>(entities.getPropertyNames())
+                    : new ArrayList<String>();
+        }
 
-            registeredSubscriptionsChanged = true;
+        @Override
+        public int getRowCount() {
+            return entities != null ? entities.size() : 0;
+        }
 
-            DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        subscriptionsChanged.waitEvent(new Runnable() {
-                            @Override
-                            public void run() {
-                                if (registeredSubscriptionsChanged) {
-                                    Object openedFile = DefaultLoader.getIdeHelper().getOpenedFile(project, storageAccount, table);
+        @Override
+        public int getColumnCount() {
+            return FIXED_COLUMNS + propertyNames.size();
+        }
 
-                                    if (openedFile != null) {
-                                        DefaultLoader.getIdeHelper().closeFile(project, openedFile);
-                                    }
-                                }
-                            }
-                        });
-                    } catch (AzureCmdException ignored) {
-                    }
-                }
-            });
+        @Override
+        public String getColumnName(int column) {
+            switch (column) {
+                case 0:
+                    return PARTITION_KEY;
+                case 1:
+                    return ROW_KEY;
+                case 2:
+                    return TIMESTAMP;
+                default:
+                    return propertyNames.get(column - FIXED_COLUMNS);
+            }
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return false;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            switch (column) {
+                case 0:
+                    return entities.getPartitionKey(row);
+                case 1:
+                    return entities.getRowKey(row);
+                case 2:
+                    return dateFormat.format(new Date(entities.getTimestamp(row)));
+                default:
+                    TableEntity.Property property = entities.getProperty(row, propertyNames.get(column - FIXED_COLUMNS));
+                    return property != null ? getFormattedProperty(property) : "";
+            }
         }
     }
 
-    private void unregisterSubscriptionsChanged()
-            throws AzureCmdException {
+    private void registerSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
-            registeredSubscriptionsChanged = false;
+            if (subscriptionsChanged == null) {
+                subscriptionsChanged = AzureManagerImpl.getManager().getSubscriptionsChangedToken();
+                subscriptionsChanged.addListener(subscriptionsChangedListener);
+            }
+        }
+    }
 
+    private void unregisterSubscriptionsChanged() {
+        synchronized (subscriptionsChangedSync) {
             if (subscriptionsChanged != null) {
-                AzureManagerImpl.getManager().unregisterSubscriptionsChanged(subscriptionsChanged);
+                subscriptionsChanged.removeListener(subscriptionsChangedListener);
                 subscriptionsChanged = null;
             }
         }
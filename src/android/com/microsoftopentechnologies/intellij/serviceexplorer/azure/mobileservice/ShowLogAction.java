@@ -15,7 +15,6 @@
  */
 package com.microsoftopentechnologies.intellij.serviceexplorer.azure.mobileservice;
 
-import com.intellij.openapi.application.ApplicationManager;
 import com.microsoftopentechnologies.intellij.forms.ViewLogForm;
 import com.microsoftopentechnologies.intellij.helpers.UIHelperImpl;
 import com.microsoftopentechnologies.tooling.msservices.helpers.Name;
@@ -35,14 +34,9 @@ public class ShowLogAction extends NodeActionListener {
     public void actionPerformed(NodeActionEvent e) {
         final ViewLogForm form = new ViewLogForm();
 
-        ApplicationManager.getApplication().invokeLater(new Runnable() {
-            @Override
-            public void run() {
-                form.queryLog(mobileServiceNode.getMobileService().getSubcriptionId(),
-                        mobileServiceNode.getMobileService().getName(),
-                        mobileServiceNode.getMobileService().getRuntime());
-            }
-        });
+        form.queryLog(mobileServiceNode.getMobileService().getSubcriptionId(),
+                mobileServiceNode.getMobileService().getName(),
+                mobileServiceNode.getMobileService().getRuntime());
 
         UIHelperImpl.packAndCenterJDialog(form);
         form.setVisible(true);
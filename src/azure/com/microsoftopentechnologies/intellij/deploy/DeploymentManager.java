@@ -55,6 +55,7 @@ import com.microsoftopentechnologies.intellij.util.PluginUtil;
 
 import com.microsoft.windowsazure.management.compute.models.HostedServiceListResponse.HostedService;
 import com.microsoftopentechnologies.intellij.wizards.WizardCacheManager;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.RequestScheduler;
 import com.microsoftopentechnologies.wacommon.utils.WACommonException;
 
 import static com.microsoftopentechnologies.intellij.ui.messages.AzureBundle.message;
@@ -443,8 +444,17 @@ public final class DeploymentManager {
                 if (retryCount > AzurePlugin.REST_SERVICE_MAX_RETRY_COUNT) {
                     log(message("deplError"), e);
                     notifyProgress(deplymentName, startDate, null, 100, OperationStatus.Failed, e.getMessage(), serviceName);
+                    return;
                 }
                 notifyProgress(deplymentName, startDate, null, -progressArr[0], OperationStatus.InProgress, message("undeployProgressMsg"), deplymentName);
+
+                // back off so retries don't get throttled as well
+                try {
+                    Thread.sleep(RequestScheduler.getRetryDelayMillis(-1, retryCount - 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
             }
         }
     }
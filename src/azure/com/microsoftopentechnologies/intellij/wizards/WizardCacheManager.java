@@ -22,9 +22,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -58,6 +56,7 @@ import com.microsoft.windowsazure.management.compute.models.HostedServiceListRes
 import com.interopbridges.tools.windowsazure.WindowsAzurePackageType;
 import com.microsoftopentechnologies.intellij.AzurePlugin;
 import com.microsoftopentechnologies.intellij.ui.components.WindowsAzurePage;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
 
 import static com.microsoftopentechnologies.intellij.AzurePlugin.log;
 import static com.microsoftopentechnologies.intellij.ui.messages.AzureBundle.message;
@@ -406,8 +405,7 @@ public final class WizardCacheManager {
 			try {
 				List<Subscription> subBackup = publishData.getPublishProfile().getSubscriptions();
 
-				// thread pool size is number of subscriptions
-				ScheduledExecutorService subscriptionThreadPool = Executors.newScheduledThreadPool(subscriptions.size());
+				ExecutionService executionService = ExecutionService.getManager();
 
 				LoadingSubscriptionTask loadingSubscriptionTask = new LoadingSubscriptionTask(publishData);
 				loadingSubscriptionTask.setSubscriptionIds(subscriptions);
@@ -415,7 +413,8 @@ public final class WizardCacheManager {
 					loadingSubscriptionTask.addLoadingAccountListener(listener);
 				}
 
-				loadSubscriptionsFuture = subscriptionThreadPool.submit(new LoadingTaskRunner(loadingSubscriptionTask));				
+				loadSubscriptionsFuture = executionService.submit(ExecutionService.Pool.IO, ExecutionService.Priority.User,
+						new LoadingTaskRunner(loadingSubscriptionTask));				
 				loadSubscriptionsFuture.get(OPERATIONS_TIMEOUT, TimeUnit.SECONDS);
 
 				/*
@@ -435,8 +434,7 @@ public final class WizardCacheManager {
 					publishData.setCurrentSubscription(publishData.getPublishProfile().getSubscriptions().get(0));
 				}
 
-				// thread pool size is 3 to load hosted services, locations and storage accounts.
-				ScheduledExecutorService threadPool = Executors.newScheduledThreadPool(3);
+				// load hosted services, locations and storage accounts in parallel
 				loadServicesFutures = new ArrayList<Future<?>>();
 
 				// Hosted services
@@ -444,7 +442,8 @@ public final class WizardCacheManager {
 				if (listener != null) {
 					loadingHostedServicesTask.addLoadingAccountListener(listener);
 				}
-				Future<?> submitHostedServices = threadPool.submit(new LoadingTaskRunner(loadingHostedServicesTask));
+				Future<?> submitHostedServices = executionService.submit(ExecutionService.Pool.IO, ExecutionService.Priority.User,
+						new LoadingTaskRunner(loadingHostedServicesTask));
 				loadServicesFutures.add(submitHostedServices);
 
 				// locations
@@ -452,7 +451,8 @@ public final class WizardCacheManager {
 				if (listener != null) {
 					loadingLocationsTask.addLoadingAccountListener(listener);
 				}
-				Future<?> submitLocations = threadPool.submit(new LoadingTaskRunner(loadingLocationsTask));
+				Future<?> submitLocations = executionService.submit(ExecutionService.Pool.IO, ExecutionService.Priority.User,
+						new LoadingTaskRunner(loadingLocationsTask));
 				loadServicesFutures.add(submitLocations);
 
 				// storage accounts
@@ -460,7 +460,8 @@ public final class WizardCacheManager {
 				if (listener != null) {
 					loadingStorageAccountTask.addLoadingAccountListener(listener);
 				}
-				Future<?> submitStorageAccounts = threadPool.submit(new LoadingTaskRunner(loadingStorageAccountTask));
+				Future<?> submitStorageAccounts = executionService.submit(ExecutionService.Pool.IO, ExecutionService.Priority.User,
+						new LoadingTaskRunner(loadingStorageAccountTask));
 				loadServicesFutures.add(submitStorageAccounts);
 
 				for (Future<?> future : loadServicesFutures) {
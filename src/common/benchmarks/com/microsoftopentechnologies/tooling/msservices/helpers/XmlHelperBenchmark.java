@@ -0,0 +1,173 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers;
+
+import org.openjdk.jmh.annotations.*;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathFactory;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures {@link XmlHelper#getXMLValue} on a subscription listing. The {@code threadLocal} benchmarks run the
+ * same parse and query with a builder and expression kept per thread, the way XmlHelper cached them before
+ * they were pooled, and the {@code uncached} benchmark looks both up through the factories on every call.
+ * The {@code ShortLivedThread} variants do the calls of one refresh on a thread started for it, as refreshes
+ * on virtual threads do, so a per-thread cache is thrown away after every refresh.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class XmlHelperBenchmark {
+    private static final String QUERY = "//Subscription";
+    private static final int CALLS_PER_REFRESH = 10;
+
+    private static final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<DocumentBuilder>();
+    private static final ThreadLocal<XPathExpression> xPathExpression = new ThreadLocal<XPathExpression>();
+
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({"10", "100"})
+        public int subscriptions;
+
+        private String xml;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            StringBuilder sb = new StringBuilder(
+                    "<Subscriptions xmlns=\"http://schemas.microsoft.com/windowsazure\">");
+
+            for (int i = 0; i < subscriptions; i++) {
+                sb.append("<Subscription><SubscriptionID>")
+                        .append(String.format("00000000-0000-0000-0000-%012d", i))
+                        .append("</SubscriptionID><SubscriptionName>subscription").append(i)
+                        .append("</SubscriptionName><SubscriptionStatus>Active</SubscriptionStatus>")
+                        .append("<AADTenantID>72f988bf-86f1-41af-91ab-2d7cd011db47</AADTenantID>")
+                        .append("</Subscription>");
+            }
+
+            xml = sb.append("</Subscriptions>").toString();
+        }
+    }
+
+    @Benchmark
+    public int pooled(Listing listing) throws Exception {
+        return ((NodeList) XmlHelper.getXMLValue(listing.xml, QUERY, XPathConstants.NODESET)).getLength();
+    }
+
+    @Benchmark
+    public int threadLocal(Listing listing) throws Exception {
+        return getXMLValueThreadLocal(listing.xml).getLength();
+    }
+
+    @Benchmark
+    public int uncached(Listing listing) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(listing.xml)));
+
+        return ((NodeList) XPathFactory.newInstance().newXPath().compile(QUERY)
+                .evaluate(doc, XPathConstants.NODESET)).getLength();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_REFRESH)
+    public int pooledShortLivedThread(final Listing listing) throws Exception {
+        return runRefresh(new Refresh() {
+            @Override
+            public int call() throws Exception {
+                return pooled(listing);
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS_PER_REFRESH)
+    public int threadLocalShortLivedThread(final Listing listing) throws Exception {
+        return runRefresh(new Refresh() {
+            @Override
+            public int call() throws Exception {
+                return threadLocal(listing);
+            }
+        });
+    }
+
+    private interface Refresh {
+        int call() throws Exception;
+    }
+
+    private static int runRefresh(final Refresh refresh) throws Exception {
+        final AtomicReference<Object> result = new AtomicReference<Object>();
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int nodes = 0;
+
+                    for (int i = 0; i < CALLS_PER_REFRESH; i++) {
+                        nodes += refresh.call();
+                    }
+
+                    result.set(nodes);
+                } catch (Exception e) {
+                    result.set(e);
+                }
+            }
+        });
+
+        thread.start();
+        thread.join();
+
+        if (result.get() instanceof Exception) {
+            throw (Exception) result.get();
+        }
+
+        return (Integer) result.get();
+    }
+
+    private static NodeList getXMLValueThreadLocal(String xml) throws Exception {
+        DocumentBuilder db = documentBuilder.get();
+
+        if (db == null) {
+            db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            documentBuilder.set(db);
+        } else {
+            db.reset();
+        }
+
+        XPathExpression expression = xPathExpression.get();
+
+        if (expression == null) {
+            expression = XPathFactory.newInstance().newXPath().compile(QUERY);
+            xPathExpression.set(expression);
+        }
+
+        Document doc = db.parse(new InputSource(new StringReader(xml)));
+
+        return (NodeList) expression.evaluate(doc, XPathConstants.NODESET);
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.auth.UserInfo;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AuthState.AuthData;
+import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Measures the credential lookup every request makes while subscriptions are being updated. Each group runs
+ * seven readers resolving the user and access token of a subscription against one writer toggling the
+ * selected subscriptions. The {@code locked} groups run the same work against maps guarded by a read-write
+ * lock, the way the auth data was guarded before it was published as snapshots.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AuthStateBenchmark {
+    private static final int READERS = 7;
+
+    @State(Scope.Group)
+    public static class Auth {
+        @Param({"10", "100"})
+        public int subscriptions;
+
+        private AuthState state;
+        private String[] subscriptionIds;
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(false);
+        private Map<String, Subscription> lockedSubscriptions;
+        private Map<String, UserInfo> lockedUserInfoBySubscriptionId;
+        private Map<UserInfo, String> lockedAccessTokenByUser;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Map<String, Subscription> subscriptionsById = new HashMap<String, Subscription>();
+            Map<String, UserInfo> userInfoBySubscriptionId = new HashMap<String, UserInfo>();
+            subscriptionIds = new String[subscriptions];
+
+            for (int i = 0; i < subscriptions; i++) {
+                Subscription subscription = new Subscription();
+                subscription.setId(UUID.randomUUID().toString());
+                subscription.setName("subscription" + i);
+                subscription.setTenantId("tenant" + i % 3);
+                subscription.setSelected(true);
+
+                subscriptionIds[i] = subscription.getId();
+                subscriptionsById.put(subscription.getId(), subscription);
+                userInfoBySubscriptionId.put(subscription.getId(), new UserInfo(subscription.getTenantId(), "user"));
+            }
+
+            state = new AuthState(new AuthData(subscriptionsById, new UserInfo("common", "user"),
+                    userInfoBySubscriptionId, new HashMap<String, SSLSocketFactory>()), new AuthState.Store() {
+                @Override
+                public void storeSubscriptions(@NotNull AuthData data) {
+                }
+
+                @Override
+                public void storeUserInfo(@NotNull AuthData data) {
+                }
+            });
+
+            lockedSubscriptions = new HashMap<String, Subscription>(subscriptionsById);
+            lockedUserInfoBySubscriptionId = new HashMap<String, UserInfo>(userInfoBySubscriptionId);
+            lockedAccessTokenByUser = new HashMap<UserInfo, String>();
+
+            for (UserInfo userInfo : userInfoBySubscriptionId.values()) {
+                state.setAccessToken(userInfo, "token");
+                lockedAccessTokenByUser.put(userInfo, "token");
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+        private boolean selectAll;
+
+        private int next(int bound) {
+            next = next + 1 == bound ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(READERS)
+    public String snapshotRead(Auth auth, Cursor cursor) {
+        String subscriptionId = auth.subscriptionIds[cursor.next(auth.subscriptionIds.length)];
+        AuthData data = auth.state.get();
+
+        if (!data.subscriptions.containsKey(subscriptionId)) {
+            throw new IllegalStateException(subscriptionId);
+        }
+
+        return auth.state.getAccessToken(data.userInfoBySubscriptionId.get(subscriptionId));
+    }
+
+    @Benchmark
+    @Group("snapshot")
+    @GroupThreads(1)
+    public void snapshotWrite(Auth auth, Cursor cursor) {
+        cursor.selectAll = !cursor.selectAll;
+        auth.state.setSelectedSubscriptions(cursor.selectAll
+                ? Arrays.asList(auth.subscriptionIds)
+                : Collections.<String>emptyList());
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(READERS)
+    public String lockedRead(Auth auth, Cursor cursor) {
+        String subscriptionId = auth.subscriptionIds[cursor.next(auth.subscriptionIds.length)];
+        UserInfo userInfo;
+        auth.lock.readLock().lock();
+
+        try {
+            if (!auth.lockedSubscriptions.containsKey(subscriptionId)) {
+                throw new IllegalStateException(subscriptionId);
+            }
+
+            userInfo = auth.lockedUserInfoBySubscriptionId.get(subscriptionId);
+        } finally {
+            auth.lock.readLock().unlock();
+        }
+
+        auth.lock.readLock().lock();
+
+        try {
+            return auth.lockedAccessTokenByUser.get(userInfo);
+        } finally {
+            auth.lock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(1)
+    public void lockedWrite(Auth auth, Cursor cursor) {
+        cursor.selectAll = !cursor.selectAll;
+        List<String> selectedList = cursor.selectAll
+                ? Arrays.asList(auth.subscriptionIds)
+                : Collections.<String>emptyList();
+        auth.lock.writeLock().lock();
+
+        try {
+            for (Subscription subscription : auth.lockedSubscriptions.values()) {
+                subscription.setSelected(selectedList.contains(subscription.getId()));
+            }
+        } finally {
+            auth.lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest;
+
+import com.google.common.io.CharStreams;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.reflect.TypeToken;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.Job;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.MobileService;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.Table;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.Type;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes mobile service, table and job listings with {@link MobileServiceJsonReader} and, for comparison,
+ * the way they were decoded before: Gson binding to transfer objects that were then copied into the model.
+ * The payloads repeat the recorded responses under {@code payloads/}, renaming each copy, up to
+ * {@code items} elements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MobileServiceJsonBenchmark {
+    private static final String SUBSCRIPTION_ID = "00000000-0000-0000-0000-000000000000";
+
+    private static class MobileServiceData {
+        private String name;
+        private String platform;
+        private String type;
+        private String state;
+        private String selflink;
+        private String applicationUrl;
+        private String applicationKey;
+        private String masterKey;
+        private List<TableData> tables;
+        private String webspace;
+        private String region;
+        private String managementPortalLink;
+        private String sourceRepositoryUrl;
+        private String deploymentTriggerUrl;
+        private String backendVersion;
+        private String enableExternalPushEntity;
+    }
+
+    private static class TableData {
+        private String idType;
+        private String hasDeleted;
+        private MetricData metrics;
+        private String name;
+        private String selflink;
+    }
+
+    private static class MetricData {
+        private int indexCount;
+        private int recordCount;
+        private long sizeBytes;
+    }
+
+    private static class JobData {
+        private String id;
+        private String appName;
+        private String name;
+        private String status;
+        private String intervalUnit;
+        private int intervalPeriod;
+        private String startTime;
+    }
+
+    @State(Scope.Benchmark)
+    public static class Payloads {
+        @Param({"1000", "10000"})
+        public int items;
+
+        private String mobileServices;
+        private String tables;
+        private String jobs;
+        private final Gson gson = new Gson();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            mobileServices = repeat("payloads/mobileservices.json", items);
+            tables = repeat("payloads/tables.json", items);
+            jobs = repeat("payloads/jobs.json", items);
+        }
+    }
+
+    @Benchmark
+    public List<MobileService> readMobileServices(Payloads payloads) throws IOException, ParseException {
+        return MobileServiceJsonReader.readMobileServices(new StringReader(payloads.mobileServices), SUBSCRIPTION_ID);
+    }
+
+    @Benchmark
+    public List<MobileService> bindMobileServices(Payloads payloads) {
+        return bindMobileServices(new Gson(), payloads.mobileServices);
+    }
+
+    @Benchmark
+    public List<MobileService> bindMobileServicesSharedGson(Payloads payloads) {
+        return bindMobileServices(payloads.gson, payloads.mobileServices);
+    }
+
+    @Benchmark
+    public List<Table> readTables(Payloads payloads) throws IOException, ParseException {
+        return MobileServiceJsonReader.readTables(new StringReader(payloads.tables));
+    }
+
+    @Benchmark
+    public List<Table> bindTables(Payloads payloads) {
+        Type type = new TypeToken<ArrayList<TableData>>() {
+        }.getType();
+        List<TableData> tempRes = new Gson().fromJson(payloads.tables, type);
+
+        List<Table> res = new ArrayList<Table>();
+
+        for (TableData item : tempRes) {
+            Table t = new Table();
+            t.setName(item.name);
+            t.setSelfLink(item.selflink);
+
+            res.add(t);
+        }
+
+        return res;
+    }
+
+    @Benchmark
+    public List<Job> readJobs(Payloads payloads) throws IOException, ParseException {
+        return MobileServiceJsonReader.readJobs(new StringReader(payloads.jobs));
+    }
+
+    @Benchmark
+    public List<Job> bindJobs(Payloads payloads) {
+        Type type = new TypeToken<ArrayList<JobData>>() {
+        }.getType();
+        List<JobData> tempRes = new Gson().fromJson(payloads.jobs, type);
+
+        List<Job> res = new ArrayList<Job>();
+
+        for (JobData item : tempRes) {
+            Job j = new Job();
+            j.setAppName(item.appName);
+            j.setName(item.name);
+            j.setEnabled(item.status.equals("enabled"));
+            j.setId(UUID.fromString(item.id));
+
+            if (item.intervalPeriod > 0) {
+                j.setIntervalPeriod(item.intervalPeriod);
+                j.setIntervalUnit(item.intervalUnit);
+            }
+
+            res.add(j);
+        }
+
+        return res;
+    }
+
+    @NotNull
+    private static List<MobileService> bindMobileServices(@NotNull Gson gson, @NotNull String json) {
+        Type type = new TypeToken<ArrayList<MobileServiceData>>() {
+        }.getType();
+        List<MobileServiceData> tempRes = gson.fromJson(json, type);
+
+        List<MobileService> res = new ArrayList<MobileService>();
+
+        for (MobileServiceData item : tempRes) {
+            MobileService ser = new MobileService();
+
+            ser.setName(item.name);
+            ser.setType(item.type);
+            ser.setState(item.state);
+            ser.setSelfLink(item.selflink);
+            ser.setAppUrl(item.applicationUrl);
+            ser.setAppKey(item.applicationKey);
+            ser.setMasterKey(item.masterKey);
+            ser.setWebspace(item.webspace);
+            ser.setRegion(item.region);
+            ser.setMgmtPortalLink(item.managementPortalLink);
+            ser.setSubcriptionId(SUBSCRIPTION_ID);
+
+            if (item.platform != null && item.platform.equals("dotNet")) {
+                ser.setRuntime(MobileService.NET_RUNTIME);
+            } else {
+                ser.setRuntime(MobileService.NODE_RUNTIME);
+            }
+
+            for (TableData table : item.tables) {
+                Table t = new Table();
+                t.setName(table.name);
+                t.setSelfLink(table.selflink);
+                ser.getTables().add(t);
+            }
+
+            res.add(ser);
+        }
+
+        return res;
+    }
+
+    /**
+     * Builds an array of {@code count} elements by cycling through a recorded array, suffixing the name of
+     * each copy, and the links derived from it, with the copy number.
+     */
+    @NotNull
+    private static String repeat(@NotNull String resource, int count) throws IOException {
+        Reader reader = new InputStreamReader(MobileServiceJsonBenchmark.class.getResourceAsStream(resource), "UTF-8");
+        JsonArray recorded;
+
+        try {
+            recorded = new JsonParser().parse(CharStreams.toString(reader)).getAsJsonArray();
+        } finally {
+            reader.close();
+        }
+
+        StringBuilder json = new StringBuilder("[");
+
+        for (int i = 0; i < count; i++) {
+            JsonElement element = recorded.get(i % recorded.size());
+            String name = element.getAsJsonObject().get("name").getAsString();
+
+            if (i > 0) {
+                json.append(',');
+            }
+
+            json.append(element.toString().replace(name, name + i));
+        }
+
+        return json.append(']').toString();
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoft.windowsazure.management.compute.models.*;
+import com.microsoftopentechnologies.tooling.msservices.model.vm.VirtualMachine;
+import com.microsoftopentechnologies.tooling.msservices.model.vm.VirtualMachineImage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how {@link AzureSDKHelper} maps management responses to the plugin's models: the virtual
+ * machines of a cloud service deployment, with their status and endpoints, and the OS and VM image
+ * listings shown by the create virtual machine wizard.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AzureSDKHelperBenchmark {
+    @State(Scope.Benchmark)
+    public static class Deployment {
+        @Param({"10", "100"})
+        public int roles;
+
+        private DeploymentGetResponse deployment;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ArrayList<Role> roleList = new ArrayList<Role>(roles);
+            ArrayList<RoleInstance> roleInstances = new ArrayList<RoleInstance>(roles);
+
+            for (int i = 0; i < roles; i++) {
+                InputEndpoint rdp = new InputEndpoint();
+                rdp.setName("RemoteDesktop");
+                rdp.setProtocol("tcp");
+                rdp.setLocalPort(3389);
+                rdp.setPort(50000 + i);
+
+                ArrayList<InputEndpoint> endpoints = new ArrayList<InputEndpoint>();
+                endpoints.add(rdp);
+
+                ConfigurationSet network = new ConfigurationSet();
+                network.setConfigurationSetType("NetworkConfiguration");
+                network.setInputEndpoints(endpoints);
+
+                ArrayList<ConfigurationSet> configurationSets = new ArrayList<ConfigurationSet>();
+                configurationSets.add(network);
+
+                Role role = new Role();
+                role.setRoleName("vm" + i);
+                role.setRoleType("PersistentVMRole");
+                role.setRoleSize("Small");
+                role.setAvailabilitySetName("set" + i % 3);
+                role.setConfigurationSets(configurationSets);
+                roleList.add(role);
+
+                RoleInstance roleInstance = new RoleInstance();
+                roleInstance.setRoleName(role.getRoleName());
+                roleInstance.setInstanceName(role.getRoleName());
+                roleInstance.setInstanceStatus(i % 2 == 0 ? "ReadyRole" : "StoppedVM");
+                roleInstances.add(roleInstance);
+            }
+
+            deployment = new DeploymentGetResponse();
+            deployment.setName("deployment");
+            deployment.setDeploymentSlot(DeploymentSlot.Production);
+            deployment.setRoles(roleList);
+            deployment.setRoleInstances(roleInstances);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Images {
+        @Param({"500", "5000"})
+        public int images;
+
+        private VirtualMachineOSImageListResponse osImages;
+        private VirtualMachineVMImageListResponse vmImages;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ArrayList<VirtualMachineOSImageListResponse.VirtualMachineOSImage> osImageList =
+                    new ArrayList<VirtualMachineOSImageListResponse.VirtualMachineOSImage>(images);
+            ArrayList<VirtualMachineVMImageListResponse.VirtualMachineVMImage> vmImageList =
+                    new ArrayList<VirtualMachineVMImageListResponse.VirtualMachineVMImage>(images);
+
+            for (int i = 0; i < images; i++) {
+                VirtualMachineOSImageListResponse.VirtualMachineOSImage osImage =
+                        new VirtualMachineOSImageListResponse.VirtualMachineOSImage();
+                osImage.setName("os-image-" + i);
+                osImage.setCategory("Public");
+                osImage.setPublisherName("Publisher " + i % 20);
+                osImage.setPublishedDate(new GregorianCalendar(2015, i % 12, 1));
+                osImage.setLabel("OS image " + i);
+                osImage.setDescription("Description of OS image " + i);
+                osImage.setOperatingSystemType(i % 2 == 0 ? "Linux" : "Windows");
+                osImage.setLocation("West US;East US;North Europe");
+                osImage.setRecommendedVMSize("Small");
+                osImageList.add(osImage);
+
+                VirtualMachineVMImageListResponse.OSDiskConfiguration osDisk =
+                        new VirtualMachineVMImageListResponse.OSDiskConfiguration();
+                osDisk.setName("disk-" + i);
+                osDisk.setOperatingSystem(i % 2 == 0 ? "Linux" : "Windows");
+
+                VirtualMachineVMImageListResponse.VirtualMachineVMImage vmImage =
+                        new VirtualMachineVMImageListResponse.VirtualMachineVMImage();
+                vmImage.setName("vm-image-" + i);
+                vmImage.setCategory("User");
+                vmImage.setPublisherName("Publisher " + i % 20);
+                vmImage.setPublishedDate(new GregorianCalendar(2015, i % 12, 1));
+                vmImage.setLabel("VM image " + i);
+                vmImage.setDescription("Description of VM image " + i);
+                vmImage.setOSDiskConfiguration(osDisk);
+                vmImage.setLocation("West US");
+                vmImageList.add(vmImage);
+            }
+
+            osImages = new VirtualMachineOSImageListResponse();
+            osImages.setImages(osImageList);
+            vmImages = new VirtualMachineVMImageListResponse();
+            vmImages.setVMImages(vmImageList);
+        }
+    }
+
+    @Benchmark
+    public List<VirtualMachine> loadVirtualMachines(Deployment deployment) {
+        return AzureSDKHelper.loadVirtualMachines(deployment.deployment, "subscription", "service",
+                new ArrayList<VirtualMachine>());
+    }
+
+    @Benchmark
+    public List<VirtualMachineImage> getOSImages(Images images) {
+        return AzureSDKHelper.getOSImages(images.osImages);
+    }
+
+    @Benchmark
+    public List<VirtualMachineImage> getVMImages(Images images) {
+        return AzureSDKHelper.getVMImages(images.vmImages);
+    }
+}
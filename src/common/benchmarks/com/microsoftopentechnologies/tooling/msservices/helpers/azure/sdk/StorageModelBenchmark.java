@@ -0,0 +1,111 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoft.azure.storage.blob.CloudBlob;
+import com.microsoft.azure.storage.blob.CloudBlockBlob;
+import com.microsoft.azure.storage.table.DynamicTableEntity;
+import com.microsoft.azure.storage.table.EntityProperty;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures turning a page of storage client results into the plugin's models: {@code getTableEntity}
+ * converts query results to {@link TableEntity} and {@code getBlobFile} builds a {@link BlobFile} from each
+ * blob of a listing segment.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageModelBenchmark {
+    private static final int PROPERTY_NAMES = 20;
+
+    @State(Scope.Benchmark)
+    public static class Page {
+        /**
+         * One query page of a table, or one listing segment of a container.
+         */
+        @Param({"1000", "5000"})
+        public int rows;
+
+        private List<DynamicTableEntity> tableEntities;
+        private List<CloudBlob> blobs;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            Random random = new Random(42);
+            tableEntities = new ArrayList<DynamicTableEntity>(rows);
+            blobs = new ArrayList<CloudBlob>(rows);
+
+            for (int row = 0; row < rows; row++) {
+                HashMap<String, EntityProperty> properties = new HashMap<String, EntityProperty>();
+
+                for (int name = 0; name < PROPERTY_NAMES; name++) {
+                    properties.put("Property" + name, getProperty(name, random));
+                }
+
+                tableEntities.add(new DynamicTableEntity("partition" + random.nextInt(100),
+                        String.format("row%08d", row),
+                        new Date(),
+                        "W/\"datetime'2015-06-01T10%3A00%3A00.0000000Z'\"",
+                        properties));
+
+                CloudBlockBlob blob = new CloudBlockBlob(new URI(String.format(
+                        "https://account.blob.core.windows.net/container/folder%d/blob%08d.txt", row % 50, row)));
+                blob.getProperties().setContentType("text/plain");
+                blob.getProperties().setCacheControl("no-cache");
+                blobs.add(blob);
+            }
+        }
+
+        private static EntityProperty getProperty(int name, Random random) {
+            switch (name % 5) {
+                case 0:
+                    return new EntityProperty(random.nextInt());
+                case 1:
+                    return new EntityProperty(random.nextLong());
+                case 2:
+                    return new EntityProperty(random.nextBoolean());
+                case 3:
+                    return new EntityProperty(new Date(random.nextLong() >>> 24));
+                default:
+                    return new EntityProperty("value" + random.nextInt(1000));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getTableEntity(Page page, Blackhole blackhole) {
+        for (DynamicTableEntity dte : page.tableEntities) {
+            blackhole.consume(StorageClientSDKManagerImpl.getTableEntity("table", dte));
+        }
+    }
+
+    @Benchmark
+    public void getBlobFile(Page page, Blackhole blackhole) throws Exception {
+        for (CloudBlob blob : page.blobs) {
+            blackhole.consume(StorageClientSDKManagerImpl.getBlobFile(blob, "container", "/"));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.collections;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what it costs to fill and empty an {@link ObservableList} with listeners attached, the way the
+ * explorer nodes update their children. The {@code Each} benchmarks fire one event per element, the
+ * others one event per batch; the listeners touch every item they are told about.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObservableListBenchmark {
+    @State(Scope.Thread)
+    public static class Items {
+        @Param({"1000", "100000"})
+        public int items;
+
+        @Param({"1", "4"})
+        public int listeners;
+
+        private List<String> elements;
+        private List<String> everyOtherElement;
+        private ObservableList<String> list;
+
+        @Setup(Level.Trial)
+        public void setUpElements() {
+            elements = new ArrayList<String>(items);
+            everyOtherElement = new ArrayList<String>(items / 2);
+
+            for (int i = 0; i < items; i++) {
+                String element = "node" + i;
+                elements.add(element);
+
+                if (i % 2 == 0) {
+                    everyOtherElement.add(element);
+                }
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void setUpList(final Blackhole blackhole) {
+            list = new ObservableList<String>();
+            list.addAll(elements);
+
+            for (int i = 0; i < listeners; i++) {
+                list.addChangeListener(new ListChangeListener() {
+                    @Override
+                    public void listChanged(ListChangedEvent e) {
+                        if (e.getNewItems() != null) {
+                            for (Object item : e.getNewItems()) {
+                                blackhole.consume(item);
+                            }
+                        }
+
+                        if (e.getOldItems() != null) {
+                            for (Object item : e.getOldItems()) {
+                                blackhole.consume(item);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    @Benchmark
+    public ObservableList<String> addEach(Items items) {
+        ObservableList<String> list = emptyCopy(items.list);
+
+        for (String element : items.elements) {
+            list.add(element);
+        }
+
+        return list;
+    }
+
+    @Benchmark
+    public ObservableList<String> addAll(Items items) {
+        ObservableList<String> list = emptyCopy(items.list);
+        list.addAll(items.elements);
+
+        return list;
+    }
+
+    @Benchmark
+    public ObservableList<String> removeEach(Items items) {
+        ObservableList<String> list = items.list;
+
+        while (!list.isEmpty()) {
+            list.remove(list.size() - 1);
+        }
+
+        return list;
+    }
+
+    @Benchmark
+    public ObservableList<String> removeAll(Items items) {
+        items.list.removeAll(items.everyOtherElement);
+
+        return items.list;
+    }
+
+    @Benchmark
+    public ObservableList<String> clear(Items items) {
+        items.list.clear();
+
+        return items.list;
+    }
+
+    /**
+     * An empty list with the listeners of the given one.
+     */
+    private static ObservableList<String> emptyCopy(ObservableList<String> list) {
+        ObservableList<String> copy = new ObservableList<String>();
+
+        for (ListChangeListener listener : list.changeListeners) {
+            copy.addChangeListener(listener);
+        }
+
+        return copy;
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.model.storage;
+
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity.Property;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the compact listings with plain lists of model objects. The footprint benchmarks time building a
+ * listing and report its retained size, measured with JOL, as the {@code retainedBytes} secondary result;
+ * the read benchmarks measure what the grids pay to read every cell.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+// JOL needs to attach to its own VM to read the object layout, otherwise it guesses header and reference sizes
+@Fork(value = 1, jvmArgsAppend = "-Djdk.attach.allowAttachSelf=true")
+public class ListingFootprintBenchmark {
+    private static final int PARTITIONS = 100;
+    private static final int PROPERTY_NAMES = 20;
+
+    @State(Scope.Benchmark)
+    public static class Listing {
+        @Param({"10000", "100000"})
+        public int rows;
+
+        /**
+         * The share of the property names each entity has a value for.
+         */
+        @Param({"1.0", "0.1"})
+        public double density;
+
+        private List<TableEntity> tableEntities;
+        private List<BlobFile> blobFiles;
+        private List<TableEntity> tableEntityList;
+        private CompactTableEntityList compactTableEntityList;
+        private final Map<Class<?>, Long> retainedSizes = new HashMap<Class<?>, Long>();
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(42);
+            tableEntities = new ArrayList<TableEntity>(rows);
+            blobFiles = new ArrayList<BlobFile>(rows);
+
+            for (int row = 0; row < rows; row++) {
+                Map<String, Property> properties = new HashMap<String, Property>();
+
+                for (int name = 0; name < PROPERTY_NAMES; name++) {
+                    if (random.nextDouble() < density) {
+                        properties.put("Property" + name, getProperty(name, random));
+                    }
+                }
+
+                tableEntities.add(new TableEntity("partition" + random.nextInt(PARTITIONS),
+                        String.format("row%08d", row),
+                        "table",
+                        "W/\"datetime'2015-06-01T10%3A00%3A00.0000000Z'\"",
+                        new GregorianCalendar(),
+                        properties));
+
+                String path = String.format("folder%d/blob%08d.txt", row % 50, row);
+                blobFiles.add(new BlobFile(path.substring(path.indexOf('/') + 1),
+                        "https://account.blob.core.windows.net/container/" + path,
+                        "container",
+                        path,
+                        "BlockBlob",
+                        "",
+                        "",
+                        "",
+                        "text/plain",
+                        "",
+                        "0x8D26A6F1E0A7B2" + row,
+                        new GregorianCalendar(),
+                        random.nextInt(1 << 20)));
+            }
+
+            tableEntityList = copyTableEntities(tableEntities);
+            compactTableEntityList = new CompactTableEntityList("table");
+            compactTableEntityList.addAll(tableEntities);
+            compactTableEntityList.trimToSize();
+        }
+
+        /**
+         * The retained size of a listing. Every invocation builds the same listing, so the graph is only
+         * walked once per listing type.
+         */
+        private long retainedBytes(Object list) {
+            Long bytes = retainedSizes.get(list.getClass());
+
+            if (bytes == null) {
+                bytes = GraphLayout.parseInstance(list).totalSize();
+                retainedSizes.put(list.getClass(), bytes);
+            }
+
+            return bytes;
+        }
+
+        private static Property getProperty(int name, Random random) {
+            switch (name % 5) {
+                case 0:
+                    return new Property(random.nextInt());
+                case 1:
+                    return new Property(random.nextLong());
+                case 2:
+                    return new Property(random.nextDouble());
+                case 3:
+                    return new Property(random.nextBoolean());
+                default:
+                    return new Property("value" + random.nextInt(1000));
+            }
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Footprint {
+        public long retainedBytes;
+    }
+
+    @Benchmark
+    public List<TableEntity> tableEntityListFootprint(Listing listing, Footprint footprint) {
+        List<TableEntity> list = copyTableEntities(listing.tableEntities);
+        footprint.retainedBytes = listing.retainedBytes(list);
+
+        return list;
+    }
+
+    @Benchmark
+    public CompactTableEntityList compactTableEntityListFootprint(Listing listing, Footprint footprint) {
+        CompactTableEntityList list = new CompactTableEntityList("table");
+        list.addAll(listing.tableEntities);
+        list.trimToSize();
+        footprint.retainedBytes = listing.retainedBytes(list);
+
+        return list;
+    }
+
+    @Benchmark
+    public List<BlobFile> blobFileListFootprint(Listing listing, Footprint footprint) {
+        List<BlobFile> list = new ArrayList<BlobFile>(listing.blobFiles);
+        footprint.retainedBytes = listing.retainedBytes(list);
+
+        return list;
+    }
+
+    @Benchmark
+    public CompactBlobList compactBlobListFootprint(Listing listing, Footprint footprint) {
+        CompactBlobList list = new CompactBlobList(listing.blobFiles);
+        list.trimToSize();
+        footprint.retainedBytes = listing.retainedBytes(list);
+
+        return list;
+    }
+
+    @Benchmark
+    public void readTableEntityListCells(Listing listing, Blackhole blackhole) {
+        for (TableEntity tableEntity : listing.tableEntityList) {
+            blackhole.consume(tableEntity.getPartitionKey());
+            blackhole.consume(tableEntity.getRowKey());
+
+            for (int name = 0; name < PROPERTY_NAMES; name++) {
+                blackhole.consume(tableEntity.getProperties().get("Property" + name));
+            }
+        }
+    }
+
+    @Benchmark
+    public void readCompactTableEntityListCells(Listing listing, Blackhole blackhole) {
+        CompactTableEntityList list = listing.compactTableEntityList;
+
+        for (int row = 0; row < list.size(); row++) {
+            blackhole.consume(list.getPartitionKey(row));
+            blackhole.consume(list.getRowKey(row));
+
+            for (int name = 0; name < PROPERTY_NAMES; name++) {
+                blackhole.consume(list.getProperty(row, "Property" + name));
+            }
+        }
+    }
+
+    /**
+     * Copies the entities the way a listing creates them, each with its own property map and values.
+     */
+    private static List<TableEntity> copyTableEntities(List<TableEntity> source) {
+        List<TableEntity> list = new ArrayList<TableEntity>();
+
+        for (TableEntity tableEntity : source) {
+            Map<String, Property> properties = new HashMap<String, Property>(tableEntity.getProperties());
+
+            Calendar timestamp = new GregorianCalendar();
+            timestamp.setTimeInMillis(tableEntity.getTimestamp().getTimeInMillis());
+
+            list.add(new TableEntity(tableEntity.getPartitionKey(),
+                    tableEntity.getRowKey(),
+                    tableEntity.getTableName(),
+                    tableEntity.getETag(),
+                    timestamp,
+                    properties));
+        }
+
+        return list;
+    }
+}
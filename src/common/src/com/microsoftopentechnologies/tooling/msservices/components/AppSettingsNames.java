@@ -30,4 +30,8 @@ public class AppSettingsNames {
     public static final String AZURE_SUBSCRIPTIONS = "com.microsoftopentechnologies.intellij.AzureSubscriptions";
     public static final String AZURE_USER_INFO = "com.microsoftopentechnologies.intellij.AzureUserInfo";
     public static final String AZURE_USER_SUBSCRIPTIONS = "com.microsoftopentechnologies.intellij.AzureUserSubscriptions";
+    public static final String SERVICE_METRICS_ENABLED = "com.microsoftopentechnologies.tooling.msservices.ServiceMetricsEnabled";
+    public static final String SERVICE_METRICS_SNAPSHOT_FILE = "com.microsoftopentechnologies.tooling.msservices.ServiceMetricsSnapshotFile";
+    public static final String EXECUTION_VIRTUAL_THREADS = "com.microsoftopentechnologies.tooling.msservices.ExecutionVirtualThreads";
+    public static final String EXPLORER_SNAPSHOT_ID = "com.microsoftopentechnologies.tooling.msservices.ExplorerSnapshotId";
 }
\ No newline at end of file
@@ -25,6 +25,8 @@ public class PluginSettings {
     private String adAuthority;
     private String graphApiVersion;
     private String pluginVersion;
+    private String managementEndpointOverride;
+    private String storageEndpointOverride;
 
     public String getClientId() {
         return clientId;
@@ -57,4 +59,21 @@ public class PluginSettings {
     public String getPluginVersion() {
         return pluginVersion;
     }
+
+    /**
+     * Base URI that service management requests are sent to instead of the subscription's management
+     * endpoint, e.g. a local stand-in serving recorded responses. Tokens are still requested for
+     * {@link #getAzureServiceManagementUri()}.
+     */
+    public String getManagementEndpointOverride() {
+        return managementEndpointOverride;
+    }
+
+    /**
+     * Storage endpoint template used instead of the account's endpoints, with "{account}" and "{service}"
+     * (blob, queue or table) placeholders, e.g. "https://{account}.{service}.localtest.me:8443".
+     */
+    public String getStorageEndpointOverride() {
+        return storageEndpointOverride;
+    }
 }
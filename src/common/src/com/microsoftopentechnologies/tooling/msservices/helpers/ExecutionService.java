@@ -0,0 +1,510 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoftopentechnologies.tooling.msservices.components.AppSettingsNames;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the background work of the plugin on a small set of named, bounded pools that are shut down
+ * together when the plugin is unloaded.
+ * <p/>
+ * I/O and CPU tasks are queued by {@link Priority}, so work started by the user runs ahead of
+ * background refreshes waiting in the same pool. Polling work is scheduled on its own pool so that a
+ * backlog of requests never delays a status poll. Every pool keeps queue depth and latency statistics.
+ */
+public class ExecutionService implements ExecutionServiceMXBean {
+    public enum Pool {
+        /**
+         * Blocking network and disk work.
+         */
+        IO,
+        /**
+         * Computation such as parsing and indexing, sized to the number of processors.
+         */
+        CPU,
+        /**
+         * Delayed and periodic tasks such as status polls.
+         */
+        Polling
+    }
+
+    public enum Priority {
+        User, Background
+    }
+
+    public static class PoolStats {
+        private final Pool pool;
+        private final int poolSize;
+        private final int activeCount;
+        private final int queueDepth;
+        private final long completedCount;
+        private final long averageQueueMillis;
+        private final long maxQueueMillis;
+        private final long averageRunMillis;
+        private final long maxRunMillis;
+
+        private PoolStats(Pool pool, ThreadPoolExecutor executor, Metrics metrics) {
+            long completed = metrics.completed.get();
+
+            this.pool = pool;
+            this.poolSize = executor.getPoolSize();
+            this.activeCount = executor.getActiveCount();
+            this.queueDepth = executor.getQueue().size();
+            this.completedCount = completed;
+            this.averageQueueMillis = completed > 0 ? toMillis(metrics.totalQueueNanos.get() / completed) : 0;
+            this.maxQueueMillis = toMillis(metrics.maxQueueNanos.get());
+            this.averageRunMillis = completed > 0 ? toMillis(metrics.totalRunNanos.get() / completed) : 0;
+            this.maxRunMillis = toMillis(metrics.maxRunNanos.get());
+        }
+
+        @NotNull
+        public Pool getPool() {
+            return pool;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        public int getQueueDepth() {
+            return queueDepth;
+        }
+
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        /**
+         * For polling tasks, the time spent past the scheduled start rather than in the queue.
+         */
+        public long getAverageQueueMillis() {
+            return averageQueueMillis;
+        }
+
+        public long getMaxQueueMillis() {
+            return maxQueueMillis;
+        }
+
+        public long getAverageRunMillis() {
+            return averageRunMillis;
+        }
+
+        public long getMaxRunMillis() {
+            return maxRunMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d threads, %d active, %d queued, %d completed, " +
+                            "queue avg %d ms max %d ms, run avg %d ms max %d ms",
+                    pool, poolSize, activeCount, queueDepth, completedCount,
+                    averageQueueMillis, maxQueueMillis, averageRunMillis, maxRunMillis);
+        }
+
+        private static long toMillis(long nanos) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+    }
+
+    private static class Metrics {
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong totalQueueNanos = new AtomicLong();
+        private final AtomicLong maxQueueNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+        private final AtomicLong maxRunNanos = new AtomicLong();
+
+        private void record(long queueNanos, long runNanos) {
+            completed.incrementAndGet();
+            totalQueueNanos.addAndGet(queueNanos);
+            totalRunNanos.addAndGet(runNanos);
+            updateMax(maxQueueNanos, queueNanos);
+            updateMax(maxRunNanos, runNanos);
+        }
+
+        private void reset() {
+            completed.set(0);
+            totalQueueNanos.set(0);
+            maxQueueNanos.set(0);
+            totalRunNanos.set(0);
+            maxRunNanos.set(0);
+        }
+
+        private static void updateMax(AtomicLong max, long value) {
+            long current = max.get();
+
+            while (value > current && !max.compareAndSet(current, value)) {
+                current = max.get();
+            }
+        }
+    }
+
+    private static class PrioritizedTask<V> extends FutureTask<V> implements Comparable<PrioritizedTask<?>> {
+        private static final AtomicLong nextSequence = new AtomicLong();
+
+        private final Priority priority;
+        private final long sequence = nextSequence.getAndIncrement();
+        private final long submitNanos = System.nanoTime();
+        private final Metrics metrics;
+
+        private PrioritizedTask(@NotNull Callable<V> callable, @NotNull Priority priority, @NotNull Metrics metrics) {
+            super(callable);
+            this.priority = priority;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+
+            try {
+                super.run();
+            } finally {
+                metrics.record(startNanos - submitNanos, System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask<?> other) {
+            int result = priority.compareTo(other.priority);
+
+            if (result == 0) {
+                // first in, first out within a lane
+                result = sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+            }
+
+            return result;
+        }
+    }
+
+    private static class MeteredRunnable implements Runnable {
+        private final Runnable runnable;
+        private final Metrics metrics;
+        private long dueNanos;
+
+        private MeteredRunnable(@NotNull Runnable runnable, @NotNull Metrics metrics, long delayNanos) {
+            this.runnable = runnable;
+            this.metrics = metrics;
+            this.dueNanos = System.nanoTime() + delayNanos;
+        }
+
+        @Override
+        public void run() {
+            long startNanos = System.nanoTime();
+
+            try {
+                runnable.run();
+            } finally {
+                long endNanos = System.nanoTime();
+                metrics.record(Math.max(0, startNanos - dueNanos), endNanos - startNanos);
+                dueNanos = endNanos;
+            }
+        }
+    }
+
+    private static final String MBEAN_NAME = "com.microsoftopentechnologies.tooling.msservices:type=ExecutionService";
+    private static final int IO_POOL_SIZE = 16;
+    private static final int VIRTUAL_IO_POOL_SIZE = 256;
+    private static final int POLLING_POOL_SIZE = 4;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+    private static ExecutionService instance;
+
+    private final ThreadFactory virtualThreadFactory = createVirtualThreadFactory();
+    private volatile boolean virtualThreadsEnabled;
+    private volatile boolean shutDown;
+
+    private final ThreadPoolExecutor ioExecutor;
+    private final ThreadPoolExecutor cpuExecutor;
+    private final ScheduledThreadPoolExecutor pollingExecutor;
+    private final Metrics ioMetrics = new Metrics();
+    private final Metrics cpuMetrics = new Metrics();
+    private final Metrics pollingMetrics = new Metrics();
+
+    ExecutionService() {
+        final ThreadFactory ioPlatformThreadFactory = createThreadFactory("I/O");
+
+        ioExecutor = createPrioritizedExecutor(IO_POOL_SIZE, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                // checked per thread, so switching modes takes effect as idle threads retire
+                return virtualThreadsEnabled && virtualThreadFactory != null
+                        ? virtualThreadFactory.newThread(runnable)
+                        : ioPlatformThreadFactory.newThread(runnable);
+            }
+        });
+        cpuExecutor = createPrioritizedExecutor(Runtime.getRuntime().availableProcessors(), createThreadFactory("CPU"));
+        pollingExecutor = new ScheduledThreadPoolExecutor(POLLING_POOL_SIZE, createThreadFactory("Polling"));
+        pollingExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    @NotNull
+    public static synchronized ExecutionService getManager() {
+        if (instance == null) {
+            instance = new ExecutionService();
+
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(MBEAN_NAME);
+
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(instance, name);
+                }
+            } catch (Throwable ignored) {
+                // JMX is a convenience, the pools work without it
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Restores the virtual thread setting saved by a previous session.
+     */
+    public void loadSettings() {
+        setVirtualThreadsEnabled(Boolean.parseBoolean(
+                DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.EXECUTION_VIRTUAL_THREADS, "false")));
+    }
+
+    /**
+     * @throws RejectedExecutionException if the service has been shut down
+     */
+    @NotNull
+    public <T> Future<T> submit(@NotNull Pool pool, @NotNull Priority priority, @NotNull Callable<T> callable) {
+        checkRunning();
+
+        if (pool == Pool.Polling) {
+            return schedule(callable, 0, TimeUnit.MILLISECONDS);
+        }
+
+        PrioritizedTask<T> task = new PrioritizedTask<T>(callable, priority, pool == Pool.IO ? ioMetrics : cpuMetrics);
+        (pool == Pool.IO ? ioExecutor : cpuExecutor).execute(task);
+
+        return task;
+    }
+
+    @NotNull
+    public Future<?> submit(@NotNull Pool pool, @NotNull Priority priority, @NotNull Runnable runnable) {
+        return submit(pool, priority, Executors.callable(runnable));
+    }
+
+    @NotNull
+    public ScheduledFuture<?> schedule(@NotNull Runnable runnable, long delay, @NotNull TimeUnit unit) {
+        checkRunning();
+
+        return pollingExecutor.schedule(new MeteredRunnable(runnable, pollingMetrics, unit.toNanos(delay)),
+                delay, unit);
+    }
+
+    @NotNull
+    public <T> ScheduledFuture<T> schedule(@NotNull final Callable<T> callable, long delay, @NotNull TimeUnit unit) {
+        checkRunning();
+
+        final long dueNanos = System.nanoTime() + unit.toNanos(delay);
+
+        return pollingExecutor.schedule(new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long startNanos = System.nanoTime();
+
+                try {
+                    return callable.call();
+                } finally {
+                    pollingMetrics.record(Math.max(0, startNanos - dueNanos), System.nanoTime() - startNanos);
+                }
+            }
+        }, delay, unit);
+    }
+
+    /**
+     * Runs a periodic task on the polling pool; each run is measured against the end of the previous one.
+     */
+    @NotNull
+    public ScheduledFuture<?> scheduleWithFixedDelay(@NotNull Runnable runnable, long initialDelay, long delay,
+                                                     @NotNull TimeUnit unit) {
+        checkRunning();
+
+        return pollingExecutor.scheduleWithFixedDelay(
+                new MeteredRunnable(runnable, pollingMetrics, unit.toNanos(initialDelay)), initialDelay, delay, unit);
+    }
+
+    @NotNull
+    public List<PoolStats> getStats() {
+        List<PoolStats> stats = new ArrayList<PoolStats>();
+        stats.add(new PoolStats(Pool.IO, ioExecutor, ioMetrics));
+        stats.add(new PoolStats(Pool.CPU, cpuExecutor, cpuMetrics));
+        stats.add(new PoolStats(Pool.Polling, pollingExecutor, pollingMetrics));
+
+        return stats;
+    }
+
+    @Override
+    public String[] getPoolStats() {
+        List<PoolStats> stats = getStats();
+        String[] lines = new String[stats.size()];
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = stats.get(i).toString();
+        }
+
+        return lines;
+    }
+
+    @Override
+    public void resetStats() {
+        ioMetrics.reset();
+        cpuMetrics.reset();
+        pollingMetrics.reset();
+    }
+
+    @Override
+    public boolean isVirtualThreadsSupported() {
+        return virtualThreadFactory != null;
+    }
+
+    @Override
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreadsEnabled;
+    }
+
+    /**
+     * Runs I/O tasks on virtual threads when the JDK supports them. The I/O pool then admits many more
+     * concurrent tasks, since a blocked virtual thread does not hold on to an OS thread.
+     */
+    @Override
+    public synchronized void setVirtualThreadsEnabled(boolean enabled) {
+        enabled = enabled && isVirtualThreadsSupported();
+
+        if (enabled == virtualThreadsEnabled) {
+            return;
+        }
+
+        virtualThreadsEnabled = enabled;
+
+        // keep core <= max while resizing
+        if (enabled) {
+            ioExecutor.setMaximumPoolSize(VIRTUAL_IO_POOL_SIZE);
+            ioExecutor.setCorePoolSize(VIRTUAL_IO_POOL_SIZE);
+        } else {
+            ioExecutor.setCorePoolSize(IO_POOL_SIZE);
+            ioExecutor.setMaximumPoolSize(IO_POOL_SIZE);
+        }
+
+        try {
+            DefaultLoader.getIdeHelper().setProperty(AppSettingsNames.EXECUTION_VIRTUAL_THREADS,
+                    String.valueOf(enabled));
+        } catch (Throwable ignored) {
+            // settings are not available outside the IDE
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutDown;
+    }
+
+    /**
+     * Stops accepting work, waits briefly for running tasks and interrupts whatever is left. The service
+     * stays shut down: later submissions, including through {@link #getManager()}, are rejected rather
+     * than starting pools that nothing would stop.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (shutDown) {
+                return;
+            }
+
+            shutDown = true;
+        }
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(MBEAN_NAME));
+        } catch (Throwable ignored) {
+        }
+
+        ioExecutor.shutdown();
+        cpuExecutor.shutdown();
+        pollingExecutor.shutdown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SHUTDOWN_TIMEOUT_SECONDS);
+
+        try {
+            for (ExecutorService executor : new ExecutorService[]{ioExecutor, cpuExecutor, pollingExecutor}) {
+                executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            ioExecutor.shutdownNow();
+            cpuExecutor.shutdownNow();
+            pollingExecutor.shutdownNow();
+        }
+    }
+
+    private void checkRunning() {
+        if (shutDown) {
+            throw new RejectedExecutionException("The execution service has been shut down");
+        }
+    }
+
+    @NotNull
+    private static ThreadPoolExecutor createPrioritizedExecutor(int size, @NotNull ThreadFactory threadFactory) {
+        // the queue is unbounded, so the pool never grows past its core size; let idle threads retire instead
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(size, size, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
+    }
+
+    @NotNull
+    private static ThreadFactory createThreadFactory(@NotNull String poolName) {
+        return new ThreadFactoryBuilder()
+                .setNameFormat("MSOpenTech " + poolName + " %d")
+                .setDaemon(true)
+                .build();
+    }
+
+    @Nullable
+    private static ThreadFactory createVirtualThreadFactory() {
+        try {
+            // Thread.ofVirtual().name(prefix, 0).factory(), looked up reflectively to keep running on older JDKs
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class)
+                    .invoke(builder, "MSOpenTech I/O virtual ", 0L);
+            Method factory = builderClass.getMethod("factory");
+
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers;
+
+/**
+ * JMX view of {@link ExecutionService}, registered on the platform MBean server.
+ */
+public interface ExecutionServiceMXBean {
+    boolean isVirtualThreadsEnabled();
+
+    void setVirtualThreadsEnabled(boolean enabled);
+
+    boolean isVirtualThreadsSupported();
+
+    /**
+     * Per pool size, queue depth and latency statistics, one line per pool.
+     */
+    String[] getPoolStats();
+
+    void resetStats();
+}
@@ -18,6 +18,7 @@ package com.microsoftopentechnologies.tooling.msservices.helpers;
 import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientRegistry;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
 
 import java.util.ArrayList;
@@ -59,6 +60,8 @@ public class ExternalStorageHelper {
     }
 
     public static void detach(ClientStorageAccount clientStorageAccount) {
+        StorageClientRegistry.invalidate(clientStorageAccount);
+
         String[] storageArray = DefaultLoader.getIdeHelper().getProperties(EXTERNAL_STORAGE_LIST);
 
         if (storageArray != null) {
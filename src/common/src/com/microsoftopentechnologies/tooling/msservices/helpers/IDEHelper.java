@@ -16,12 +16,15 @@
 package com.microsoftopentechnologies.tooling.msservices.helpers;
 
 import com.microsoftopentechnologies.tooling.msservices.model.storage.*;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.Future;
 
 public interface IDEHelper {
     void openFile(@NotNull File file, @NotNull Node node);
@@ -35,6 +38,11 @@ public interface IDEHelper {
 
     boolean isFileEditing(@NotNull Object projectObject, @NotNull File file);
 
+    /**
+     * Makes the IDE pick up files changed on disk outside of it, e.g. so open editors reload them.
+     */
+    void refreshFiles(@NotNull Collection<File> files);
+
     <T extends StorageServiceTreeItem> void openItem(@NotNull Object projectObject,
                                                      @Nullable ClientStorageAccount storageAccount,
                                                      @NotNull T item,
@@ -67,6 +75,13 @@ public interface IDEHelper {
                          boolean isIndeterminate, @Nullable String indicatorText,
                          Runnable runnable);
 
+    /**
+     * Shows a cancellable background progress indicator until {@code done} completes.
+     * Cancelling the indicator cancels {@code token}; the work itself runs elsewhere.
+     */
+    void showProgress(@Nullable Object project, @NotNull String name, @NotNull CancellationToken token,
+                      @NotNull Future<?> done);
+
     @Nullable
     String getProperty(@NotNull Object projectObject, @NotNull String name);
 
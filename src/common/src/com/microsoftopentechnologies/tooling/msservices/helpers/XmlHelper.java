@@ -31,27 +31,55 @@ import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
-import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class XmlHelper {
+    private static final int MAX_POOLED_BUILDERS = 16;
+    private static final int MAX_POOLED_EXPRESSIONS = 8;
+    private static final int MAX_CACHED_EXPRESSIONS = 64;
+
+    // factory lookups go through the service loader on every newInstance() call, and neither the
+    // builders nor compiled expressions are thread safe. Refreshes run on the ExecutionService pools,
+    // which may hand out a new virtual thread per task when the JDK supports them and they are enabled,
+    // so instead of keeping a copy per thread they are borrowed from pools shared by all threads
+    private static final BlockingQueue<DocumentBuilder> documentBuilders =
+            new ArrayBlockingQueue<DocumentBuilder>(MAX_POOLED_BUILDERS);
+
+    private static final ConcurrentMap<String, BlockingQueue<XPathExpression>> xPathExpressions =
+            new ConcurrentHashMap<String, BlockingQueue<XPathExpression>>();
 
     public static Object getXMLValue(String xml, String xQuery, QName resultType) throws XPathExpressionException, IOException, SAXException, ParserConfigurationException {
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        DocumentBuilder db = dbf.newDocumentBuilder();
+        Document doc;
+        DocumentBuilder db = borrowDocumentBuilder();
+
+        try {
+            doc = db.parse(new InputSource(new StringReader(xml)));
+        } finally {
+            db.reset();
+            documentBuilders.offer(db);
+        }
 
-        Document doc = db.parse(new InputSource(new StringReader(xml)));
+        BlockingQueue<XPathExpression> expressions = getXPathExpressions(xQuery);
+        XPathExpression xPathExpression = expressions.poll();
 
-        XPathFactory xPathfactory = XPathFactory.newInstance();
+        if (xPathExpression == null) {
+            xPathExpression = XPathFactory.newInstance().newXPath().compile(xQuery);
+        }
 
-        XPath xPath = xPathfactory.newXPath();
-        XPathExpression xPathExpression = xPath.compile(xQuery);
-        return xPathExpression.evaluate(doc, resultType);
+        try {
+            return xPathExpression.evaluate(doc, resultType);
+        } finally {
+            expressions.offer(xPathExpression);
+        }
     }
 
     public static String getAttributeValue(Node node, String attributeName) {
@@ -72,4 +100,30 @@ public class XmlHelper {
 
         return writer.getBuffer().toString();
     }
+
+    private static DocumentBuilder borrowDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilder db = documentBuilders.poll();
+
+        return db != null ? db : DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+
+    private static BlockingQueue<XPathExpression> getXPathExpressions(String xQuery) {
+        BlockingQueue<XPathExpression> expressions = xPathExpressions.get(xQuery);
+
+        if (expressions == null) {
+            expressions = new ArrayBlockingQueue<XPathExpression>(MAX_POOLED_EXPRESSIONS);
+
+            // queries built from user input would otherwise grow the cache without bound,
+            // past the limit the expressions are compiled for each call and dropped
+            if (xPathExpressions.size() < MAX_CACHED_EXPRESSIONS) {
+                BlockingQueue<XPathExpression> existing = xPathExpressions.putIfAbsent(xQuery, expressions);
+
+                if (existing != null) {
+                    expressions = existing;
+                }
+            }
+        }
+
+        return expressions;
+    }
 }
@@ -0,0 +1,244 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.auth.UserInfo;
+import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The subscriptions and credentials known to the {@link AzureManagerImpl}. Readers take the current
+ * snapshot without locking, writers replace it one at a time and persist it before the next one runs.
+ */
+class AuthState {
+    /**
+     * Persists a published snapshot, called with the write lock held so stores happen in publish order.
+     */
+    interface Store {
+        void storeSubscriptions(@NotNull AuthData data);
+
+        void storeUserInfo(@NotNull AuthData data);
+    }
+
+    /**
+     * An immutable snapshot of the subscriptions and the credentials used to reach them. Subscription
+     * objects in a published snapshot are never modified; updates copy the ones they change.
+     */
+    static class AuthData {
+        final Map<String, Subscription> subscriptions;
+        final UserInfo userInfo;
+        final Map<String, UserInfo> userInfoBySubscriptionId;
+        final Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId;
+
+        AuthData(@NotNull Map<String, Subscription> subscriptions,
+                 @Nullable UserInfo userInfo,
+                 @NotNull Map<String, UserInfo> userInfoBySubscriptionId,
+                 @NotNull Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId) {
+            this.subscriptions = Collections.unmodifiableMap(new HashMap<String, Subscription>(subscriptions));
+            this.userInfo = userInfo;
+            this.userInfoBySubscriptionId = Collections.unmodifiableMap(
+                    new HashMap<String, UserInfo>(userInfoBySubscriptionId));
+            this.sslSocketFactoryBySubscriptionId = Collections.unmodifiableMap(
+                    new HashMap<String, SSLSocketFactory>(sslSocketFactoryBySubscriptionId));
+        }
+    }
+
+    private final AtomicReference<AuthData> authData;
+    private final Object writeLock = new Object();
+    private final ConcurrentMap<UserInfo, String> accessTokenByUser = new ConcurrentHashMap<UserInfo, String>();
+    private final Store store;
+
+    AuthState(@NotNull AuthData initial, @NotNull Store store) {
+        this.authData = new AtomicReference<AuthData>(initial);
+        this.store = store;
+    }
+
+    @NotNull
+    AuthData get() {
+        return authData.get();
+    }
+
+    void clearSSLSocketFactories() {
+        synchronized (writeLock) {
+            AuthData current = authData.get();
+            Map<String, Subscription> subscriptions = new HashMap<String, Subscription>(current.subscriptions);
+            Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId = new HashMap<String, SSLSocketFactory>();
+
+            removeUnusedSubscriptions(subscriptions, current.userInfoBySubscriptionId, sslSocketFactoryBySubscriptionId);
+
+            AuthData data = new AuthData(subscriptions, current.userInfo, current.userInfoBySubscriptionId,
+                    sslSocketFactoryBySubscriptionId);
+            authData.set(data);
+            store.storeSubscriptions(data);
+        }
+    }
+
+    void setSelectedSubscriptions(@NotNull List<String> selectedList) {
+        synchronized (writeLock) {
+            AuthData current = authData.get();
+            Map<String, Subscription> subscriptions = new HashMap<String, Subscription>();
+
+            for (Subscription subscription : current.subscriptions.values()) {
+                Subscription updated = copySubscription(subscription);
+                updated.setSelected(selectedList.contains(subscription.getId()));
+                subscriptions.put(subscription.getId(), updated);
+            }
+
+            AuthData data = new AuthData(subscriptions, current.userInfo, current.userInfoBySubscriptionId,
+                    current.sslSocketFactoryBySubscriptionId);
+            authData.set(data);
+            store.storeSubscriptions(data);
+        }
+    }
+
+    void updateSubscription(@NotNull Subscription subscription, @NotNull UserInfo userInfo) {
+        synchronized (writeLock) {
+            AuthData current = authData.get();
+            String subscriptionId = subscription.getId();
+            Map<String, Subscription> subscriptions = new HashMap<String, Subscription>(current.subscriptions);
+            Map<String, UserInfo> userInfoBySubscriptionId = new HashMap<String, UserInfo>(current.userInfoBySubscriptionId);
+
+            if (subscriptions.containsKey(subscriptionId)) {
+                Subscription updated = copySubscription(subscriptions.get(subscriptionId));
+                updated.setTenantId(subscription.getTenantId());
+                subscriptions.put(subscriptionId, updated);
+            } else {
+                subscriptions.put(subscriptionId, subscription);
+            }
+
+            userInfoBySubscriptionId.put(subscriptionId, userInfo);
+
+            AuthData data = new AuthData(subscriptions, current.userInfo, userInfoBySubscriptionId,
+                    current.sslSocketFactoryBySubscriptionId);
+            authData.set(data);
+            store.storeUserInfo(data);
+            store.storeSubscriptions(data);
+        }
+    }
+
+    void updateSubscription(@NotNull Subscription subscription, @NotNull SSLSocketFactory sslSocketFactory) {
+        synchronized (writeLock) {
+            AuthData current = authData.get();
+            String subscriptionId = subscription.getId();
+            Map<String, Subscription> subscriptions = new HashMap<String, Subscription>(current.subscriptions);
+            Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId =
+                    new HashMap<String, SSLSocketFactory>(current.sslSocketFactoryBySubscriptionId);
+
+            if (subscriptions.containsKey(subscriptionId)) {
+                Subscription updated = copySubscription(subscriptions.get(subscriptionId));
+                updated.setManagementCertificate(subscription.getManagementCertificate());
+                updated.setServiceManagementUrl(subscription.getServiceManagementUrl());
+                subscriptions.put(subscriptionId, updated);
+            } else {
+                subscriptions.put(subscriptionId, subscription);
+            }
+
+            sslSocketFactoryBySubscriptionId.put(subscriptionId, sslSocketFactory);
+
+            AuthData data = new AuthData(subscriptions, current.userInfo, current.userInfoBySubscriptionId,
+                    sslSocketFactoryBySubscriptionId);
+            authData.set(data);
+            store.storeSubscriptions(data);
+        }
+    }
+
+    void setUserInfo(@Nullable UserInfo userInfo) {
+        synchronized (writeLock) {
+            AuthData current = authData.get();
+            Map<String, Subscription> subscriptions = new HashMap<String, Subscription>(current.subscriptions);
+            Map<String, UserInfo> userInfoBySubscriptionId = new HashMap<String, UserInfo>();
+
+            removeUnusedSubscriptions(subscriptions, userInfoBySubscriptionId, current.sslSocketFactoryBySubscriptionId);
+
+            AuthData data = new AuthData(subscriptions, userInfo, userInfoBySubscriptionId,
+                    current.sslSocketFactoryBySubscriptionId);
+            authData.set(data);
+            store.storeSubscriptions(data);
+            store.storeUserInfo(data);
+        }
+    }
+
+    @Nullable
+    String getAccessToken(@NotNull UserInfo userInfo) {
+        return accessTokenByUser.get(userInfo);
+    }
+
+    void setAccessToken(@NotNull UserInfo userInfo, @NotNull String accessToken) {
+        // skip the write when the token is unchanged, which is the common case
+        if (!accessToken.equals(accessTokenByUser.get(userInfo))) {
+            accessTokenByUser.put(userInfo, accessToken);
+        }
+    }
+
+    static void removeInvalidUserInfo(@NotNull Map<String, Subscription> subscriptions,
+                                      @NotNull Map<String, UserInfo> userInfoBySubscriptionId) {
+        userInfoBySubscriptionId.keySet().retainAll(subscriptions.keySet());
+    }
+
+    /**
+     * Drops subscriptions without credentials and the stale half of those left with one kind of
+     * credentials. Subscriptions are copied before being changed, the map may hold published ones.
+     */
+    static void removeUnusedSubscriptions(@NotNull Map<String, Subscription> subscriptions,
+                                          @NotNull Map<String, UserInfo> userInfoBySubscriptionId,
+                                          @NotNull Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId) {
+        Iterator<Map.Entry<String, Subscription>> iterator = subscriptions.entrySet().iterator();
+
+        while (iterator.hasNext()) {
+            Map.Entry<String, Subscription> subscriptionEntry = iterator.next();
+            String subscriptionId = subscriptionEntry.getKey();
+            Subscription subscription = subscriptionEntry.getValue();
+
+            if (!userInfoBySubscriptionId.containsKey(subscriptionId) &&
+                    !sslSocketFactoryBySubscriptionId.containsKey(subscriptionId)) {
+                iterator.remove();
+            } else if (!userInfoBySubscriptionId.containsKey(subscriptionId)) {
+                if (subscription.getTenantId() != null) {
+                    Subscription updated = copySubscription(subscription);
+                    updated.setTenantId(null);
+                    subscriptionEntry.setValue(updated);
+                }
+            } else if (!sslSocketFactoryBySubscriptionId.containsKey(subscriptionId)) {
+                if (subscription.getManagementCertificate() != null || subscription.getServiceManagementUrl() != null) {
+                    Subscription updated = copySubscription(subscription);
+                    updated.setManagementCertificate(null);
+                    updated.setServiceManagementUrl(null);
+                    subscriptionEntry.setValue(updated);
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static Subscription copySubscription(@NotNull Subscription subscription) {
+        Subscription copy = new Subscription();
+        copy.setId(subscription.getId());
+        copy.setName(subscription.getName());
+        copy.setManagementCertificate(subscription.getManagementCertificate());
+        copy.setServiceManagementUrl(subscription.getServiceManagementUrl());
+        copy.setSelected(subscription.isSelected());
+        copy.setTenantId(subscription.getTenantId());
+
+        return copy;
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
 
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.helpers.auth.UserInfo;
@@ -22,8 +23,9 @@ import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
 import com.microsoftopentechnologies.tooling.msservices.model.ms.*;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.StorageAccount;
 import com.microsoftopentechnologies.tooling.msservices.model.vm.*;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 
+import java.util.Date;
 import java.util.List;
 
 public interface AzureManager {
@@ -58,12 +60,11 @@ public interface AzureManager {
     void setSelectedSubscriptions(@NotNull List<String> selectedList)
             throws AzureCmdException;
 
+    /**
+     * Returns a token cancelled the next time the selected subscriptions change.
+     */
     @NotNull
-    EventWaitHandle registerSubscriptionsChanged()
-            throws AzureCmdException;
-
-    void unregisterSubscriptionsChanged(@NotNull EventWaitHandle handle)
-            throws AzureCmdException;
+    CancellationToken getSubscriptionsChangedToken();
 
     @NotNull
     List<SqlDb> getSqlDb(@NotNull String subscriptionId, @NotNull SqlServer server)
@@ -105,6 +106,16 @@ public interface AzureManager {
                            @NotNull String tableName)
             throws AzureCmdException;
 
+    @NotNull
+    List<Script> getTableScriptList(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                    @NotNull String tableName)
+            throws AzureCmdException;
+
+    @NotNull
+    String getTableScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                          @NotNull String scriptName)
+            throws AzureCmdException;
+
     void downloadTableScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
                              @NotNull String scriptName, @NotNull String downloadPath)
             throws AzureCmdException;
@@ -117,6 +128,10 @@ public interface AzureManager {
     List<CustomAPI> getAPIList(@NotNull String subscriptionId, @NotNull String mobileServiceName)
             throws AzureCmdException;
 
+    @NotNull
+    String getAPIScript(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String scriptName)
+            throws AzureCmdException;
+
     void downloadAPIScript(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String scriptName,
                            @NotNull String downloadPath)
             throws AzureCmdException;
@@ -145,6 +160,10 @@ public interface AzureManager {
                    int interval, @NotNull String intervalUnit, @NotNull String startDate, boolean enabled)
             throws AzureCmdException;
 
+    @NotNull
+    String getJobScript(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String scriptName)
+            throws AzureCmdException;
+
     void downloadJobScript(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String scriptName,
                            @NotNull String downloadPath)
             throws AzureCmdException;
@@ -157,6 +176,20 @@ public interface AzureManager {
     List<LogEntry> listLog(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String runtime)
             throws AzureCmdException;
 
+    @NotNull
+    List<LogEntry> listLog(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String runtime,
+                           int top)
+            throws AzureCmdException;
+
+    /**
+     * Lists the newest log entries created at or after {@code since}, or the page following
+     * {@code continuationToken} when one returned by a previous call is passed.
+     */
+    @NotNull
+    LogEntryPage listLog(@NotNull String subscriptionId, @NotNull String mobileServiceName, @NotNull String runtime,
+                         @Nullable Date since, @Nullable String continuationToken, int top)
+            throws AzureCmdException;
+
     @NotNull
     List<CloudService> getCloudServices(@NotNull String subscriptionId)
             throws AzureCmdException;
@@ -165,6 +198,11 @@ public interface AzureManager {
     List<VirtualMachine> getVirtualMachines(@NotNull String subscriptionId)
             throws AzureCmdException;
 
+    @NotNull
+    List<VirtualMachine> getVirtualMachines(@NotNull String subscriptionId,
+                                            @Nullable CallableSingleArg<Void, List<VirtualMachine>> partialResults)
+            throws AzureCmdException;
+
     @NotNull
     VirtualMachine refreshVirtualMachineInformation(@NotNull VirtualMachine vm)
             throws AzureCmdException;
@@ -220,6 +258,11 @@ public interface AzureManager {
     StorageAccount refreshStorageAccountInformation(@NotNull StorageAccount storageAccount)
             throws AzureCmdException;
 
+    void loadStorageAccountKeys(@NotNull StorageAccount storageAccount)
+            throws AzureCmdException;
+
+    void prefetchStorageAccountKeys(@NotNull List<StorageAccount> storageAccounts);
+
     String createServiceCertificate(@NotNull String subscriptionId, @NotNull String serviceName,
                                     @NotNull byte[] data, @NotNull String password)
             throws AzureCmdException;
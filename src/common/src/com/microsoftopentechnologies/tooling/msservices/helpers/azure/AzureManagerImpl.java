@@ -16,6 +16,8 @@
 package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
@@ -32,19 +34,22 @@ import com.microsoftopentechnologies.tooling.msservices.helpers.*;
 import com.microsoftopentechnologies.tooling.msservices.helpers.auth.AADManager;
 import com.microsoftopentechnologies.tooling.msservices.helpers.auth.AADManagerImpl;
 import com.microsoftopentechnologies.tooling.msservices.helpers.auth.UserInfo;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AuthState.AuthData;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.AzureAADHelper;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.AzureCertificateHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.MobileServiceJsonReader;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.MobileServiceRestManager;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.RestServiceManager.ContentType;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.RestServiceManagerBaseImpl;
-import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.model.*;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.AzureSDKHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.ParallelRequestRunner;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.SDKRequestCallback;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientRegistry;
 import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
 import com.microsoftopentechnologies.tooling.msservices.model.ms.*;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.StorageAccount;
 import com.microsoftopentechnologies.tooling.msservices.model.vm.*;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import org.apache.commons.lang.NotImplementedException;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -60,15 +65,13 @@ import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
 import java.io.*;
 import java.lang.reflect.Type;
+import java.net.URLEncoder;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Semaphore;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class AzureManagerImpl implements AzureManager {
     private interface AzureSDKClientProvider<V extends Closeable> {
@@ -81,70 +84,75 @@ public class AzureManagerImpl implements AzureManager {
                 throws Throwable;
     }
 
-    private static class EventWaitHandleImpl implements EventWaitHandle {
-        Semaphore eventSignal = new Semaphore(0, true);
+    private static final ThreadLocal<SimpleDateFormat> NODE_LOG_DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            return createLogDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        }
+    };
 
+    private static final ThreadLocal<SimpleDateFormat> LOG_DATE_FORMAT = new ThreadLocal<SimpleDateFormat>() {
         @Override
-        public void waitEvent(@NotNull Runnable callback)
-                throws AzureCmdException {
-            try {
-                eventSignal.acquire();
-                callback.run();
-            } catch (InterruptedException e) {
-                throw new AzureCmdException("Unable to aquire permit", e);
-            }
+        protected SimpleDateFormat initialValue() {
+            return createLogDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
         }
+    };
 
-        private synchronized void signalEvent() {
-            if (eventSignal.availablePermits() == 0) {
-                eventSignal.release();
-            }
+    private static class StorageAccountKeys {
+        private final String primaryKey;
+        private final String secondaryKey;
+
+        private StorageAccountKeys(@NotNull String primaryKey, @NotNull String secondaryKey) {
+            this.primaryKey = primaryKey;
+            this.secondaryKey = secondaryKey;
         }
     }
 
+    private static final int STORAGE_KEYS_CACHE_SIZE = 256;
+    private static final int STORAGE_KEYS_PREFETCH_PARALLELISM = 4;
+
     private static AzureManager instance;
     private static Gson gson;
 
     private AADManager aadManager;
 
-    private ReentrantReadWriteLock authDataLock = new ReentrantReadWriteLock(false);
-    private Map<String, Subscription> subscriptions;
-    private UserInfo userInfo;
+    private final AuthState authState;
 
-    private ReentrantReadWriteLock subscriptionMapLock = new ReentrantReadWriteLock(false);
-    private Map<String, ReentrantReadWriteLock> lockBySubscriptionId;
-    private Map<String, UserInfo> userInfoBySubscriptionId;
-    private Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId;
+    private final AtomicReference<CancellationToken> subscriptionsChangedToken =
+            new AtomicReference<CancellationToken>(new CancellationToken());
 
-    private ReentrantReadWriteLock userMapLock = new ReentrantReadWriteLock(false);
-    private Map<UserInfo, ReentrantReadWriteLock> lockByUser;
-    private Map<UserInfo, String> accessTokenByUser;
-
-    private ReentrantReadWriteLock subscriptionsChangedLock = new ReentrantReadWriteLock(true);
-    private Set<EventWaitHandleImpl> subscriptionsChangedHandles;
+    private Cache<String, StorageAccountKeys> storageKeysByAccount = CacheBuilder.newBuilder()
+            .maximumSize(STORAGE_KEYS_CACHE_SIZE)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .build();
 
     private AzureManagerImpl() {
-        authDataLock.writeLock().lock();
+        aadManager = AADManagerImpl.getManager();
 
-        try {
-            aadManager = AADManagerImpl.getManager();
+        Map<String, Subscription> subscriptions = loadSubscriptions();
+        UserInfo userInfo = loadUserInfo();
+        Map<String, UserInfo> userInfoBySubscriptionId = loadUserInfoBySubscriptionId();
+        Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId = loadSSLSocketFactory(subscriptions);
 
-            loadSubscriptions();
-            loadUserInfo();
-            loadSSLSocketFactory();
+        AuthState.removeInvalidUserInfo(subscriptions, userInfoBySubscriptionId);
+        AuthState.removeUnusedSubscriptions(subscriptions, userInfoBySubscriptionId, sslSocketFactoryBySubscriptionId);
 
-            removeInvalidUserInfo();
-            removeUnusedSubscriptions();
+        AuthData data = new AuthData(subscriptions, userInfo, userInfoBySubscriptionId,
+                sslSocketFactoryBySubscriptionId);
+        authState = new AuthState(data, new AuthState.Store() {
+            @Override
+            public void storeSubscriptions(@NotNull AuthData data) {
+                AzureManagerImpl.storeSubscriptions(data);
+            }
 
-            storeSubscriptions();
-            storeUserInfo();
+            @Override
+            public void storeUserInfo(@NotNull AuthData data) {
+                AzureManagerImpl.storeUserInfo(data);
+            }
+        });
 
-            accessTokenByUser = new HashMap<UserInfo, String>();
-            lockByUser = new HashMap<UserInfo, ReentrantReadWriteLock>();
-            subscriptionsChangedHandles = new HashSet<EventWaitHandleImpl>();
-        } finally {
-            authDataLock.writeLock().unlock();
-        }
+        storeSubscriptions(data);
+        storeUserInfo(data);
     }
 
     @NotNull
@@ -157,6 +165,14 @@ public class AzureManagerImpl implements AzureManager {
         return instance;
     }
 
+    /**
+     * Replaces the manager returned by {@link #getManager()}, e.g. with a fake one when the explorer is
+     * exercised without Azure. Passing null creates the default manager again on the next call.
+     */
+    public static synchronized void setManager(@Nullable AzureManager manager) {
+        instance = manager;
+    }
+
     @Override
     public void authenticate() throws AzureCmdException {
         final PluginSettings settings = DefaultLoader.getPluginComponent().getSettings();
@@ -170,7 +186,7 @@ public class AzureManagerImpl implements AzureManager {
             public List<Subscription> execute()
                     throws Throwable {
                 String accessToken = getAccessToken(userInfo);
-                String subscriptionsXML = AzureAADHelper.executeRequest(managementUri,
+                String subscriptionsXML = AzureAADHelper.executeRequest(AzureSDKHelper.getManagementEndpoint(managementUri),
                         "subscriptions",
                         ContentType.Json,
                         "GET",
@@ -234,13 +250,7 @@ public class AzureManagerImpl implements AzureManager {
 
     @Override
     public boolean usingCertificate() {
-        authDataLock.readLock().lock();
-
-        try {
-            return sslSocketFactoryBySubscriptionId.size() > 0;
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return !authState.get().sslSocketFactoryBySubscriptionId.isEmpty();
     }
 
     @Override
@@ -250,109 +260,43 @@ public class AzureManagerImpl implements AzureManager {
 
     @Override
     public void clearImportedPublishSettingsFiles() {
-        authDataLock.writeLock().lock();
-
-        try {
-            sslSocketFactoryBySubscriptionId.clear();
-            removeUnusedSubscriptions();
-            storeSubscriptions();
-        } finally {
-            authDataLock.writeLock().unlock();
-        }
+        authState.clearSSLSocketFactories();
     }
 
     @NotNull
     @Override
     public List<Subscription> getFullSubscriptionList()
             throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            List<Subscription> result = new ArrayList<Subscription>();
-
-            for (Subscription subscription : subscriptions.values()) {
-                result.add(subscription);
-            }
-
-            return result;
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return new ArrayList<Subscription>(authState.get().subscriptions.values());
     }
 
     @NotNull
     @Override
     public List<Subscription> getSubscriptionList()
             throws AzureCmdException {
-        authDataLock.readLock().lock();
+        List<Subscription> result = new ArrayList<Subscription>();
 
-        try {
-            List<Subscription> result = new ArrayList<Subscription>();
-
-            for (Subscription subscription : subscriptions.values()) {
-                if (subscription.isSelected()) {
-                    result.add(subscription);
-                }
+        for (Subscription subscription : authState.get().subscriptions.values()) {
+            if (subscription.isSelected()) {
+                result.add(subscription);
             }
-
-            return result;
-        } finally {
-            authDataLock.readLock().unlock();
         }
+
+        return result;
     }
 
     @Override
     public void setSelectedSubscriptions(@NotNull List<String> selectedList)
             throws AzureCmdException {
-        authDataLock.writeLock().lock();
-
-        try {
-            for (String subscriptionId : subscriptions.keySet()) {
-                Subscription subscription = subscriptions.get(subscriptionId);
-                subscription.setSelected(selectedList.contains(subscriptionId));
-            }
-
-            storeSubscriptions();
-        } finally {
-            authDataLock.writeLock().unlock();
-        }
+        authState.setSelectedSubscriptions(selectedList);
 
         notifySubscriptionsChanged();
     }
 
     @NotNull
     @Override
-    public EventWaitHandle registerSubscriptionsChanged()
-            throws AzureCmdException {
-        subscriptionsChangedLock.writeLock().lock();
-
-        try {
-            EventWaitHandleImpl handle = new EventWaitHandleImpl();
-
-            subscriptionsChangedHandles.add(handle);
-
-            return handle;
-        } finally {
-            subscriptionsChangedLock.writeLock().unlock();
-        }
-    }
-
-    @Override
-    public void unregisterSubscriptionsChanged(@NotNull EventWaitHandle handle)
-            throws AzureCmdException {
-        if (!(handle instanceof EventWaitHandleImpl)) {
-            throw new AzureCmdException("Invalid handle instance");
-        }
-
-        subscriptionsChangedLock.writeLock().lock();
-
-        try {
-            subscriptionsChangedHandles.remove(handle);
-        } finally {
-            subscriptionsChangedLock.writeLock().unlock();
-        }
-
-        ((EventWaitHandleImpl) handle).signalEvent();
+    public CancellationToken getSubscriptionsChangedToken() {
+        return subscriptionsChangedToken.get();
     }
 
     @NotNull
@@ -363,7 +307,7 @@ public class AzureManagerImpl implements AzureManager {
             String path = String.format("/%s/services/sqlservers/servers/%s/databases?contentview=generic",
                     subscriptionId, server.getName());
 
-            String xml = executeGetRequest(subscriptionId, path);
+            String xml = executeGetRequest("getSqlDb", subscriptionId, path);
 
             List<SqlDb> res = new ArrayList<SqlDb>();
             NodeList nl = (NodeList) XmlHelper.getXMLValue(xml, "//ServiceResource", XPathConstants.NODESET);
@@ -393,7 +337,7 @@ public class AzureManagerImpl implements AzureManager {
             throws AzureCmdException {
         try {
             String path = String.format("/%s/services/sqlservers/servers", subscriptionId);
-            String xml = executeGetRequest(subscriptionId, path);
+            String xml = executeGetRequest("getSqlServers", subscriptionId, path);
 
             List<SqlServer> res = new ArrayList<SqlServer>();
 
@@ -424,46 +368,9 @@ public class AzureManagerImpl implements AzureManager {
             throws AzureCmdException {
         try {
             String path = String.format("/%s/services/mobileservices/mobileservices", subscriptionId);
-            String json = executeGetRequest(subscriptionId, path);
-
-            Type type = new TypeToken<ArrayList<MobileServiceData>>() {
-            }.getType();
-            List<MobileServiceData> tempRes = new Gson().fromJson(json, type);
-
-            List<MobileService> res = new ArrayList<MobileService>();
-
-            for (MobileServiceData item : tempRes) {
-                MobileService ser = new MobileService();
-
-                ser.setName(item.getName());
-                ser.setType(item.getType());
-                ser.setState(item.getState());
-                ser.setSelfLink(item.getSelflink());
-                ser.setAppUrl(item.getApplicationUrl());
-                ser.setAppKey(item.getApplicationKey());
-                ser.setMasterKey(item.getMasterKey());
-                ser.setWebspace(item.getWebspace());
-                ser.setRegion(item.getRegion());
-                ser.setMgmtPortalLink(item.getManagementPortalLink());
-                ser.setSubcriptionId(subscriptionId);
-
-                if (item.getPlatform() != null && item.getPlatform().equals("dotNet")) {
-                    ser.setRuntime(MobileService.NET_RUNTIME);
-                } else {
-                    ser.setRuntime(MobileService.NODE_RUNTIME);
-                }
-
-                for (MobileServiceData.Table table : item.getTables()) {
-                    Table t = new Table();
-                    t.setName(table.getName());
-                    t.setSelfLink(table.getSelflink());
-                    ser.getTables().add(t);
-                }
-
-                res.add(ser);
-            }
+            String json = executeGetRequest("getMobileServiceList", subscriptionId, path);
 
-            return res;
+            return MobileServiceJsonReader.readMobileServices(new StringReader(json), subscriptionId);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -519,9 +426,9 @@ public class AzureManagerImpl implements AzureManager {
                             "<Label>%s</Label><Description>%s</Description><Configuration>%s</Configuration></Application>",
                     mobileServiceName + "mobileservice", mobileServiceName, mobileServiceName, new BASE64Encoder().encode(JSONParameter.getBytes()));
 
-            executePollRequest(subscriptionId, path, ContentType.Xml, "POST", xmlParameter, String.format("/%s/operations/", subscriptionId));
+            executePollRequest("createMobileService", subscriptionId, path, ContentType.Xml, "POST", xmlParameter, String.format("/%s/operations/", subscriptionId));
 
-            String xml = executeGetRequest(subscriptionId, String.format("/%s/applications/%s", subscriptionId, mobileServiceName + "mobileservice"));
+            String xml = executeGetRequest("createMobileService", subscriptionId, String.format("/%s/applications/%s", subscriptionId, mobileServiceName + "mobileservice"));
             NodeList statusNode = ((NodeList) XmlHelper.getXMLValue(xml, "//Application/State", XPathConstants.NODESET));
 
             if (!(statusNode.getLength() > 0 && statusNode.item(0).getTextContent().equals("Healthy"))) {
@@ -546,14 +453,14 @@ public class AzureManagerImpl implements AzureManager {
                 subscriptionId, mobileServiceName);
 
         try {
-            executePollRequest(subscriptionId, mspath, ContentType.Json, "DELETE", null, String.format("/%s/operations/", subscriptionId));
+            executePollRequest("deleteMobileService", subscriptionId, mspath, ContentType.Json, "DELETE", null, String.format("/%s/operations/", subscriptionId));
         } catch (Throwable ignored) {
         }
 
         String appPath = String.format("/%s/applications/%smobileservice", subscriptionId, mobileServiceName);
 
         try {
-            executePollRequest(subscriptionId, appPath, ContentType.Xml, "DELETE", null, String.format("/%s/operations/", subscriptionId));
+            executePollRequest("deleteMobileService", subscriptionId, appPath, ContentType.Xml, "DELETE", null, String.format("/%s/operations/", subscriptionId));
         } catch (Throwable ignored) {
         }
     }
@@ -564,23 +471,9 @@ public class AzureManagerImpl implements AzureManager {
             throws AzureCmdException {
         try {
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/tables", subscriptionId, mobileServiceName);
-            String json = executeGetRequest(subscriptionId, path);
-
-            Type type = new TypeToken<ArrayList<TableData>>() {
-            }.getType();
-            List<TableData> tempRes = new Gson().fromJson(json, type);
-
-            List<Table> res = new ArrayList<Table>();
-
-            for (TableData item : tempRes) {
-                Table t = new Table();
-                t.setName(item.getName());
-                t.setSelfLink(item.getSelflink());
+            String json = executeGetRequest("getTableList", subscriptionId, path);
 
-                res.add(t);
-            }
-
-            return res;
+            return MobileServiceJsonReader.readTables(new StringReader(json));
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -603,7 +496,7 @@ public class AzureManagerImpl implements AzureManager {
                     + "\",\"delete\":\"" + PermissionItem.getPermitionString(permissions.getDelete())
                     + "\",\"name\":\"" + tableName + "\",\"idType\":\"string\"}";
 
-            executeRequest(subscriptionId, path, ContentType.Json, "POST", postData);
+            executeRequest("createTable", subscriptionId, path, ContentType.Json, "POST", postData);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -627,7 +520,7 @@ public class AzureManagerImpl implements AzureManager {
                     + "\",\"delete\":\"" + PermissionItem.getPermitionString(permissions.getDelete())
                     + "\"}";
 
-            executeRequest(subscriptionId, path, ContentType.Json, "PUT", postData);
+            executeRequest("updateTable", subscriptionId, path, ContentType.Json, "PUT", postData);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -644,72 +537,50 @@ public class AzureManagerImpl implements AzureManager {
         try {
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/tables/%s",
                     subscriptionId, mobileServiceName, tableName);
-            String json = executeGetRequest(subscriptionId, path);
-            Gson gson = new Gson();
-            TableData tempRes = gson.fromJson(json, TableData.class);
-
-            Table t = new Table();
-            t.setName(tempRes.getName());
-            t.setSelfLink(tempRes.getSelflink());
-
-            TablePermissionsData restTablePermissions = gson.fromJson(executeGetRequest(subscriptionId, path + "/permissions"),
-                    TablePermissionsData.class);
-
-            TablePermissions tablePermissions = new TablePermissions();
-            tablePermissions.setInsert(PermissionItem.getPermitionType(restTablePermissions.getInsert()));
-            tablePermissions.setUpdate(PermissionItem.getPermitionType(restTablePermissions.getUpdate()));
-            tablePermissions.setRead(PermissionItem.getPermitionType(restTablePermissions.getRead()));
-            tablePermissions.setDelete(PermissionItem.getPermitionType(restTablePermissions.getDelete()));
-            t.setTablePermissions(tablePermissions);
-
-            Type colType = new TypeToken<ArrayList<TableColumnData>>() {
-            }.getType();
-            List<TableColumnData> colList = gson.fromJson(executeGetRequest(subscriptionId, path + "/columns"),
-                    colType);
-            if (colList != null) {
-                for (TableColumnData column : colList) {
-                    Column c = new Column();
-                    c.setName(column.getName());
-                    c.setType(column.getType());
-                    c.setSelfLink(column.getSelflink());
-                    c.setIndexed(column.isIndexed());
-                    c.setZumoIndex(column.isZumoIndex());
-
-                    t.getColumns().add(c);
-                }
-            }
+            Table t = MobileServiceJsonReader.readTable(
+                    new StringReader(executeGetRequest("showTableDetails", subscriptionId, path)));
 
-            Type scrType = new TypeToken<ArrayList<TableScriptData>>() {
-            }.getType();
-            List<TableScriptData> scrList = gson.fromJson(executeGetRequest(subscriptionId, path + "/scripts"),
-                    scrType);
+            t.setTablePermissions(MobileServiceJsonReader.readTablePermissions(
+                    new StringReader(executeGetRequest("showTableDetails", subscriptionId, path + "/permissions"))));
+            t.getColumns().addAll(MobileServiceJsonReader.readColumns(
+                    new StringReader(executeGetRequest("showTableDetails", subscriptionId, path + "/columns"))));
+            t.getScripts().addAll(MobileServiceJsonReader.readTableScripts(
+                    new StringReader(executeGetRequest("showTableDetails", subscriptionId, path + "/scripts")), t.getName()));
 
-            if (scrList != null) {
-                for (TableScriptData script : scrList) {
-                    Script s = new Script();
+            return t;
+        } catch (Throwable t) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
 
-                    s.setOperation(script.getOperation());
-                    s.setBytes(script.getSizeBytes());
-                    s.setSelfLink(script.getSelflink());
-                    s.setName(String.format("%s.%s", tempRes.getName(), script.getOperation()));
+            throw new AzureCmdException("Error getting table data", t);
+        }
+    }
 
-                    t.getScripts().add(s);
-                }
-            }
+    @NotNull
+    @Override
+    public List<Script> getTableScriptList(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                           @NotNull String tableName)
+            throws AzureCmdException {
+        try {
+            String path = String.format("/%s/services/mobileservices/mobileservices/%s/tables/%s/scripts",
+                    subscriptionId, mobileServiceName, tableName);
+            String json = executeGetRequest("getTableScriptList", subscriptionId, path);
 
-            return t;
+            return MobileServiceJsonReader.readTableScripts(new StringReader(json), tableName);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
             }
 
-            throw new AzureCmdException("Error getting table data", t);
+            throw new AzureCmdException("Error getting table scripts", t);
         }
     }
 
+    @NotNull
     @Override
-    public void downloadTableScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
-                                    @NotNull String scriptName, @NotNull String downloadPath)
+    public String getTableScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                 @NotNull String scriptName)
             throws AzureCmdException {
         try {
             String tableName = scriptName.split("\\.")[0];
@@ -717,7 +588,22 @@ public class AzureManagerImpl implements AzureManager {
 
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/tables/%s/scripts/%s/code",
                     subscriptionId, mobileServiceName, tableName, operation);
-            String script = executeGetRequest(subscriptionId, path);
+            return executeGetRequest("getTableScript", subscriptionId, path);
+        } catch (Throwable t) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
+
+            throw new AzureCmdException("Error getting script", t);
+        }
+    }
+
+    @Override
+    public void downloadTableScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                    @NotNull String scriptName, @NotNull String downloadPath)
+            throws AzureCmdException {
+        try {
+            String script = getTableScript(subscriptionId, mobileServiceName, scriptName);
 
             Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(downloadPath), "utf-8"));
             writer.write(script);
@@ -744,7 +630,7 @@ public class AzureManagerImpl implements AzureManager {
                     subscriptionId, mobileServiceName, tableName, operation);
             String file = readFile(filePath);
 
-            executeRequest(subscriptionId, path, ContentType.Text, "PUT", file);
+            executeRequest("uploadTableScript", subscriptionId, path, ContentType.Text, "PUT", file);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -761,28 +647,9 @@ public class AzureManagerImpl implements AzureManager {
         try {
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/apis",
                     subscriptionId, mobileServiceName);
-            String json = executeGetRequest(subscriptionId, path);
-
-            Type type = new TypeToken<ArrayList<CustomAPIData>>() {
-            }.getType();
-            List<CustomAPIData> tempRes = new Gson().fromJson(json, type);
-
-            List<CustomAPI> res = new ArrayList<CustomAPI>();
-
-            for (CustomAPIData item : tempRes) {
-                CustomAPI c = new CustomAPI();
-                c.setName(item.getName());
-                CustomAPIPermissions permissions = new CustomAPIPermissions();
-                permissions.setPutPermission(PermissionItem.getPermitionType(item.getPut()));
-                permissions.setPostPermission(PermissionItem.getPermitionType(item.getPost()));
-                permissions.setGetPermission(PermissionItem.getPermitionType(item.getGet()));
-                permissions.setDeletePermission(PermissionItem.getPermitionType(item.getDelete()));
-                permissions.setPatchPermission(PermissionItem.getPermitionType(item.getPatch()));
-                c.setCustomAPIPermissions(permissions);
-                res.add(c);
-            }
+            String json = executeGetRequest("getAPIList", subscriptionId, path);
 
-            return res;
+            return MobileServiceJsonReader.readCustomAPIs(new StringReader(json));
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -792,16 +659,32 @@ public class AzureManagerImpl implements AzureManager {
         }
     }
 
+    @NotNull
     @Override
-    public void downloadAPIScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
-                                  @NotNull String scriptName, @NotNull String downloadPath)
+    public String getAPIScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                               @NotNull String scriptName)
             throws AzureCmdException {
         try {
             String apiName = scriptName.split("\\.")[0];
 
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/apis/%s/script",
                     subscriptionId, mobileServiceName, apiName);
-            String script = executeGetRequest(subscriptionId, path);
+            return executeGetRequest("getAPIScript", subscriptionId, path);
+        } catch (Throwable t) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
+
+            throw new AzureCmdException("Error getting script", t);
+        }
+    }
+
+    @Override
+    public void downloadAPIScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                  @NotNull String scriptName, @NotNull String downloadPath)
+            throws AzureCmdException {
+        try {
+            String script = getAPIScript(subscriptionId, mobileServiceName, scriptName);
 
             Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(downloadPath), "utf-8"));
             writer.write(script);
@@ -812,7 +695,7 @@ public class AzureManagerImpl implements AzureManager {
                 throw (AzureCmdException) t;
             }
 
-            throw new AzureCmdException("Error getting API list", t);
+            throw new AzureCmdException("Error download script", t);
         }
     }
 
@@ -826,7 +709,7 @@ public class AzureManagerImpl implements AzureManager {
                     subscriptionId, mobileServiceName, apiName);
             String file = readFile(filePath);
 
-            executeRequest(subscriptionId, path, ContentType.Text, "PUT", file);
+            executeRequest("uploadAPIScript", subscriptionId, path, ContentType.Text, "PUT", file);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -849,7 +732,7 @@ public class AzureManagerImpl implements AzureManager {
                     + "\",\"patch\":\"" + permissions.getPatchPermission()
                     + "\",\"delete\":\"" + permissions.getDeletePermission()
                     + "\",\"name\":\"" + tableName + "\"}";
-            executeRequest(subscriptionId, path, ContentType.Json, "POST", postData);
+            executeRequest("createCustomAPI", subscriptionId, path, ContentType.Json, "POST", postData);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -872,7 +755,7 @@ public class AzureManagerImpl implements AzureManager {
                     + "\",\"patch\":\"" + permissions.getPatchPermission()
                     + "\",\"delete\":\"" + permissions.getDeletePermission()
                     + "\"}";
-            executeRequest(subscriptionId, path, ContentType.Json, "PUT", postData);
+            executeRequest("updateCustomAPI", subscriptionId, path, ContentType.Json, "PUT", postData);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -889,30 +772,9 @@ public class AzureManagerImpl implements AzureManager {
         try {
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/scheduler/jobs",
                     subscriptionId, mobileServiceName);
-            String json = executeGetRequest(subscriptionId, path);
-
-            Type type = new TypeToken<ArrayList<JobData>>() {
-            }.getType();
-            List<JobData> tempRes = new Gson().fromJson(json, type);
+            String json = executeGetRequest("listJobs", subscriptionId, path);
 
-            List<Job> res = new ArrayList<Job>();
-
-            for (JobData item : tempRes) {
-                Job j = new Job();
-                j.setAppName(item.getAppName());
-                j.setName(item.getName());
-                j.setEnabled(item.getStatus().equals("enabled"));
-                j.setId(UUID.fromString(item.getId()));
-
-                if (item.getIntervalPeriod() > 0) {
-                    j.setIntervalPeriod(item.getIntervalPeriod());
-                    j.setIntervalUnit(item.getIntervalUnit());
-                }
-
-                res.add(j);
-            }
-
-            return res;
+            return MobileServiceJsonReader.readJobs(new StringReader(json));
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -935,7 +797,7 @@ public class AzureManagerImpl implements AzureManager {
                             + "\",\"intervalPeriod\":" + String.valueOf(interval)
                             + ",\"startTime\":\"" + startDate + "\""))
                     + "}";
-            executeRequest(subscriptionId, path, ContentType.Json, "POST", postData);
+            executeRequest("createJob", subscriptionId, path, ContentType.Json, "POST", postData);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -964,7 +826,7 @@ public class AzureManagerImpl implements AzureManager {
                 postData = "{\"status\":\"disabled\"}";
             }
 
-            executeRequest(subscriptionId, path, ContentType.Json, "PUT", postData);
+            executeRequest("updateJob", subscriptionId, path, ContentType.Json, "PUT", postData);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -974,16 +836,32 @@ public class AzureManagerImpl implements AzureManager {
         }
     }
 
+    @NotNull
     @Override
-    public void downloadJobScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
-                                  @NotNull String scriptName, @NotNull String downloadPath)
+    public String getJobScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                               @NotNull String scriptName)
             throws AzureCmdException {
         try {
             String jobName = scriptName.split("\\.")[0];
 
             String path = String.format("/%s/services/mobileservices/mobileservices/%s/scheduler/jobs/%s/script",
                     subscriptionId, mobileServiceName, jobName);
-            String script = executeGetRequest(subscriptionId, path);
+            return executeGetRequest("getJobScript", subscriptionId, path);
+        } catch (Throwable t) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
+
+            throw new AzureCmdException("Error getting script", t);
+        }
+    }
+
+    @Override
+    public void downloadJobScript(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                  @NotNull String scriptName, @NotNull String downloadPath)
+            throws AzureCmdException {
+        try {
+            String script = getJobScript(subscriptionId, mobileServiceName, scriptName);
 
             Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(downloadPath), "utf-8"));
             writer.write(script);
@@ -1008,7 +886,7 @@ public class AzureManagerImpl implements AzureManager {
                     subscriptionId, mobileServiceName, jobName);
             String file = readFile(filePath);
 
-            executeRequest(subscriptionId, path, ContentType.Text, "PUT", file);
+            executeRequest("uploadJobScript", subscriptionId, path, ContentType.Text, "PUT", file);
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -1023,35 +901,40 @@ public class AzureManagerImpl implements AzureManager {
     public List<LogEntry> listLog(@NotNull String subscriptionId, @NotNull String mobileServiceName,
                                   @NotNull String runtime)
             throws AzureCmdException {
-        try {
-            String path = String.format("/%s/services/mobileservices/mobileservices/%s/logs?$top=10",
-                    subscriptionId, mobileServiceName);
-            String json = executeGetRequest(subscriptionId, path);
-
-            LogData tempRes = new Gson().fromJson(json, LogData.class);
-
-            List<LogEntry> res = new ArrayList<LogEntry>();
-
-            for (LogData.LogEntry item : tempRes.getResults()) {
-                LogEntry logEntry = new LogEntry();
+        return listLog(subscriptionId, mobileServiceName, runtime, 10);
+    }
 
-                logEntry.setMessage(item.getMessage());
-                logEntry.setSource(item.getSource());
-                logEntry.setType(item.getType());
+    @NotNull
+    @Override
+    public List<LogEntry> listLog(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                  @NotNull String runtime, int top)
+            throws AzureCmdException {
+        return listLog(subscriptionId, mobileServiceName, runtime, null, null, top).getEntries();
+    }
 
-                SimpleDateFormat ISO8601DATEFORMAT;
+    @NotNull
+    @Override
+    public LogEntryPage listLog(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                @NotNull String runtime, @Nullable Date since, @Nullable String continuationToken,
+                                int top)
+            throws AzureCmdException {
+        try {
+            StringBuilder path = new StringBuilder(String.format("/%s/services/mobileservices/mobileservices/%s/logs?$top=%d",
+                    subscriptionId, mobileServiceName, top));
 
-                if (MobileService.NODE_RUNTIME.equals(runtime)) {
-                    ISO8601DATEFORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.ENGLISH);
-                } else {
-                    ISO8601DATEFORMAT = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ENGLISH);
-                }
-                logEntry.setTimeCreated(ISO8601DATEFORMAT.parse(item.getTimeCreated()));
+            if (since != null) {
+                String filter = String.format("timeCreated ge datetime'%s'", NODE_LOG_DATE_FORMAT.get().format(since));
+                path.append("&$filter=").append(URLEncoder.encode(filter, "UTF-8").replace("+", "%20"));
+            }
 
-                res.add(logEntry);
+            if (continuationToken != null) {
+                path.append("&continuationToken=").append(URLEncoder.encode(continuationToken, "UTF-8"));
             }
 
-            return res;
+            String json = executeGetRequest("listLog", subscriptionId, path.toString());
+
+            return MobileServiceJsonReader.readLogEntryPage(new StringReader(json),
+                    MobileService.NODE_RUNTIME.equals(runtime) ? NODE_LOG_DATE_FORMAT.get() : LOG_DATE_FORMAT.get());
         } catch (Throwable t) {
             if (t instanceof AzureCmdException) {
                 throw (AzureCmdException) t;
@@ -1065,105 +948,122 @@ public class AzureManagerImpl implements AzureManager {
     @Override
     public List<CloudService> getCloudServices(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestComputeSDK(subscriptionId, AzureSDKHelper.getCloudServices(subscriptionId));
+        return requestComputeSDK("getCloudServices", subscriptionId, AzureSDKHelper.getCloudServices(subscriptionId));
     }
 
     @NotNull
     @Override
     public List<VirtualMachine> getVirtualMachines(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestComputeSDK(subscriptionId, AzureSDKHelper.getVirtualMachines(subscriptionId));
+        return requestComputeSDK("getVirtualMachines", subscriptionId,
+                AzureSDKHelper.getVirtualMachines(subscriptionId));
+    }
+
+    @NotNull
+    @Override
+    public List<VirtualMachine> getVirtualMachines(@NotNull String subscriptionId,
+                                                   @Nullable CallableSingleArg<Void, List<VirtualMachine>> partialResults)
+            throws AzureCmdException {
+        return requestComputeSDK("getVirtualMachines", subscriptionId,
+                AzureSDKHelper.getVirtualMachines(subscriptionId, partialResults));
     }
 
     @NotNull
     @Override
     public VirtualMachine refreshVirtualMachineInformation(@NotNull VirtualMachine vm)
             throws AzureCmdException {
-        return requestComputeSDK(vm.getSubscriptionId(), AzureSDKHelper.refreshVirtualMachineInformation(vm));
+        return requestComputeSDK("refreshVirtualMachineInformation", vm.getSubscriptionId(),
+                AzureSDKHelper.refreshVirtualMachineInformation(vm));
     }
 
     @Override
     public void startVirtualMachine(@NotNull VirtualMachine vm)
             throws AzureCmdException {
-        requestComputeSDK(vm.getSubscriptionId(), AzureSDKHelper.startVirtualMachine(vm));
+        requestComputeSDK("startVirtualMachine", vm.getSubscriptionId(), AzureSDKHelper.startVirtualMachine(vm));
     }
 
     @Override
     public void shutdownVirtualMachine(@NotNull VirtualMachine vm, boolean deallocate)
             throws AzureCmdException {
-        requestComputeSDK(vm.getSubscriptionId(), AzureSDKHelper.shutdownVirtualMachine(vm, deallocate));
+        requestComputeSDK("shutdownVirtualMachine", vm.getSubscriptionId(),
+                AzureSDKHelper.shutdownVirtualMachine(vm, deallocate));
     }
 
     @Override
     public void restartVirtualMachine(@NotNull VirtualMachine vm)
             throws AzureCmdException {
-        requestComputeSDK(vm.getSubscriptionId(), AzureSDKHelper.restartVirtualMachine(vm));
+        requestComputeSDK("restartVirtualMachine", vm.getSubscriptionId(), AzureSDKHelper.restartVirtualMachine(vm));
     }
 
     @Override
     public void deleteVirtualMachine(@NotNull VirtualMachine vm, boolean deleteFromStorage)
             throws AzureCmdException {
-        requestComputeSDK(vm.getSubscriptionId(), AzureSDKHelper.deleteVirtualMachine(vm, deleteFromStorage));
+        requestComputeSDK("deleteVirtualMachine", vm.getSubscriptionId(),
+                AzureSDKHelper.deleteVirtualMachine(vm, deleteFromStorage));
     }
 
     @NotNull
     @Override
     public byte[] downloadRDP(@NotNull VirtualMachine vm) throws AzureCmdException {
-        return requestComputeSDK(vm.getSubscriptionId(), AzureSDKHelper.downloadRDP(vm));
+        return requestComputeSDK("downloadRDP", vm.getSubscriptionId(), AzureSDKHelper.downloadRDP(vm));
     }
 
     @NotNull
     @Override
     public List<StorageAccount> getStorageAccounts(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestStorageSDK(subscriptionId, AzureSDKHelper.getStorageAccounts(subscriptionId));
+        return requestStorageSDK("getStorageAccounts", subscriptionId,
+                AzureSDKHelper.getStorageAccounts(subscriptionId));
     }
 
     @NotNull
     @Override
     public List<VirtualMachineImage> getVirtualMachineImages(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestComputeSDK(subscriptionId, AzureSDKHelper.getVirtualMachineImages());
+        return requestComputeSDK("getVirtualMachineImages", subscriptionId, AzureSDKHelper.getVirtualMachineImages());
     }
 
     @NotNull
     @Override
     public List<VirtualMachineSize> getVirtualMachineSizes(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestManagementSDK(subscriptionId, AzureSDKHelper.getVirtualMachineSizes());
+        return requestManagementSDK("getVirtualMachineSizes", subscriptionId, AzureSDKHelper.getVirtualMachineSizes());
     }
 
     @NotNull
     @Override
     public List<Location> getLocations(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestManagementSDK(subscriptionId, AzureSDKHelper.getLocations());
+        return requestManagementSDK("getLocations", subscriptionId, AzureSDKHelper.getLocations());
     }
 
     @NotNull
     @Override
     public List<AffinityGroup> getAffinityGroups(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestManagementSDK(subscriptionId, AzureSDKHelper.getAffinityGroups());
+        return requestManagementSDK("getAffinityGroups", subscriptionId, AzureSDKHelper.getAffinityGroups());
     }
 
     @NotNull
     @Override
     public List<VirtualNetwork> getVirtualNetworks(@NotNull String subscriptionId)
             throws AzureCmdException {
-        return requestNetworkSDK(subscriptionId, AzureSDKHelper.getVirtualNetworks(subscriptionId));
+        return requestNetworkSDK("getVirtualNetworks", subscriptionId,
+                AzureSDKHelper.getVirtualNetworks(subscriptionId));
     }
 
     @Override
     public void createStorageAccount(@NotNull StorageAccount storageAccount)
             throws AzureCmdException {
-        requestStorageSDK(storageAccount.getSubscriptionId(), AzureSDKHelper.createStorageAccount(storageAccount));
+        requestStorageSDK("createStorageAccount", storageAccount.getSubscriptionId(),
+                AzureSDKHelper.createStorageAccount(storageAccount));
     }
 
     @Override
     public void createCloudService(@NotNull CloudService cloudService)
             throws AzureCmdException {
-        requestComputeSDK(cloudService.getSubscriptionId(), AzureSDKHelper.createCloudService(cloudService));
+        requestComputeSDK("createCloudService", cloudService.getSubscriptionId(),
+                AzureSDKHelper.createCloudService(cloudService));
     }
 
     @Override
@@ -1171,7 +1071,8 @@ public class AzureManagerImpl implements AzureManager {
                                      @NotNull StorageAccount storageAccount, @NotNull String virtualNetwork,
                                      @NotNull String username, @NotNull String password, @NotNull byte[] certificate)
             throws AzureCmdException {
-        requestComputeSDK(virtualMachine.getSubscriptionId(), AzureSDKHelper.createVirtualMachine(virtualMachine,
+        requestComputeSDK("createVirtualMachine", virtualMachine.getSubscriptionId(),
+                AzureSDKHelper.createVirtualMachine(virtualMachine,
                 vmImage, storageAccount, virtualNetwork, username, password, certificate));
     }
 
@@ -1180,7 +1081,8 @@ public class AzureManagerImpl implements AzureManager {
                                      @NotNull String mediaLocation, @NotNull String virtualNetwork,
                                      @NotNull String username, @NotNull String password, @NotNull byte[] certificate)
             throws AzureCmdException {
-        requestComputeSDK(virtualMachine.getSubscriptionId(), AzureSDKHelper.createVirtualMachine(virtualMachine,
+        requestComputeSDK("createVirtualMachine", virtualMachine.getSubscriptionId(),
+                AzureSDKHelper.createVirtualMachine(virtualMachine,
                 vmImage, mediaLocation, virtualNetwork, username, password, certificate));
     }
 
@@ -1188,51 +1090,116 @@ public class AzureManagerImpl implements AzureManager {
     @Override
     public StorageAccount refreshStorageAccountInformation(@NotNull StorageAccount storageAccount)
             throws AzureCmdException {
-        return requestStorageSDK(storageAccount.getSubscriptionId(),
+        requestStorageSDK("refreshStorageAccountInformation", storageAccount.getSubscriptionId(),
                 AzureSDKHelper.refreshStorageAccountInformation(storageAccount));
+        storageKeysByAccount.put(getStorageKeysCacheKey(storageAccount),
+                new StorageAccountKeys(storageAccount.getPrimaryKey(), storageAccount.getSecondaryKey()));
+
+        return storageAccount;
+    }
+
+    @Override
+    public void loadStorageAccountKeys(@NotNull StorageAccount storageAccount)
+            throws AzureCmdException {
+        String cacheKey = getStorageKeysCacheKey(storageAccount);
+        StorageAccountKeys keys = storageKeysByAccount.getIfPresent(cacheKey);
+
+        if (keys == null) {
+            requestStorageSDK("loadStorageAccountKeys", storageAccount.getSubscriptionId(),
+                    AzureSDKHelper.loadStorageAccountKeys(storageAccount));
+            storageKeysByAccount.put(cacheKey,
+                    new StorageAccountKeys(storageAccount.getPrimaryKey(), storageAccount.getSecondaryKey()));
+        } else {
+            storageAccount.setPrimaryKey(keys.primaryKey);
+            storageAccount.setSecondaryKey(keys.secondaryKey);
+            storageAccount.setKeysLoaded(true);
+        }
+    }
+
+    @Override
+    public void prefetchStorageAccountKeys(@NotNull List<StorageAccount> storageAccounts) {
+        final List<StorageAccount> pending = new ArrayList<StorageAccount>();
+
+        for (StorageAccount storageAccount : storageAccounts) {
+            if (!storageAccount.isKeysLoaded()) {
+                pending.add(storageAccount);
+            }
+        }
+
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ParallelRequestRunner.run(pending, STORAGE_KEYS_PREFETCH_PARALLELISM,
+                            new ParallelRequestRunner.Request<StorageAccount, StorageAccount>() {
+                                @NotNull
+                                @Override
+                                public StorageAccount execute(@NotNull StorageAccount storageAccount)
+                                        throws Throwable {
+                                    try {
+                                        loadStorageAccountKeys(storageAccount);
+                                    } catch (AzureCmdException ignored) {
+                                        // best effort, the keys are requested again when the account is opened
+                                    }
+
+                                    return storageAccount;
+                                }
+                            }, null);
+                } catch (Throwable ignored) {
+                }
+            }
+        });
     }
 
     @Override
     public String createServiceCertificate(@NotNull String subscriptionId, @NotNull String serviceName,
                                            @NotNull byte[] data, @NotNull String password)
             throws AzureCmdException {
-        return requestComputeSDK(subscriptionId, AzureSDKHelper.createServiceCertificate(serviceName, data, password));
+        return requestComputeSDK("createServiceCertificate", subscriptionId,
+                AzureSDKHelper.createServiceCertificate(serviceName, data, password));
     }
 
     @Override
     public void deleteStorageAccount(@NotNull StorageAccount storageAccount)
             throws AzureCmdException {
-        requestStorageSDK(storageAccount.getSubscriptionId(), AzureSDKHelper.deleteStorageAccount(storageAccount));
+        requestStorageSDK("deleteStorageAccount", storageAccount.getSubscriptionId(),
+                AzureSDKHelper.deleteStorageAccount(storageAccount));
+        storageKeysByAccount.invalidate(getStorageKeysCacheKey(storageAccount));
+        StorageClientRegistry.invalidate(storageAccount);
     }
 
-    private void loadSubscriptions() {
+    @NotNull
+    private static Map<String, Subscription> loadSubscriptions() {
         String json = DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.AZURE_SUBSCRIPTIONS);
 
         if (!StringHelper.isNullOrWhiteSpace(json)) {
             try {
                 Type subscriptionsType = new TypeToken<HashMap<String, Subscription>>() {
                 }.getType();
-                subscriptions = gson.fromJson(json, subscriptionsType);
+                Map<String, Subscription> subscriptions = gson.fromJson(json, subscriptionsType);
+
+                if (subscriptions != null) {
+                    return subscriptions;
+                }
             } catch (JsonSyntaxException ignored) {
                 DefaultLoader.getIdeHelper().unsetProperty(AppSettingsNames.AZURE_SUBSCRIPTIONS);
             }
-        } else {
-            subscriptions = new HashMap<String, Subscription>();
         }
 
-        lockBySubscriptionId = new HashMap<String, ReentrantReadWriteLock>();
-
-        for (String subscriptionId : subscriptions.keySet()) {
-            lockBySubscriptionId.put(subscriptionId, new ReentrantReadWriteLock(false));
-        }
+        return new HashMap<String, Subscription>();
     }
 
-    private void loadUserInfo() {
+    @Nullable
+    private static UserInfo loadUserInfo() {
         String json = DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.AZURE_USER_INFO);
 
         if (!StringHelper.isNullOrWhiteSpace(json)) {
             try {
-                userInfo = gson.fromJson(json, UserInfo.class);
+                return gson.fromJson(json, UserInfo.class);
             } catch (JsonSyntaxException ignored) {
                 DefaultLoader.getIdeHelper().unsetProperty(AppSettingsNames.AZURE_USER_INFO);
                 DefaultLoader.getIdeHelper().unsetProperty(AppSettingsNames.AZURE_USER_SUBSCRIPTIONS);
@@ -1241,23 +1208,33 @@ public class AzureManagerImpl implements AzureManager {
             DefaultLoader.getIdeHelper().unsetProperty(AppSettingsNames.AZURE_USER_SUBSCRIPTIONS);
         }
 
-        json = DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.AZURE_USER_SUBSCRIPTIONS);
+        return null;
+    }
+
+    @NotNull
+    private static Map<String, UserInfo> loadUserInfoBySubscriptionId() {
+        String json = DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.AZURE_USER_SUBSCRIPTIONS);
 
         if (!StringHelper.isNullOrWhiteSpace(json)) {
             try {
                 Type userInfoBySubscriptionIdType = new TypeToken<HashMap<String, UserInfo>>() {
                 }.getType();
-                userInfoBySubscriptionId = gson.fromJson(json, userInfoBySubscriptionIdType);
+                Map<String, UserInfo> userInfoBySubscriptionId = gson.fromJson(json, userInfoBySubscriptionIdType);
+
+                if (userInfoBySubscriptionId != null) {
+                    return userInfoBySubscriptionId;
+                }
             } catch (JsonSyntaxException ignored) {
                 DefaultLoader.getIdeHelper().unsetProperty(AppSettingsNames.AZURE_USER_SUBSCRIPTIONS);
             }
-        } else {
-            userInfoBySubscriptionId = new HashMap<String, UserInfo>();
         }
+
+        return new HashMap<String, UserInfo>();
     }
 
-    private void loadSSLSocketFactory() {
-        sslSocketFactoryBySubscriptionId = new HashMap<String, SSLSocketFactory>();
+    @NotNull
+    private Map<String, SSLSocketFactory> loadSSLSocketFactory(@NotNull Map<String, Subscription> subscriptions) {
+        Map<String, SSLSocketFactory> sslSocketFactoryBySubscriptionId = new HashMap<String, SSLSocketFactory>();
 
         for (Map.Entry<String, Subscription> subscriptionEntry : subscriptions.entrySet()) {
             String subscriptionId = subscriptionEntry.getKey();
@@ -1273,60 +1250,24 @@ public class AzureManagerImpl implements AzureManager {
                 }
             }
         }
-    }
-
-    private void removeInvalidUserInfo() {
-        List<String> invalidSubscriptionIds = new ArrayList<String>();
-
-        for (String subscriptionId : userInfoBySubscriptionId.keySet()) {
-            if (!subscriptions.containsKey(subscriptionId)) {
-                invalidSubscriptionIds.add(subscriptionId);
-            }
-        }
-
-        for (String invalidSubscriptionId : invalidSubscriptionIds) {
-            userInfoBySubscriptionId.remove(invalidSubscriptionId);
-        }
-    }
-
-    private void removeUnusedSubscriptions() {
-        List<String> invalidSubscriptionIds = new ArrayList<String>();
-
-        for (Map.Entry<String, Subscription> subscriptionEntry : subscriptions.entrySet()) {
-            String subscriptionId = subscriptionEntry.getKey();
-            Subscription subscription = subscriptionEntry.getValue();
-
-            if (!userInfoBySubscriptionId.containsKey(subscriptionId) &&
-                    !sslSocketFactoryBySubscriptionId.containsKey(subscriptionId)) {
-                invalidSubscriptionIds.add(subscriptionId);
-            } else if (!userInfoBySubscriptionId.containsKey(subscriptionId)) {
-                subscription.setTenantId(null);
-            } else if (!sslSocketFactoryBySubscriptionId.containsKey(subscriptionId)) {
-                subscription.setManagementCertificate(null);
-                subscription.setServiceManagementUrl(null);
-            }
-        }
 
-        for (String invalidSubscriptionId : invalidSubscriptionIds) {
-            lockBySubscriptionId.remove(invalidSubscriptionId);
-            subscriptions.remove(invalidSubscriptionId);
-        }
+        return sslSocketFactoryBySubscriptionId;
     }
 
-    private void storeSubscriptions() {
+    private static void storeSubscriptions(@NotNull AuthData data) {
         Type subscriptionsType = new TypeToken<HashMap<String, Subscription>>() {
         }.getType();
-        String json = gson.toJson(subscriptions, subscriptionsType);
+        String json = gson.toJson(new HashMap<String, Subscription>(data.subscriptions), subscriptionsType);
         DefaultLoader.getIdeHelper().setProperty(AppSettingsNames.AZURE_SUBSCRIPTIONS, json);
     }
 
-    private void storeUserInfo() {
-        String json = gson.toJson(userInfo, UserInfo.class);
+    private static void storeUserInfo(@NotNull AuthData data) {
+        String json = gson.toJson(data.userInfo, UserInfo.class);
         DefaultLoader.getIdeHelper().setProperty(AppSettingsNames.AZURE_USER_INFO, json);
 
         Type userInfoBySubscriptionIdType = new TypeToken<HashMap<String, UserInfo>>() {
         }.getType();
-        json = gson.toJson(userInfoBySubscriptionId, userInfoBySubscriptionIdType);
+        json = gson.toJson(new HashMap<String, UserInfo>(data.userInfoBySubscriptionId), userInfoBySubscriptionIdType);
         DefaultLoader.getIdeHelper().setProperty(AppSettingsNames.AZURE_USER_SUBSCRIPTIONS, json);
     }
 
@@ -1413,394 +1354,133 @@ public class AzureManagerImpl implements AzureManager {
 
     private void updateSubscription(@NotNull Subscription subscription, @NotNull UserInfo userInfo)
             throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            String subscriptionId = subscription.getId();
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, true);
-            subscriptionLock.writeLock().lock();
-
-            try {
-                if (subscriptions.containsKey(subscriptionId)) {
-                    subscriptions.get(subscriptionId).setTenantId(subscription.getTenantId());
-                } else {
-                    subscriptions.put(subscriptionId, subscription);
-                }
-
-                setUserInfo(subscriptionId, userInfo);
-                storeSubscriptions();
-            } finally {
-                subscriptionLock.writeLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        authState.updateSubscription(subscription, userInfo);
     }
 
     private void updateSubscription(@NotNull Subscription subscription, @NotNull SSLSocketFactory sslSocketFactory)
             throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            String subscriptionId = subscription.getId();
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, true);
-            subscriptionLock.writeLock().lock();
-
-            try {
-                if (subscriptions.containsKey(subscriptionId)) {
-                    Subscription existingSubscription = subscriptions.get(subscriptionId);
-                    existingSubscription.setManagementCertificate(subscription.getManagementCertificate());
-                    existingSubscription.setServiceManagementUrl(subscription.getServiceManagementUrl());
-                } else {
-                    subscriptions.put(subscriptionId, subscription);
-                }
-
-                setSSLSocketFactory(subscriptionId, sslSocketFactory);
-                storeSubscriptions();
-            } finally {
-                subscriptionLock.writeLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        authState.updateSubscription(subscription, sslSocketFactory);
     }
 
     private void notifySubscriptionsChanged() {
-        subscriptionsChangedLock.readLock().lock();
-
-        try {
-            for (EventWaitHandleImpl handle : subscriptionsChangedHandles) {
-                handle.signalEvent();
-            }
-        } finally {
-            subscriptionsChangedLock.readLock().unlock();
-        }
+        subscriptionsChangedToken.getAndSet(new CancellationToken()).cancel();
     }
 
     @Nullable
     public UserInfo getUserInfo() {
-        authDataLock.readLock().lock();
-
-        try {
-            return userInfo;
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return authState.get().userInfo;
     }
 
     private void setUserInfo(@Nullable UserInfo userInfo) {
-        authDataLock.writeLock().lock();
-
-        try {
-            this.userInfo = userInfo;
-            userInfoBySubscriptionId.clear();
-            removeUnusedSubscriptions();
-
-            storeSubscriptions();
-            storeUserInfo();
-        } finally {
-            authDataLock.writeLock().unlock();
-        }
+        authState.setUserInfo(userInfo);
     }
 
     @NotNull
     private Subscription getSubscription(@NotNull String subscriptionId)
             throws AzureCmdException {
-        authDataLock.readLock().lock();
+        Subscription subscription = authState.get().subscriptions.get(subscriptionId);
 
-        try {
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, false);
-            subscriptionLock.readLock().lock();
-
-            try {
-                return subscriptions.get(subscriptionId);
-            } finally {
-                subscriptionLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
+        if (subscription == null) {
+            throw new AzureCmdException("No authentication information for the specified Subscription Id");
         }
+
+        return subscription;
     }
 
     private boolean hasUserInfo(@NotNull String subscriptionId) {
-        authDataLock.readLock().lock();
-
-        try {
-            Optional<ReentrantReadWriteLock> optionalRWLock = getSubscriptionLock(subscriptionId);
-
-            if (!optionalRWLock.isPresent()) {
-                return false;
-            }
-
-            ReentrantReadWriteLock subscriptionLock = optionalRWLock.get();
-            subscriptionLock.readLock().lock();
-
-            try {
-                return userInfoBySubscriptionId.containsKey(subscriptionId);
-            } finally {
-                subscriptionLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return authState.get().userInfoBySubscriptionId.containsKey(subscriptionId);
     }
 
     @NotNull
     private UserInfo getUserInfo(@NotNull String subscriptionId)
             throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, false);
-            subscriptionLock.readLock().lock();
-
-            try {
-                if (!userInfoBySubscriptionId.containsKey(subscriptionId)) {
-                    throw new AzureCmdException("No User Information for the specified Subscription Id");
-                }
+        AuthData data = authState.get();
 
-                return userInfoBySubscriptionId.get(subscriptionId);
-            } finally {
-                subscriptionLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
+        if (!data.subscriptions.containsKey(subscriptionId)) {
+            throw new AzureCmdException("No authentication information for the specified Subscription Id");
         }
-    }
 
-    private void setUserInfo(@NotNull String subscriptionId, @NotNull UserInfo userInfo)
-            throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, true);
-            subscriptionLock.writeLock().lock();
+        UserInfo userInfo = data.userInfoBySubscriptionId.get(subscriptionId);
 
-            try {
-                userInfoBySubscriptionId.put(subscriptionId, userInfo);
-
-                storeUserInfo();
-            } finally {
-                subscriptionLock.writeLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
+        if (userInfo == null) {
+            throw new AzureCmdException("No User Information for the specified Subscription Id");
         }
+
+        return userInfo;
     }
 
     private boolean hasSSLSocketFactory(@NotNull String subscriptionId) {
-        authDataLock.readLock().lock();
-
-        try {
-            Optional<ReentrantReadWriteLock> optionalRWLock = getSubscriptionLock(subscriptionId);
-
-            if (!optionalRWLock.isPresent()) {
-                return false;
-            }
-
-            ReentrantReadWriteLock subscriptionLock = optionalRWLock.get();
-            subscriptionLock.readLock().lock();
-
-            try {
-                return sslSocketFactoryBySubscriptionId.containsKey(subscriptionId);
-            } finally {
-                subscriptionLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return authState.get().sslSocketFactoryBySubscriptionId.containsKey(subscriptionId);
     }
 
     @NotNull
     private Optional<SSLSocketFactory> getSSLSocketFactory(@NotNull String subscriptionId)
             throws AzureCmdException {
-        authDataLock.readLock().lock();
+        AuthData data = authState.get();
 
-        try {
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, false);
-            subscriptionLock.readLock().lock();
-
-            try {
-                if (!sslSocketFactoryBySubscriptionId.containsKey(subscriptionId)) {
-                    return Optional.absent();
-                }
-
-                return Optional.of(sslSocketFactoryBySubscriptionId.get(subscriptionId));
-            } finally {
-                subscriptionLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
+        if (!data.subscriptions.containsKey(subscriptionId)) {
+            throw new AzureCmdException("No authentication information for the specified Subscription Id");
         }
-    }
-
-    private void setSSLSocketFactory(@NotNull String subscriptionId, @NotNull SSLSocketFactory sslSocketFactory)
-            throws AzureCmdException {
-        authDataLock.readLock().lock();
 
-        try {
-            ReentrantReadWriteLock subscriptionLock = getSubscriptionLock(subscriptionId, true);
-            subscriptionLock.writeLock().lock();
-
-            try {
-                sslSocketFactoryBySubscriptionId.put(subscriptionId, sslSocketFactory);
-            } finally {
-                subscriptionLock.writeLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
-    }
-
-    private boolean hasAccessToken(@NotNull UserInfo userInfo) {
-        authDataLock.readLock().lock();
-
-        try {
-            Optional<ReentrantReadWriteLock> optionalRWLock = getUserLock(userInfo);
-
-            if (!optionalRWLock.isPresent()) {
-                return false;
-            }
-
-            ReadWriteLock userLock = optionalRWLock.get();
-            userLock.readLock().lock();
-
-            try {
-                return accessTokenByUser.containsKey(userInfo);
-            } finally {
-                userLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return Optional.fromNullable(data.sslSocketFactoryBySubscriptionId.get(subscriptionId));
     }
 
     @NotNull
     private String getAccessToken(@NotNull UserInfo userInfo)
             throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            ReentrantReadWriteLock userLock = getUserLock(userInfo, false);
-            userLock.readLock().lock();
+        String accessToken = authState.getAccessToken(userInfo);
 
-            try {
-                if (!accessTokenByUser.containsKey(userInfo)) {
-                    throw new AzureCmdException("No access token for the specified User Information", "");
-                }
-
-                return accessTokenByUser.get(userInfo);
-            } finally {
-                userLock.readLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
+        if (accessToken == null) {
+            throw new AzureCmdException("No access token for the specified User Information", "");
         }
-    }
-
-    private void setAccessToken(@NotNull UserInfo userInfo,
-                                @NotNull String accessToken)
-            throws AzureCmdException {
-        authDataLock.readLock().lock();
-
-        try {
-            ReentrantReadWriteLock userLock = getUserLock(userInfo, true);
-            userLock.writeLock().lock();
 
-            try {
-                accessTokenByUser.put(userInfo, accessToken);
-            } finally {
-                userLock.writeLock().unlock();
-            }
-        } finally {
-            authDataLock.readLock().unlock();
-        }
+        return accessToken;
     }
 
-    @NotNull
-    private ReentrantReadWriteLock getSubscriptionLock(@NotNull String subscriptionId, boolean createOnMissing)
-            throws AzureCmdException {
-        Lock lock = createOnMissing ? subscriptionMapLock.writeLock() : subscriptionMapLock.readLock();
-        lock.lock();
-
-        try {
-            if (!lockBySubscriptionId.containsKey(subscriptionId)) {
-                if (createOnMissing) {
-                    lockBySubscriptionId.put(subscriptionId, new ReentrantReadWriteLock(false));
-                } else {
-                    throw new AzureCmdException("No authentication information for the specified Subscription Id");
-                }
-            }
-
-            return lockBySubscriptionId.get(subscriptionId);
-        } finally {
-            lock.unlock();
-        }
+    private void setAccessToken(@NotNull UserInfo userInfo, @NotNull String accessToken) {
+        authState.setAccessToken(userInfo, accessToken);
     }
 
     @NotNull
-    private Optional<ReentrantReadWriteLock> getSubscriptionLock(@NotNull String subscriptionId) {
-        subscriptionMapLock.readLock().lock();
-
-        try {
-            if (lockBySubscriptionId.containsKey(subscriptionId)) {
-                return Optional.of(lockBySubscriptionId.get(subscriptionId));
-            } else {
-                return Optional.absent();
-            }
-        } finally {
-            subscriptionMapLock.readLock().unlock();
-        }
+    private String executeGetRequest(@NotNull String operation, @NotNull String subscriptionId, @NotNull String path)
+            throws AzureCmdException {
+        return executeRequest(operation, subscriptionId, path, ContentType.Json, "GET", null);
     }
 
     @NotNull
-    private ReentrantReadWriteLock getUserLock(@NotNull UserInfo userInfo, boolean createOnMissing)
+    private String executeRequest(@NotNull String operation,
+                                  @NotNull final String subscriptionId,
+                                  @NotNull final String path,
+                                  @NotNull final ContentType contentType,
+                                  @NotNull final String method,
+                                  @Nullable final String postData)
             throws AzureCmdException {
-        Lock lock = createOnMissing ? userMapLock.writeLock() : userMapLock.readLock();
-        lock.lock();
+        ServiceMetrics metrics = ServiceMetrics.getManager();
+        long start = metrics.start();
+        String response = null;
 
         try {
-            if (!lockByUser.containsKey(userInfo)) {
-                if (createOnMissing) {
-                    lockByUser.put(userInfo, new ReentrantReadWriteLock(false));
-                } else {
-                    throw new AzureCmdException("No access token for the specified User Information");
+            response = RequestScheduler.getManager().execute(subscriptionId, new RequestScheduler.Request<String>() {
+                @Override
+                public String execute() throws AzureCmdException {
+                    return sendRequest(subscriptionId, path, contentType, method, postData);
                 }
-            }
-
-            return lockByUser.get(userInfo);
+            });
+            return response;
         } finally {
-            lock.unlock();
-        }
-    }
-
-    @NotNull
-    private Optional<ReentrantReadWriteLock> getUserLock(@NotNull UserInfo userInfo) {
-        userMapLock.readLock().lock();
-
-        try {
-            if (lockByUser.containsKey(userInfo)) {
-                return Optional.of(lockByUser.get(userInfo));
-            } else {
-                return Optional.absent();
+            if (start != 0) {
+                metrics.record(subscriptionId, method + " " + operation, start, response == null,
+                        response != null ? response.length() : 0, postData != null ? postData.length() : 0);
             }
-        } finally {
-            userMapLock.readLock().unlock();
         }
     }
 
     @NotNull
-    private String executeGetRequest(@NotNull String subscriptionId, @NotNull String path)
-            throws AzureCmdException {
-        return executeRequest(subscriptionId, path, ContentType.Json, "GET", null);
-    }
-
-    @NotNull
-    private String executeRequest(@NotNull String subscriptionId,
-                                  @NotNull final String path,
-                                  @NotNull final ContentType contentType,
-                                  @NotNull final String method,
-                                  @Nullable final String postData)
+    private String sendRequest(@NotNull String subscriptionId,
+                               @NotNull final String path,
+                               @NotNull final ContentType contentType,
+                               @NotNull final String method,
+                               @Nullable final String postData)
             throws AzureCmdException {
         Subscription subscription = getSubscription(subscriptionId);
 
@@ -1808,7 +1488,8 @@ public class AzureManagerImpl implements AzureManager {
 
         if (optionalSSLSocketFactory.isPresent()) {
             SSLSocketFactory sslSocketFactory = optionalSSLSocketFactory.get();
-            return AzureCertificateHelper.executeRequest(subscription.getServiceManagementUrl(), path, contentType,
+            return AzureCertificateHelper.executeRequest(
+                    AzureSDKHelper.getManagementEndpoint(subscription.getServiceManagementUrl()), path, contentType,
                     method, postData, sslSocketFactory, MobileServiceRestManager.getManager());
         } else {
             final PluginSettings settings = DefaultLoader.getPluginComponent().getSettings();
@@ -1819,28 +1500,58 @@ public class AzureManagerImpl implements AzureManager {
                 public String execute()
                         throws Throwable {
                     String accessToken = getAccessToken(userInfo);
-                    return AzureAADHelper.executeRequest(managementUri, path, contentType,
-                            method, postData, accessToken, MobileServiceRestManager.getManager());
+                    return AzureAADHelper.executeRequest(AzureSDKHelper.getManagementEndpoint(managementUri), path,
+                            contentType, method, postData, accessToken, MobileServiceRestManager.getManager());
                 }
             });
         }
     }
 
     @NotNull
-    private String executePollRequest(@NotNull String subscriptionId,
+    private String executePollRequest(@NotNull String operation,
+                                      @NotNull final String subscriptionId,
                                       @NotNull final String path,
                                       @NotNull final ContentType contentType,
                                       @NotNull final String method,
                                       @Nullable final String postData,
                                       @NotNull final String pollPath)
             throws AzureCmdException {
+        ServiceMetrics metrics = ServiceMetrics.getManager();
+        long start = metrics.start();
+        String response = null;
+
+        try {
+            response = RequestScheduler.getManager().execute(subscriptionId, new RequestScheduler.Request<String>() {
+                @Override
+                public String execute() throws AzureCmdException {
+                    return sendPollRequest(subscriptionId, path, contentType, method, postData, pollPath);
+                }
+            });
+            return response;
+        } finally {
+            if (start != 0) {
+                metrics.record(subscriptionId, method + " " + operation, start, response == null,
+                        response != null ? response.length() : 0, postData != null ? postData.length() : 0);
+            }
+        }
+    }
+
+    @NotNull
+    private String sendPollRequest(@NotNull String subscriptionId,
+                                   @NotNull final String path,
+                                   @NotNull final ContentType contentType,
+                                   @NotNull final String method,
+                                   @Nullable final String postData,
+                                   @NotNull final String pollPath)
+            throws AzureCmdException {
         Subscription subscription = getSubscription(subscriptionId);
 
         Optional<SSLSocketFactory> optionalSSLSocketFactory = getSSLSocketFactory(subscriptionId);
 
         if (optionalSSLSocketFactory.isPresent()) {
             SSLSocketFactory sslSocketFactory = optionalSSLSocketFactory.get();
-            return AzureCertificateHelper.executePollRequest(subscription.getServiceManagementUrl(), path, contentType,
+            return AzureCertificateHelper.executePollRequest(
+                    AzureSDKHelper.getManagementEndpoint(subscription.getServiceManagementUrl()), path, contentType,
                     method, postData, pollPath, sslSocketFactory, MobileServiceRestManager.getManager());
         } else {
             final PluginSettings settings = DefaultLoader.getPluginComponent().getSettings();
@@ -1851,18 +1562,19 @@ public class AzureManagerImpl implements AzureManager {
                 public String execute()
                         throws Throwable {
                     String accessToken = getAccessToken(userInfo);
-                    return AzureAADHelper.executePollRequest(managementUri, path, contentType,
-                            method, postData, pollPath, accessToken, MobileServiceRestManager.getManager());
+                    return AzureAADHelper.executePollRequest(AzureSDKHelper.getManagementEndpoint(managementUri), path,
+                            contentType, method, postData, pollPath, accessToken, MobileServiceRestManager.getManager());
                 }
             });
         }
     }
 
     @NotNull
-    private <T> T requestComputeSDK(@NotNull final String subscriptionId,
+    private <T> T requestComputeSDK(@NotNull String operation,
+                                    @NotNull final String subscriptionId,
                                     @NotNull final SDKRequestCallback<T, ComputeManagementClient> requestCallback)
             throws AzureCmdException {
-        return requestAzureSDK(subscriptionId, requestCallback, new AzureSDKClientProvider<ComputeManagementClient>() {
+        return requestAzureSDK(operation, subscriptionId, requestCallback, new AzureSDKClientProvider<ComputeManagementClient>() {
             @NotNull
             @Override
             public ComputeManagementClient getSSLClient(@NotNull Subscription subscription)
@@ -1882,10 +1594,11 @@ public class AzureManagerImpl implements AzureManager {
     }
 
     @NotNull
-    private <T> T requestStorageSDK(@NotNull final String subscriptionId,
+    private <T> T requestStorageSDK(@NotNull String operation,
+                                    @NotNull final String subscriptionId,
                                     @NotNull final SDKRequestCallback<T, StorageManagementClient> requestCallback)
             throws AzureCmdException {
-        return requestAzureSDK(subscriptionId, requestCallback, new AzureSDKClientProvider<StorageManagementClient>() {
+        return requestAzureSDK(operation, subscriptionId, requestCallback, new AzureSDKClientProvider<StorageManagementClient>() {
             @NotNull
             @Override
             public StorageManagementClient getSSLClient(@NotNull Subscription subscription)
@@ -1905,10 +1618,11 @@ public class AzureManagerImpl implements AzureManager {
     }
 
     @NotNull
-    private <T> T requestNetworkSDK(@NotNull final String subscriptionId,
+    private <T> T requestNetworkSDK(@NotNull String operation,
+                                    @NotNull final String subscriptionId,
                                     @NotNull final SDKRequestCallback<T, NetworkManagementClient> requestCallback)
             throws AzureCmdException {
-        return requestAzureSDK(subscriptionId, requestCallback, new AzureSDKClientProvider<NetworkManagementClient>() {
+        return requestAzureSDK(operation, subscriptionId, requestCallback, new AzureSDKClientProvider<NetworkManagementClient>() {
             @NotNull
             @Override
             public NetworkManagementClient getSSLClient(@NotNull Subscription subscription)
@@ -1928,10 +1642,11 @@ public class AzureManagerImpl implements AzureManager {
     }
 
     @NotNull
-    private <T> T requestManagementSDK(@NotNull final String subscriptionId,
+    private <T> T requestManagementSDK(@NotNull String operation,
+                                       @NotNull final String subscriptionId,
                                        @NotNull final SDKRequestCallback<T, ManagementClient> requestCallback)
             throws AzureCmdException {
-        return requestAzureSDK(subscriptionId, requestCallback, new AzureSDKClientProvider<ManagementClient>() {
+        return requestAzureSDK(operation, subscriptionId, requestCallback, new AzureSDKClientProvider<ManagementClient>() {
             @NotNull
             @Override
             public ManagementClient getSSLClient(@NotNull Subscription subscription)
@@ -1951,10 +1666,36 @@ public class AzureManagerImpl implements AzureManager {
     }
 
     @NotNull
-    private <T, V extends Closeable> T requestAzureSDK(@NotNull final String subscriptionId,
+    private <T, V extends Closeable> T requestAzureSDK(@NotNull String operation,
+                                                       @NotNull final String subscriptionId,
                                                        @NotNull final SDKRequestCallback<T, V> requestCallback,
                                                        @NotNull final AzureSDKClientProvider<V> clientProvider)
             throws AzureCmdException {
+        ServiceMetrics metrics = ServiceMetrics.getManager();
+        long start = metrics.start();
+        boolean failed = true;
+
+        try {
+            T result = RequestScheduler.getManager().execute(subscriptionId, new RequestScheduler.Request<T>() {
+                @Override
+                public T execute() throws AzureCmdException {
+                    return sendAzureSDKRequest(subscriptionId, requestCallback, clientProvider);
+                }
+            });
+            failed = false;
+            return result;
+        } finally {
+            if (start != 0) {
+                metrics.record(subscriptionId, "SDK " + operation, start, failed, 0, 0);
+            }
+        }
+    }
+
+    @NotNull
+    private <T, V extends Closeable> T sendAzureSDKRequest(@NotNull final String subscriptionId,
+                                                           @NotNull final SDKRequestCallback<T, V> requestCallback,
+                                                           @NotNull final AzureSDKClientProvider<V> clientProvider)
+            throws AzureCmdException {
         if (hasSSLSocketFactory(subscriptionId)) {
             try {
                 Subscription subscription = getSubscription(subscriptionId);
@@ -1983,20 +1724,7 @@ public class AzureManagerImpl implements AzureManager {
                         @NotNull
                         @Override
                         public T execute(@NotNull String accessToken) throws Throwable {
-                            if (!hasAccessToken(userInfo) ||
-                                    !accessToken.equals(getAccessToken(userInfo))) {
-                                ReentrantReadWriteLock userLock = getUserLock(userInfo, true);
-                                userLock.writeLock().lock();
-
-                                try {
-                                    if (!hasAccessToken(userInfo) ||
-                                            !accessToken.equals(getAccessToken(userInfo))) {
-                                        setAccessToken(userInfo, accessToken);
-                                    }
-                                } finally {
-                                    userLock.writeLock().unlock();
-                                }
-                            }
+                            setAccessToken(userInfo, accessToken);
 
                             V client = clientProvider.getAADClient(subscriptionId, accessToken);
 
@@ -2025,20 +1753,7 @@ public class AzureManagerImpl implements AzureManager {
                     @NotNull
                     @Override
                     public T execute(@NotNull String accessToken) throws Throwable {
-                        if (!hasAccessToken(userInfo) ||
-                                !accessToken.equals(getAccessToken(userInfo))) {
-                            ReentrantReadWriteLock userLock = getUserLock(userInfo, true);
-                            userLock.writeLock().lock();
-
-                            try {
-                                if (!hasAccessToken(userInfo) ||
-                                        !accessToken.equals(getAccessToken(userInfo))) {
-                                    setAccessToken(userInfo, accessToken);
-                                }
-                            } finally {
-                                userLock.writeLock().unlock();
-                            }
-                        }
+                        setAccessToken(userInfo, accessToken);
 
                         return requestCallback.execute();
                     }
@@ -2050,6 +1765,19 @@ public class AzureManagerImpl implements AzureManager {
                 aadRequestCB);
     }
 
+    @NotNull
+    private static String getStorageKeysCacheKey(@NotNull StorageAccount storageAccount) {
+        return storageAccount.getSubscriptionId() + "/" + storageAccount.getName();
+    }
+
+    @NotNull
+    private static SimpleDateFormat createLogDateFormat(@NotNull String pattern) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, Locale.ENGLISH);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        return dateFormat;
+    }
+
     @NotNull
     private static String readFile(@NotNull String filePath)
             throws IOException {
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+/**
+ * An error status returned by the management service, keeping the status code and the delay asked
+ * for by a Retry-After header so throttled requests can be rescheduled.
+ */
+public class AzureServiceException extends AzureCmdException {
+    private final int statusCode;
+    private final long retryAfterMillis;
+
+    public AzureServiceException(String message, String errorLog, int statusCode, long retryAfterMillis) {
+        super(message, errorLog);
+
+        this.statusCode = statusCode;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * The delay requested by the service before retrying, or -1 when the response had no Retry-After header.
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+}
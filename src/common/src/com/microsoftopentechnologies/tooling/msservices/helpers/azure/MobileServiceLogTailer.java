@@ -0,0 +1,248 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.collections.BoundedRingBuffer;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.LogEntry;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.LogEntryPage;
+
+import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls the log of a mobile service and appends entries that have not been seen yet to a bounded
+ * ring buffer. Each poll only asks the service for entries from the newest one seen so far on,
+ * following continuation tokens after a burst. The poll interval shrinks back to the minimum as
+ * soon as new entries show up and doubles on every idle poll, so a quiet service is queried rarely
+ * and a busy one is followed closely.
+ */
+public class MobileServiceLogTailer {
+    public interface LogTailListener {
+        void entriesAdded(@NotNull List<LogEntry> entries);
+
+        void pollFailed(@NotNull AzureCmdException ex);
+    }
+
+    private static final long MIN_INTERVAL_MS = 2000;
+    private static final long MAX_INTERVAL_MS = 30000;
+    private static final int INITIAL_PAGE_SIZE = 100;
+    private static final int PAGE_SIZE = 50;
+    // the most entries a single poll follows continuation tokens for, to bound catching up after a burst
+    private static final int MAX_ENTRIES_PER_POLL = 500;
+
+    private static final Comparator<LogEntry> TIME_CREATED_COMPARATOR = new Comparator<LogEntry>() {
+        @Override
+        public int compare(LogEntry e1, LogEntry e2) {
+            return timeOf(e1) < timeOf(e2) ? -1 : (timeOf(e1) == timeOf(e2) ? 0 : 1);
+        }
+    };
+
+    private final String subscriptionId;
+    private final String mobileServiceName;
+    private final String runtime;
+    private final BoundedRingBuffer<LogEntry> buffer;
+
+    private final Object stateLock = new Object();
+    // identifies the current run, so polls of a stopped (or restarted) tailer drop their results
+    private Object session;
+    private ScheduledFuture<?> pendingPoll;
+    private LogTailListener listener;
+    private long intervalMs = MIN_INTERVAL_MS;
+
+    // entries sharing the newest seen timestamp, used to drop duplicates on the next poll
+    private long lastTimeCreated = Long.MIN_VALUE;
+    private Set<String> lastKeys = new HashSet<String>();
+
+    public MobileServiceLogTailer(@NotNull String subscriptionId, @NotNull String mobileServiceName,
+                                  @NotNull String runtime, int capacity) {
+        this.subscriptionId = subscriptionId;
+        this.mobileServiceName = mobileServiceName;
+        this.runtime = runtime;
+        this.buffer = new BoundedRingBuffer<LogEntry>(capacity);
+    }
+
+    @NotNull
+    public BoundedRingBuffer<LogEntry> getBuffer() {
+        return buffer;
+    }
+
+    public void start(@NotNull LogTailListener listener) {
+        synchronized (stateLock) {
+            if (session != null) {
+                return;
+            }
+
+            this.listener = listener;
+            intervalMs = MIN_INTERVAL_MS;
+            session = new Object();
+            schedule(0);
+        }
+    }
+
+    public void stop() {
+        synchronized (stateLock) {
+            if (session != null) {
+                pendingPoll.cancel(true);
+                pendingPoll = null;
+                session = null;
+                listener = null;
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        synchronized (stateLock) {
+            return session != null;
+        }
+    }
+
+    private void schedule(long delayMs) {
+        synchronized (stateLock) {
+            if (session == null) {
+                return;
+            }
+
+            final Object current = session;
+
+            pendingPoll = ExecutionService.getManager().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poll(current);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void poll(@NotNull Object owner) {
+        List<LogEntry> newEntries;
+        AzureCmdException error = null;
+
+        try {
+            newEntries = fetchNewEntries();
+        } catch (AzureCmdException ex) {
+            newEntries = Collections.emptyList();
+            error = ex;
+        }
+
+        LogTailListener currentListener;
+
+        synchronized (stateLock) {
+            if (session != owner) {
+                // stopped (or restarted) while the request was in flight
+                return;
+            }
+
+            currentListener = listener;
+
+            if (error != null || newEntries.isEmpty()) {
+                intervalMs = error != null ? MAX_INTERVAL_MS : Math.min(intervalMs * 2, MAX_INTERVAL_MS);
+            } else {
+                intervalMs = MIN_INTERVAL_MS;
+            }
+        }
+
+        try {
+            if (error != null) {
+                currentListener.pollFailed(error);
+            } else if (!newEntries.isEmpty()) {
+                buffer.addAll(newEntries);
+                currentListener.entriesAdded(newEntries);
+            }
+        } finally {
+            // a failing listener must not end the tail
+            schedule(intervalMs);
+        }
+    }
+
+    @NotNull
+    private List<LogEntry> fetchNewEntries()
+            throws AzureCmdException {
+        // only ask for entries from the watermark on; the entries sharing the watermark's time stamp
+        // come back again and are dropped by selectNewEntries
+        Date since = lastTimeCreated != Long.MIN_VALUE ? new Date(lastTimeCreated) : null;
+        List<LogEntry> newEntries = new ArrayList<LogEntry>();
+        String continuationToken = null;
+        int fetched = 0;
+
+        do {
+            LogEntryPage page = AzureManagerImpl.getManager().listLog(subscriptionId, mobileServiceName, runtime,
+                    since, continuationToken, since != null ? PAGE_SIZE : INITIAL_PAGE_SIZE);
+
+            newEntries.addAll(selectNewEntries(page.getEntries()));
+            fetched += page.getEntries().size();
+            continuationToken = page.getContinuationToken();
+            // the first poll only shows the latest page, it doesn't page through the whole history
+        } while (continuationToken != null && since != null && fetched < MAX_ENTRIES_PER_POLL);
+
+        Collections.sort(newEntries, TIME_CREATED_COMPARATOR);
+        advanceWatermark(newEntries);
+
+        return newEntries;
+    }
+
+    @NotNull
+    private List<LogEntry> selectNewEntries(@NotNull List<LogEntry> page) {
+        List<LogEntry> newEntries = new ArrayList<LogEntry>();
+
+        for (LogEntry entry : page) {
+            long time = timeOf(entry);
+
+            if (time > lastTimeCreated || (time == lastTimeCreated && !lastKeys.contains(keyOf(entry)))) {
+                newEntries.add(entry);
+            }
+        }
+
+        return newEntries;
+    }
+
+    private void advanceWatermark(@NotNull List<LogEntry> newEntries) {
+        if (newEntries.isEmpty()) {
+            return;
+        }
+
+        long newest = timeOf(newEntries.get(newEntries.size() - 1));
+
+        if (newest != lastTimeCreated) {
+            lastTimeCreated = newest;
+            lastKeys = new HashSet<String>();
+        }
+
+        for (LogEntry entry : newEntries) {
+            if (timeOf(entry) == newest) {
+                lastKeys.add(keyOf(entry));
+            }
+        }
+    }
+
+    private static long timeOf(@NotNull LogEntry entry) {
+        Date timeCreated = entry.getTimeCreated();
+        return timeCreated != null ? timeCreated.getTime() : Long.MIN_VALUE;
+    }
+
+    @NotNull
+    private static String keyOf(@NotNull LogEntry entry) {
+        return nullToEmpty(entry.getType()) + '\n' + nullToEmpty(entry.getSource()) + '\n' + nullToEmpty(entry.getMessage());
+    }
+
+    @NotNull
+    private static String nullToEmpty(@Nullable String value) {
+        return value == null ? "" : value;
+    }
+}
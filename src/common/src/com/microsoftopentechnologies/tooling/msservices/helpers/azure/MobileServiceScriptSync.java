@@ -0,0 +1,428 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.*;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventStateHandle;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Synchronizes every table, custom API and job script of a mobile service with the local script
+ * folder used by the service explorer editors.
+ * <p/>
+ * A manifest stored next to the scripts remembers the content hash of each script as of the last
+ * sync. Scripts whose local hash differs from the manifest were edited locally and are uploaded;
+ * everything else is refreshed from the service, writing files only when the remote hash changed.
+ * Table scripts also report their size, which lets unchanged ones be skipped without a download.
+ */
+public class MobileServiceScriptSync {
+    public static class SyncResult {
+        private final List<String> downloaded = new ArrayList<String>();
+        private final List<String> uploaded = new ArrayList<String>();
+        private final List<String> unchanged = new ArrayList<String>();
+        private final List<String> conflicts = new ArrayList<String>();
+        private final List<String> openInEditor = new ArrayList<String>();
+        private final Map<String, Throwable> failures = new LinkedHashMap<String, Throwable>();
+
+        @NotNull
+        public List<String> getDownloaded() {
+            return downloaded;
+        }
+
+        @NotNull
+        public List<String> getUploaded() {
+            return uploaded;
+        }
+
+        @NotNull
+        public List<String> getUnchanged() {
+            return unchanged;
+        }
+
+        /**
+         * Scripts changed both locally and remotely since the last sync; they are left untouched.
+         */
+        @NotNull
+        public List<String> getConflicts() {
+            return conflicts;
+        }
+
+        /**
+         * Scripts with remote changes that were not downloaded because the local file is open in an editor.
+         */
+        @NotNull
+        public List<String> getOpenInEditor() {
+            return openInEditor;
+        }
+
+        @NotNull
+        public Map<String, Throwable> getFailures() {
+            return failures;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d downloaded, %d uploaded, %d unchanged, %d conflicts, %d open in an editor, %d failed",
+                    downloaded.size(), uploaded.size(), unchanged.size(), conflicts.size(), openInEditor.size(),
+                    failures.size());
+        }
+    }
+
+    private static class ManifestEntry {
+        private String hash;
+        private long remoteBytes = -1;
+    }
+
+    private static class Manifest {
+        private Map<String, ManifestEntry> entries = new HashMap<String, ManifestEntry>();
+    }
+
+    private enum ScriptKind {
+        Table, API, Job
+    }
+
+    private static class ScriptItem {
+        private final ScriptKind kind;
+        private final String scriptName;
+        private final File localFile;
+        private final long remoteBytes;
+
+        private ScriptItem(ScriptKind kind, String scriptName, File localFile, long remoteBytes) {
+            this.kind = kind;
+            this.scriptName = scriptName;
+            this.localFile = localFile;
+            this.remoteBytes = remoteBytes;
+        }
+
+        private String getKey() {
+            return kind + "/" + scriptName;
+        }
+    }
+
+    private static final String MANIFEST_FILE_NAME = ".scripts-manifest.json";
+    private static final int DEFAULT_MAX_CONCURRENCY = 4;
+
+    private final AzureManager manager;
+    private final Object project;
+    private final MobileService mobileService;
+    private final int maxConcurrency;
+    private final List<File> writtenFiles = Collections.synchronizedList(new ArrayList<File>());
+
+    public MobileServiceScriptSync(@Nullable Object project, @NotNull MobileService mobileService) {
+        this(AzureManagerImpl.getManager(), project, mobileService, DEFAULT_MAX_CONCURRENCY);
+    }
+
+    /**
+     * @param project the project whose open editors are protected from being overwritten, or null
+     *                when the sync runs outside of the IDE
+     */
+    public MobileServiceScriptSync(@NotNull AzureManager manager, @Nullable Object project,
+                                   @NotNull MobileService mobileService, int maxConcurrency) {
+        this.manager = manager;
+        this.project = project;
+        this.mobileService = mobileService;
+        this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    @NotNull
+    public SyncResult sync()
+            throws AzureCmdException {
+        return sync(null);
+    }
+
+    /**
+     * Syncs the scripts, skipping the ones not started yet once {@code cancelled} is triggered.
+     */
+    @NotNull
+    public SyncResult sync(@Nullable final EventStateHandle cancelled)
+            throws AzureCmdException {
+        final File manifestFile = new File(getServiceDirPath(), MANIFEST_FILE_NAME);
+        final Manifest manifest = readManifest(manifestFile);
+        final SyncResult result = new SyncResult();
+
+        ExecutorService executor = Executors.newFixedThreadPool(maxConcurrency, new ThreadFactoryBuilder()
+                .setNameFormat("Script sync " + mobileService.getName() + " %d")
+                .setDaemon(true)
+                .build());
+
+        try {
+            List<ScriptItem> items = listScripts(executor);
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+
+            for (final ScriptItem item : items) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancelled != null && cancelled.isEventTriggered()) {
+                            return;
+                        }
+
+                        ManifestEntry entry;
+
+                        synchronized (manifest) {
+                            entry = manifest.entries.get(item.getKey());
+                        }
+
+                        try {
+                            ManifestEntry updated = syncScript(item, entry, result);
+
+                            if (updated != null) {
+                                synchronized (manifest) {
+                                    manifest.entries.put(item.getKey(), updated);
+                                }
+                            }
+                        } catch (Throwable t) {
+                            synchronized (result) {
+                                result.failures.put(item.scriptName, t);
+                            }
+                        }
+                    }
+                }));
+            }
+
+            waitAll(futures);
+        } finally {
+            executor.shutdownNow();
+
+            if (project != null && !writtenFiles.isEmpty()) {
+                // editors of the project reload the scripts we rewrote
+                DefaultLoader.getIdeHelper().refreshFiles(new ArrayList<File>(writtenFiles));
+            }
+        }
+
+        writeManifest(manifestFile, manifest);
+
+        return result;
+    }
+
+    @NotNull
+    private List<ScriptItem> listScripts(@NotNull ExecutorService executor)
+            throws AzureCmdException {
+        final String subscriptionId = mobileService.getSubcriptionId();
+        final String serviceName = mobileService.getName();
+        final List<ScriptItem> items = Collections.synchronizedList(new ArrayList<ScriptItem>());
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        for (final Table table : manager.getTableList(subscriptionId, serviceName)) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (Script script : manager.getTableScriptList(subscriptionId, serviceName, table.getName())) {
+                        items.add(new ScriptItem(ScriptKind.Table, script.getName(),
+                                new File(script.getLocalFilePath(serviceName)), script.getBytes()));
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for (CustomAPI api : manager.getAPIList(subscriptionId, serviceName)) {
+            items.add(new ScriptItem(ScriptKind.API, api.getName(), new File(api.getLocalFilePath(serviceName)), -1));
+        }
+
+        for (Job job : manager.listJobs(subscriptionId, serviceName)) {
+            items.add(new ScriptItem(ScriptKind.Job, job.getName(), new File(job.getLocalFilePath(serviceName)), -1));
+        }
+
+        waitAll(futures);
+
+        return new ArrayList<ScriptItem>(items);
+    }
+
+    @Nullable
+    private ManifestEntry syncScript(@NotNull ScriptItem item, @Nullable ManifestEntry entry,
+                                     @NotNull SyncResult result)
+            throws AzureCmdException, IOException {
+        String localHash = item.localFile.exists() ? hash(Files.toString(item.localFile, Charsets.UTF_8)) : null;
+        boolean localModified = entry != null && localHash != null && !localHash.equals(entry.hash);
+
+        if (!localModified && entry != null && localHash != null && item.remoteBytes >= 0
+                && item.remoteBytes == entry.remoteBytes) {
+            // size reported by the listing matches the last sync, no need to fetch the script
+            addTo(result.unchanged, item);
+            return entry;
+        }
+
+        String remote = getScript(item);
+        String remoteHash = hash(remote);
+
+        ManifestEntry updated = new ManifestEntry();
+        updated.remoteBytes = item.remoteBytes;
+
+        if (localModified) {
+            if (!remoteHash.equals(entry.hash)) {
+                addTo(result.conflicts, item);
+                return entry;
+            }
+
+            uploadScript(item);
+            updated.hash = localHash;
+            addTo(result.uploaded, item);
+        } else if (remoteHash.equals(localHash)) {
+            updated.hash = remoteHash;
+            addTo(result.unchanged, item);
+        } else if (entry == null && localHash != null) {
+            // a local copy that predates the manifest, we can't tell which side is newer
+            addTo(result.conflicts, item);
+            return null;
+        } else if (isOpenInEditor(item.localFile)) {
+            // don't pull the file from under an editor; the next sync picks the change up
+            addTo(result.openInEditor, item);
+            return entry;
+        } else {
+            File dir = item.localFile.getParentFile();
+
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create directory " + dir.getPath());
+            }
+
+            Files.write(remote, item.localFile, Charsets.UTF_8);
+            writtenFiles.add(item.localFile);
+            updated.hash = remoteHash;
+            addTo(result.downloaded, item);
+        }
+
+        return updated;
+    }
+
+    private boolean isOpenInEditor(@NotNull File file) {
+        return project != null && file.exists() && DefaultLoader.getIdeHelper().isFileEditing(project, file);
+    }
+
+    @NotNull
+    private String getScript(@NotNull ScriptItem item)
+            throws AzureCmdException {
+        String subscriptionId = mobileService.getSubcriptionId();
+        String serviceName = mobileService.getName();
+
+        switch (item.kind) {
+            case Table:
+                return manager.getTableScript(subscriptionId, serviceName, item.scriptName);
+            case API:
+                return manager.getAPIScript(subscriptionId, serviceName, item.scriptName);
+            default:
+                return manager.getJobScript(subscriptionId, serviceName, item.scriptName);
+        }
+    }
+
+    private void uploadScript(@NotNull ScriptItem item)
+            throws AzureCmdException {
+        String subscriptionId = mobileService.getSubcriptionId();
+        String serviceName = mobileService.getName();
+        String filePath = item.localFile.getPath();
+
+        switch (item.kind) {
+            case Table:
+                manager.uploadTableScript(subscriptionId, serviceName, item.scriptName, filePath);
+                break;
+            case API:
+                manager.uploadAPIScript(subscriptionId, serviceName, item.scriptName, filePath);
+                break;
+            default:
+                manager.uploadJobScript(subscriptionId, serviceName, item.scriptName, filePath);
+        }
+    }
+
+    @NotNull
+    private String getServiceDirPath() {
+        String tmpdir = System.getProperty("java.io.tmpdir");
+        StringBuilder sb = new StringBuilder();
+        sb.append(tmpdir);
+
+        if (!tmpdir.endsWith(File.separator))
+            sb.append(File.separator);
+
+        sb.append("TempAzure");
+        sb.append(File.separator);
+        sb.append(mobileService.getName());
+
+        return sb.toString();
+    }
+
+    @NotNull
+    private static Manifest readManifest(@NotNull File manifestFile) {
+        if (manifestFile.exists()) {
+            try {
+                Manifest manifest = new Gson().fromJson(Files.toString(manifestFile, Charsets.UTF_8), Manifest.class);
+
+                if (manifest != null && manifest.entries != null) {
+                    return manifest;
+                }
+            } catch (Throwable ignored) {
+                // a corrupt manifest only costs a full sync
+            }
+        }
+
+        return new Manifest();
+    }
+
+    private static void writeManifest(@NotNull File manifestFile, @NotNull Manifest manifest)
+            throws AzureCmdException {
+        try {
+            File dir = manifestFile.getParentFile();
+
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create directory " + dir.getPath());
+            }
+
+            Files.write(new Gson().toJson(manifest), manifestFile, Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new AzureCmdException("Error writing script manifest", e);
+        }
+    }
+
+    private static void waitAll(@NotNull List<Future<?>> futures)
+            throws AzureCmdException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AzureCmdException("Script sync interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AzureCmdException) {
+                throw (AzureCmdException) e.getCause();
+            }
+
+            throw new AzureCmdException("Error listing scripts", e.getCause());
+        }
+    }
+
+    @NotNull
+    private static String hash(@NotNull String content) {
+        return Hashing.sha1().hashString(content, Charsets.UTF_8).toString();
+    }
+
+    private static void addTo(@NotNull List<String> list, @NotNull ScriptItem item) {
+        synchronized (list) {
+            list.add(item.scriptName);
+        }
+    }
+}
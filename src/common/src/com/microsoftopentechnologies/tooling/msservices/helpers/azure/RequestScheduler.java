@@ -0,0 +1,496 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.microsoft.windowsazure.core.pipeline.filter.ServiceRequestContext;
+import com.microsoft.windowsazure.core.pipeline.filter.ServiceRequestFilter;
+import com.microsoft.windowsazure.core.pipeline.filter.ServiceResponseContext;
+import com.microsoft.windowsazure.core.pipeline.filter.ServiceResponseFilter;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Schedules management requests per subscription so parallel refreshes back off together instead of
+ * each one running into throttling on its own.
+ * <p/>
+ * Every subscription gets a token bucket bounding the request rate and an adaptive concurrency limit:
+ * each successful request raises the limit by 1/limit, while a 429 or 503 response halves it and
+ * pauses the subscription for the Retry-After delay, or a jittered exponential backoff when the
+ * service gives none. A subscription that keeps failing with throttling, server or connection errors
+ * trips a circuit breaker, which fails requests right away until a trial request goes through again.
+ * <p/>
+ * Tokens and concurrency slots are taken for single HTTP exchanges, never for a whole operation, so an
+ * operation that makes several calls, or starts another operation, doesn't hold a slot while it waits.
+ * REST calls go through {@link #send} inside {@link #execute}; management SDK clients are scheduled by the
+ * filter from {@link #getFilter}. Only a throttled exchange is sent again, since the service rejected it
+ * without acting on it; operations are never replayed.
+ * <p/>
+ * An SDK exchange that fails to connect never reaches the response filter. Its slot is given back when
+ * the thread that sent it sends another exchange, when the enclosing {@link #execute} or {@link #wrap}
+ * task ends, or, for exchanges sent on threads of the SDK itself, once its lease has run out.
+ */
+public class RequestScheduler {
+    public interface Request<T> {
+        T execute() throws AzureCmdException;
+    }
+
+    /**
+     * A single HTTP exchange. Each call to {@link #send} makes a new connection, so a throttled exchange can be
+     * sent again.
+     */
+    public interface Exchange<T> {
+        @NotNull
+        T send() throws IOException, AzureCmdException;
+
+        int getStatusCode(@NotNull T response);
+
+        /**
+         * The value of the Retry-After header of the response, or null when there is none.
+         */
+        @Nullable
+        String getRetryAfter(@NotNull T response);
+    }
+
+    private static final int BUCKET_CAPACITY = 10;
+    private static final double TOKENS_PER_SECOND = 5;
+    private static final double INITIAL_CONCURRENCY = 4;
+    private static final double MAX_CONCURRENCY = 16;
+    private static final int MAX_THROTTLED_RETRIES = 4;
+    private static final long BACKOFF_BASE_MILLIS = 1000;
+    private static final long BACKOFF_MAX_MILLIS = 30 * 1000;
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    private static final long BREAKER_OPEN_MILLIS = 30 * 1000;
+    private static final long BREAKER_MAX_OPEN_MILLIS = 5 * 60 * 1000;
+    private static final long EXCHANGE_LEASE_MILLIS = 5 * 60 * 1000;
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String EXCHANGE_PROPERTY = RequestScheduler.class.getName() + ".exchange";
+
+    private static final Random random = new Random();
+
+    private static class SubscriptionLane {
+        private final String subscriptionId;
+
+        private double tokens = BUCKET_CAPACITY;
+        private long lastRefill = System.currentTimeMillis();
+        private double concurrencyLimit = INITIAL_CONCURRENCY;
+        private int inFlight;
+        private long pausedUntil;
+
+        private int consecutiveFailures;
+        private long breakerOpenUntil;
+        private long breakerOpenMillis = BREAKER_OPEN_MILLIS;
+        private boolean trialInFlight;
+
+        private final Set<OpenExchange> openExchanges = new HashSet<OpenExchange>();
+
+        private SubscriptionLane(@NotNull String subscriptionId) {
+            this.subscriptionId = subscriptionId;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(BUCKET_CAPACITY, tokens + (now - lastRefill) * TOKENS_PER_SECOND / 1000);
+            lastRefill = now;
+        }
+    }
+
+    /**
+     * The slot an SDK exchange holds between its request and response filters. It is kept in the context of
+     * the request, so the response filter gives back the slot of its own exchange whatever thread it runs on.
+     */
+    private static class OpenExchange {
+        private final SubscriptionLane lane;
+        private final boolean trial;
+        private final long leaseEnd;
+
+        private OpenExchange(@NotNull SubscriptionLane lane, boolean trial, long leaseEnd) {
+            this.lane = lane;
+            this.trial = trial;
+            this.leaseEnd = leaseEnd;
+        }
+    }
+
+    /**
+     * Schedules the HTTP exchanges of a management SDK client.
+     */
+    public class SchedulingFilter implements ServiceRequestFilter, ServiceResponseFilter {
+        private final String subscriptionId;
+
+        private SchedulingFilter(@NotNull String subscriptionId) {
+            this.subscriptionId = subscriptionId;
+        }
+
+        @Override
+        public void filter(ServiceRequestContext request) {
+            closeOpenExchange();
+
+            SubscriptionLane lane = getLane(subscriptionId);
+            OpenExchange exchange;
+
+            try {
+                exchange = open(lane);
+            } catch (AzureCmdException e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+
+            request.setProperty(EXCHANGE_PROPERTY, exchange);
+            openExchange.set(exchange);
+        }
+
+        @Override
+        public void filter(ServiceRequestContext request, ServiceResponseContext response) {
+            // the SDK passes no request context here, its properties are shared with the response context
+            Object exchange = response.getProperty(EXCHANGE_PROPERTY);
+
+            if (exchange instanceof OpenExchange) {
+                close((OpenExchange) exchange, response.getStatus(),
+                        parseRetryAfterMillis(response.getHeader(RETRY_AFTER_HEADER)));
+            }
+        }
+    }
+
+    private static RequestScheduler instance;
+
+    private final Map<String, SubscriptionLane> lanes = new HashMap<String, SubscriptionLane>();
+    private final ThreadLocal<String> currentSubscription = new ThreadLocal<String>();
+    private final ThreadLocal<OpenExchange> openExchange = new ThreadLocal<OpenExchange>();
+
+    private final long exchangeLeaseMillis;
+
+    private RequestScheduler() {
+        this(EXCHANGE_LEASE_MILLIS);
+    }
+
+    RequestScheduler(long exchangeLeaseMillis) {
+        this.exchangeLeaseMillis = exchangeLeaseMillis;
+    }
+
+    @NotNull
+    public static synchronized RequestScheduler getManager() {
+        if (instance == null) {
+            instance = new RequestScheduler();
+        }
+
+        return instance;
+    }
+
+    /**
+     * Runs an operation of the subscription once, scheduling the REST exchanges it makes through
+     * {@link #send} on this thread.
+     */
+    public <T> T execute(@NotNull String subscriptionId, @NotNull Request<T> request)
+            throws AzureCmdException {
+        String previous = currentSubscription.get();
+        currentSubscription.set(subscriptionId);
+
+        try {
+            return request.execute();
+        } finally {
+            closeOpenExchange();
+
+            if (previous != null) {
+                currentSubscription.set(previous);
+            } else {
+                currentSubscription.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns a task that runs {@code task} and then gives back the slot of an SDK exchange it sent that never
+     * got a response. SDK calls made on another thread than the one of the enclosing {@link #execute} must
+     * run in such a task.
+     */
+    @NotNull
+    public Runnable wrap(@NotNull final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    closeOpenExchange();
+                }
+            }
+        };
+    }
+
+    /**
+     * Sends a single HTTP exchange in the slot of the subscription of the enclosing {@link #execute}, or right
+     * away outside of one. A throttled exchange is sent again once the subscription's pause is over, up to a
+     * few times, after which the throttled response is returned.
+     */
+    @NotNull
+    public <T> T send(@NotNull Exchange<T> exchange)
+            throws IOException, AzureCmdException {
+        String subscriptionId = currentSubscription.get();
+
+        if (subscriptionId == null) {
+            return exchange.send();
+        }
+
+        SubscriptionLane lane = getLane(subscriptionId);
+
+        for (int attempt = 0; ; attempt++) {
+            boolean trial = acquire(lane);
+            int statusCode = -1;
+            long retryAfterMillis = -1;
+
+            try {
+                T response = exchange.send();
+                statusCode = exchange.getStatusCode(response);
+                retryAfterMillis = parseRetryAfterMillis(exchange.getRetryAfter(response));
+
+                if (!isThrottled(statusCode) || attempt >= MAX_THROTTLED_RETRIES) {
+                    return response;
+                }
+            } catch (IOException e) {
+                statusCode = 0;
+                throw e;
+            } finally {
+                onResponse(lane, statusCode, retryAfterMillis, trial);
+                release(lane);
+            }
+        }
+    }
+
+    /**
+     * Returns a filter scheduling every HTTP exchange of a management SDK client of the subscription. It
+     * must be added both as a request filter and as a response filter.
+     */
+    @NotNull
+    public SchedulingFilter getFilter(@NotNull String subscriptionId) {
+        return new SchedulingFilter(subscriptionId);
+    }
+
+    /**
+     * Returns how long to wait before retrying attempt {@code attempt} (starting at 0), honouring the
+     * delay asked for by the service when there is one. The backoff is fully jittered so clients that
+     * were throttled together don't retry together.
+     */
+    public static long getRetryDelayMillis(long retryAfterMillis, int attempt) {
+        long ceiling = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(attempt, 20));
+        long backoff = (long) (random.nextDouble() * ceiling);
+
+        return Math.max(retryAfterMillis, backoff);
+    }
+
+    public static boolean isThrottled(int statusCode) {
+        return statusCode == 429 || statusCode == 503;
+    }
+
+    /**
+     * Parses a Retry-After header, either a number of seconds or an HTTP date, returning -1 when there
+     * is none.
+     */
+    public static long parseRetryAfterMillis(@Nullable String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        String value = retryAfter.trim();
+
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException ignored) {
+        }
+
+        try {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+            return Math.max(0, format.parse(value).getTime() - System.currentTimeMillis());
+        } catch (ParseException ignored) {
+        }
+
+        return -1;
+    }
+
+    @NotNull
+    private synchronized SubscriptionLane getLane(@NotNull String subscriptionId) {
+        SubscriptionLane lane = lanes.get(subscriptionId);
+
+        if (lane == null) {
+            lane = new SubscriptionLane(subscriptionId);
+            lanes.put(subscriptionId, lane);
+        }
+
+        return lane;
+    }
+
+    /**
+     * The number of exchanges of the subscription holding a slot.
+     */
+    int getInFlight(@NotNull String subscriptionId) {
+        SubscriptionLane lane = getLane(subscriptionId);
+
+        synchronized (lane) {
+            return lane.inFlight;
+        }
+    }
+
+    /**
+     * Gives back the slot of the last SDK exchange of this thread if it never got a response, counting it as a
+     * connection failure.
+     */
+    private void closeOpenExchange() {
+        OpenExchange exchange = openExchange.get();
+
+        if (exchange != null) {
+            openExchange.remove();
+            close(exchange, 0, -1);
+        }
+    }
+
+    @NotNull
+    private OpenExchange open(@NotNull SubscriptionLane lane)
+            throws AzureCmdException {
+        synchronized (lane) {
+            boolean trial = acquire(lane);
+            OpenExchange exchange = new OpenExchange(lane, trial, System.currentTimeMillis() + exchangeLeaseMillis);
+            lane.openExchanges.add(exchange);
+
+            return exchange;
+        }
+    }
+
+    /**
+     * Gives back the slot of an SDK exchange, unless it was given back already.
+     */
+    private static void close(@NotNull OpenExchange exchange, int statusCode, long retryAfterMillis) {
+        synchronized (exchange.lane) {
+            if (!exchange.lane.openExchanges.remove(exchange)) {
+                return;
+            }
+
+            onResponse(exchange.lane, statusCode, retryAfterMillis, exchange.trial);
+            release(exchange.lane);
+        }
+    }
+
+    /**
+     * Gives back the slots of SDK exchanges whose lease has run out, counting them as connection failures.
+     */
+    private static void closeExpiredExchanges(@NotNull SubscriptionLane lane, long now) {
+        synchronized (lane) {
+            for (OpenExchange exchange : new ArrayList<OpenExchange>(lane.openExchanges)) {
+                if (now >= exchange.leaseEnd) {
+                    close(exchange, 0, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for a free slot and a token, returning whether the exchange is the trial of a half open breaker.
+     */
+    private static boolean acquire(@NotNull SubscriptionLane lane)
+            throws AzureCmdException {
+        synchronized (lane) {
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    boolean trial = false;
+
+                    closeExpiredExchanges(lane, now);
+
+                    if (lane.consecutiveFailures >= BREAKER_FAILURE_THRESHOLD) {
+                        if (now < lane.breakerOpenUntil) {
+                            throw new AzureCmdException(String.format("Requests to subscription %s are suspended " +
+                                    "after repeated failures, retrying in %d seconds", lane.subscriptionId,
+                                    (lane.breakerOpenUntil - now + 999) / 1000));
+                        }
+
+                        // half open, a single request decides whether the breaker closes
+                        trial = true;
+                    }
+
+                    lane.refill(now);
+                    long wait = 0;
+
+                    if (now < lane.pausedUntil) {
+                        wait = lane.pausedUntil - now;
+                    } else if (lane.inFlight >= Math.floor(lane.concurrencyLimit) || (trial && lane.trialInFlight)) {
+                        wait = BACKOFF_BASE_MILLIS;
+                    } else if (lane.tokens < 1) {
+                        wait = (long) Math.ceil((1 - lane.tokens) * 1000 / TOKENS_PER_SECOND);
+                    } else {
+                        lane.tokens--;
+                        lane.inFlight++;
+                        lane.trialInFlight |= trial;
+                        return trial;
+                    }
+
+                    // woken up early by releases and successes
+                    lane.wait(Math.max(wait, 1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AzureCmdException("Interrupted while waiting to send request", e);
+            }
+        }
+    }
+
+    private static void release(@NotNull SubscriptionLane lane) {
+        synchronized (lane) {
+            lane.inFlight--;
+            lane.notifyAll();
+        }
+    }
+
+    /**
+     * Adjusts the lane to the outcome of an exchange: its HTTP status, 0 for a connection error or -1 when
+     * it failed before anything was sent.
+     */
+    private static void onResponse(@NotNull SubscriptionLane lane, int statusCode, long retryAfterMillis,
+                                   boolean trial) {
+        synchronized (lane) {
+            if (trial) {
+                lane.trialInFlight = false;
+            }
+
+            if (statusCode >= 200 && statusCode < 400) {
+                lane.concurrencyLimit = Math.min(MAX_CONCURRENCY, lane.concurrencyLimit + 1 / lane.concurrencyLimit);
+                lane.consecutiveFailures = 0;
+                lane.breakerOpenMillis = BREAKER_OPEN_MILLIS;
+            } else if (isThrottled(statusCode) || statusCode == 0 || statusCode >= 500) {
+                if (isThrottled(statusCode)) {
+                    lane.concurrencyLimit = Math.max(1, lane.concurrencyLimit / 2);
+                    lane.pausedUntil = Math.max(lane.pausedUntil,
+                            System.currentTimeMillis() + getRetryDelayMillis(retryAfterMillis, lane.consecutiveFailures));
+                }
+
+                lane.consecutiveFailures++;
+
+                if (lane.consecutiveFailures >= BREAKER_FAILURE_THRESHOLD) {
+                    if (trial) {
+                        lane.breakerOpenMillis = Math.min(BREAKER_MAX_OPEN_MILLIS, lane.breakerOpenMillis * 2);
+                    }
+
+                    lane.breakerOpenUntil = System.currentTimeMillis() + lane.breakerOpenMillis;
+                }
+            } else if (trial && statusCode > 0) {
+                // the service answered, so it is reachable again
+                lane.consecutiveFailures = 0;
+                lane.breakerOpenMillis = BREAKER_OPEN_MILLIS;
+            }
+
+            lane.notifyAll();
+        }
+    }
+}
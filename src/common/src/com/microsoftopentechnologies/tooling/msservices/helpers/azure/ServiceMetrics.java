@@ -0,0 +1,551 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.gson.GsonBuilder;
+import com.microsoftopentechnologies.tooling.msservices.components.AppSettingsNames;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.StringHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.StorageClientRegistry;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts management and storage requests per subscription or storage account and operation,
+ * along with their latency distribution, bytes transferred, failures and retries.
+ * <p/>
+ * Recording is off by default. While disabled {@link #start()} returns 0 and the record methods
+ * return right away, so instrumented call sites only pay for a volatile read. Latencies go into
+ * log-linear histograms with 8 sub-buckets per power of two, keeping percentiles within 12.5% of
+ * the recorded values at a fixed size per operation.
+ */
+public class ServiceMetrics implements ServiceMetricsMXBean {
+    public static class OperationStats {
+        private final String tag;
+        private final String operation;
+        private final long count;
+        private final long errors;
+        private final long retries;
+        private final long bytesIn;
+        private final long bytesOut;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p90Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        private OperationStats(@NotNull String tag, @NotNull String operation, @NotNull Stats stats) {
+            this.tag = tag;
+            this.operation = operation;
+            this.count = stats.count.get();
+            this.errors = stats.errors.get();
+            this.retries = stats.retries.get();
+            this.bytesIn = stats.bytesIn.get();
+            this.bytesOut = stats.bytesOut.get();
+            this.meanMillis = count > 0 ? toMillis(stats.totalMicros.get()) / count : 0;
+            this.maxMillis = toMillis(stats.maxMicros.get());
+            this.p50Millis = toMillis(stats.histogram.percentile(0.50, stats.maxMicros.get()));
+            this.p90Millis = toMillis(stats.histogram.percentile(0.90, stats.maxMicros.get()));
+            this.p99Millis = toMillis(stats.histogram.percentile(0.99, stats.maxMicros.get()));
+        }
+
+        /**
+         * The subscription id of management requests, or the account name of storage requests.
+         */
+        @NotNull
+        public String getTag() {
+            return tag;
+        }
+
+        @NotNull
+        public String getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        public long getBytesIn() {
+            return bytesIn;
+        }
+
+        public long getBytesOut() {
+            return bytesOut;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP90Millis() {
+            return p90Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        private static double toMillis(long micros) {
+            return micros / 1000.0;
+        }
+    }
+
+    private static class Snapshot {
+        private long timestamp;
+        private List<OperationStats> operations;
+    }
+
+    private static class Key {
+        private final String tag;
+        private final String operation;
+
+        private Key(@NotNull String tag, @NotNull String operation) {
+            this.tag = tag;
+            this.operation = operation;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+
+            if (!(o instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key) o;
+            return tag.equals(key.tag) && operation.equals(key.operation);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * tag.hashCode() + operation.hashCode();
+        }
+    }
+
+    private static class Histogram {
+        // values below 16 get a bucket each, larger ones 8 buckets per power of two up to 2^40 us
+        private static final int LINEAR_BUCKETS = 16;
+        private static final int SUB_BUCKET_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MIN_EXPONENT = 4;
+        private static final int MAX_EXPONENT = 40;
+        private static final int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - MIN_EXPONENT + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+        private void record(long micros) {
+            counts.incrementAndGet(getBucket(micros));
+        }
+
+        private long percentile(double fraction, long max) {
+            long total = 0;
+
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                total += counts.get(i);
+            }
+
+            long target = (long) Math.ceil(total * fraction);
+            long seen = 0;
+
+            for (int i = 0; i < BUCKET_COUNT && total > 0; i++) {
+                seen += counts.get(i);
+
+                if (seen >= target) {
+                    return Math.min(getBucketValue(i), max);
+                }
+            }
+
+            return 0;
+        }
+
+        private static int getBucket(long value) {
+            if (value < LINEAR_BUCKETS) {
+                return (int) Math.max(value, 0);
+            }
+
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+            if (exponent > MAX_EXPONENT) {
+                return BUCKET_COUNT - 1;
+            }
+
+            int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return LINEAR_BUCKETS + (exponent - MIN_EXPONENT) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long getBucketValue(int bucket) {
+            if (bucket < LINEAR_BUCKETS) {
+                return bucket;
+            }
+
+            int exponent = MIN_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+            int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+            // middle of the bucket
+            return (SUB_BUCKETS + subBucket) * width + width / 2;
+        }
+    }
+
+    private static class Stats {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+        private final AtomicLong bytesIn = new AtomicLong();
+        private final AtomicLong bytesOut = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+        private final Histogram histogram = new Histogram();
+
+        private void record(long micros, boolean failed, long in, long out) {
+            count.incrementAndGet();
+            totalMicros.addAndGet(micros);
+            histogram.record(micros);
+
+            long max = maxMicros.get();
+
+            while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+                max = maxMicros.get();
+            }
+
+            if (failed) {
+                errors.incrementAndGet();
+            }
+
+            if (in > 0) {
+                bytesIn.addAndGet(in);
+            }
+
+            if (out > 0) {
+                bytesOut.addAndGet(out);
+            }
+        }
+    }
+
+    private static final String MBEAN_NAME = "com.microsoftopentechnologies.tooling.msservices:type=ServiceMetrics";
+    private static final String DEFAULT_SNAPSHOT_FILE_NAME = "service-metrics.json";
+    private static final long SNAPSHOT_PERIOD_SECONDS = 60;
+
+    private static ServiceMetrics instance;
+
+    private volatile boolean enabled;
+    private final ConcurrentMap<Key, Stats> statsByKey = new ConcurrentHashMap<Key, Stats>();
+    private ScheduledFuture<?> snapshotTask;
+    private File snapshotFile;
+
+    private ServiceMetrics() {
+    }
+
+    @NotNull
+    public static synchronized ServiceMetrics getManager() {
+        if (instance == null) {
+            instance = new ServiceMetrics();
+
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(MBEAN_NAME);
+
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(instance, name);
+                }
+            } catch (Throwable ignored) {
+                // JMX is a convenience, metrics still work without it
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Restores the enabled state and snapshot file saved by a previous session.
+     */
+    public void loadSettings() {
+        String file = DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.SERVICE_METRICS_SNAPSHOT_FILE);
+
+        synchronized (this) {
+            snapshotFile = StringHelper.isNullOrWhiteSpace(file) ? null : new File(file);
+        }
+
+        setEnabled(Boolean.parseBoolean(
+                DefaultLoader.getIdeHelper().getProperty(AppSettingsNames.SERVICE_METRICS_ENABLED, "false")));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+
+        if (snapshotTask != null) {
+            snapshotTask.cancel(false);
+            snapshotTask = null;
+        }
+
+        if (enabled) {
+            snapshotTask = ExecutionService.getManager().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        writeSnapshot(getSnapshotFile());
+                    } catch (Throwable ignored) {
+                        // retried on the next period
+                    }
+                }
+            }, SNAPSHOT_PERIOD_SECONDS, SNAPSHOT_PERIOD_SECONDS, TimeUnit.SECONDS);
+        }
+
+        try {
+            DefaultLoader.getIdeHelper().setProperty(AppSettingsNames.SERVICE_METRICS_ENABLED, String.valueOf(enabled));
+        } catch (Throwable ignored) {
+            // the IDE helper is not set up when toggled through JMX outside the IDE
+        }
+    }
+
+    /**
+     * The file rewritten with a JSON snapshot every minute while recording is enabled.
+     */
+    @NotNull
+    public synchronized File getSnapshotFile() {
+        if (snapshotFile != null) {
+            return snapshotFile;
+        }
+
+        return new File(System.getProperty("java.io.tmpdir") + File.separator + "TempAzure", DEFAULT_SNAPSHOT_FILE_NAME);
+    }
+
+    public synchronized void setSnapshotFile(@Nullable File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+
+        if (snapshotFile != null) {
+            DefaultLoader.getIdeHelper().setProperty(AppSettingsNames.SERVICE_METRICS_SNAPSHOT_FILE,
+                    snapshotFile.getAbsolutePath());
+        } else {
+            DefaultLoader.getIdeHelper().unsetProperty(AppSettingsNames.SERVICE_METRICS_SNAPSHOT_FILE);
+        }
+    }
+
+    /**
+     * Returns the start time to hand to {@link #record}, or 0 when recording is disabled.
+     */
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void record(@NotNull String tag, @NotNull String operation, long startNanos, boolean failed,
+                       long bytesIn, long bytesOut) {
+        if (startNanos != 0 && enabled) {
+            getStats(tag, operation).record((System.nanoTime() - startNanos) / 1000, failed, bytesIn, bytesOut);
+        }
+    }
+
+    /**
+     * Records a request timed elsewhere, e.g. from the start and stop dates of a storage request result.
+     */
+    public void recordLatency(@NotNull String tag, @NotNull String operation, long latencyMillis, boolean failed,
+                              long bytesIn, long bytesOut) {
+        if (enabled) {
+            getStats(tag, operation).record(Math.max(latencyMillis, 0) * 1000, failed, bytesIn, bytesOut);
+        }
+    }
+
+    /**
+     * Adds bytes sent by a request whose completion is recorded separately.
+     */
+    public void recordBytesOut(@NotNull String tag, @NotNull String operation, long bytesOut) {
+        if (enabled && bytesOut > 0) {
+            getStats(tag, operation).bytesOut.addAndGet(bytesOut);
+        }
+    }
+
+    public void recordRetry(@NotNull String tag, @NotNull String operation) {
+        if (enabled) {
+            getStats(tag, operation).retries.incrementAndGet();
+        }
+    }
+
+    @NotNull
+    public List<OperationStats> snapshot() {
+        List<OperationStats> result = new ArrayList<OperationStats>();
+
+        for (Map.Entry<Key, Stats> entry : statsByKey.entrySet()) {
+            result.add(new OperationStats(entry.getKey().tag, entry.getKey().operation, entry.getValue()));
+        }
+
+        Collections.sort(result, new Comparator<OperationStats>() {
+            @Override
+            public int compare(OperationStats s1, OperationStats s2) {
+                int result = s1.getTag().compareTo(s2.getTag());
+                return result != 0 ? result : s1.getOperation().compareTo(s2.getOperation());
+            }
+        });
+
+        return result;
+    }
+
+    public void writeSnapshot(@NotNull File file)
+            throws AzureCmdException {
+        File tempFile = new File(file.getPath() + ".tmp");
+
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create directory " + dir.getPath());
+            }
+
+            Files.write(getSnapshotJson(), tempFile, Charsets.UTF_8);
+
+            if ((file.exists() && !file.delete()) || !tempFile.renameTo(file)) {
+                throw new IOException("Unable to replace " + file.getPath());
+            }
+        } catch (IOException e) {
+            throw new AzureCmdException("Error writing service metrics snapshot", e);
+        }
+    }
+
+    @Override
+    public String getSnapshotJson() {
+        Snapshot snapshot = new Snapshot();
+        snapshot.timestamp = System.currentTimeMillis();
+        snapshot.operations = snapshot();
+
+        return new GsonBuilder().setPrettyPrinting().create().toJson(snapshot);
+    }
+
+    @Override
+    public String[] getStorageRequestCounters() {
+        List<StorageClientRegistry.RequestCounters> counters = StorageClientRegistry.getRequestCounters();
+        String[] lines = new String[counters.size()];
+
+        for (int i = 0; i < lines.length; i++) {
+            lines[i] = counters.get(i).toString();
+        }
+
+        return lines;
+    }
+
+    @Override
+    public long getRequestCount() {
+        long total = 0;
+
+        for (Stats stats : statsByKey.values()) {
+            total += stats.count.get();
+        }
+
+        return total;
+    }
+
+    @Override
+    public long getErrorCount() {
+        long total = 0;
+
+        for (Stats stats : statsByKey.values()) {
+            total += stats.errors.get();
+        }
+
+        return total;
+    }
+
+    @Override
+    public long getRetryCount() {
+        long total = 0;
+
+        for (Stats stats : statsByKey.values()) {
+            total += stats.retries.get();
+        }
+
+        return total;
+    }
+
+    @Override
+    public long getBytesIn() {
+        long total = 0;
+
+        for (Stats stats : statsByKey.values()) {
+            total += stats.bytesIn.get();
+        }
+
+        return total;
+    }
+
+    @Override
+    public long getBytesOut() {
+        long total = 0;
+
+        for (Stats stats : statsByKey.values()) {
+            total += stats.bytesOut.get();
+        }
+
+        return total;
+    }
+
+    @Override
+    public void reset() {
+        statsByKey.clear();
+    }
+
+    @NotNull
+    private Stats getStats(@NotNull String tag, @NotNull String operation) {
+        Key key = new Key(tag, operation);
+        Stats stats = statsByKey.get(key);
+
+        if (stats == null) {
+            Stats newStats = new Stats();
+            stats = statsByKey.putIfAbsent(key, newStats);
+
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+
+        return stats;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+/**
+ * JMX view of {@link ServiceMetrics}, registered on the platform MBean server.
+ */
+public interface ServiceMetricsMXBean {
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getRequestCount();
+
+    long getErrorCount();
+
+    long getRetryCount();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    /**
+     * Per subscription/account and operation statistics, formatted as the JSON snapshot file.
+     */
+    String getSnapshotJson();
+
+    /**
+     * Request, failure and retry counts of each storage account, counted whether or not recording is enabled.
+     */
+    String[] getStorageRequestCounters();
+
+    void reset();
+}
@@ -0,0 +1,486 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Decodes mobile service management payloads straight into the service explorer model with a
+ * {@link JsonReader}, without binding them to intermediate transfer objects first. Unknown and null
+ * properties are skipped, so additions to the management API do not break decoding.
+ */
+public final class MobileServiceJsonReader {
+    private interface ElementReader<T> {
+        @NotNull
+        T read(@NotNull JsonReader reader)
+                throws IOException, ParseException;
+    }
+
+    private static final ElementReader<MobileService> MOBILE_SERVICE_READER = new ElementReader<MobileService>() {
+        @NotNull
+        @Override
+        public MobileService read(@NotNull JsonReader reader)
+                throws IOException, ParseException {
+            MobileService service = new MobileService();
+            service.setRuntime(MobileService.NODE_RUNTIME);
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("name")) {
+                    service.setName(reader.nextString());
+                } else if (name.equals("platform")) {
+                    if (reader.nextString().equals("dotNet")) {
+                        service.setRuntime(MobileService.NET_RUNTIME);
+                    }
+                } else if (name.equals("type")) {
+                    service.setType(reader.nextString());
+                } else if (name.equals("state")) {
+                    service.setState(reader.nextString());
+                } else if (name.equals("selflink")) {
+                    service.setSelfLink(reader.nextString());
+                } else if (name.equals("applicationUrl")) {
+                    service.setAppUrl(reader.nextString());
+                } else if (name.equals("applicationKey")) {
+                    service.setAppKey(reader.nextString());
+                } else if (name.equals("masterKey")) {
+                    service.setMasterKey(reader.nextString());
+                } else if (name.equals("webspace")) {
+                    service.setWebspace(reader.nextString());
+                } else if (name.equals("region")) {
+                    service.setRegion(reader.nextString());
+                } else if (name.equals("managementPortalLink")) {
+                    service.setMgmtPortalLink(reader.nextString());
+                } else if (name.equals("tables")) {
+                    service.getTables().addAll(readArray(reader, TABLE_READER));
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            return service;
+        }
+    };
+
+    private static final ElementReader<Table> TABLE_READER = new ElementReader<Table>() {
+        @NotNull
+        @Override
+        public Table read(@NotNull JsonReader reader)
+                throws IOException {
+            Table table = new Table();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("name")) {
+                    table.setName(reader.nextString());
+                } else if (name.equals("selflink")) {
+                    table.setSelfLink(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            return table;
+        }
+    };
+
+    private static final ElementReader<Column> COLUMN_READER = new ElementReader<Column>() {
+        @NotNull
+        @Override
+        public Column read(@NotNull JsonReader reader)
+                throws IOException {
+            Column column = new Column();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("name")) {
+                    column.setName(reader.nextString());
+                } else if (name.equals("type")) {
+                    column.setType(reader.nextString());
+                } else if (name.equals("selflink")) {
+                    column.setSelfLink(reader.nextString());
+                } else if (name.equals("indexed")) {
+                    column.setIndexed(reader.nextBoolean());
+                } else if (name.equals("zumoIndex")) {
+                    column.setZumoIndex(reader.nextBoolean());
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            return column;
+        }
+    };
+
+    private static final ElementReader<Script> SCRIPT_READER = new ElementReader<Script>() {
+        @NotNull
+        @Override
+        public Script read(@NotNull JsonReader reader)
+                throws IOException {
+            Script script = new Script();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("operation")) {
+                    script.setOperation(reader.nextString());
+                } else if (name.equals("selflink")) {
+                    script.setSelfLink(reader.nextString());
+                } else if (name.equals("sizeBytes")) {
+                    script.setBytes(reader.nextInt());
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            return script;
+        }
+    };
+
+    private static final ElementReader<CustomAPI> CUSTOM_API_READER = new ElementReader<CustomAPI>() {
+        @NotNull
+        @Override
+        public CustomAPI read(@NotNull JsonReader reader)
+                throws IOException {
+            CustomAPI api = new CustomAPI();
+            CustomAPIPermissions permissions = new CustomAPIPermissions();
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("name")) {
+                    api.setName(reader.nextString());
+                } else if (name.equals("get")) {
+                    permissions.setGetPermission(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("put")) {
+                    permissions.setPutPermission(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("post")) {
+                    permissions.setPostPermission(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("patch")) {
+                    permissions.setPatchPermission(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("delete")) {
+                    permissions.setDeletePermission(PermissionItem.getPermitionType(reader.nextString()));
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            api.setCustomAPIPermissions(permissions);
+
+            return api;
+        }
+    };
+
+    private static final ElementReader<Job> JOB_READER = new ElementReader<Job>() {
+        @NotNull
+        @Override
+        public Job read(@NotNull JsonReader reader)
+                throws IOException {
+            Job job = new Job();
+            String intervalUnit = null;
+            int intervalPeriod = 0;
+
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("id")) {
+                    job.setId(UUID.fromString(reader.nextString()));
+                } else if (name.equals("appName")) {
+                    job.setAppName(reader.nextString());
+                } else if (name.equals("name")) {
+                    job.setName(reader.nextString());
+                } else if (name.equals("status")) {
+                    job.setEnabled(reader.nextString().equals("enabled"));
+                } else if (name.equals("intervalUnit")) {
+                    intervalUnit = reader.nextString();
+                } else if (name.equals("intervalPeriod")) {
+                    intervalPeriod = reader.nextInt();
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+
+            if (intervalPeriod > 0) {
+                job.setIntervalPeriod(intervalPeriod);
+                job.setIntervalUnit(intervalUnit);
+            }
+
+            return job;
+        }
+    };
+
+    private MobileServiceJsonReader() {
+    }
+
+    @NotNull
+    public static List<MobileService> readMobileServices(@NotNull Reader in, @NotNull String subscriptionId)
+            throws IOException, ParseException {
+        List<MobileService> services = readDocument(in, MOBILE_SERVICE_READER);
+
+        for (MobileService service : services) {
+            service.setSubcriptionId(subscriptionId);
+        }
+
+        return services;
+    }
+
+    @NotNull
+    public static List<Table> readTables(@NotNull Reader in)
+            throws IOException, ParseException {
+        return readDocument(in, TABLE_READER);
+    }
+
+    @NotNull
+    public static Table readTable(@NotNull Reader in)
+            throws IOException, ParseException {
+        JsonReader reader = new JsonReader(in);
+
+        try {
+            return TABLE_READER.read(reader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @NotNull
+    public static TablePermissions readTablePermissions(@NotNull Reader in)
+            throws IOException {
+        JsonReader reader = new JsonReader(in);
+        TablePermissions permissions = new TablePermissions();
+
+        try {
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                } else if (name.equals("insert")) {
+                    permissions.setInsert(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("update")) {
+                    permissions.setUpdate(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("read")) {
+                    permissions.setRead(PermissionItem.getPermitionType(reader.nextString()));
+                } else if (name.equals("delete")) {
+                    permissions.setDelete(PermissionItem.getPermitionType(reader.nextString()));
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+
+        return permissions;
+    }
+
+    @NotNull
+    public static List<Column> readColumns(@NotNull Reader in)
+            throws IOException, ParseException {
+        return readDocument(in, COLUMN_READER);
+    }
+
+    /**
+     * Reads the scripts of a table; script names are qualified with the table name as the editors expect.
+     */
+    @NotNull
+    public static List<Script> readTableScripts(@NotNull Reader in, @NotNull String tableName)
+            throws IOException, ParseException {
+        List<Script> scripts = readDocument(in, SCRIPT_READER);
+
+        for (Script script : scripts) {
+            script.setName(String.format("%s.%s", tableName, script.getOperation()));
+        }
+
+        return scripts;
+    }
+
+    @NotNull
+    public static List<CustomAPI> readCustomAPIs(@NotNull Reader in)
+            throws IOException, ParseException {
+        return readDocument(in, CUSTOM_API_READER);
+    }
+
+    @NotNull
+    public static List<Job> readJobs(@NotNull Reader in)
+            throws IOException, ParseException {
+        return readDocument(in, JOB_READER);
+    }
+
+    /**
+     * Reads the entries of a log page. Unlike the other payloads the entries are wrapped in an object
+     * under "results", and the time stamp format differs between the node and .NET runtimes.
+     */
+    @NotNull
+    public static List<LogEntry> readLogEntries(@NotNull Reader in, @NotNull SimpleDateFormat dateFormat)
+            throws IOException, ParseException {
+        return readLogEntryPage(in, dateFormat).getEntries();
+    }
+
+    /**
+     * Reads a log page along with the continuation token the service adds when more entries match.
+     */
+    @NotNull
+    public static LogEntryPage readLogEntryPage(@NotNull Reader in, @NotNull final SimpleDateFormat dateFormat)
+            throws IOException, ParseException {
+        JsonReader reader = new JsonReader(in);
+        LogEntryPage page = new LogEntryPage();
+
+        try {
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (name.equals("results") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                    page.getEntries().addAll(readArray(reader, new ElementReader<LogEntry>() {
+                        @NotNull
+                        @Override
+                        public LogEntry read(@NotNull JsonReader reader)
+                                throws IOException, ParseException {
+                            return readLogEntry(reader, dateFormat);
+                        }
+                    }));
+                } else if (name.equals("continuationToken") && reader.peek() == JsonToken.STRING) {
+                    page.setContinuationToken(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+        } finally {
+            reader.close();
+        }
+
+        return page;
+    }
+
+    @NotNull
+    private static LogEntry readLogEntry(@NotNull JsonReader reader, @NotNull SimpleDateFormat dateFormat)
+            throws IOException, ParseException {
+        LogEntry logEntry = new LogEntry();
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+            } else if (name.equals("message")) {
+                logEntry.setMessage(reader.nextString());
+            } else if (name.equals("source")) {
+                logEntry.setSource(reader.nextString());
+            } else if (name.equals("type")) {
+                logEntry.setType(reader.nextString());
+            } else if (name.equals("timeCreated")) {
+                logEntry.setTimeCreated(dateFormat.parse(reader.nextString()));
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        return logEntry;
+    }
+
+    @NotNull
+    private static <T> List<T> readDocument(@NotNull Reader in, @NotNull ElementReader<T> elementReader)
+            throws IOException, ParseException {
+        JsonReader reader = new JsonReader(in);
+
+        try {
+            return readArray(reader, elementReader);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @NotNull
+    private static <T> List<T> readArray(@NotNull JsonReader reader, @NotNull ElementReader<T> elementReader)
+            throws IOException, ParseException {
+        List<T> res = new ArrayList<T>();
+
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return res;
+        }
+
+        reader.beginArray();
+
+        while (reader.hasNext()) {
+            res.add(elementReader.read(reader));
+        }
+
+        reader.endArray();
+
+        return res;
+    }
+}
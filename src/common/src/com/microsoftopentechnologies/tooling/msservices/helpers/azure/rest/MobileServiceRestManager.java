@@ -19,15 +19,19 @@ import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.helpers.XmlHelper;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureServiceException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.RequestScheduler;
 import org.w3c.dom.NodeList;
 
-import javax.net.ssl.HttpsURLConnection;
 import javax.xml.xpath.XPathConstants;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 
 public class MobileServiceRestManager extends RestServiceManagerBaseImpl {
+    private static final long POLL_INTERVAL_MILLIS = 2000;
+    private static final int MAX_THROTTLED_POLLS = 8;
+
     private static RestServiceManager instance;
 
     @NotNull
@@ -49,13 +53,11 @@ public class MobileServiceRestManager extends RestServiceManagerBaseImpl {
                                      @NotNull HttpsURLConnectionProvider sslConnectionProvider)
             throws AzureCmdException {
         try {
-            HttpsURLConnection sslConnection = sslConnectionProvider.getSSLConnection(managementUrl, path, contentType);
-            HttpResponse response = getResponse(method, postData, sslConnection);
+            HttpResponse response = sendRequest(managementUrl, path, contentType, method, postData, sslConnectionProvider);
             int code = response.getCode();
 
             if (code < 200 || code >= 300) {
-                throw new AzureCmdException(String.format("Error status code %s: %s", code, response.getMessage()),
-                        response.getContent());
+                throw createStatusException(response);
             } else {
                 if (code == 202) {
                     Map<String, List<String>> headers = response.getHeaders();
@@ -85,16 +87,21 @@ public class MobileServiceRestManager extends RestServiceManagerBaseImpl {
                                            @NotNull String operationPath,
                                            @NotNull HttpsURLConnectionProvider sslConnectionProvider)
             throws IOException, AzureCmdException {
+        int throttledPolls = 0;
+
         while (true) {
-            HttpsURLConnection sslConnection = sslConnectionProvider.getSSLConnection(managementUrl,
-                    operationPath, ContentType.Xml);
-            HttpResponse response = getResponse("GET", null, sslConnection);
+            HttpResponse response = sendRequest(managementUrl, operationPath, ContentType.Xml, "GET", null,
+                    sslConnectionProvider);
 
             int code = response.getCode();
 
-            if (code < 200 || code >= 300) {
-                throw new AzureCmdException(String.format("Error status code %s: %s", code, response.getMessage()),
-                        response.getContent());
+            if (RequestScheduler.isThrottled(code) && throttledPolls < MAX_THROTTLED_POLLS) {
+                // the operation is still running, poll again once the service lets us
+                AzureServiceException e = createStatusException(response);
+                sleep(RequestScheduler.getRetryDelayMillis(e.getRetryAfterMillis(), throttledPolls++));
+                continue;
+            } else if (code < 200 || code >= 300) {
+                throw createStatusException(response);
             } else {
                 String pollres = response.getContent();
 
@@ -120,11 +127,16 @@ public class MobileServiceRestManager extends RestServiceManagerBaseImpl {
 
             // wait for a while otherwise Azure complains with a
             // "too many requests received" error
-            try {
-                Thread.sleep(2000);
-            } catch (InterruptedException e) {
-                throw new AzureCmdException(e.getMessage(), e);
-            }
+            sleep(POLL_INTERVAL_MILLIS);
+        }
+    }
+
+    private static void sleep(long millis)
+            throws AzureCmdException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new AzureCmdException(e.getMessage(), e);
         }
     }
 
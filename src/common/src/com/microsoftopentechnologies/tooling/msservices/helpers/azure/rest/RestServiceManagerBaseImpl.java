@@ -21,6 +21,8 @@ import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureServiceException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.RequestScheduler;
 
 import javax.net.ssl.HttpsURLConnection;
 import java.io.*;
@@ -70,6 +72,7 @@ public abstract class RestServiceManagerBaseImpl implements RestServiceManager {
     private static final String X_MS_VERSION_HEADER = "x-ms-version";
     private static final String ACCEPT_HEADER = "Accept";
     private static final String CONTENT_TYPE_HEADER = "Content-Type";
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
 
     @NotNull
     public String executeRequest(@NotNull String managementUrl,
@@ -80,13 +83,11 @@ public abstract class RestServiceManagerBaseImpl implements RestServiceManager {
                                  @NotNull HttpsURLConnectionProvider sslConnectionProvider)
             throws AzureCmdException {
         try {
-            HttpsURLConnection sslConnection = sslConnectionProvider.getSSLConnection(managementUrl, path, contentType);
-            HttpResponse response = getResponse(method, postData, sslConnection);
+            HttpResponse response = sendRequest(managementUrl, path, contentType, method, postData, sslConnectionProvider);
             int code = response.getCode();
 
             if (code < 200 || code >= 300) {
-                throw new AzureCmdException(String.format("Error status code %s: %s", code, response.getMessage()),
-                        response.getContent());
+                throw createStatusException(response);
             }
 
             return response.getContent();
@@ -115,6 +116,39 @@ public abstract class RestServiceManagerBaseImpl implements RestServiceManager {
         }
     }
 
+    /**
+     * Sends a single request through the {@link RequestScheduler}, on a new connection for every attempt.
+     */
+    @NotNull
+    protected static HttpResponse sendRequest(@NotNull final String managementUrl,
+                                              @NotNull final String path,
+                                              @NotNull final ContentType contentType,
+                                              @NotNull final String method,
+                                              @Nullable final String postData,
+                                              @NotNull final HttpsURLConnectionProvider sslConnectionProvider)
+            throws IOException, AzureCmdException {
+        return RequestScheduler.getManager().send(new RequestScheduler.Exchange<HttpResponse>() {
+            @NotNull
+            @Override
+            public HttpResponse send() throws IOException, AzureCmdException {
+                HttpsURLConnection sslConnection = sslConnectionProvider.getSSLConnection(managementUrl, path, contentType);
+
+                return getResponse(method, postData, sslConnection);
+            }
+
+            @Override
+            public int getStatusCode(@NotNull HttpResponse response) {
+                return response.getCode();
+            }
+
+            @Nullable
+            @Override
+            public String getRetryAfter(@NotNull HttpResponse response) {
+                return getHeader(response, RETRY_AFTER_HEADER);
+            }
+        });
+    }
+
     @NotNull
     protected static HttpResponse getResponse(@NotNull final String method,
                                               @Nullable final String postData,
@@ -141,6 +175,26 @@ public abstract class RestServiceManagerBaseImpl implements RestServiceManager {
         }
     }
 
+    @NotNull
+    protected static AzureServiceException createStatusException(@NotNull HttpResponse response) {
+        return new AzureServiceException(
+                String.format("Error status code %s: %s", response.getCode(), response.getMessage()),
+                response.getContent(), response.getCode(),
+                RequestScheduler.parseRetryAfterMillis(getHeader(response, RETRY_AFTER_HEADER)));
+    }
+
+    @Nullable
+    private static String getHeader(@NotNull HttpResponse response, @NotNull String name) {
+        for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && header.getValue() != null
+                    && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+
+        return null;
+    }
+
     @NotNull
     private static String getPlatformUserAgent() {
         String version = DefaultLoader.getPluginComponent().getSettings().getPluginVersion();
@@ -1,74 +0,0 @@
-/**
- * Copyright 2014 Microsoft Open Technologies Inc.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- *  you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *   http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS,
- *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *  See the License for the specific language governing permissions and
- *  limitations under the License.
- */
-
-package com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.model;
-
-public class CustomAPIData {
-    private String name;
-    private String get;
-    private String put;
-    private String post;
-    private String patch;
-    private String delete;
-
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public String getGet() {
-        return get;
-    }
-
-    public void setGet(String get) {
-        this.get = get;
-    }
-
-    public String getPut() {
-        return put;
-    }
-
-    public void setPut(String put) {
-        this.put = put;
-    }
-
-    public String getPost() {
-        return post;
-    }
-
-    public void setPost(String post) {
-        this.post = post;
-    }
-
-    public String getPatch() {
-        return patch;
-    }
-
-    public void setPatch(String patch) {
-        this.patch = patch;
-    }
-
-    public String getDelete() {
-        return delete;
-    }
-
-    public void setDelete(String delete) {
-        this.delete = delete;
-    }
-}
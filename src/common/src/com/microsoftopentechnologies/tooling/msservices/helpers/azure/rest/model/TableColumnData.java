@@ -1,65 +0,0 @@
-/**
- * Copyright 2014 Microsoft Open Technologies Inc.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- *  you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *   http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- *  distributed under the License is distributed on an "AS IS" BASIS,
- *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *  See the License for the specific language governing permissions and
- *  limitations under the License.
- */
-
-package com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.model;
-
-public class TableColumnData {
-    private String name;
-    private String type;
-    private String selflink;
-    private boolean indexed;
-    private boolean zumoIndex;
-
-    public String getName() {
-        return name;
-    }
-
-    public void setName(String name) {
-        this.name = name;
-    }
-
-    public String getType() {
-        return type;
-    }
-
-    public void setType(String type) {
-        this.type = type;
-    }
-
-    public String getSelflink() {
-        return selflink;
-    }
-
-    public void setSelflink(String selflink) {
-        this.selflink = selflink;
-    }
-
-    public boolean isIndexed() {
-        return indexed;
-    }
-
-    public void setIndexed(boolean indexed) {
-        this.indexed = indexed;
-    }
-
-    public boolean isZumoIndex() {
-        return zumoIndex;
-    }
-
-    public void setZumoIndex(boolean zumoIndex) {
-        this.zumoIndex = zumoIndex;
-    }
-}
@@ -16,13 +16,13 @@
 package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
 
 import com.google.common.base.Strings;
-import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.blob.CloudBlobClient;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
 import com.microsoft.windowsazure.Configuration;
+import com.microsoft.windowsazure.core.FilterableService;
 import com.microsoft.windowsazure.core.OperationResponse;
 import com.microsoft.windowsazure.core.OperationStatus;
 import com.microsoft.windowsazure.core.OperationStatusResponse;
@@ -46,11 +46,14 @@ import com.microsoft.windowsazure.management.storage.StorageManagementClient;
 import com.microsoft.windowsazure.management.storage.StorageManagementService;
 import com.microsoft.windowsazure.management.storage.models.*;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.helpers.OpenSSLHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.StringHelper;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.RequestScheduler;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.StorageAccount;
 import com.microsoftopentechnologies.tooling.msservices.model.vm.*;
@@ -104,58 +107,43 @@ public class AzureSDKHelper {
         return new SDKRequestCallback<List<CloudService>, ComputeManagementClient>() {
             @NotNull
             @Override
-            public List<CloudService> execute(@NotNull ComputeManagementClient client)
+            public List<CloudService> execute(@NotNull final ComputeManagementClient client)
                     throws Throwable {
-                List<CloudService> csList = new ArrayList<CloudService>();
                 ArrayList<HostedServiceListResponse.HostedService> hostedServices = getHostedServices(client).getHostedServices();
 
                 if (hostedServices == null) {
-                    return csList;
+                    return new ArrayList<CloudService>();
                 }
 
-                for (HostedServiceListResponse.HostedService hostedService : hostedServices) {
-                    ListenableFuture<DeploymentGetResponse> productionFuture = getDeploymentAsync(
-                            client,
-                            hostedService.getServiceName(),
-                            DeploymentSlot.Production);
-                    ListenableFuture<DeploymentGetResponse> stagingFuture = getDeploymentAsync(
-                            client,
-                            hostedService.getServiceName(),
-                            DeploymentSlot.Staging);
-
-                    DeploymentGetResponse prodDGR = productionFuture.get();
-
-                    DeploymentGetResponse stagingDGR = stagingFuture.get();
-
-                    CloudService cloudService = new CloudService(
-                            hostedService.getServiceName() != null ? hostedService.getServiceName() : "",
-                            hostedService.getProperties() != null && hostedService.getProperties().getLocation() != null ?
-                                    hostedService.getProperties().getLocation() :
-                                    "",
-                            hostedService.getProperties() != null && hostedService.getProperties().getAffinityGroup() != null ?
-                                    hostedService.getProperties().getAffinityGroup() :
-                                    "",
-                            subscriptionId);
-
-                    loadDeployment(prodDGR, cloudService);
-
-                    cloudService = loadDeployment(prodDGR, cloudService);
-                    cloudService = loadDeployment(stagingDGR, cloudService);
-
-                    csList.add(cloudService);
-                }
-
-                return csList;
+                return ParallelRequestRunner.run(hostedServices, ParallelRequestRunner.DEFAULT_PARALLELISM,
+                        new ParallelRequestRunner.Request<HostedServiceListResponse.HostedService, CloudService>() {
+                            @NotNull
+                            @Override
+                            public CloudService execute(@NotNull HostedServiceListResponse.HostedService hostedService)
+                                    throws Throwable {
+                                return loadCloudService(client, subscriptionId, hostedService);
+                            }
+                        }, null);
             }
         };
     }
 
     @NotNull
     public static SDKRequestCallback<List<VirtualMachine>, ComputeManagementClient> getVirtualMachines(@NotNull final String subscriptionId) {
+        return getVirtualMachines(subscriptionId, null);
+    }
+
+    /**
+     * Loads the virtual machines of every hosted service in parallel. When a callback is given, it
+     * receives the machines of each hosted service as soon as that service has been loaded.
+     */
+    @NotNull
+    public static SDKRequestCallback<List<VirtualMachine>, ComputeManagementClient> getVirtualMachines(@NotNull final String subscriptionId,
+                                                                                                       @Nullable final CallableSingleArg<Void, List<VirtualMachine>> partialResults) {
         return new SDKRequestCallback<List<VirtualMachine>, ComputeManagementClient>() {
             @NotNull
             @Override
-            public List<VirtualMachine> execute(@NotNull ComputeManagementClient client)
+            public List<VirtualMachine> execute(@NotNull final ComputeManagementClient client)
                     throws Throwable {
                 List<VirtualMachine> vmList = new ArrayList<VirtualMachine>();
                 ArrayList<HostedServiceListResponse.HostedService> hostedServices = getHostedServices(client).getHostedServices();
@@ -164,9 +152,20 @@ public class AzureSDKHelper {
                     return vmList;
                 }
 
-                for (HostedServiceListResponse.HostedService hostedService : hostedServices) {
-                    String serviceName = hostedService.getServiceName() != null ? hostedService.getServiceName() : "";
-                    vmList = loadVirtualMachines(client, subscriptionId, serviceName, vmList);
+                List<List<VirtualMachine>> vmLists = ParallelRequestRunner.run(hostedServices,
+                        ParallelRequestRunner.DEFAULT_PARALLELISM,
+                        new ParallelRequestRunner.Request<HostedServiceListResponse.HostedService, List<VirtualMachine>>() {
+                            @NotNull
+                            @Override
+                            public List<VirtualMachine> execute(@NotNull HostedServiceListResponse.HostedService hostedService)
+                                    throws Throwable {
+                                String serviceName = hostedService.getServiceName() != null ? hostedService.getServiceName() : "";
+                                return loadVirtualMachines(client, subscriptionId, serviceName, new ArrayList<VirtualMachine>());
+                            }
+                        }, partialResults);
+
+                for (List<VirtualMachine> serviceVMs : vmLists) {
+                    vmList.addAll(serviceVMs);
                 }
 
                 return vmList;
@@ -338,14 +337,11 @@ public class AzureSDKHelper {
                     return saList;
                 }
 
-                List<ListenableFuture<StorageAccount>> saFutureList = new ArrayList<ListenableFuture<StorageAccount>>();
-
+                // keys are not needed to build the account list, they are fetched when an account is opened
                 for (com.microsoft.windowsazure.management.storage.models.StorageAccount storageAccount : storageAccounts) {
-                    saFutureList.add(getStorageAccountAsync(subscriptionId, client, storageAccount));
+                    saList.add(getStorageAccount(subscriptionId, client, storageAccount, false));
                 }
 
-                saList.addAll(Futures.allAsList(saFutureList).get());
-
                 return saList;
             }
         };
@@ -573,7 +569,7 @@ public class AzureSDKHelper {
                     throw new Exception("Invalid Storage Account information. No Storage Account matches the specified data.");
                 }
 
-                StorageAccount sa = getStorageAccount(storageAccount.getSubscriptionId(), client, sagr.getStorageAccount());
+                StorageAccount sa = getStorageAccount(storageAccount.getSubscriptionId(), client, sagr.getStorageAccount(), true);
                 storageAccount.setType(sa.getType());
                 storageAccount.setDescription(sa.getDescription());
                 storageAccount.setLabel(sa.getLabel());
@@ -591,6 +587,25 @@ public class AzureSDKHelper {
                 storageAccount.setSecondaryRegion(sa.getSecondaryRegion());
                 storageAccount.setSecondaryRegionStatus(sa.getSecondaryRegionStatus());
                 storageAccount.setLastFailover(sa.getLastFailover());
+                storageAccount.setKeysLoaded(true);
+
+                return storageAccount;
+            }
+        };
+    }
+
+    @NotNull
+    public static SDKRequestCallback<StorageAccount, StorageManagementClient> loadStorageAccountKeys(@NotNull final StorageAccount storageAccount) {
+        return new SDKRequestCallback<StorageAccount, StorageManagementClient>() {
+            @NotNull
+            @Override
+            public StorageAccount execute(@NotNull StorageManagementClient client)
+                    throws Throwable {
+                StorageAccountGetKeysResponse sak = getStorageAccountKeys(client, storageAccount.getName());
+
+                storageAccount.setPrimaryKey(Strings.nullToEmpty(sak.getPrimaryKey()));
+                storageAccount.setSecondaryKey(Strings.nullToEmpty(sak.getSecondaryKey()));
+                storageAccount.setKeysLoaded(true);
 
                 return storageAccount;
             }
@@ -660,7 +675,7 @@ public class AzureSDKHelper {
         // add a request filter for tacking on the A/D auth token if the current authentication
         // mode is active directory
         AuthTokenRequestFilter requestFilter = new AuthTokenRequestFilter(accessToken);
-        return client.withRequestFilterFirst(requestFilter);
+        return withRequestScheduling(client.withRequestFilterFirst(requestFilter), subscriptionId);
     }
 
     @NotNull
@@ -682,7 +697,7 @@ public class AzureSDKHelper {
             throw new AzureCmdException("Unable to instantiate Compute Management client");
         }
 
-        return client;
+        return withRequestScheduling(client, subscriptionId);
     }
 
     @NotNull
@@ -704,7 +719,7 @@ public class AzureSDKHelper {
         // add a request filter for tacking on the A/D auth token if the current authentication
         // mode is active directory
         AuthTokenRequestFilter requestFilter = new AuthTokenRequestFilter(accessToken);
-        return client.withRequestFilterFirst(requestFilter);
+        return withRequestScheduling(client.withRequestFilterFirst(requestFilter), subscriptionId);
     }
 
     @NotNull
@@ -726,7 +741,7 @@ public class AzureSDKHelper {
             throw new AzureCmdException("Unable to instantiate Storage Management client");
         }
 
-        return client;
+        return withRequestScheduling(client, subscriptionId);
     }
 
     @NotNull
@@ -748,7 +763,7 @@ public class AzureSDKHelper {
         // add a request filter for tacking on the A/D auth token if the current authentication
         // mode is active directory
         AuthTokenRequestFilter requestFilter = new AuthTokenRequestFilter(accessToken);
-        return client.withRequestFilterFirst(requestFilter);
+        return withRequestScheduling(client.withRequestFilterFirst(requestFilter), subscriptionId);
     }
 
     @NotNull
@@ -770,7 +785,7 @@ public class AzureSDKHelper {
             throw new AzureCmdException("Unable to instantiate Network Management client");
         }
 
-        return client;
+        return withRequestScheduling(client, subscriptionId);
     }
 
     @NotNull
@@ -792,7 +807,7 @@ public class AzureSDKHelper {
         // add a request filter for tacking on the A/D auth token if the current authentication
         // mode is active directory
         AuthTokenRequestFilter requestFilter = new AuthTokenRequestFilter(accessToken);
-        return client.withRequestFilterFirst(requestFilter);
+        return withRequestScheduling(client.withRequestFilterFirst(requestFilter), subscriptionId);
     }
 
     @NotNull
@@ -814,21 +829,64 @@ public class AzureSDKHelper {
             throw new AzureCmdException("Unable to instantiate Management client");
         }
 
-        return client;
+        return withRequestScheduling(client, subscriptionId);
+    }
+
+    /**
+     * Makes every HTTP exchange of the client wait for its turn in the {@link RequestScheduler} of the
+     * subscription. The filter is the last request filter, after the authentication one, and the first
+     * response filter.
+     */
+    @NotNull
+    private static <T extends FilterableService<T>> T withRequestScheduling(@NotNull T client,
+                                                                           @NotNull String subscriptionId) {
+        RequestScheduler.SchedulingFilter filter = RequestScheduler.getManager().getFilter(subscriptionId);
+
+        return client.withRequestFilterLast(filter).withResponseFilterFirst(filter);
     }
 
     @NotNull
     public static CloudStorageAccount getCloudStorageAccount(@NotNull ClientStorageAccount storageAccount)
-            throws URISyntaxException, InvalidKeyException {
+            throws URISyntaxException, InvalidKeyException, AzureCmdException {
+        if (storageAccount instanceof StorageAccount && !((StorageAccount) storageAccount).isKeysLoaded()) {
+            AzureManagerImpl.getManager().loadStorageAccountKeys((StorageAccount) storageAccount);
+        }
+
+        String endpointTemplate = DefaultLoader.getPluginComponent().getSettings().getStorageEndpointOverride();
+
+        if (!StringHelper.isNullOrWhiteSpace(endpointTemplate)) {
+            return CloudStorageAccount.parse(String.format(ClientStorageAccount.CUSTOM_CONN_STR_TEMPLATE,
+                    getStorageEndpoint(endpointTemplate, storageAccount.getName(), "blob"),
+                    getStorageEndpoint(endpointTemplate, storageAccount.getName(), "queue"),
+                    getStorageEndpoint(endpointTemplate, storageAccount.getName(), "table"),
+                    storageAccount.getName(),
+                    storageAccount.getPrimaryKey()));
+        }
+
         return CloudStorageAccount.parse(storageAccount.getConnectionString());
     }
 
+    /**
+     * Returns the endpoint management requests should be sent to: the override configured in the plugin
+     * settings if there is one, otherwise the given service management URI.
+     */
+    @NotNull
+    public static String getManagementEndpoint(@NotNull String serviceManagementUri) {
+        String override = DefaultLoader.getPluginComponent().getSettings().getManagementEndpointOverride();
+
+        return StringHelper.isNullOrWhiteSpace(override) ? serviceManagementUri : override;
+    }
+
+    @NotNull
+    private static String getStorageEndpoint(@NotNull String endpointTemplate, @NotNull String accountName,
+                                             @NotNull String service) {
+        return endpointTemplate.replace("{account}", accountName).replace("{service}", service);
+    }
+
     @NotNull
     private static CloudBlobClient getCloudBlobClient(@NotNull ClientStorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = getCloudStorageAccount(storageAccount);
-
-        return csa.createCloudBlobClient();
+        return StorageClientRegistry.getBlobClient(storageAccount);
     }
 
     @NotNull
@@ -983,7 +1041,7 @@ public class AzureSDKHelper {
                                                                               @NotNull final DeploymentSlot slot) {
         final SettableFuture<DeploymentGetResponse> future = SettableFuture.create();
 
-        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+        DefaultLoader.getIdeHelper().executeOnPooledThread(RequestScheduler.getManager().wrap(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -992,11 +1050,45 @@ public class AzureSDKHelper {
                     future.setException(e);
                 }
             }
-        });
+        }));
 
         return future;
     }
 
+    @NotNull
+    private static CloudService loadCloudService(@NotNull ComputeManagementClient client,
+                                                 @NotNull String subscriptionId,
+                                                 @NotNull HostedServiceListResponse.HostedService hostedService)
+            throws Exception {
+        ListenableFuture<DeploymentGetResponse> productionFuture = getDeploymentAsync(
+                client,
+                hostedService.getServiceName(),
+                DeploymentSlot.Production);
+        ListenableFuture<DeploymentGetResponse> stagingFuture = getDeploymentAsync(
+                client,
+                hostedService.getServiceName(),
+                DeploymentSlot.Staging);
+
+        DeploymentGetResponse prodDGR = productionFuture.get();
+
+        DeploymentGetResponse stagingDGR = stagingFuture.get();
+
+        CloudService cloudService = new CloudService(
+                hostedService.getServiceName() != null ? hostedService.getServiceName() : "",
+                hostedService.getProperties() != null && hostedService.getProperties().getLocation() != null ?
+                        hostedService.getProperties().getLocation() :
+                        "",
+                hostedService.getProperties() != null && hostedService.getProperties().getAffinityGroup() != null ?
+                        hostedService.getProperties().getAffinityGroup() :
+                        "",
+                subscriptionId);
+
+        cloudService = loadDeployment(prodDGR, cloudService);
+        cloudService = loadDeployment(stagingDGR, cloudService);
+
+        return cloudService;
+    }
+
     @NotNull
     private static DeploymentGetResponse getDeployment(@NotNull ComputeManagementClient client,
                                                        @NotNull String serviceName,
@@ -1037,35 +1129,15 @@ public class AzureSDKHelper {
         return salr;
     }
 
-    @NotNull
-    private static ListenableFuture<StorageAccount> getStorageAccountAsync(@NotNull final String subscriptionId,
-                                                                           @NotNull final StorageManagementClient client,
-                                                                           @NotNull final com.microsoft.windowsazure.management.storage.models.StorageAccount storageAccount)
-            throws Exception {
-        final SettableFuture<StorageAccount> future = SettableFuture.create();
-
-        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
-            @Override
-            public void run() {
-                try {
-                    future.set(getStorageAccount(subscriptionId, client, storageAccount));
-                } catch (Exception e) {
-                    future.setException(e);
-                }
-            }
-        });
-
-        return future;
-    }
-
     @NotNull
     private static StorageAccount getStorageAccount(@NotNull String subscriptionId,
                                                     @NotNull StorageManagementClient client,
-                                                    @NotNull com.microsoft.windowsazure.management.storage.models.StorageAccount storageAccount) throws Exception {
+                                                    @NotNull com.microsoft.windowsazure.management.storage.models.StorageAccount storageAccount,
+                                                    boolean loadKeys) throws Exception {
         String primaryKey = "";
         String secondaryKey = "";
 
-        if (storageAccount.getName() != null) {
+        if (loadKeys && storageAccount.getName() != null) {
             StorageAccountGetKeysResponse sak = getStorageAccountKeys(client, storageAccount.getName());
 
             primaryKey = sak.getPrimaryKey();
@@ -1115,6 +1187,7 @@ public class AzureSDKHelper {
         sa.setSecondaryRegion(Strings.nullToEmpty(sap.getGeoSecondaryRegion()));
         sa.setSecondaryRegionStatus(sap.getStatusOfGeoSecondaryRegion() != null ? sap.getStatusOfGeoSecondaryRegion().toString() : "");
         sa.setLastFailover(sap.getLastGeoFailoverTime() != null ? sap.getLastGeoFailoverTime() : new GregorianCalendar());
+        sa.setKeysLoaded(loadKeys);
 
         return sa;
     }
@@ -1167,8 +1240,8 @@ public class AzureSDKHelper {
     @Nullable
     private static OperationStatusResponse getOperationStatusResponse(@NotNull ComputeManagementClient client,
                                                                       @NotNull OperationResponse or)
-            throws InterruptedException, java.util.concurrent.ExecutionException, ServiceException {
-        OperationStatusResponse osr = client.getOperationStatusAsync(or.getRequestId()).get();
+            throws InterruptedException, IOException, ServiceException, ParserConfigurationException, SAXException {
+        OperationStatusResponse osr = client.getOperationStatus(or.getRequestId());
         int delayInSeconds = 30;
 
         if (client.getLongRunningOperationInitialTimeout() >= 0) {
@@ -1177,7 +1250,7 @@ public class AzureSDKHelper {
 
         while (osr.getStatus() == OperationStatus.InProgress) {
             Thread.sleep(delayInSeconds * 1000);
-            osr = client.getOperationStatusAsync(or.getRequestId()).get();
+            osr = client.getOperationStatus(or.getRequestId());
             delayInSeconds = 30;
 
             if (client.getLongRunningOperationRetryTimeout() >= 0) {
@@ -1202,8 +1275,8 @@ public class AzureSDKHelper {
     @Nullable
     private static OperationStatusResponse getOperationStatusResponse(@NotNull StorageManagementClient client,
                                                                       @NotNull OperationResponse or)
-            throws InterruptedException, java.util.concurrent.ExecutionException, ServiceException {
-        OperationStatusResponse osr = client.getOperationStatusAsync(or.getRequestId()).get();
+            throws InterruptedException, IOException, ServiceException, ParserConfigurationException, SAXException {
+        OperationStatusResponse osr = client.getOperationStatus(or.getRequestId());
         int delayInSeconds = 30;
 
         if (client.getLongRunningOperationInitialTimeout() >= 0) {
@@ -1212,7 +1285,7 @@ public class AzureSDKHelper {
 
         while (osr.getStatus() == OperationStatus.InProgress) {
             Thread.sleep(delayInSeconds * 1000);
-            osr = client.getOperationStatusAsync(or.getRequestId()).get();
+            osr = client.getOperationStatus(or.getRequestId());
             delayInSeconds = 30;
 
             if (client.getLongRunningOperationRetryTimeout() >= 0) {
@@ -1290,6 +1363,14 @@ public class AzureSDKHelper {
             throws Exception {
         DeploymentGetResponse deployment = getDeployment(client, serviceName, DeploymentSlot.Production);
 
+        return loadVirtualMachines(deployment, subscriptionId, serviceName, vmList);
+    }
+
+    @NotNull
+    static List<VirtualMachine> loadVirtualMachines(@NotNull DeploymentGetResponse deployment,
+                                                    @NotNull String subscriptionId,
+                                                    @NotNull String serviceName,
+                                                    @NotNull List<VirtualMachine> vmList) {
         if (deployment.getRoles() == null) {
             return vmList;
         }
@@ -1394,7 +1475,7 @@ public class AzureSDKHelper {
             @NotNull final ComputeManagementClient client) {
         final SettableFuture<List<VirtualMachineImage>> future = SettableFuture.create();
 
-        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+        DefaultLoader.getIdeHelper().executeOnPooledThread(RequestScheduler.getManager().wrap(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1403,7 +1484,7 @@ public class AzureSDKHelper {
                     future.setException(e);
                 }
             }
-        });
+        }));
 
         return future;
     }
@@ -1411,9 +1492,12 @@ public class AzureSDKHelper {
     @NotNull
     private static List<VirtualMachineImage> getOSImages(@NotNull ComputeManagementClient client)
             throws Exception {
-        List<VirtualMachineImage> vmImageList = new ArrayList<VirtualMachineImage>();
+        return getOSImages(getVirtualMachineOSImageOperations(client).list());
+    }
 
-        VirtualMachineOSImageListResponse osImages = getVirtualMachineOSImageOperations(client).list();
+    @NotNull
+    static List<VirtualMachineImage> getOSImages(@Nullable VirtualMachineOSImageListResponse osImages) {
+        List<VirtualMachineImage> vmImageList = new ArrayList<VirtualMachineImage>();
 
         if (osImages != null) {
             for (VirtualMachineOSImageListResponse.VirtualMachineOSImage osImage : osImages) {
@@ -1446,7 +1530,7 @@ public class AzureSDKHelper {
             @NotNull final ComputeManagementClient client) {
         final SettableFuture<List<VirtualMachineImage>> future = SettableFuture.create();
 
-        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+        DefaultLoader.getIdeHelper().executeOnPooledThread(RequestScheduler.getManager().wrap(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -1455,7 +1539,7 @@ public class AzureSDKHelper {
                     future.setException(e);
                 }
             }
-        });
+        }));
 
         return future;
     }
@@ -1463,9 +1547,12 @@ public class AzureSDKHelper {
     @NotNull
     private static List<VirtualMachineImage> getVMImages(@NotNull ComputeManagementClient client)
             throws Exception {
-        List<VirtualMachineImage> vmImageList = new ArrayList<VirtualMachineImage>();
+        return getVMImages(getVirtualMachineVMImageOperations(client).list());
+    }
 
-        VirtualMachineVMImageListResponse vmImages = getVirtualMachineVMImageOperations(client).list();
+    @NotNull
+    static List<VirtualMachineImage> getVMImages(@Nullable VirtualMachineVMImageListResponse vmImages) {
+        List<VirtualMachineImage> vmImageList = new ArrayList<VirtualMachineImage>();
 
         if (vmImages != null) {
             for (VirtualMachineVMImageListResponse.VirtualMachineVMImage vmImage : vmImages) {
@@ -1835,7 +1922,7 @@ public class AzureSDKHelper {
         try {
             // create a default configuration object
             Configuration configuration = ManagementConfiguration.configure(
-                    URI.create(azureServiceManagementUri),
+                    URI.create(getManagementEndpoint(azureServiceManagementUri)),
                     subscriptionId, null, null, KeyStoreType.pkcs12);
 
             if (configuration != null) {
@@ -1880,7 +1967,8 @@ public class AzureSDKHelper {
         Thread.currentThread().setContextClassLoader(AzureManagerImpl.class.getClassLoader());
 
         try {
-            return ManagementConfiguration.configure(URI.create(serviceManagementUrl), subscriptionId, keyStorePath,
+            return ManagementConfiguration.configure(URI.create(getManagementEndpoint(serviceManagementUrl)),
+                    subscriptionId, keyStorePath,
                     OpenSSLHelper.PASSWORD, KeyStoreType.pkcs12);
         } finally {
             Thread.currentThread().setContextClassLoader(old);
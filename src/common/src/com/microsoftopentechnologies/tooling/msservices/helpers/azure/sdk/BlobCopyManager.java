@@ -0,0 +1,302 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobCopyState;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobDirectory;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies blobs between containers and storage accounts with server side copies, so the content never
+ * travels through the IDE. Every copy is started and then polled for its status on the polling pool of
+ * the {@link ExecutionService}; the polling interval grows while a copy makes no progress.
+ */
+public class BlobCopyManager {
+    public interface CopyListener {
+        void copyChanged(@NotNull CopyJob job);
+    }
+
+    public static class CopyJob {
+        private final ClientStorageAccount sourceAccount;
+        private final BlobFile source;
+        private final ClientStorageAccount targetAccount;
+        private final String targetContainerName;
+        private final String targetPath;
+        private final CopyListener listener;
+
+        private volatile String copyId;
+        private volatile BlobCopyState state;
+        private volatile Throwable error;
+        private volatile boolean done;
+        private boolean cancelled;
+        private volatile long startTime;
+        private volatile long endTime;
+        private long pollDelay = MIN_POLL_DELAY_MILLIS;
+
+        private CopyJob(@NotNull ClientStorageAccount sourceAccount,
+                        @NotNull BlobFile source,
+                        @NotNull ClientStorageAccount targetAccount,
+                        @NotNull String targetContainerName,
+                        @NotNull String targetPath,
+                        @Nullable CopyListener listener) {
+            this.sourceAccount = sourceAccount;
+            this.source = source;
+            this.targetAccount = targetAccount;
+            this.targetContainerName = targetContainerName;
+            this.targetPath = targetPath;
+            this.listener = listener;
+        }
+
+        @NotNull
+        public BlobFile getSource() {
+            return source;
+        }
+
+        @NotNull
+        public String getTargetContainerName() {
+            return targetContainerName;
+        }
+
+        @NotNull
+        public String getTargetPath() {
+            return targetPath;
+        }
+
+        /**
+         * The last state reported by the service, or null while the copy is being started.
+         */
+        @Nullable
+        public BlobCopyState getState() {
+            return state;
+        }
+
+        /**
+         * The error that stopped the copy from being started or polled, if any.
+         */
+        @Nullable
+        public Throwable getError() {
+            return error;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isSucceeded() {
+            BlobCopyState current = state;
+            return done && error == null && current != null && current.getStatus() == BlobCopyState.Status.Success;
+        }
+
+        public long getBytesCopied() {
+            BlobCopyState current = state;
+            return current != null ? current.getBytesCopied() : 0;
+        }
+
+        public long getTotalBytes() {
+            BlobCopyState current = state;
+            return current != null && current.getTotalBytes() >= 0 ? current.getTotalBytes() : source.getSize();
+        }
+
+        /**
+         * The average copy throughput since the copy was started, in bytes per second.
+         */
+        public long getBytesPerSecond() {
+            if (startTime == 0) {
+                return 0;
+            }
+
+            long elapsed = (done ? endTime : System.currentTimeMillis()) - startTime;
+            return elapsed > 0 ? getBytesCopied() * 1000 / elapsed : 0;
+        }
+    }
+
+    private static final long MIN_POLL_DELAY_MILLIS = 1000;
+    private static final long MAX_POLL_DELAY_MILLIS = 15000;
+    private static final String DELIMITER = "/";
+
+    private final StorageClientSDKManager manager;
+
+    public BlobCopyManager() {
+        this(StorageClientSDKManagerImpl.getManager());
+    }
+
+    public BlobCopyManager(@NotNull StorageClientSDKManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * Starts copying a blob and returns immediately. The listener is called from the pool threads
+     * whenever the state of the copy changes.
+     */
+    @NotNull
+    public CopyJob copy(@NotNull ClientStorageAccount sourceAccount,
+                        @NotNull BlobFile source,
+                        @NotNull ClientStorageAccount targetAccount,
+                        @NotNull String targetContainerName,
+                        @NotNull String targetPath,
+                        @Nullable CopyListener listener) {
+        final CopyJob job = new CopyJob(sourceAccount, source, targetAccount, targetContainerName, targetPath, listener);
+
+        ExecutionService.getManager().submit(ExecutionService.Pool.IO, ExecutionService.Priority.User, new Runnable() {
+            @Override
+            public void run() {
+                start(job);
+            }
+        });
+
+        return job;
+    }
+
+    /**
+     * Starts copying every blob under a directory, keeping their paths relative to the target prefix.
+     */
+    @NotNull
+    public List<CopyJob> copyDirectory(@NotNull ClientStorageAccount sourceAccount,
+                                       @NotNull BlobDirectory source,
+                                       @NotNull ClientStorageAccount targetAccount,
+                                       @NotNull String targetContainerName,
+                                       @NotNull String targetPrefix,
+                                       @Nullable CopyListener listener)
+            throws AzureCmdException {
+        String prefix = targetPrefix.isEmpty() || targetPrefix.endsWith(DELIMITER) ? targetPrefix : targetPrefix + DELIMITER;
+        List<CopyJob> jobs = new ArrayList<CopyJob>();
+
+        for (BlobFile blobFile : manager.getBlobFiles(sourceAccount, source)) {
+            String relativePath = blobFile.getPath().substring(source.getPath().length());
+
+            if (!relativePath.isEmpty()) {
+                jobs.add(copy(sourceAccount, blobFile, targetAccount, targetContainerName, prefix + relativePath, listener));
+            }
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Cancels a copy. A copy still waiting to be started never starts; one the service is already
+     * performing is aborted, which leaves an empty target blob behind.
+     */
+    public void abort(@NotNull CopyJob job)
+            throws AzureCmdException {
+        String copyId;
+
+        // whichever of abort and start sees both the flag and the copy id sends the abort, never both
+        synchronized (job) {
+            job.cancelled = true;
+            copyId = job.copyId;
+        }
+
+        if (copyId != null && !job.done) {
+            manager.abortBlobCopy(job.targetAccount, job.targetContainerName, job.targetPath, job.source.getType(), copyId);
+        }
+    }
+
+    private void start(@NotNull CopyJob job) {
+        try {
+            if (job.isCancelled()) {
+                finish(job, new CancellationException("The Blob copy was cancelled before it started"));
+                return;
+            }
+
+            job.startTime = System.currentTimeMillis();
+            String copyId = manager.startBlobCopy(job.sourceAccount, job.source, job.targetAccount,
+                    job.targetContainerName, job.targetPath);
+            boolean cancelled;
+
+            synchronized (job) {
+                job.copyId = copyId;
+                cancelled = job.cancelled;
+            }
+
+            if (cancelled) {
+                manager.abortBlobCopy(job.targetAccount, job.targetContainerName, job.targetPath, job.source.getType(), copyId);
+            }
+
+            // copies within an account often complete synchronously
+            poll(job);
+        } catch (Throwable t) {
+            finish(job, t);
+        }
+    }
+
+    private void poll(@NotNull final CopyJob job) {
+        try {
+            BlobCopyState state = manager.getBlobCopyState(job.targetAccount, job.targetContainerName, job.targetPath,
+                    job.source.getType());
+
+            if (state == null || !state.getCopyId().equals(job.copyId)) {
+                throw new AzureCmdException("The Blob copy was replaced by another copy to the same Blob");
+            }
+
+            BlobCopyState previous = job.state;
+            job.state = state;
+
+            if (state.getStatus() != BlobCopyState.Status.Pending) {
+                finish(job, null);
+                return;
+            }
+
+            if (previous != null && previous.getBytesCopied() == state.getBytesCopied()) {
+                job.pollDelay = Math.min(MAX_POLL_DELAY_MILLIS, job.pollDelay * 2);
+            } else {
+                job.pollDelay = MIN_POLL_DELAY_MILLIS;
+            }
+
+            notifyListener(job);
+
+            ExecutionService.getManager().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    poll(job);
+                }
+            }, job.pollDelay, TimeUnit.MILLISECONDS);
+        } catch (Throwable t) {
+            finish(job, t);
+        }
+    }
+
+    private static void finish(@NotNull CopyJob job, @Nullable Throwable error) {
+        job.error = error;
+        job.endTime = System.currentTimeMillis();
+        job.done = true;
+
+        notifyListener(job);
+    }
+
+    private static void notifyListener(@NotNull CopyJob job) {
+        if (job.listener != null) {
+            try {
+                job.listener.copyChanged(job);
+            } catch (Throwable ignored) {
+                // a failing listener mustn't stop the polling of the other copies
+            }
+        }
+    }
+}
@@ -0,0 +1,476 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.CompactBlobList;
+
+import java.io.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local index of every blob in a container, kept in a file so that searching by name, size or date
+ * doesn't require walking the container folder by folder. The index is built from a flat listing and
+ * refreshed by listing again and comparing ETags, in which case the file is only rewritten if
+ * something was added, changed or removed.
+ */
+public class BlobIndex {
+    public interface ProgressListener {
+        void progress(int listedBlobs);
+
+        boolean isCancelled();
+    }
+
+    public static class RefreshResult {
+        private int added;
+        private int updated;
+        private int removed;
+        private boolean cancelled;
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getUpdated() {
+            return updated;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d added, %d updated, %d removed%s", added, updated, removed,
+                    cancelled ? ", cancelled" : "");
+        }
+    }
+
+    /**
+     * Search criteria, all of which have to match. Parsed from a space separated list of terms:
+     * {@code size>10MB}, {@code size<1GB}, {@code after:2015-01-31}, {@code before:2015-02-28}, globs
+     * such as {@code logs/*.txt} matched against the whole path, and anything else as a case
+     * insensitive substring of the path.
+     */
+    public static class Query {
+        private final List<String> substrings = new ArrayList<String>();
+        private final List<Pattern> globs = new ArrayList<Pattern>();
+        private long minSize = -1;
+        private long maxSize = -1;
+        private long modifiedAfter = -1;
+        private long modifiedBefore = -1;
+
+        @NotNull
+        public static Query parse(@NotNull String text)
+                throws AzureCmdException {
+            Query query = new Query();
+
+            for (String term : text.trim().split("\\s+")) {
+                String lower = term.toLowerCase(Locale.ENGLISH);
+
+                if (term.isEmpty()) {
+                    continue;
+                } else if (lower.startsWith("size>")) {
+                    query.minSize = parseSize(term.substring(5));
+                } else if (lower.startsWith("size<")) {
+                    query.maxSize = parseSize(term.substring(5));
+                } else if (lower.startsWith("after:")) {
+                    query.modifiedAfter = parseDate(term.substring(6));
+                } else if (lower.startsWith("before:")) {
+                    query.modifiedBefore = parseDate(term.substring(7));
+                } else if (term.contains("*") || term.contains("?")) {
+                    query.globs.add(toPattern(term));
+                } else {
+                    query.substrings.add(lower);
+                }
+            }
+
+            return query;
+        }
+
+        private boolean matches(@NotNull CompactBlobList blobs, int index) {
+            long size = blobs.getSize(index);
+
+            if ((minSize >= 0 && size <= minSize) || (maxSize >= 0 && size >= maxSize)) {
+                return false;
+            }
+
+            long lastModified = blobs.getLastModified(index);
+
+            if ((modifiedAfter >= 0 && lastModified < modifiedAfter)
+                    || (modifiedBefore >= 0 && lastModified >= modifiedBefore)) {
+                return false;
+            }
+
+            String path = blobs.getPath(index);
+
+            if (!substrings.isEmpty()) {
+                String lowerPath = path.toLowerCase(Locale.ENGLISH);
+
+                for (String substring : substrings) {
+                    if (!lowerPath.contains(substring)) {
+                        return false;
+                    }
+                }
+            }
+
+            for (Pattern glob : globs) {
+                if (!glob.matcher(path).matches()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static long parseSize(@NotNull String text)
+                throws AzureCmdException {
+            String upper = text.toUpperCase(Locale.ENGLISH);
+            long multiplier = 1;
+
+            if (upper.endsWith("KB")) {
+                multiplier = 1024L;
+            } else if (upper.endsWith("MB")) {
+                multiplier = 1024L * 1024;
+            } else if (upper.endsWith("GB")) {
+                multiplier = 1024L * 1024 * 1024;
+            } else if (upper.endsWith("TB")) {
+                multiplier = 1024L * 1024 * 1024 * 1024;
+            }
+
+            try {
+                String number = multiplier == 1 ? upper : upper.substring(0, upper.length() - 2);
+                return (long) (Double.parseDouble(number) * multiplier);
+            } catch (NumberFormatException e) {
+                throw new AzureCmdException("Invalid size " + text, e);
+            }
+        }
+
+        private static long parseDate(@NotNull String text)
+                throws AzureCmdException {
+            try {
+                return new SimpleDateFormat("yyyy-MM-dd").parse(text).getTime();
+            } catch (ParseException e) {
+                throw new AzureCmdException("Invalid date " + text + ", expected yyyy-MM-dd", e);
+            }
+        }
+
+        @NotNull
+        private static Pattern toPattern(@NotNull String glob) {
+            StringBuilder regex = new StringBuilder();
+            int start = 0;
+
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+
+                if (c == '*' || c == '?') {
+                    if (i > start) {
+                        regex.append(Pattern.quote(glob.substring(start, i)));
+                    }
+
+                    regex.append(c == '*' ? ".*" : ".");
+                    start = i + 1;
+                }
+            }
+
+            if (start < glob.length()) {
+                regex.append(Pattern.quote(glob.substring(start)));
+            }
+
+            return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+        }
+    }
+
+    private static final int FILE_MAGIC = 0x42494458;
+    private static final int FILE_VERSION = 1;
+    private static final String FILE_EXTENSION = ".idx";
+
+    private static final ConcurrentMap<String, BlobIndex> indexes = new ConcurrentHashMap<String, BlobIndex>();
+
+    private final File indexFile;
+    private final ClientStorageAccount storageAccount;
+    private final String containerName;
+
+    private volatile CompactBlobList blobs;
+    private volatile long builtTime;
+
+    private BlobIndex(@NotNull File indexFile, @NotNull ClientStorageAccount storageAccount,
+                      @NotNull String containerName) {
+        this.indexFile = indexFile;
+        this.storageAccount = storageAccount;
+        this.containerName = containerName;
+    }
+
+    /**
+     * Returns the index of a container, stored under the index directory. The same instance is returned
+     * for the same container until {@link #delete()} is called.
+     */
+    @NotNull
+    public static BlobIndex getIndex(@NotNull File indexDirectory,
+                                     @NotNull ClientStorageAccount storageAccount,
+                                     @NotNull String containerName) {
+        File indexFile = new File(new File(indexDirectory, storageAccount.getName()), containerName + FILE_EXTENSION);
+        String key = indexFile.getAbsolutePath();
+        BlobIndex index = indexes.get(key);
+
+        if (index == null) {
+            BlobIndex created = new BlobIndex(indexFile, storageAccount, containerName);
+            index = indexes.putIfAbsent(key, created);
+
+            if (index == null) {
+                index = created;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Whether the index was built, either in this session or in an earlier one.
+     */
+    public boolean exists() {
+        return blobs != null || indexFile.exists();
+    }
+
+    /**
+     * The time of the last build or refresh in epoch milliseconds, or 0 if the index wasn't loaded yet.
+     */
+    public long getBuiltTime() {
+        return builtTime;
+    }
+
+    public int size() {
+        CompactBlobList current = blobs;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Lists the container and updates the index, creating it if needed.
+     */
+    @NotNull
+    public synchronized RefreshResult refresh(@Nullable final ProgressListener listener)
+            throws AzureCmdException {
+        CompactBlobList previous = load();
+        final Map<String, String> previousETags = new HashMap<String, String>(previous != null ? previous.size() * 2 : 16);
+
+        if (previous != null) {
+            for (int i = 0; i < previous.size(); i++) {
+                previousETags.put(previous.getPath(i), previous.getETag(i));
+            }
+        }
+
+        final CompactBlobList listed = new CompactBlobList();
+        final RefreshResult result = new RefreshResult();
+        long startTime = System.currentTimeMillis();
+
+        StorageClientSDKManagerImpl.getManager().scanBlobFiles(storageAccount, containerName, "",
+                new CallableSingleArg<Boolean, BlobFile>() {
+                    @Override
+                    public Boolean call(BlobFile blobFile) throws Exception {
+                        String eTag = previousETags.remove(blobFile.getPath());
+
+                        if (eTag == null) {
+                            result.added++;
+                        } else if (!eTag.equals(blobFile.getETag())) {
+                            result.updated++;
+                        }
+
+                        listed.add(blobFile);
+
+                        if (listener != null && listed.size() % 1000 == 0) {
+                            listener.progress(listed.size());
+
+                            if (listener.isCancelled()) {
+                                result.cancelled = true;
+                                return false;
+                            }
+                        }
+
+                        return true;
+                    }
+                });
+
+        if (result.cancelled) {
+            return result;
+        }
+
+        result.removed = previousETags.size();
+        listed.trimToSize();
+
+        if (previous == null || result.added + result.updated + result.removed > 0) {
+            write(listed, startTime);
+        }
+
+        blobs = listed;
+        builtTime = startTime;
+
+        return result;
+    }
+
+    /**
+     * Returns up to {@code limit} blobs matching the query, loading the index from disk if needed.
+     * Returns an empty list if the index was never built.
+     */
+    @NotNull
+    public List<BlobFile> search(@NotNull Query query, int limit)
+            throws AzureCmdException {
+        CompactBlobList current = load();
+        List<BlobFile> results = new ArrayList<BlobFile>();
+
+        if (current != null) {
+            for (int i = 0; i < current.size() && results.size() < limit; i++) {
+                if (query.matches(current, i)) {
+                    results.add(current.get(i));
+                }
+            }
+        }
+
+        return results;
+    }
+
+    public synchronized void delete() {
+        blobs = null;
+        builtTime = 0;
+        indexes.remove(indexFile.getAbsolutePath());
+
+        if (indexFile.exists() && !indexFile.delete()) {
+            indexFile.deleteOnExit();
+        }
+    }
+
+    @Nullable
+    private synchronized CompactBlobList load()
+            throws AzureCmdException {
+        if (blobs == null && indexFile.exists()) {
+            try {
+                DataInputStream input = new DataInputStream(new GZIPInputStream(new BufferedInputStream(
+                        new FileInputStream(indexFile))));
+
+                try {
+                    if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                        // written by another version, it will be rebuilt by the next refresh
+                        return null;
+                    }
+
+                    long time = input.readLong();
+                    int count = input.readInt();
+                    CompactBlobList loaded = new CompactBlobList();
+
+                    for (int i = 0; i < count; i++) {
+                        loaded.add(readBlobFile(input));
+                    }
+
+                    loaded.trimToSize();
+                    blobs = loaded;
+                    builtTime = time;
+                } finally {
+                    input.close();
+                }
+            } catch (IOException e) {
+                throw new AzureCmdException("Error reading the Blob index " + indexFile.getPath(), e);
+            }
+        }
+
+        return blobs;
+    }
+
+    private void write(@NotNull CompactBlobList list, long time)
+            throws AzureCmdException {
+        File dir = indexFile.getParentFile();
+        File tempFile = new File(dir, indexFile.getName() + ".tmp");
+
+        try {
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Unable to create directory " + dir.getPath());
+            }
+
+            DataOutputStream output = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tempFile))));
+
+            try {
+                output.writeInt(FILE_MAGIC);
+                output.writeInt(FILE_VERSION);
+                output.writeLong(time);
+                output.writeInt(list.size());
+
+                for (BlobFile blobFile : list) {
+                    writeBlobFile(output, blobFile);
+                }
+            } finally {
+                output.close();
+            }
+
+            if ((indexFile.exists() && !indexFile.delete()) || !tempFile.renameTo(indexFile)) {
+                throw new IOException("Unable to replace " + indexFile.getPath());
+            }
+        } catch (IOException e) {
+            throw new AzureCmdException("Error writing the Blob index " + indexFile.getPath(), e);
+        }
+    }
+
+    private void writeBlobFile(@NotNull DataOutputStream output, @NotNull BlobFile blobFile)
+            throws IOException {
+        output.writeUTF(blobFile.getName());
+        output.writeUTF(blobFile.getUri());
+        output.writeUTF(blobFile.getPath());
+        output.writeUTF(blobFile.getType());
+        output.writeUTF(blobFile.getCacheControlHeader());
+        output.writeUTF(blobFile.getContentEncoding());
+        output.writeUTF(blobFile.getContentLanguage());
+        output.writeUTF(blobFile.getContentType());
+        output.writeUTF(blobFile.getContentMD5Header());
+        output.writeUTF(blobFile.getETag());
+        output.writeLong(blobFile.getLastModified().getTimeInMillis());
+        output.writeLong(blobFile.getSize());
+    }
+
+    @NotNull
+    private BlobFile readBlobFile(@NotNull DataInputStream input)
+            throws IOException {
+        String name = input.readUTF();
+        String uri = input.readUTF();
+        String path = input.readUTF();
+        String type = input.readUTF();
+        String cacheControlHeader = input.readUTF();
+        String contentEncoding = input.readUTF();
+        String contentLanguage = input.readUTF();
+        String contentType = input.readUTF();
+        String contentMD5Header = input.readUTF();
+        String eTag = input.readUTF();
+        Calendar lastModified = new GregorianCalendar();
+        lastModified.setTimeInMillis(input.readLong());
+        long size = input.readLong();
+
+        return new BlobFile(name, uri, containerName, path, type, cacheControlHeader, contentEncoding,
+                contentLanguage, contentType, contentMD5Header, eTag, lastModified, size);
+    }
+}
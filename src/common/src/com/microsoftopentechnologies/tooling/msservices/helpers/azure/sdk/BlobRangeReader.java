@@ -0,0 +1,244 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.base.Charsets;
+import com.microsoft.azure.storage.blob.BlobType;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads windows of a blob's content as UTF-8 text, fetching only the byte ranges that are shown. The
+ * ranges are fetched in fixed size pages which are kept in a small LRU cache, so moving back and forth
+ * around the same part of the blob doesn't download it again.
+ */
+public class BlobRangeReader {
+    public static class TextWindow {
+        private final long startOffset;
+        private final long endOffset;
+        private final String text;
+
+        private TextWindow(long startOffset, long endOffset, @NotNull String text) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.text = text;
+        }
+
+        public long getStartOffset() {
+            return startOffset;
+        }
+
+        /**
+         * The offset right after the last byte of the window.
+         */
+        public long getEndOffset() {
+            return endOffset;
+        }
+
+        @NotNull
+        public String getText() {
+            return text;
+        }
+    }
+
+    public static final int PAGE_SIZE = 64 * 1024;
+
+    private static final int MAX_CACHED_PAGES = 64;
+
+    private final ClientStorageAccount storageAccount;
+    private final Map<Long, byte[]> pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    private BlobFile blobFile;
+
+    public BlobRangeReader(@NotNull ClientStorageAccount storageAccount, @NotNull BlobFile blobFile) {
+        this.storageAccount = storageAccount;
+        this.blobFile = blobFile;
+    }
+
+    public synchronized long getSize() {
+        return blobFile.getSize();
+    }
+
+    /**
+     * Reloads the properties of the blob. Returns true if its ETag changed. Only append blobs can't change
+     * the bytes they already have, so when an append blob grew just its last partial page is dropped from
+     * the cache. Any other change, and any change of a block or page blob, which can be rewritten in place
+     * whatever its size, drops every cached page.
+     */
+    public synchronized boolean refresh()
+            throws AzureCmdException {
+        long previousSize = blobFile.getSize();
+        String previousETag = blobFile.getETag();
+        blobFile = StorageClientSDKManagerImpl.getManager().refreshBlobFile(storageAccount, blobFile);
+
+        if (blobFile.getETag().equals(previousETag)) {
+            return false;
+        }
+
+        if (BlobType.APPEND_BLOB.toString().equals(blobFile.getType()) && blobFile.getSize() > previousSize) {
+            pages.remove(previousSize / PAGE_SIZE);
+        } else {
+            // the blob may have been overwritten, nothing we have cached can be trusted
+            pages.clear();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the text of up to {@code length} bytes at the start of the blob.
+     */
+    @NotNull
+    public TextWindow head(int length)
+            throws AzureCmdException {
+        return readText(0, length);
+    }
+
+    /**
+     * Returns the text of up to {@code length} bytes at the end of the blob, starting at a line
+     * boundary where there is one.
+     */
+    @NotNull
+    public synchronized TextWindow tail(int length)
+            throws AzureCmdException {
+        long start = Math.max(0, getSize() - length);
+        byte[] data = read(start, (int) (getSize() - start));
+        int skip = 0;
+
+        if (start > 0) {
+            for (int i = 0; i < data.length - 1; i++) {
+                if (data[i] == '\n') {
+                    skip = i + 1;
+                    break;
+                }
+            }
+        }
+
+        return decode(start + skip, data, skip, data.length - skip);
+    }
+
+    /**
+     * Returns the text of up to {@code length} bytes at the offset. The window is shrunk at both ends so
+     * that it neither starts nor ends in the middle of a UTF-8 character.
+     */
+    @NotNull
+    public synchronized TextWindow readText(long offset, int length)
+            throws AzureCmdException {
+        long start = Math.max(0, Math.min(offset, getSize()));
+        byte[] data = read(start, (int) Math.min(length, getSize() - start));
+
+        return decode(start, data, 0, data.length);
+    }
+
+    @NotNull
+    private TextWindow decode(long offset, @NotNull byte[] data, int from, int to) {
+        int start = from;
+        int end = to;
+
+        // continuation bytes belong to a character that started before the window
+        while (start < end && start - from < 3 && offset + start - from > 0 && isContinuation(data[start])) {
+            start++;
+        }
+
+        // drop a character that is cut off by the end of the window
+        int lead = end - 1;
+
+        while (lead > start && end - lead < 4 && isContinuation(data[lead])) {
+            lead--;
+        }
+
+        if (lead >= start && getSequenceLength(data[lead]) > end - lead) {
+            end = lead;
+        }
+
+        return new TextWindow(offset + start - from, offset + end - from,
+                new String(data, start, end - start, Charsets.UTF_8));
+    }
+
+    @NotNull
+    private byte[] read(long offset, int length)
+            throws AzureCmdException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(0, length));
+        long position = offset;
+        long end = offset + length;
+
+        while (position < end) {
+            long pageIndex = position / PAGE_SIZE;
+            byte[] page = getPage(pageIndex);
+            int pageOffset = (int) (position - pageIndex * PAGE_SIZE);
+            int count = (int) Math.min(page.length - pageOffset, end - position);
+
+            if (count <= 0) {
+                break;
+            }
+
+            result.write(page, pageOffset, count);
+            position += count;
+        }
+
+        return result.toByteArray();
+    }
+
+    @NotNull
+    private byte[] getPage(long pageIndex)
+            throws AzureCmdException {
+        byte[] page = pages.get(pageIndex);
+
+        if (page == null) {
+            long start = pageIndex * PAGE_SIZE;
+            long length = Math.min(PAGE_SIZE, getSize() - start);
+            ByteArrayOutputStream content = new ByteArrayOutputStream((int) Math.max(0, length));
+
+            if (length > 0) {
+                StorageClientSDKManagerImpl.getManager().downloadBlobRange(storageAccount, blobFile, start, length, content);
+            }
+
+            page = content.toByteArray();
+            pages.put(pageIndex, page);
+        }
+
+        return page;
+    }
+
+    private static boolean isContinuation(byte b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    private static int getSequenceLength(byte b) {
+        if ((b & 0x80) == 0) {
+            return 1;
+        } else if ((b & 0xE0) == 0xC0) {
+            return 2;
+        } else if ((b & 0xF0) == 0xE0) {
+            return 3;
+        } else if ((b & 0xF8) == 0xF0) {
+            return 4;
+        }
+
+        return 1;
+    }
+}
@@ -0,0 +1,398 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.Files;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobDirectory;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Mirrors a local directory tree to a blob directory and back, and deletes whole blob directories.
+ * <p/>
+ * Files are transferred concurrently, with small and large files tuned separately: up to
+ * {@link #SMALL_FILE_CONCURRENCY} small files are sent in one request each, while up to
+ * {@link #LARGE_FILE_CONCURRENCY} large files are split into blocks or ranges with several of them in
+ * flight per file, in both directions. Files whose size and MD5 already match on the other side are skipped.
+ */
+public class BlobTransferManager {
+    public interface ProgressListener {
+        void progress(int completedFiles, int totalFiles, long transferredBytes);
+
+        boolean isCancelled();
+    }
+
+    public static class TransferResult {
+        private final int transferredFiles;
+        private final int skippedFiles;
+        private final long transferredBytes;
+        private final boolean cancelled;
+
+        private TransferResult(int transferredFiles, int skippedFiles, long transferredBytes, boolean cancelled) {
+            this.transferredFiles = transferredFiles;
+            this.skippedFiles = skippedFiles;
+            this.transferredBytes = transferredBytes;
+            this.cancelled = cancelled;
+        }
+
+        public int getTransferredFiles() {
+            return transferredFiles;
+        }
+
+        public int getSkippedFiles() {
+            return skippedFiles;
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private static class Transfer {
+        private final File localFile;
+        private final String blobPath;
+        private final BlobFile blobFile;
+        private final long size;
+
+        private Transfer(@NotNull File localFile, @NotNull String blobPath, @Nullable BlobFile blobFile, long size) {
+            this.localFile = localFile;
+            this.blobPath = blobPath;
+            this.blobFile = blobFile;
+            this.size = size;
+        }
+    }
+
+    private interface TransferAction {
+        void transfer(@NotNull Transfer transfer) throws AzureCmdException;
+    }
+
+    public static final int SMALL_FILE_CONCURRENCY = 8;
+    public static final int LARGE_FILE_CONCURRENCY = 2;
+    public static final int LARGE_FILE_THRESHOLD_BYTES = 32 * 1024 * 1024;
+
+    private static final int BLOCK_SIZE_BYTES = 4 * 1024 * 1024;
+    private static final int LARGE_FILE_REQUEST_CONCURRENCY = 8;
+    private static final int DELETE_PARALLELISM = 16;
+    private static final String DELIMITER = "/";
+    private static final String PARTIAL_DOWNLOAD_SUFFIX = ".part";
+
+    private final ClientStorageAccount storageAccount;
+
+    public BlobTransferManager(@NotNull ClientStorageAccount storageAccount) {
+        this.storageAccount = storageAccount;
+    }
+
+    /**
+     * Uploads every file under the local directory to the same relative path under the blob directory.
+     */
+    @NotNull
+    public TransferResult uploadDirectory(@NotNull File localDirectory,
+                                          @NotNull final BlobDirectory blobDirectory,
+                                          @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        Map<String, BlobFile> remoteFiles = new HashMap<String, BlobFile>();
+
+        for (BlobFile blobFile : StorageClientSDKManagerImpl.getManager().getBlobFiles(storageAccount, blobDirectory)) {
+            remoteFiles.put(blobFile.getPath(), blobFile);
+        }
+
+        List<Transfer> transfers = new ArrayList<Transfer>();
+        Deque<File> pending = new ArrayDeque<File>();
+        pending.push(localDirectory);
+
+        while (!pending.isEmpty()) {
+            File directory = pending.pop();
+            File[] children = directory.listFiles();
+
+            if (children == null) {
+                continue;
+            }
+
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    pending.push(child);
+                } else if (child.isFile()) {
+                    String blobPath = blobDirectory.getPath() + getRelativePath(localDirectory, child);
+                    transfers.add(new Transfer(child, blobPath, remoteFiles.get(blobPath), child.length()));
+                }
+            }
+        }
+
+        return run(transfers, listener, new TransferAction() {
+            @Override
+            public void transfer(@NotNull Transfer transfer) throws AzureCmdException {
+                boolean large = transfer.size > LARGE_FILE_THRESHOLD_BYTES;
+
+                StorageClientSDKManagerImpl.getManager().uploadBlobFile(storageAccount,
+                        blobDirectory.getContainerName(), transfer.blobPath, transfer.localFile,
+                        LARGE_FILE_THRESHOLD_BYTES, BLOCK_SIZE_BYTES, large ? LARGE_FILE_REQUEST_CONCURRENCY : 1);
+            }
+        });
+    }
+
+    /**
+     * Downloads every blob under the blob directory to the same relative path under the local directory.
+     * Files are written next to their destination first and only moved into place once complete. Blob
+     * names are not trusted: the download fails before anything is written if a name such as
+     * {@code a/../../.bashrc} resolves outside the local directory.
+     */
+    @NotNull
+    public TransferResult downloadDirectory(@NotNull BlobDirectory blobDirectory,
+                                            @NotNull File localDirectory,
+                                            @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        List<Transfer> transfers = new ArrayList<Transfer>();
+        String prefix = blobDirectory.getPath();
+        String root = getCanonicalPath(localDirectory) + File.separator;
+
+        for (BlobFile blobFile : StorageClientSDKManagerImpl.getManager().getBlobFiles(storageAccount, blobDirectory)) {
+            String relativePath = blobFile.getPath().substring(prefix.length());
+
+            if (relativePath.isEmpty() || relativePath.endsWith(DELIMITER)) {
+                continue;
+            }
+
+            File localFile = new File(localDirectory, relativePath.replace(DELIMITER, File.separator));
+
+            if (!getCanonicalPath(localFile).startsWith(root)) {
+                throw new AzureCmdException("The blob " + blobFile.getPath() + " would be written outside of "
+                        + localDirectory.getPath());
+            }
+
+            transfers.add(new Transfer(localFile, blobFile.getPath(), blobFile, blobFile.getSize()));
+        }
+
+        return run(transfers, listener, new TransferAction() {
+            @Override
+            public void transfer(@NotNull Transfer transfer) throws AzureCmdException {
+                boolean large = transfer.size > LARGE_FILE_THRESHOLD_BYTES;
+                File parent = transfer.localFile.getParentFile();
+
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new AzureCmdException("Error creating the directory " + parent.getPath());
+                }
+
+                File partial = new File(transfer.localFile.getPath() + PARTIAL_DOWNLOAD_SUFFIX);
+
+                StorageClientSDKManagerImpl.getManager().downloadBlobFile(storageAccount, transfer.blobFile, partial,
+                        LARGE_FILE_THRESHOLD_BYTES, BLOCK_SIZE_BYTES, large ? LARGE_FILE_REQUEST_CONCURRENCY : 1);
+
+                if ((transfer.localFile.exists() && !transfer.localFile.delete()) || !partial.renameTo(transfer.localFile)) {
+                    throw new AzureCmdException("Error moving the downloaded file to " + transfer.localFile.getPath());
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes every blob under the blob directory, which removes the virtual directory itself.
+     * Returns the number of blobs deleted.
+     */
+    public int deleteDirectory(@NotNull BlobDirectory blobDirectory, @Nullable final ProgressListener listener)
+            throws AzureCmdException {
+        final List<BlobFile> blobFiles = StorageClientSDKManagerImpl.getManager().getBlobFiles(storageAccount, blobDirectory);
+        final AtomicInteger deleted = new AtomicInteger();
+
+        try {
+            ParallelRequestRunner.run(blobFiles, DELETE_PARALLELISM, new ParallelRequestRunner.Request<BlobFile, BlobFile>() {
+                @NotNull
+                @Override
+                public BlobFile execute(@NotNull BlobFile blobFile) throws Throwable {
+                    if (isCancelled(listener)) {
+                        throw new CancellationException();
+                    }
+
+                    StorageClientSDKManagerImpl.getManager().deleteBlobFile(storageAccount, blobFile);
+
+                    int count = deleted.incrementAndGet();
+
+                    if (listener != null) {
+                        listener.progress(count, blobFiles.size(), 0);
+                    }
+
+                    return blobFile;
+                }
+            }, null);
+        } catch (CancellationException ignored) {
+        } catch (Throwable t) {
+            throw toAzureCmdException(t);
+        }
+
+        return deleted.get();
+    }
+
+    @NotNull
+    private TransferResult run(@NotNull List<Transfer> transfers,
+                               @Nullable final ProgressListener listener,
+                               @NotNull final TransferAction action)
+            throws AzureCmdException {
+        final int total = transfers.size();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger transferred = new AtomicInteger();
+        final AtomicLong transferredBytes = new AtomicLong();
+
+        final ParallelRequestRunner.Request<Transfer, Transfer> request = new ParallelRequestRunner.Request<Transfer, Transfer>() {
+            @NotNull
+            @Override
+            public Transfer execute(@NotNull Transfer transfer) throws Throwable {
+                if (isCancelled(listener)) {
+                    throw new CancellationException();
+                }
+
+                if (!isUnchanged(transfer)) {
+                    action.transfer(transfer);
+
+                    transferred.incrementAndGet();
+                    transferredBytes.addAndGet(transfer.size);
+                }
+
+                int count = completed.incrementAndGet();
+
+                if (listener != null) {
+                    listener.progress(count, total, transferredBytes.get());
+                }
+
+                return transfer;
+            }
+        };
+
+        final List<Transfer> largeTransfers = new ArrayList<Transfer>();
+        List<Transfer> smallTransfers = new ArrayList<Transfer>();
+
+        for (Transfer transfer : transfers) {
+            (transfer.size > LARGE_FILE_THRESHOLD_BYTES ? largeTransfers : smallTransfers).add(transfer);
+        }
+
+        // large files get their own, smaller pool of workers so they don't hold up the small ones
+        final AtomicReference<Throwable> largeFailure = new AtomicReference<Throwable>();
+        final CountDownLatch largeDone = new CountDownLatch(1);
+
+        DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ParallelRequestRunner.run(largeTransfers, LARGE_FILE_CONCURRENCY, request, null);
+                } catch (Throwable t) {
+                    largeFailure.set(t);
+                } finally {
+                    largeDone.countDown();
+                }
+            }
+        });
+
+        Throwable failure = null;
+
+        try {
+            ParallelRequestRunner.run(smallTransfers, SMALL_FILE_CONCURRENCY, request, null);
+        } catch (Throwable t) {
+            failure = t;
+        }
+
+        try {
+            largeDone.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AzureCmdException("The blob transfer was interrupted", e);
+        }
+
+        if (failure == null || (failure instanceof CancellationException && largeFailure.get() != null)) {
+            failure = largeFailure.get();
+        }
+
+        if (failure != null && !(failure instanceof CancellationException)) {
+            throw toAzureCmdException(failure);
+        }
+
+        return new TransferResult(transferred.get(), completed.get() - transferred.get(), transferredBytes.get(),
+                failure != null);
+    }
+
+    private static boolean isUnchanged(@NotNull Transfer transfer)
+            throws IOException {
+        if (transfer.blobFile == null || !transfer.localFile.isFile()
+                || transfer.localFile.length() != transfer.blobFile.getSize()
+                || transfer.blobFile.getContentMD5Header().isEmpty()) {
+            return false;
+        }
+
+        byte[] md5 = Files.hash(transfer.localFile, Hashing.md5()).asBytes();
+
+        return BaseEncoding.base64().encode(md5).equals(transfer.blobFile.getContentMD5Header());
+    }
+
+    @NotNull
+    private static String getRelativePath(@NotNull File root, @NotNull File file) {
+        LinkedList<String> segments = new LinkedList<String>();
+
+        for (File current = file; current != null && !current.equals(root); current = current.getParentFile()) {
+            segments.addFirst(current.getName());
+        }
+
+        StringBuilder sb = new StringBuilder();
+
+        for (String segment : segments) {
+            if (sb.length() > 0) {
+                sb.append(DELIMITER);
+            }
+
+            sb.append(segment);
+        }
+
+        return sb.toString();
+    }
+
+    @NotNull
+    private static String getCanonicalPath(@NotNull File file)
+            throws AzureCmdException {
+        try {
+            return file.getCanonicalPath();
+        } catch (IOException e) {
+            throw new AzureCmdException("Error resolving the path " + file.getPath(), e);
+        }
+    }
+
+    private static boolean isCancelled(@Nullable ProgressListener listener) {
+        return listener != null && listener.isCancelled();
+    }
+
+    @NotNull
+    private static AzureCmdException toAzureCmdException(@NotNull Throwable t) {
+        if (t instanceof AzureCmdException) {
+            return (AzureCmdException) t;
+        }
+
+        return new AzureCmdException("Error transferring the Blob Files", t);
+    }
+}
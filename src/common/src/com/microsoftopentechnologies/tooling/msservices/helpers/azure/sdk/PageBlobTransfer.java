@@ -0,0 +1,338 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobFile;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobPageRange;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Transfers page blobs such as VHD disks without moving their empty pages. Downloads only fetch the
+ * page ranges that hold data and leave the rest of the local file sparse; uploads skip pages that are
+ * all zeros. A mostly empty 127 GB disk then costs its used size rather than its provisioned size.
+ * <p/>
+ * A transfer that fails or is cancelled removes what it wrote, the local file for a download and the
+ * page blob for an upload, so a partial disk is never mistaken for a complete one.
+ */
+public class PageBlobTransfer {
+    public interface ProgressListener {
+        void progress(long processedBytes, long totalBytes, long transferredBytes);
+
+        boolean isCancelled();
+    }
+
+    public static class TransferResult {
+        private final long transferredBytes;
+        private final boolean cancelled;
+
+        private TransferResult(long transferredBytes, boolean cancelled) {
+            this.transferredBytes = transferredBytes;
+            this.cancelled = cancelled;
+        }
+
+        public long getTransferredBytes() {
+            return transferredBytes;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    public static final int PAGE_SIZE = 512;
+    public static final int MAX_PAGES_WRITE_SIZE = 4 * 1024 * 1024;
+
+    private static final int CONCURRENCY = 8;
+
+    private final ClientStorageAccount storageAccount;
+
+    public PageBlobTransfer(@NotNull ClientStorageAccount storageAccount) {
+        this.storageAccount = storageAccount;
+    }
+
+    /**
+     * Downloads the valid page ranges of the blob into a file of the blob's size.
+     */
+    @NotNull
+    public TransferResult download(@NotNull final BlobFile blobFile, @NotNull File file, @Nullable final ProgressListener listener)
+            throws AzureCmdException {
+        final StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        final List<BlobPageRange> chunks = new ArrayList<BlobPageRange>();
+        long validBytes = 0;
+
+        for (BlobPageRange range : manager.getBlobPageRanges(storageAccount, blobFile)) {
+            validBytes += range.getLength();
+
+            for (long start = range.getStartOffset(); start <= range.getEndOffset(); start += MAX_PAGES_WRITE_SIZE) {
+                chunks.add(new BlobPageRange(start, Math.min(range.getEndOffset(), start + MAX_PAGES_WRITE_SIZE - 1)));
+            }
+        }
+
+        final long totalBytes = validBytes;
+        final AtomicLong downloaded = new AtomicLong();
+        boolean completed = false;
+
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+            try {
+                // extending the file without writing to it leaves the gap sparse where the file system allows
+                randomAccessFile.setLength(blobFile.getSize());
+                final FileChannel channel = randomAccessFile.getChannel();
+
+                ParallelRequestRunner.run(chunks, CONCURRENCY, new ParallelRequestRunner.Request<BlobPageRange, BlobPageRange>() {
+                    @NotNull
+                    @Override
+                    public BlobPageRange execute(@NotNull BlobPageRange chunk) throws Throwable {
+                        if (isCancelled(listener)) {
+                            throw new CancellationException();
+                        }
+
+                        ByteArrayOutputStream content = new ByteArrayOutputStream((int) chunk.getLength());
+                        manager.downloadBlobRange(storageAccount, blobFile, chunk.getStartOffset(), chunk.getLength(), content);
+
+                        ByteBuffer buffer = ByteBuffer.wrap(content.toByteArray());
+                        long position = chunk.getStartOffset();
+
+                        while (buffer.hasRemaining()) {
+                            position += channel.write(buffer, position);
+                        }
+
+                        long count = downloaded.addAndGet(chunk.getLength());
+
+                        if (listener != null) {
+                            listener.progress(count, totalBytes, count);
+                        }
+
+                        return chunk;
+                    }
+                }, null);
+            } finally {
+                randomAccessFile.close();
+            }
+
+            completed = true;
+        } catch (CancellationException ignored) {
+        } catch (Throwable t) {
+            throw toAzureCmdException(t);
+        } finally {
+            if (!completed) {
+                file.delete();
+            }
+        }
+
+        return new TransferResult(downloaded.get(), !completed);
+    }
+
+    /**
+     * Uploads a file as a page blob, writing only the pages that aren't all zeros. Files whose size isn't
+     * a multiple of {@link #PAGE_SIZE} are padded with zeros.
+     */
+    @NotNull
+    public TransferResult upload(@NotNull File file,
+                                 @NotNull final String containerName,
+                                 @NotNull final String blobPath,
+                                 @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        final StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        long fileSize = file.length();
+        long blobSize = (fileSize + PAGE_SIZE - 1) / PAGE_SIZE * PAGE_SIZE;
+
+        manager.createPageBlob(storageAccount, containerName, blobPath, blobSize);
+
+        final AtomicLong uploaded = new AtomicLong();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        // bounds the number of page runs read ahead of the uploads, and so the memory in use
+        final Semaphore runsInFlight = new Semaphore(CONCURRENCY * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENCY, new ThreadFactoryBuilder()
+                .setNameFormat("Page blob upload %d")
+                .setDaemon(true)
+                .build());
+        boolean completed = false;
+
+        try {
+            InputStream input = new BufferedInputStream(new FileInputStream(file), MAX_PAGES_WRITE_SIZE);
+
+            try {
+                byte[] run = new byte[MAX_PAGES_WRITE_SIZE];
+                int runLength = 0;
+                long runOffset = 0;
+                long offset = 0;
+                byte[] page = new byte[PAGE_SIZE];
+
+                while (offset < blobSize && failure.get() == null && !isCancelled(listener)) {
+                    int read = readPage(input, page);
+                    boolean empty = isEmpty(page);
+
+                    // a run ends at an empty page, when it's full or at the end of the file
+                    if (!empty) {
+                        if (runLength == 0) {
+                            runOffset = offset;
+                        }
+
+                        System.arraycopy(page, 0, run, runLength, PAGE_SIZE);
+                        runLength += PAGE_SIZE;
+                    }
+
+                    offset += PAGE_SIZE;
+
+                    if (runLength > 0 && (empty || runLength == MAX_PAGES_WRITE_SIZE || offset >= blobSize || read < PAGE_SIZE)) {
+                        submitRun(executor, runsInFlight, manager, containerName, blobPath, runOffset, run, runLength,
+                                uploaded, failure);
+                        run = new byte[MAX_PAGES_WRITE_SIZE];
+                        runLength = 0;
+                    }
+
+                    if (listener != null && offset % MAX_PAGES_WRITE_SIZE == 0) {
+                        listener.progress(offset, blobSize, uploaded.get());
+                    }
+
+                    if (read < PAGE_SIZE) {
+                        break;
+                    }
+                }
+            } finally {
+                input.close();
+            }
+
+            runsInFlight.acquire(CONCURRENCY * 2);
+            runsInFlight.release(CONCURRENCY * 2);
+
+            if (failure.get() != null) {
+                throw toAzureCmdException(failure.get());
+            }
+
+            completed = !isCancelled(listener);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AzureCmdException("The Page Blob upload was interrupted", e);
+        } catch (IOException e) {
+            throw new AzureCmdException("Error reading the Page Blob file", e);
+        } finally {
+            executor.shutdownNow();
+
+            if (!completed) {
+                deletePartialUpload(manager, containerName, blobPath);
+            }
+        }
+
+        if (completed && listener != null) {
+            listener.progress(blobSize, blobSize, uploaded.get());
+        }
+
+        return new TransferResult(uploaded.get(), !completed);
+    }
+
+    /**
+     * Best effort: the blob is deleted so it can't be mistaken for a complete disk, but a failure to
+     * delete it mustn't hide why the upload stopped.
+     */
+    private void deletePartialUpload(@NotNull StorageClientSDKManager manager,
+                                     @NotNull String containerName,
+                                     @NotNull String blobPath) {
+        try {
+            manager.deletePageBlob(storageAccount, containerName, blobPath);
+        } catch (AzureCmdException ignored) {
+        }
+    }
+
+    private void submitRun(@NotNull ExecutorService executor,
+                           @NotNull final Semaphore runsInFlight,
+                           @NotNull final StorageClientSDKManager manager,
+                           @NotNull final String containerName,
+                           @NotNull final String blobPath,
+                           final long offset,
+                           @NotNull final byte[] data,
+                           final int length,
+                           @NotNull final AtomicLong uploaded,
+                           @NotNull final AtomicReference<Throwable> failure)
+            throws InterruptedException {
+        runsInFlight.acquire();
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    manager.uploadBlobPages(storageAccount, containerName, blobPath, offset, data, length);
+                    uploaded.addAndGet(length);
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                } finally {
+                    runsInFlight.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Fills the page from the input, padding it with zeros at the end of the input. Returns the number
+     * of bytes read.
+     */
+    private static int readPage(@NotNull InputStream input, @NotNull byte[] page)
+            throws IOException {
+        int total = 0;
+        int read;
+
+        while (total < page.length && (read = input.read(page, total, page.length - total)) != -1) {
+            total += read;
+        }
+
+        for (int i = total; i < page.length; i++) {
+            page[i] = 0;
+        }
+
+        return total;
+    }
+
+    private static boolean isEmpty(@NotNull byte[] page) {
+        for (byte b : page) {
+            if (b != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isCancelled(@Nullable ProgressListener listener) {
+        return listener != null && listener.isCancelled();
+    }
+
+    @NotNull
+    private static AzureCmdException toAzureCmdException(@NotNull Throwable t) {
+        if (t instanceof AzureCmdException) {
+            return (AzureCmdException) t;
+        }
+
+        return new AzureCmdException("Error transferring the Page Blob", t);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs one request per input item on the background lane of the {@link ExecutionService} I/O pool, with
+ * at most {@code parallelism} requests in flight. Instead of one pooled thread per item, a fixed number
+ * of workers, the calling thread among them, pull the next item as soon as they are done with the
+ * previous one, so no pooled thread sits blocked waiting for a slot.
+ * <p/>
+ * Results are handed to an optional sink as each item completes and are also returned in input order
+ * once all of them are done. The first failure stops the remaining items from being started and is
+ * rethrown to the caller.
+ */
+public class ParallelRequestRunner {
+    public interface Request<I, O> {
+        @NotNull
+        O execute(@NotNull I input) throws Throwable;
+    }
+
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    @NotNull
+    public static <I, O> List<O> run(@NotNull List<I> inputs,
+                                     int parallelism,
+                                     @NotNull final Request<I, O> request,
+                                     @Nullable final CallableSingleArg<Void, O> sink)
+            throws Throwable {
+        final List<I> items = new ArrayList<I>(inputs);
+        final Object[] results = new Object[items.size()];
+
+        if (items.isEmpty()) {
+            return new ArrayList<O>();
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        // counted down once per item, whether it ran, failed or was skipped after a failure
+        final CountDownLatch done = new CountDownLatch(items.size());
+        int workers = Math.max(1, Math.min(parallelism, items.size()));
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                int index;
+
+                while (failure.get() == null && (index = next.getAndIncrement()) < items.size()) {
+                    try {
+                        O result = request.execute(items.get(index));
+                        results[index] = result;
+
+                        if (sink != null) {
+                            sink.call(result);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }
+        };
+
+        ExecutionService executionService = ExecutionService.getManager();
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+
+        for (int i = 1; i < workers; i++) {
+            futures.add(executionService.submit(ExecutionService.Pool.IO, ExecutionService.Priority.Background, worker));
+        }
+
+        // the caller is usually a pooled refresh itself; working through the items on its own thread
+        // guarantees progress even when every other I/O thread is blocked waiting the same way
+        worker.run();
+
+        // after a failure, skip the items nobody started
+        while (next.getAndIncrement() < items.size()) {
+            done.countDown();
+        }
+
+        // only the items already running are waited for, workers still queued have nothing left to do
+        done.await();
+
+        for (Future<?> future : futures) {
+            future.cancel(false);
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<O> resultList = (List<O>) Arrays.asList(results);
+
+        return new ArrayList<O>(resultList);
+    }
+}
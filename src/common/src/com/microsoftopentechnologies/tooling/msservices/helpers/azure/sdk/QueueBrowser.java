@@ -0,0 +1,170 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.Queue;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.QueueMessage;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pages through a queue 32 messages at a time. The first page is peeked and has no side effects. Peeking
+ * cannot see past the first 32 messages though, so moving beyond the first page receives every page
+ * walked so far and keeps those messages invisible for {@link #VISIBILITY_TIMEOUT_SECONDS} while they are
+ * browsed. {@link #release()} makes them visible again; it has to be called when the browser is no longer
+ * used. Receiving increments the dequeue count of every message past the first page.
+ */
+public class QueueBrowser {
+    public static final int PAGE_SIZE = 32;
+    public static final int VISIBILITY_TIMEOUT_SECONDS = 5 * 60;
+    public static final int MAX_PAGES = 100;
+
+    private static final int RELEASE_PARALLELISM = 16;
+
+    private final ClientStorageAccount storageAccount;
+    private final Queue queue;
+    private final List<List<QueueMessage>> pages = new ArrayList<List<QueueMessage>>();
+    private final Map<String, QueueMessage> received = new LinkedHashMap<String, QueueMessage>();
+    private int pageIndex;
+    private boolean lastPage;
+
+    public QueueBrowser(@NotNull ClientStorageAccount storageAccount, @NotNull Queue queue) {
+        this.storageAccount = storageAccount;
+        this.queue = queue;
+    }
+
+    /**
+     * Releases every received message and peeks the first page again.
+     */
+    @NotNull
+    public synchronized List<QueueMessage> firstPage()
+            throws AzureCmdException {
+        release();
+
+        List<QueueMessage> page = StorageClientSDKManagerImpl.getManager().getQueueMessages(storageAccount, queue);
+
+        pages.add(page);
+        lastPage = page.size() < PAGE_SIZE;
+
+        return page;
+    }
+
+    @NotNull
+    public synchronized List<QueueMessage> nextPage()
+            throws AzureCmdException {
+        if (pageIndex + 1 < pages.size()) {
+            return pages.get(++pageIndex);
+        }
+
+        if (!hasNextPage()) {
+            return getPage();
+        }
+
+        if (received.isEmpty()) {
+            // the first page was only peeked, it has to be received before the next one can be
+            pages.set(0, receivePage());
+        }
+
+        List<QueueMessage> page = receivePage();
+
+        if (page.isEmpty()) {
+            lastPage = true;
+
+            return getPage();
+        }
+
+        pages.add(page);
+        lastPage = page.size() < PAGE_SIZE;
+
+        return pages.get(++pageIndex);
+    }
+
+    @NotNull
+    public synchronized List<QueueMessage> previousPage() {
+        if (pageIndex > 0) {
+            pageIndex--;
+        }
+
+        return getPage();
+    }
+
+    @NotNull
+    public synchronized List<QueueMessage> getPage() {
+        return pages.isEmpty() ? new ArrayList<QueueMessage>() : pages.get(pageIndex);
+    }
+
+    public synchronized int getPageIndex() {
+        return pageIndex;
+    }
+
+    public synchronized boolean hasNextPage() {
+        return pageIndex + 1 < pages.size() || (!lastPage && pages.size() < MAX_PAGES);
+    }
+
+    public synchronized boolean hasPreviousPage() {
+        return pageIndex > 0;
+    }
+
+    /**
+     * Whether moving to the next page will receive messages rather than show pages already walked.
+     */
+    public synchronized boolean isNextPageReceived() {
+        return pageIndex + 1 >= pages.size();
+    }
+
+    /**
+     * Makes every received message visible again and forgets the pages walked so far.
+     */
+    public synchronized void release()
+            throws AzureCmdException {
+        List<QueueMessage> messages = new ArrayList<QueueMessage>(received.values());
+
+        pages.clear();
+        received.clear();
+        pageIndex = 0;
+        lastPage = false;
+
+        if (!messages.isEmpty()) {
+            StorageClientSDKManagerImpl.getManager().releaseQueueMessages(storageAccount, messages, RELEASE_PARALLELISM);
+        }
+    }
+
+    /**
+     * Receives the next page. Messages whose visibility timeout ran out while browsing come back at the
+     * front of the queue; they are not shown twice, but their new pop receipt is kept so they can still be
+     * released.
+     */
+    @NotNull
+    private List<QueueMessage> receivePage()
+            throws AzureCmdException {
+        List<QueueMessage> page = new ArrayList<QueueMessage>();
+
+        for (QueueMessage queueMessage : StorageClientSDKManagerImpl.getManager().receiveQueueMessages(storageAccount,
+                queue, PAGE_SIZE, VISIBILITY_TIMEOUT_SECONDS)) {
+            if (received.put(queueMessage.getId(), queueMessage) == null) {
+                page.add(queueMessage);
+            }
+        }
+
+        return page;
+    }
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.base.Charsets;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.Queue;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.QueueMessage;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Bulk operations on a storage queue: draining it, enqueuing the lines of a file and dumping its
+ * messages to a JSON lines file. Messages are received 32 at a time, the most a single request returns,
+ * and deletes and enqueues are issued concurrently.
+ */
+public class QueueWorkbench {
+    public interface ProgressListener {
+        void progress(long processed, double messagesPerSecond);
+
+        boolean isCancelled();
+    }
+
+    public static class Result {
+        private final long processed;
+        private final long elapsedMillis;
+
+        private Result(long processed, long elapsedMillis) {
+            this.processed = processed;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getProcessed() {
+            return processed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getMessagesPerSecond() {
+            return getMessagesPerSecond(processed, elapsedMillis);
+        }
+
+        private static double getMessagesPerSecond(long processed, long elapsedMillis) {
+            return processed * 1000.0 / Math.max(1, elapsedMillis);
+        }
+    }
+
+    public static final int MAX_DUMP_MESSAGES = 100000;
+
+    private static final int RECEIVE_BATCH_SIZE = 32;
+    private static final int DRAIN_VISIBILITY_TIMEOUT_SECONDS = 60;
+    private static final int MAX_PENDING_DELETE_BATCHES = 4;
+    private static final int DELETE_PARALLELISM = 8;
+    private static final int ENQUEUE_BATCH_SIZE = 256;
+    private static final int ENQUEUE_PARALLELISM = 16;
+    private static final int MIN_DUMP_VISIBILITY_TIMEOUT_SECONDS = 5 * 60;
+    private static final int MAX_VISIBILITY_TIMEOUT_SECONDS = 7 * 24 * 60 * 60;
+    private static final int EXPECTED_DUMP_MESSAGES_PER_SECOND = 20;
+    private static final int RELEASE_BATCH_SIZE = 256;
+    private static final int RELEASE_PARALLELISM = 16;
+
+    private final ClientStorageAccount storageAccount;
+    private final Queue queue;
+
+    public QueueWorkbench(@NotNull ClientStorageAccount storageAccount, @NotNull Queue queue) {
+        this.storageAccount = storageAccount;
+        this.queue = queue;
+    }
+
+    /**
+     * Deletes every message in the queue. While one batch is being deleted the next one is already
+     * being received, with a bounded number of delete batches in flight.
+     */
+    @NotNull
+    public Result drain(@Nullable final ProgressListener listener)
+            throws AzureCmdException {
+        final StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        final long start = System.currentTimeMillis();
+        final AtomicLong processed = new AtomicLong();
+        final AtomicReference<AzureCmdException> failure = new AtomicReference<AzureCmdException>();
+        final Semaphore pendingBatches = new Semaphore(MAX_PENDING_DELETE_BATCHES);
+
+        try {
+            while (!isCancelled(listener) && failure.get() == null) {
+                final List<QueueMessage> batch = manager.receiveQueueMessages(storageAccount, queue,
+                        RECEIVE_BATCH_SIZE, DRAIN_VISIBILITY_TIMEOUT_SECONDS);
+
+                if (batch.isEmpty()) {
+                    break;
+                }
+
+                pendingBatches.acquire();
+
+                DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            manager.deleteQueueMessages(storageAccount, batch, DELETE_PARALLELISM);
+                            reportProgress(listener, processed.addAndGet(batch.size()), start);
+                        } catch (AzureCmdException e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            pendingBatches.release();
+                        }
+                    }
+                });
+            }
+
+            pendingBatches.acquire(MAX_PENDING_DELETE_BATCHES);
+            pendingBatches.release(MAX_PENDING_DELETE_BATCHES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AzureCmdException("Draining the Queue was interrupted", e);
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        return new Result(processed.get(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds one message per non-empty line of a UTF-8 text file. The file is read in chunks, so its size
+     * is not limited by memory.
+     */
+    @NotNull
+    public Result enqueueFromFile(@NotNull File file, int timeToLiveInSeconds, @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        long start = System.currentTimeMillis();
+        long processed = 0;
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+
+            try {
+                List<String> batch = new ArrayList<String>(ENQUEUE_BATCH_SIZE);
+                String line;
+
+                while (!isCancelled(listener) && (line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+
+                    batch.add(line);
+
+                    if (batch.size() == ENQUEUE_BATCH_SIZE) {
+                        manager.createQueueMessages(storageAccount, queue, batch, timeToLiveInSeconds, ENQUEUE_PARALLELISM);
+                        processed += batch.size();
+                        batch.clear();
+
+                        reportProgress(listener, processed, start);
+                    }
+                }
+
+                if (!batch.isEmpty() && !isCancelled(listener)) {
+                    manager.createQueueMessages(storageAccount, queue, batch, timeToLiveInSeconds, ENQUEUE_PARALLELISM);
+                    processed += batch.size();
+
+                    reportProgress(listener, processed, start);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new AzureCmdException("Error reading the messages file", e);
+        }
+
+        return new Result(processed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Dumps the queue with a visibility timeout estimated from its approximate message count. A queue
+     * that fits in a single peek is dumped from that peek, without receiving anything.
+     */
+    @NotNull
+    public Result dumpToJsonl(@NotNull File file, @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        long count = manager.getApproximateQueueMessageCount(storageAccount, queue);
+
+        if (count < RECEIVE_BATCH_SIZE) {
+            List<QueueMessage> peeked = manager.getQueueMessages(storageAccount, queue);
+
+            if (peeked.size() < RECEIVE_BATCH_SIZE) {
+                return dumpPeeked(file, peeked, listener);
+            }
+        }
+
+        long timeout = MIN_DUMP_VISIBILITY_TIMEOUT_SECONDS +
+                Math.min(count, MAX_DUMP_MESSAGES) / EXPECTED_DUMP_MESSAGES_PER_SECOND;
+
+        return dumpToJsonl(file, (int) Math.min(timeout, MAX_VISIBILITY_TIMEOUT_SECONDS), listener);
+    }
+
+    /**
+     * Writes up to {@link #MAX_DUMP_MESSAGES} messages of the queue to a file, one JSON object per line.
+     * Messages are received rather than peeked, since peeking only ever returns the first 32, and are held
+     * invisible for at most {@code visibilityTimeoutInSeconds} so the walk can move past them. Once the
+     * walk ends, fails or is cancelled every received message is made visible again, so the timeout only
+     * matters if the IDE goes away mid-walk. Receiving still increments the dequeue count of every
+     * message, which can push messages towards a consumer's poison threshold.
+     */
+    @NotNull
+    public Result dumpToJsonl(@NotNull File file, int visibilityTimeoutInSeconds, @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        Set<String> seenIds = new HashSet<String>();
+        List<QueueMessage> received = new ArrayList<QueueMessage>();
+        long start = System.currentTimeMillis();
+        long processed = 0;
+        boolean completed = false;
+
+        try {
+            JsonlWriter writer = new JsonlWriter(file);
+
+            try {
+                walk:
+                while (!isCancelled(listener) && processed < MAX_DUMP_MESSAGES) {
+                    List<QueueMessage> batch = manager.receiveQueueMessages(storageAccount, queue,
+                            (int) Math.min(RECEIVE_BATCH_SIZE, MAX_DUMP_MESSAGES - processed), visibilityTimeoutInSeconds);
+
+                    if (batch.isEmpty()) {
+                        break;
+                    }
+
+                    for (QueueMessage queueMessage : batch) {
+                        received.add(withoutContent(queueMessage));
+                    }
+
+                    for (QueueMessage queueMessage : batch) {
+                        if (!seenIds.add(queueMessage.getId())) {
+                            break walk;
+                        }
+
+                        writer.write(queueMessage);
+                        processed++;
+                    }
+
+                    reportProgress(listener, processed, start);
+                }
+            } finally {
+                writer.close();
+            }
+
+            completed = true;
+        } catch (IOException e) {
+            throw new AzureCmdException("Error writing the messages file", e);
+        } finally {
+            try {
+                release(received);
+            } catch (AzureCmdException e) {
+                if (completed) {
+                    throw e;
+                }
+            }
+        }
+
+        return new Result(processed, System.currentTimeMillis() - start);
+    }
+
+    @NotNull
+    private Result dumpPeeked(@NotNull File file, @NotNull List<QueueMessage> peeked, @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        long start = System.currentTimeMillis();
+
+        try {
+            JsonlWriter writer = new JsonlWriter(file);
+
+            try {
+                for (QueueMessage queueMessage : peeked) {
+                    writer.write(queueMessage);
+                }
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new AzureCmdException("Error writing the messages file", e);
+        }
+
+        reportProgress(listener, peeked.size(), start);
+
+        return new Result(peeked.size(), System.currentTimeMillis() - start);
+    }
+
+    private void release(@NotNull List<QueueMessage> received)
+            throws AzureCmdException {
+        StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+
+        for (int i = 0; i < received.size(); i += RELEASE_BATCH_SIZE) {
+            manager.releaseQueueMessages(storageAccount,
+                    received.subList(i, Math.min(received.size(), i + RELEASE_BATCH_SIZE)), RELEASE_PARALLELISM);
+        }
+    }
+
+    /**
+     * Keeps only what is needed to release a received message, so holding on to a large walk does not
+     * hold on to every message body as well.
+     */
+    @NotNull
+    private static QueueMessage withoutContent(@NotNull QueueMessage queueMessage) {
+        QueueMessage released = new QueueMessage(queueMessage.getId(), queueMessage.getQueueName(), "",
+                queueMessage.getInsertionTime(), queueMessage.getExpirationTime(), queueMessage.getDequeueCount());
+        released.setPopReceipt(queueMessage.getPopReceipt());
+
+        return released;
+    }
+
+    private static boolean isCancelled(@Nullable ProgressListener listener) {
+        return listener != null && listener.isCancelled();
+    }
+
+    private static void reportProgress(@Nullable ProgressListener listener, long processed, long start) {
+        if (listener != null) {
+            listener.progress(processed, Result.getMessagesPerSecond(processed, System.currentTimeMillis() - start));
+        }
+    }
+
+    private static class JsonlWriter {
+        private final Gson gson = new Gson();
+        private final Writer writer;
+
+        private JsonlWriter(@NotNull File file) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+        }
+
+        private void write(@NotNull QueueMessage queueMessage) throws IOException {
+            JsonObject json = new JsonObject();
+            json.addProperty("id", queueMessage.getId());
+            json.addProperty("insertionTime", queueMessage.getInsertionTime().getTimeInMillis());
+            json.addProperty("expirationTime", queueMessage.getExpirationTime().getTimeInMillis());
+            json.addProperty("dequeueCount", queueMessage.getDequeueCount());
+            json.addProperty("content", queueMessage.getContent());
+
+            writer.write(gson.toJson(json));
+            writer.write('\n');
+        }
+
+        private void close() throws IOException {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.microsoft.azure.storage.*;
+import com.microsoft.azure.storage.blob.BlobRequestOptions;
+import com.microsoft.azure.storage.blob.CloudBlobClient;
+import com.microsoft.azure.storage.core.Utility;
+import com.microsoft.azure.storage.queue.CloudQueueClient;
+import com.microsoft.azure.storage.queue.QueueRequestOptions;
+import com.microsoft.azure.storage.table.CloudTableClient;
+import com.microsoft.azure.storage.table.TableRequestOptions;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.ServiceMetrics;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.StorageAccount;
+
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.security.InvalidKeyException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the parsed {@link CloudStorageAccount} and its blob, queue and table clients for each storage
+ * account, so storage operations don't re-parse the connection string and rebuild clients on every
+ * call. The settings of connection strings parsed into {@link ClientStorageAccount}s are cached too. An entry is rebuilt when the account connection string changes, e.g. after a key rotation.
+ * <p/>
+ * Requests sent by the storage SDK are attributed to the account owning the endpoint host, which
+ * gives per-account request, failure and retry counters. While {@link ServiceMetrics} is enabled the
+ * same events also feed its per-account, per-operation latency and transfer statistics.
+ */
+public class StorageClientRegistry {
+    public static class RequestCounters {
+        private final String accountName;
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failedRequests = new AtomicLong();
+        private final AtomicLong retries = new AtomicLong();
+
+        private RequestCounters(@NotNull String accountName) {
+            this.accountName = accountName;
+        }
+
+        @NotNull
+        public String getAccountName() {
+            return accountName;
+        }
+
+        public long getRequests() {
+            return requests.get();
+        }
+
+        public long getFailedRequests() {
+            return failedRequests.get();
+        }
+
+        public long getRetries() {
+            return retries.get();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d requests, %d failed, %d retries", accountName, getRequests(),
+                    getFailedRequests(), getRetries());
+        }
+    }
+
+    private static class StorageEndpoint {
+        private final String accountName;
+        private final String service;
+
+        private StorageEndpoint(@NotNull String accountName, @NotNull String service) {
+            this.accountName = accountName;
+            this.service = service;
+        }
+    }
+
+    private static class AccountClients {
+        private final String connectionString;
+        private final CloudBlobClient blobClient;
+        private final CloudQueueClient queueClient;
+        private final CloudTableClient tableClient;
+        private final RequestCounters counters;
+
+        private AccountClients(@NotNull String connectionString,
+                               @NotNull CloudStorageAccount account,
+                               @NotNull RequestCounters counters) {
+            this.connectionString = connectionString;
+            this.counters = counters;
+
+            blobClient = account.createCloudBlobClient();
+            BlobRequestOptions blobOptions = blobClient.getDefaultRequestOptions();
+            blobOptions.setConcurrentRequestCount(BLOB_CONCURRENT_REQUEST_COUNT);
+            blobOptions.setTimeoutIntervalInMs(BLOB_TIMEOUT_MS);
+            blobOptions.setRetryPolicyFactory(new RetryExponentialRetry(RETRY_DELTA_BACKOFF_MS, RETRY_MAX_ATTEMPTS));
+
+            queueClient = account.createCloudQueueClient();
+            QueueRequestOptions queueOptions = queueClient.getDefaultRequestOptions();
+            queueOptions.setTimeoutIntervalInMs(TIMEOUT_MS);
+            queueOptions.setMaximumExecutionTimeInMs(MAXIMUM_EXECUTION_TIME_MS);
+            queueOptions.setRetryPolicyFactory(new RetryExponentialRetry(RETRY_DELTA_BACKOFF_MS, RETRY_MAX_ATTEMPTS));
+
+            tableClient = account.createCloudTableClient();
+            TableRequestOptions tableOptions = tableClient.getDefaultRequestOptions();
+            tableOptions.setTimeoutIntervalInMs(TIMEOUT_MS);
+            tableOptions.setMaximumExecutionTimeInMs(MAXIMUM_EXECUTION_TIME_MS);
+            tableOptions.setRetryPolicyFactory(new RetryExponentialRetry(RETRY_DELTA_BACKOFF_MS, RETRY_MAX_ATTEMPTS));
+        }
+    }
+
+    private static final int BLOB_CONCURRENT_REQUEST_COUNT = 4;
+    private static final int BLOB_TIMEOUT_MS = 90 * 1000;
+    private static final int TIMEOUT_MS = 30 * 1000;
+    private static final int MAXIMUM_EXECUTION_TIME_MS = 2 * 60 * 1000;
+    private static final int RETRY_DELTA_BACKOFF_MS = 3000;
+    private static final int RETRY_MAX_ATTEMPTS = 3;
+    private static final int MAX_PARSED_CONNECTION_STRINGS = 256;
+
+    private static final ConcurrentMap<String, AccountClients> clientsByAccount = new ConcurrentHashMap<String, AccountClients>();
+    private static final ConcurrentMap<String, RequestCounters> countersByAccount = new ConcurrentHashMap<String, RequestCounters>();
+    private static final ConcurrentMap<String, RequestCounters> countersByHost = new ConcurrentHashMap<String, RequestCounters>();
+    private static final ConcurrentMap<String, StorageEndpoint> endpointsByAuthority = new ConcurrentHashMap<String, StorageEndpoint>();
+    private static final Cache<String, Map<String, String>> settingsByConnectionString = CacheBuilder.newBuilder()
+            .maximumSize(MAX_PARSED_CONNECTION_STRINGS)
+            .build();
+
+    static {
+        OperationContext.getGlobalSendingRequestEventHandler().addListener(new StorageEvent<SendingRequestEvent>() {
+            @Override
+            public void eventOccurred(SendingRequestEvent event) {
+                RequestCounters counters = getCounters(event);
+
+                if (counters != null) {
+                    counters.requests.incrementAndGet();
+                }
+
+                ServiceMetrics metrics = ServiceMetrics.getManager();
+
+                if (metrics.isEnabled() && event.getConnectionObject() instanceof HttpURLConnection) {
+                    HttpURLConnection connection = (HttpURLConnection) event.getConnectionObject();
+                    metrics.recordBytesOut(getMetricsTag(connection), getOperationName(connection),
+                            parseLength(connection.getRequestProperty(Constants.HeaderConstants.CONTENT_LENGTH)));
+                }
+            }
+        });
+
+        OperationContext.getGlobalResponseReceivedEventHandler().addListener(new StorageEvent<ResponseReceivedEvent>() {
+            @Override
+            public void eventOccurred(ResponseReceivedEvent event) {
+                RequestCounters counters = getCounters(event);
+
+                if (counters != null && event.getRequestResult() != null
+                        && event.getRequestResult().getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                    counters.failedRequests.incrementAndGet();
+                }
+
+                ServiceMetrics metrics = ServiceMetrics.getManager();
+                RequestResult result = event.getRequestResult();
+
+                if (metrics.isEnabled() && result != null && event.getConnectionObject() instanceof HttpURLConnection) {
+                    HttpURLConnection connection = (HttpURLConnection) event.getConnectionObject();
+                    long stop = result.getStopDate() != null ? result.getStopDate().getTime() : System.currentTimeMillis();
+                    long latency = result.getStartDate() != null ? stop - result.getStartDate().getTime() : 0;
+
+                    metrics.recordLatency(getMetricsTag(connection), getOperationName(connection), latency,
+                            result.getStatusCode() >= HttpURLConnection.HTTP_BAD_REQUEST,
+                            parseLength(connection.getHeaderField(Constants.HeaderConstants.CONTENT_LENGTH)), 0);
+                }
+            }
+        });
+
+        OperationContext.getGlobalRetryingEventHandler().addListener(new StorageEvent<RetryingEvent>() {
+            @Override
+            public void eventOccurred(RetryingEvent event) {
+                RequestCounters counters = getCounters(event);
+
+                if (counters != null) {
+                    counters.retries.incrementAndGet();
+                }
+
+                ServiceMetrics metrics = ServiceMetrics.getManager();
+
+                if (metrics.isEnabled() && event.getConnectionObject() instanceof HttpURLConnection) {
+                    HttpURLConnection connection = (HttpURLConnection) event.getConnectionObject();
+                    metrics.recordRetry(getMetricsTag(connection), getOperationName(connection));
+                }
+            }
+        });
+    }
+
+    @NotNull
+    public static CloudBlobClient getBlobClient(@NotNull ClientStorageAccount storageAccount)
+            throws URISyntaxException, InvalidKeyException, AzureCmdException {
+        return getClients(storageAccount).blobClient;
+    }
+
+    @NotNull
+    public static CloudQueueClient getQueueClient(@NotNull ClientStorageAccount storageAccount)
+            throws URISyntaxException, InvalidKeyException, AzureCmdException {
+        return getClients(storageAccount).queueClient;
+    }
+
+    @NotNull
+    public static CloudTableClient getTableClient(@NotNull ClientStorageAccount storageAccount)
+            throws URISyntaxException, InvalidKeyException, AzureCmdException {
+        return getClients(storageAccount).tableClient;
+    }
+
+    /**
+     * The request counters of every account used so far, ordered by account name.
+     */
+    @NotNull
+    public static List<RequestCounters> getRequestCounters() {
+        List<RequestCounters> counters = new ArrayList<RequestCounters>(countersByAccount.values());
+
+        Collections.sort(counters, new Comparator<RequestCounters>() {
+            @Override
+            public int compare(RequestCounters c1, RequestCounters c2) {
+                return c1.accountName.compareTo(c2.accountName);
+            }
+        });
+
+        return counters;
+    }
+
+    /**
+     * Returns the settings of a storage connection string, parsing each distinct string only once.
+     */
+    @NotNull
+    public static Map<String, String> parseConnectionString(@NotNull String connectionString) {
+        Map<String, String> settings = settingsByConnectionString.getIfPresent(connectionString);
+
+        if (settings == null) {
+            settings = Collections.unmodifiableMap(Utility.parseAccountString(connectionString));
+            settingsByConnectionString.put(connectionString, settings);
+        }
+
+        return settings;
+    }
+
+    /**
+     * Drops the cached clients of an account, e.g. when it is deleted or detached.
+     */
+    public static void invalidate(@NotNull ClientStorageAccount storageAccount) {
+        AccountClients clients = clientsByAccount.remove(getAccountKey(storageAccount));
+
+        if (clients != null) {
+            countersByHost.values().remove(clients.counters);
+        }
+    }
+
+    @NotNull
+    private static AccountClients getClients(@NotNull ClientStorageAccount storageAccount)
+            throws URISyntaxException, InvalidKeyException, AzureCmdException {
+        if (storageAccount instanceof StorageAccount && !((StorageAccount) storageAccount).isKeysLoaded()) {
+            AzureManagerImpl.getManager().loadStorageAccountKeys((StorageAccount) storageAccount);
+        }
+
+        String accountKey = getAccountKey(storageAccount);
+        AccountClients clients = clientsByAccount.get(accountKey);
+
+        if (clients == null || !clients.connectionString.equals(storageAccount.getConnectionString())) {
+            CloudStorageAccount account = AzureSDKHelper.getCloudStorageAccount(storageAccount);
+            RequestCounters counters = getAccountCounters(accountKey, storageAccount.getName());
+
+            clients = new AccountClients(storageAccount.getConnectionString(), account, counters);
+            clientsByAccount.put(accountKey, clients);
+
+            registerHost(account.getBlobEndpoint(), counters, storageAccount.getName(), "blob");
+            registerHost(account.getQueueEndpoint(), counters, storageAccount.getName(), "queue");
+            registerHost(account.getTableEndpoint(), counters, storageAccount.getName(), "table");
+        }
+
+        return clients;
+    }
+
+    @NotNull
+    private static RequestCounters getAccountCounters(@NotNull String accountKey, @NotNull String accountName) {
+        RequestCounters counters = countersByAccount.get(accountKey);
+
+        if (counters == null) {
+            RequestCounters newCounters = new RequestCounters(accountName);
+            counters = countersByAccount.putIfAbsent(accountKey, newCounters);
+
+            if (counters == null) {
+                counters = newCounters;
+            }
+        }
+
+        return counters;
+    }
+
+    private static void registerHost(@Nullable URI endpoint, @NotNull RequestCounters counters,
+                                     @NotNull String accountName, @NotNull String service) {
+        if (endpoint != null && endpoint.getHost() != null) {
+            countersByHost.put(endpoint.getHost().toLowerCase(), counters);
+            endpointsByAuthority.put(endpoint.getAuthority().toLowerCase(), new StorageEndpoint(accountName, service));
+        }
+    }
+
+    @NotNull
+    private static String getMetricsTag(@NotNull HttpURLConnection connection) {
+        StorageEndpoint endpoint = endpointsByAuthority.get(connection.getURL().getAuthority().toLowerCase());
+        return endpoint != null ? endpoint.accountName : connection.getURL().getHost();
+    }
+
+    /**
+     * Names a storage request after its method, service and the restype/comp query parameters that
+     * select the operation, e.g. "GET blob?restype=container&comp=list".
+     */
+    @NotNull
+    private static String getOperationName(@NotNull HttpURLConnection connection) {
+        StorageEndpoint endpoint = endpointsByAuthority.get(connection.getURL().getAuthority().toLowerCase());
+        StringBuilder sb = new StringBuilder(connection.getRequestMethod()).append(' ')
+                .append(endpoint != null ? endpoint.service : "storage");
+        String query = connection.getURL().getQuery();
+        char separator = '?';
+
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("restype=") || parameter.startsWith("comp=")) {
+                    sb.append(separator).append(parameter);
+                    separator = '&';
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static long parseLength(@Nullable String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : 0;
+        } catch (NumberFormatException ignored) {
+            return 0;
+        }
+    }
+
+    @Nullable
+    private static RequestCounters getCounters(@NotNull BaseEvent event) {
+        Object connection = event.getConnectionObject();
+
+        if (connection instanceof HttpURLConnection) {
+            String host = ((HttpURLConnection) connection).getURL().getHost();
+            return host != null ? countersByHost.get(host.toLowerCase()) : null;
+        }
+
+        return null;
+    }
+
+    @NotNull
+    private static String getAccountKey(@NotNull ClientStorageAccount storageAccount) {
+        return storageAccount.getName() + "|" + storageAccount.getBlobsUri() + "|" + storageAccount.getQueuesUri()
+                + "|" + storageAccount.getTablesUri();
+    }
+}
@@ -17,9 +17,11 @@ package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
 
 import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.*;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
@@ -47,6 +49,23 @@ public interface StorageClientSDKManager {
     List<BlobItem> getBlobItems(@NotNull ClientStorageAccount storageAccount, @NotNull BlobDirectory blobDirectory)
             throws AzureCmdException;
 
+    /**
+     * Lists every blob under the directory, including the ones in nested directories.
+     */
+    @NotNull
+    List<BlobFile> getBlobFiles(@NotNull ClientStorageAccount storageAccount, @NotNull BlobDirectory blobDirectory)
+            throws AzureCmdException;
+
+    /**
+     * Lists every blob of a container whose path starts with the prefix, one page at a time, without
+     * keeping the listing in memory. The callback returns false to stop the listing.
+     */
+    void scanBlobFiles(@NotNull ClientStorageAccount storageAccount,
+                       @NotNull String containerName,
+                       @NotNull String prefix,
+                       @NotNull CallableSingleArg<Boolean, BlobFile> callback)
+            throws AzureCmdException;
+
     @NotNull
     BlobDirectory createBlobDirectory(@NotNull ClientStorageAccount storageAccount,
                                       @NotNull BlobDirectory parentBlobDirectory,
@@ -72,6 +91,104 @@ public interface StorageClientSDKManager {
                                long length)
             throws AzureCmdException;
 
+    /**
+     * Uploads a local file as a block blob. Files up to {@code singleBlobPutThresholdInBytes} are sent
+     * in one request, larger ones in blocks of {@code blockSizeInBytes} with up to
+     * {@code concurrentRequestCount} blocks in flight. The blob's content MD5 is stored either way.
+     */
+    void uploadBlobFile(@NotNull ClientStorageAccount storageAccount,
+                        @NotNull String containerName,
+                        @NotNull String blobPath,
+                        @NotNull File file,
+                        int singleBlobPutThresholdInBytes,
+                        int blockSizeInBytes,
+                        int concurrentRequestCount)
+            throws AzureCmdException;
+
+    void downloadBlobFile(@NotNull ClientStorageAccount storageAccount,
+                          @NotNull BlobFile blobFile,
+                          @NotNull File file,
+                          int singleBlobGetThresholdInBytes,
+                          int rangeSizeInBytes,
+                          int concurrentRequestCount)
+            throws AzureCmdException;
+
+    /**
+     * Lists the ranges of a page blob that hold data. Pages outside of them read as zeros.
+     */
+    @NotNull
+    List<BlobPageRange> getBlobPageRanges(@NotNull ClientStorageAccount storageAccount, @NotNull BlobFile blobFile)
+            throws AzureCmdException;
+
+    void downloadBlobRange(@NotNull ClientStorageAccount storageAccount,
+                           @NotNull BlobFile blobFile,
+                           long offset,
+                           long length,
+                           @NotNull OutputStream content)
+            throws AzureCmdException;
+
+    /**
+     * Reloads the properties of a blob, such as the size of a blob that is still being appended to.
+     */
+    @NotNull
+    BlobFile refreshBlobFile(@NotNull ClientStorageAccount storageAccount,
+                             @NotNull BlobFile blobFile)
+            throws AzureCmdException;
+
+    void createPageBlob(@NotNull ClientStorageAccount storageAccount,
+                        @NotNull String containerName,
+                        @NotNull String blobPath,
+                        long size)
+            throws AzureCmdException;
+
+    void deletePageBlob(@NotNull ClientStorageAccount storageAccount,
+                        @NotNull String containerName,
+                        @NotNull String blobPath)
+            throws AzureCmdException;
+
+    /**
+     * Writes pages of a page blob. The offset and length have to be multiples of 512 bytes, and the
+     * length can be at most 4 MB.
+     */
+    void uploadBlobPages(@NotNull ClientStorageAccount storageAccount,
+                         @NotNull String containerName,
+                         @NotNull String blobPath,
+                         long offset,
+                         @NotNull byte[] data,
+                         int length)
+            throws AzureCmdException;
+
+    /**
+     * Starts a server side copy of a blob into a container of the same or another storage account. A
+     * read-only shared access signature grants access to the source when it lives in another account.
+     * Returns the copy id, the progress of the copy is available from {@link #getBlobCopyState}.
+     */
+    @NotNull
+    String startBlobCopy(@NotNull ClientStorageAccount sourceAccount,
+                         @NotNull BlobFile sourceBlob,
+                         @NotNull ClientStorageAccount targetAccount,
+                         @NotNull String targetContainerName,
+                         @NotNull String targetPath)
+            throws AzureCmdException;
+
+    /**
+     * Returns the state of the last copy into the blob, or null if the blob was never the target of a
+     * copy. The blob type is one of the values of {@link BlobFile#getType()}.
+     */
+    @Nullable
+    BlobCopyState getBlobCopyState(@NotNull ClientStorageAccount storageAccount,
+                                   @NotNull String containerName,
+                                   @NotNull String blobPath,
+                                   @NotNull String blobType)
+            throws AzureCmdException;
+
+    void abortBlobCopy(@NotNull ClientStorageAccount storageAccount,
+                       @NotNull String containerName,
+                       @NotNull String blobPath,
+                       @NotNull String blobType,
+                       @NotNull String copyId)
+            throws AzureCmdException;
+
     void downloadBlobFileContent(@NotNull ClientStorageAccount storageAccount,
                                  @NotNull BlobFile blobFile,
                                  @NotNull OutputStream content)
@@ -105,6 +222,33 @@ public interface StorageClientSDKManager {
     QueueMessage dequeueFirstQueueMessage(@NotNull ClientStorageAccount storageAccount, @NotNull Queue queue)
             throws AzureCmdException;
 
+    long getApproximateQueueMessageCount(@NotNull ClientStorageAccount storageAccount, @NotNull Queue queue)
+            throws AzureCmdException;
+
+    @NotNull
+    List<QueueMessage> receiveQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                                            @NotNull Queue queue,
+                                            int maxMessages,
+                                            int visibilityTimeoutInSeconds)
+            throws AzureCmdException;
+
+    void deleteQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                             @NotNull List<QueueMessage> queueMessages,
+                             int parallelism)
+            throws AzureCmdException;
+
+    void releaseQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                              @NotNull List<QueueMessage> queueMessages,
+                              int parallelism)
+            throws AzureCmdException;
+
+    void createQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                             @NotNull Queue queue,
+                             @NotNull List<String> contents,
+                             int timeToLiveInSeconds,
+                             int parallelism)
+            throws AzureCmdException;
+
     @NotNull
     List<Table> getTables(@NotNull ClientStorageAccount storageAccount)
             throws AzureCmdException;
@@ -118,8 +262,21 @@ public interface StorageClientSDKManager {
             throws AzureCmdException;
 
     @NotNull
-    List<TableEntity> getTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
-                                       @NotNull String filter)
+    CompactTableEntityList getTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
+                                            @NotNull String filter)
+            throws AzureCmdException;
+
+    /**
+     * Streams the entities matching a filter to a consumer, one result segment at a time, until the
+     * consumer returns false.
+     */
+    void scanTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
+                           @NotNull String filter, @NotNull CallableSingleArg<Boolean, TableEntity> consumer)
+            throws AzureCmdException;
+
+    @Nullable
+    String getFirstPartitionKey(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
+                                @NotNull String filter)
             throws AzureCmdException;
 
     @NotNull
@@ -134,4 +291,20 @@ public interface StorageClientSDKManager {
 
     void deleteTableEntity(@NotNull ClientStorageAccount storageAccount, @NotNull TableEntity tableEntity)
             throws AzureCmdException;
+
+    /**
+     * Inserts or replaces the entities in a single entity group transaction. They must share one
+     * partition key, and there can be at most 100 of them.
+     */
+    void upsertTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull String tableName,
+                             @NotNull List<TableEntity> tableEntities)
+            throws AzureCmdException;
+
+    /**
+     * Deletes the entities in a single entity group transaction. They must share one partition key,
+     * and there can be at most 100 of them.
+     */
+    void deleteTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull String tableName,
+                             @NotNull List<TableEntity> tableEntities)
+            throws AzureCmdException;
 }
\ No newline at end of file
@@ -16,14 +16,16 @@
 package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
 
 import com.google.common.base.Strings;
-import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.AccessCondition;
+import com.microsoft.azure.storage.ResultContinuation;
+import com.microsoft.azure.storage.ResultSegment;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.*;
 import com.microsoft.azure.storage.core.Base64;
-import com.microsoft.azure.storage.core.Utility;
 import com.microsoft.azure.storage.queue.CloudQueue;
 import com.microsoft.azure.storage.queue.CloudQueueClient;
 import com.microsoft.azure.storage.queue.CloudQueueMessage;
+import com.microsoft.azure.storage.queue.MessageUpdateFields;
 import com.microsoft.azure.storage.queue.QueueListingDetails;
 import com.microsoft.azure.storage.table.*;
 import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
@@ -36,13 +38,33 @@ import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntit
 import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity.Property;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.Map.Entry;
 
 public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
+    private static class ReceivedQueueMessage extends CloudQueueMessage {
+        private ReceivedQueueMessage(@NotNull String id, @NotNull String popReceipt) {
+            super("");
+
+            setMessageId(id);
+            setPopReceipt(popReceipt);
+        }
+    }
+
+    private static final int MAX_QUEUE_MESSAGES_PER_REQUEST = 32;
+    private static final String POP_RECEIPT_MISMATCH = "PopReceiptMismatch";
+    private static final int MAX_BLOBS_PER_SEGMENT = 5000;
+    private static final long SAS_CLOCK_SKEW_MILLIS = 5 * 60 * 1000;
+    private static final long COPY_SAS_VALIDITY_MILLIS = 7 * 24 * 60 * 60 * 1000L;
+
     private static StorageClientSDKManager apiManager;
 
     private StorageClientSDKManagerImpl() {
@@ -60,7 +82,7 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
     @Override
     @NotNull
     public ClientStorageAccount getStorageAccount(@NotNull String connectionString) {
-        HashMap<String, String> settings = Utility.parseAccountString(connectionString);
+        Map<String, String> settings = StorageClientRegistry.parseConnectionString(connectionString);
 
         String name = settings.containsKey(ClientStorageAccount.ACCOUNT_NAME_KEY) ?
                 settings.get(ClientStorageAccount.ACCOUNT_NAME_KEY) : "";
@@ -235,49 +257,70 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
 
                     biList.add(new BlobDirectory(name, uri, containerName, path));
                 } else if (item instanceof CloudBlob) {
-                    CloudBlob blob = (CloudBlob) item;
-
-                    String name = extractBlobItemName(blob.getName(), delimiter);
-                    String path = Strings.nullToEmpty(blob.getName());
-                    String type = "";
-                    String cacheControlHeader = "";
-                    String contentEncoding = "";
-                    String contentLanguage = "";
-                    String contentType = "";
-                    String contentMD5Header = "";
-                    String eTag = "";
-                    Calendar lastModified = new GregorianCalendar();
-                    long size = 0;
-
-                    BlobProperties properties = blob.getProperties();
-
-                    if (properties != null) {
-                        if (properties.getBlobType() != null) {
-                            type = properties.getBlobType().toString();
-                        }
+                    biList.add(getBlobFile((CloudBlob) item, containerName, delimiter));
+                }
+            }
+
+            return biList;
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Blob Item list", t);
+        }
+    }
 
-                        cacheControlHeader = Strings.nullToEmpty(properties.getCacheControl());
-                        contentEncoding = Strings.nullToEmpty(properties.getContentEncoding());
-                        contentLanguage = Strings.nullToEmpty(properties.getContentLanguage());
-                        contentType = Strings.nullToEmpty(properties.getContentType());
-                        contentMD5Header = Strings.nullToEmpty(properties.getContentMD5());
-                        eTag = Strings.nullToEmpty(properties.getEtag());
+    @NotNull
+    @Override
+    public List<BlobFile> getBlobFiles(@NotNull ClientStorageAccount storageAccount, @NotNull BlobDirectory blobDirectory)
+            throws AzureCmdException {
+        List<BlobFile> bfList = new ArrayList<BlobFile>();
 
-                        if (properties.getLastModified() != null) {
-                            lastModified.setTime(properties.getLastModified());
-                        }
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+            String containerName = blobDirectory.getContainerName();
+            String delimiter = client.getDirectoryDelimiter();
 
-                        size = properties.getLength();
-                    }
+            CloudBlobContainer container = client.getContainerReference(containerName);
 
-                    biList.add(new BlobFile(name, uri, containerName, path, type, cacheControlHeader, contentEncoding,
-                            contentLanguage, contentType, contentMD5Header, eTag, lastModified, size));
+            for (ListBlobItem item : container.listBlobs(blobDirectory.getPath(), true,
+                    EnumSet.noneOf(BlobListingDetails.class), null, null)) {
+                if (item instanceof CloudBlob) {
+                    bfList.add(getBlobFile((CloudBlob) item, containerName, delimiter));
                 }
             }
 
-            return biList;
+            return bfList;
         } catch (Throwable t) {
-            throw new AzureCmdException("Error retrieving the Blob Item list", t);
+            throw new AzureCmdException("Error retrieving the Blob File list", t);
+        }
+    }
+
+    @Override
+    public void scanBlobFiles(@NotNull ClientStorageAccount storageAccount,
+                              @NotNull String containerName,
+                              @NotNull String prefix,
+                              @NotNull CallableSingleArg<Boolean, BlobFile> callback)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+            String delimiter = client.getDirectoryDelimiter();
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            ResultContinuation token = null;
+
+            do {
+                ResultSegment<ListBlobItem> segment = container.listBlobsSegmented(prefix, true,
+                        EnumSet.noneOf(BlobListingDetails.class), MAX_BLOBS_PER_SEGMENT, token, null, null);
+
+                for (ListBlobItem item : segment.getResults()) {
+                    if (item instanceof CloudBlob
+                            && !callback.call(getBlobFile((CloudBlob) item, containerName, delimiter))) {
+                        return;
+                    }
+                }
+
+                token = segment.getContinuationToken();
+            } while (token != null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error listing the Blob Files", t);
         }
     }
 
@@ -394,6 +437,306 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
         }
     }
 
+    @Override
+    public void uploadBlobFile(@NotNull ClientStorageAccount storageAccount,
+                               @NotNull String containerName,
+                               @NotNull String blobPath,
+                               @NotNull File file,
+                               int singleBlobPutThresholdInBytes,
+                               int blockSizeInBytes,
+                               int concurrentRequestCount)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            CloudBlockBlob blob = container.getBlockBlobReference(blobPath);
+            blob.setStreamWriteSizeInBytes(blockSizeInBytes);
+
+            BlobRequestOptions options = new BlobRequestOptions();
+            options.setSingleBlobPutThresholdInBytes(singleBlobPutThresholdInBytes);
+            options.setConcurrentRequestCount(concurrentRequestCount);
+            options.setStoreBlobContentMD5(true);
+
+            blob.uploadFromFile(file.getPath(), null, options, null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error uploading the Blob File", t);
+        }
+    }
+
+    @Override
+    public void downloadBlobFile(@NotNull ClientStorageAccount storageAccount,
+                                 @NotNull BlobFile blobFile,
+                                 @NotNull File file,
+                                 int singleBlobGetThresholdInBytes,
+                                 final int rangeSizeInBytes,
+                                 int concurrentRequestCount)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(blobFile.getContainerName());
+            final CloudBlob blob = getCloudBlob(container, blobFile);
+            blob.downloadAttributes();
+
+            final long size = blob.getProperties().getLength();
+            final BlobRequestOptions options = new BlobRequestOptions();
+            options.setConcurrentRequestCount(concurrentRequestCount);
+
+            if (size <= singleBlobGetThresholdInBytes || concurrentRequestCount <= 1) {
+                blob.downloadToFile(file.getPath(), null, options, null);
+                return;
+            }
+
+            // every range is read from the same version of the blob, so a concurrent write fails the
+            // download instead of producing a file mixing both versions
+            final AccessCondition sameVersion = AccessCondition.generateIfMatchCondition(blob.getProperties().getEtag());
+            List<Long> offsets = new ArrayList<Long>();
+
+            for (long offset = 0; offset < size; offset += rangeSizeInBytes) {
+                offsets.add(offset);
+            }
+
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+            try {
+                randomAccessFile.setLength(size);
+                final FileChannel channel = randomAccessFile.getChannel();
+
+                ParallelRequestRunner.run(offsets, concurrentRequestCount, new ParallelRequestRunner.Request<Long, Long>() {
+                    @NotNull
+                    @Override
+                    public Long execute(@NotNull Long offset) throws Throwable {
+                        int length = (int) Math.min(rangeSizeInBytes, size - offset);
+                        byte[] buffer = new byte[length];
+                        int read = 0;
+
+                        while (read < length) {
+                            read += blob.downloadRangeToByteArray(offset + read, (long) (length - read), buffer, read,
+                                    sameVersion, options, null);
+                        }
+
+                        ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+
+                        while (byteBuffer.hasRemaining()) {
+                            channel.write(byteBuffer, offset + byteBuffer.position());
+                        }
+
+                        return offset;
+                    }
+                }, null);
+            } finally {
+                randomAccessFile.close();
+            }
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error downloading the Blob File", t);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<BlobPageRange> getBlobPageRanges(@NotNull ClientStorageAccount storageAccount,
+                                                 @NotNull BlobFile blobFile)
+            throws AzureCmdException {
+        List<BlobPageRange> prList = new ArrayList<BlobPageRange>();
+
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(blobFile.getContainerName());
+            CloudPageBlob blob = container.getPageBlobReference(blobFile.getPath());
+
+            for (PageRange pageRange : blob.downloadPageRanges()) {
+                prList.add(new BlobPageRange(pageRange.getStartOffset(), pageRange.getEndOffset()));
+            }
+
+            return prList;
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Page Blob ranges", t);
+        }
+    }
+
+    @Override
+    public void downloadBlobRange(@NotNull ClientStorageAccount storageAccount,
+                                  @NotNull BlobFile blobFile,
+                                  long offset,
+                                  long length,
+                                  @NotNull OutputStream content)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(blobFile.getContainerName());
+            CloudBlob blob = getCloudBlob(container, blobFile);
+
+            blob.downloadRange(offset, length, content);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error downloading the Blob File range", t);
+        }
+    }
+
+    @NotNull
+    @Override
+    public BlobFile refreshBlobFile(@NotNull ClientStorageAccount storageAccount,
+                                    @NotNull BlobFile blobFile)
+            throws AzureCmdException {
+        try {
+            CloudBlobContainer container = getCloudBlobClient(storageAccount)
+                    .getContainerReference(blobFile.getContainerName());
+
+            return reloadBlob(getCloudBlob(container, blobFile), blobFile.getContainerName(), blobFile);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error refreshing the Blob File", t);
+        }
+    }
+
+    @Override
+    public void createPageBlob(@NotNull ClientStorageAccount storageAccount,
+                               @NotNull String containerName,
+                               @NotNull String blobPath,
+                               long size)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            CloudPageBlob blob = container.getPageBlobReference(blobPath);
+
+            blob.create(size);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error creating the Page Blob", t);
+        }
+    }
+
+    @Override
+    public void deletePageBlob(@NotNull ClientStorageAccount storageAccount,
+                               @NotNull String containerName,
+                               @NotNull String blobPath)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            CloudPageBlob blob = container.getPageBlobReference(blobPath);
+
+            blob.deleteIfExists();
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error deleting the Page Blob", t);
+        }
+    }
+
+    @Override
+    public void uploadBlobPages(@NotNull ClientStorageAccount storageAccount,
+                                @NotNull String containerName,
+                                @NotNull String blobPath,
+                                long offset,
+                                @NotNull byte[] data,
+                                int length)
+            throws AzureCmdException {
+        try {
+            CloudBlobClient client = getCloudBlobClient(storageAccount);
+
+            CloudBlobContainer container = client.getContainerReference(containerName);
+            CloudPageBlob blob = container.getPageBlobReference(blobPath);
+
+            blob.uploadPages(new ByteArrayInputStream(data, 0, length), offset, length);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error uploading the Page Blob pages", t);
+        }
+    }
+
+    @NotNull
+    @Override
+    public String startBlobCopy(@NotNull ClientStorageAccount sourceAccount,
+                                @NotNull BlobFile sourceBlob,
+                                @NotNull ClientStorageAccount targetAccount,
+                                @NotNull String targetContainerName,
+                                @NotNull String targetPath)
+            throws AzureCmdException {
+        try {
+            CloudBlobContainer sourceContainer = getCloudBlobClient(sourceAccount)
+                    .getContainerReference(sourceBlob.getContainerName());
+            CloudBlob source = getCloudBlob(sourceContainer, sourceBlob);
+
+            CloudBlobContainer targetContainer = getCloudBlobClient(targetAccount)
+                    .getContainerReference(targetContainerName);
+            CloudBlob target = getCloudBlob(targetContainer, targetPath, sourceBlob.getType());
+
+            URI sourceUri = source.getUri();
+
+            if (!sourceAccount.getConnectionString().equals(targetAccount.getConnectionString())) {
+                // the copy is performed by the target account, which can't use our credentials to read the source
+                SharedAccessBlobPolicy policy = new SharedAccessBlobPolicy();
+                policy.setPermissions(EnumSet.of(SharedAccessBlobPermissions.READ));
+                policy.setSharedAccessStartTime(new Date(System.currentTimeMillis() - SAS_CLOCK_SKEW_MILLIS));
+                policy.setSharedAccessExpiryTime(new Date(System.currentTimeMillis() + COPY_SAS_VALIDITY_MILLIS));
+
+                sourceUri = new URI(sourceUri.toString() + "?" + source.generateSharedAccessSignature(policy, null));
+            }
+
+            return target.startCopy(sourceUri);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error starting the Blob copy", t);
+        }
+    }
+
+    @Nullable
+    @Override
+    public BlobCopyState getBlobCopyState(@NotNull ClientStorageAccount storageAccount,
+                                          @NotNull String containerName,
+                                          @NotNull String blobPath,
+                                          @NotNull String blobType)
+            throws AzureCmdException {
+        try {
+            CloudBlobContainer container = getCloudBlobClient(storageAccount).getContainerReference(containerName);
+            CloudBlob blob = getCloudBlob(container, blobPath, blobType);
+
+            blob.downloadAttributes();
+
+            CopyState copyState = blob.getCopyState();
+
+            if (copyState == null || copyState.getCopyId() == null) {
+                return null;
+            }
+
+            BlobCopyState.Status status;
+
+            if (copyState.getStatus() == CopyStatus.SUCCESS) {
+                status = BlobCopyState.Status.Success;
+            } else if (copyState.getStatus() == CopyStatus.ABORTED) {
+                status = BlobCopyState.Status.Aborted;
+            } else if (copyState.getStatus() == CopyStatus.PENDING) {
+                status = BlobCopyState.Status.Pending;
+            } else {
+                status = BlobCopyState.Status.Failed;
+            }
+
+            return new BlobCopyState(copyState.getCopyId(),
+                    status,
+                    copyState.getBytesCopied() != null ? copyState.getBytesCopied() : 0,
+                    copyState.getTotalBytes() != null ? copyState.getTotalBytes() : -1,
+                    Strings.nullToEmpty(copyState.getStatusDescription()));
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Blob copy state", t);
+        }
+    }
+
+    @Override
+    public void abortBlobCopy(@NotNull ClientStorageAccount storageAccount,
+                              @NotNull String containerName,
+                              @NotNull String blobPath,
+                              @NotNull String blobType,
+                              @NotNull String copyId)
+            throws AzureCmdException {
+        try {
+            CloudBlobContainer container = getCloudBlobClient(storageAccount).getContainerReference(containerName);
+
+            getCloudBlob(container, blobPath, blobType).abortCopy(copyId);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error aborting the Blob copy", t);
+        }
+    }
+
     @Override
     public void downloadBlobFileContent(@NotNull ClientStorageAccount storageAccount,
                                         @NotNull BlobFile blobFile,
@@ -485,25 +828,8 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
 
             CloudQueue cloudQueue = client.getQueueReference(queueName);
 
-            for (CloudQueueMessage cqm : cloudQueue.peekMessages(32)) {
-                String id = Strings.nullToEmpty(cqm.getId());
-                String content = Strings.nullToEmpty(cqm.getMessageContentAsString());
-
-                Calendar insertionTime = new GregorianCalendar();
-
-                if (cqm.getInsertionTime() != null) {
-                    insertionTime.setTime(cqm.getInsertionTime());
-                }
-
-                Calendar expirationTime = new GregorianCalendar();
-
-                if (cqm.getExpirationTime() != null) {
-                    expirationTime.setTime(cqm.getExpirationTime());
-                }
-
-                int dequeueCount = cqm.getDequeueCount();
-
-                qmList.add(new QueueMessage(id, queueName, content, insertionTime, expirationTime, dequeueCount));
+            for (CloudQueueMessage cqm : cloudQueue.peekMessages(MAX_QUEUE_MESSAGES_PER_REQUEST)) {
+                qmList.add(getQueueMessage(cqm, queueName));
             }
 
             return qmList;
@@ -584,6 +910,139 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
         }
     }
 
+    @Override
+    public long getApproximateQueueMessageCount(@NotNull ClientStorageAccount storageAccount, @NotNull Queue queue)
+            throws AzureCmdException {
+        try {
+            CloudQueueClient client = getCloudQueueClient(storageAccount);
+
+            CloudQueue cloudQueue = client.getQueueReference(queue.getName());
+            cloudQueue.downloadAttributes();
+
+            return cloudQueue.getApproximateMessageCount();
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the Queue message count", t);
+        }
+    }
+
+    @NotNull
+    @Override
+    public List<QueueMessage> receiveQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                                                   @NotNull Queue queue,
+                                                   int maxMessages,
+                                                   int visibilityTimeoutInSeconds)
+            throws AzureCmdException {
+        List<QueueMessage> qmList = new ArrayList<QueueMessage>();
+
+        try {
+            CloudQueueClient client = getCloudQueueClient(storageAccount);
+            String queueName = queue.getName();
+
+            CloudQueue cloudQueue = client.getQueueReference(queueName);
+            int count = Math.max(1, Math.min(maxMessages, MAX_QUEUE_MESSAGES_PER_REQUEST));
+
+            for (CloudQueueMessage cqm : cloudQueue.retrieveMessages(count, visibilityTimeoutInSeconds, null, null)) {
+                QueueMessage queueMessage = getQueueMessage(cqm, queueName);
+                queueMessage.setPopReceipt(cqm.getPopReceipt());
+
+                qmList.add(queueMessage);
+            }
+
+            return qmList;
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error receiving Queue Messages", t);
+        }
+    }
+
+    @Override
+    public void deleteQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                                    @NotNull List<QueueMessage> queueMessages,
+                                    int parallelism)
+            throws AzureCmdException {
+        try {
+            final CloudQueueClient client = getCloudQueueClient(storageAccount);
+
+            ParallelRequestRunner.run(queueMessages, parallelism, new ParallelRequestRunner.Request<QueueMessage, QueueMessage>() {
+                @NotNull
+                @Override
+                public QueueMessage execute(@NotNull QueueMessage queueMessage) throws Throwable {
+                    if (queueMessage.getPopReceipt() == null) {
+                        throw new AzureCmdException("Queue Message " + queueMessage.getId() + " was not received");
+                    }
+
+                    CloudQueue cloudQueue = client.getQueueReference(queueMessage.getQueueName());
+                    cloudQueue.deleteMessage(new ReceivedQueueMessage(queueMessage.getId(), queueMessage.getPopReceipt()));
+
+                    return queueMessage;
+                }
+            }, null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error deleting Queue Messages", t);
+        }
+    }
+
+    @Override
+    public void releaseQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                                     @NotNull List<QueueMessage> queueMessages,
+                                     int parallelism)
+            throws AzureCmdException {
+        try {
+            final CloudQueueClient client = getCloudQueueClient(storageAccount);
+
+            ParallelRequestRunner.run(queueMessages, parallelism, new ParallelRequestRunner.Request<QueueMessage, QueueMessage>() {
+                @NotNull
+                @Override
+                public QueueMessage execute(@NotNull QueueMessage queueMessage) throws Throwable {
+                    if (queueMessage.getPopReceipt() == null) {
+                        throw new AzureCmdException("Queue Message " + queueMessage.getId() + " was not received");
+                    }
+
+                    CloudQueue cloudQueue = client.getQueueReference(queueMessage.getQueueName());
+
+                    try {
+                        cloudQueue.updateMessage(new ReceivedQueueMessage(queueMessage.getId(), queueMessage.getPopReceipt()),
+                                0, EnumSet.of(MessageUpdateFields.VISIBILITY), null, null);
+                    } catch (StorageException e) {
+                        // the message was deleted or received again by someone else in the meantime,
+                        // either way it is no longer ours to release
+                        if (e.getHttpStatusCode() != 404 && !POP_RECEIPT_MISMATCH.equals(e.getErrorCode())) {
+                            throw e;
+                        }
+                    }
+
+                    return queueMessage;
+                }
+            }, null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error releasing Queue Messages", t);
+        }
+    }
+
+    @Override
+    public void createQueueMessages(@NotNull ClientStorageAccount storageAccount,
+                                    @NotNull Queue queue,
+                                    @NotNull List<String> contents,
+                                    final int timeToLiveInSeconds,
+                                    int parallelism)
+            throws AzureCmdException {
+        try {
+            CloudQueueClient client = getCloudQueueClient(storageAccount);
+            final CloudQueue cloudQueue = client.getQueueReference(queue.getName());
+
+            ParallelRequestRunner.run(contents, parallelism, new ParallelRequestRunner.Request<String, String>() {
+                @NotNull
+                @Override
+                public String execute(@NotNull String content) throws Throwable {
+                    cloudQueue.addMessage(new CloudQueueMessage(content), timeToLiveInSeconds, 0, null, null);
+
+                    return content;
+                }
+            }, null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error creating Queue Messages", t);
+        }
+    }
+
     @NotNull
     @Override
     public List<Table> getTables(@NotNull ClientStorageAccount storageAccount)
@@ -643,15 +1102,14 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
 
     @NotNull
     @Override
-    public List<TableEntity> getTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
-                                              @NotNull String filter)
+    public CompactTableEntityList getTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
+                                                   @NotNull String filter)
             throws AzureCmdException {
-        List<TableEntity> teList = new ArrayList<TableEntity>();
-
         try {
             CloudTableClient client = getCloudTableClient(storageAccount);
             String tableName = table.getName();
             CloudTable cloudTable = client.getTableReference(tableName);
+            CompactTableEntityList teList = new CompactTableEntityList(tableName);
 
             TableQuery<DynamicTableEntity> tableQuery = TableQuery.from(DynamicTableEntity.class);
 
@@ -663,15 +1121,100 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
             tro.setTablePayloadFormat(TablePayloadFormat.JsonFullMetadata);
 
             for (DynamicTableEntity dte : cloudTable.execute(tableQuery, tro, null)) {
-                teList.add(getTableEntity(tableName, dte));
+                // rows go straight into the columns, TableEntity instances are only created when used
+                int row = teList.addRow(Strings.nullToEmpty(dte.getPartitionKey()),
+                        Strings.nullToEmpty(dte.getRowKey()),
+                        Strings.nullToEmpty(dte.getEtag()),
+                        dte.getTimestamp() != null ? dte.getTimestamp().getTime() : System.currentTimeMillis());
+
+                if (dte.getProperties() != null) {
+                    for (Entry<String, EntityProperty> entry : dte.getProperties().entrySet()) {
+                        if (entry.getKey() != null && entry.getValue() != null) {
+                            teList.setProperty(row, entry.getKey(), getProperty(entry.getValue()));
+                        }
+                    }
+                }
             }
 
+            teList.trimToSize();
+
             return teList;
         } catch (Throwable t) {
             throw new AzureCmdException("Error retrieving the Table Entity list", t);
         }
     }
 
+    @Override
+    public void scanTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
+                                  @NotNull String filter, @NotNull CallableSingleArg<Boolean, TableEntity> consumer)
+            throws AzureCmdException {
+        try {
+            CloudTableClient client = getCloudTableClient(storageAccount);
+            String tableName = table.getName();
+            CloudTable cloudTable = client.getTableReference(tableName);
+
+            TableQuery<DynamicTableEntity> tableQuery = TableQuery.from(DynamicTableEntity.class);
+
+            if (!filter.isEmpty()) {
+                tableQuery.where(filter);
+            }
+
+            TableRequestOptions tro = new TableRequestOptions();
+            tro.setTablePayloadFormat(TablePayloadFormat.JsonFullMetadata);
+
+            ResultContinuation continuation = null;
+
+            do {
+                ResultSegment<DynamicTableEntity> segment = cloudTable.executeSegmented(tableQuery, continuation, tro, null);
+
+                for (DynamicTableEntity dte : segment.getResults()) {
+                    if (!consumer.call(getTableEntity(tableName, dte))) {
+                        return;
+                    }
+                }
+
+                continuation = segment.getContinuationToken();
+            } while (continuation != null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error scanning the Table Entities", t);
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getFirstPartitionKey(@NotNull ClientStorageAccount storageAccount, @NotNull Table table,
+                                       @NotNull String filter)
+            throws AzureCmdException {
+        try {
+            CloudTableClient client = getCloudTableClient(storageAccount);
+            CloudTable cloudTable = client.getTableReference(table.getName());
+
+            TableQuery<DynamicTableEntity> tableQuery = TableQuery.from(DynamicTableEntity.class)
+                    .select(new String[]{"PartitionKey"}).take(1);
+
+            if (!filter.isEmpty()) {
+                tableQuery.where(filter);
+            }
+
+            ResultContinuation continuation = null;
+
+            // the service may return empty segments with a continuation token at partition boundaries
+            do {
+                ResultSegment<DynamicTableEntity> segment = cloudTable.executeSegmented(tableQuery, continuation);
+
+                if (!segment.getResults().isEmpty()) {
+                    return segment.getResults().get(0).getPartitionKey();
+                }
+
+                continuation = segment.getContinuationToken();
+            } while (continuation != null);
+
+            return null;
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error retrieving the first Partition Key", t);
+        }
+    }
+
     @NotNull
     @Override
     public TableEntity createTableEntity(@NotNull ClientStorageAccount storageAccount, @NotNull String tableName,
@@ -736,40 +1279,162 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
         }
     }
 
+    @Override
+    public void upsertTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull String tableName,
+                                    @NotNull List<TableEntity> tableEntities)
+            throws AzureCmdException {
+        try {
+            CloudTableClient client = getCloudTableClient(storageAccount);
+            CloudTable cloudTable = client.getTableReference(tableName);
+
+            TableBatchOperation batch = new TableBatchOperation();
+
+            for (TableEntity tableEntity : tableEntities) {
+                batch.insertOrReplace(getDynamicTableEntity(tableEntity.getPartitionKey(), tableEntity.getRowKey(),
+                        tableEntity.getProperties()));
+            }
+
+            TableRequestOptions tro = new TableRequestOptions();
+            tro.setTablePayloadFormat(TablePayloadFormat.JsonNoMetadata);
+
+            cloudTable.execute(batch, tro, null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error saving the Table Entities", t);
+        }
+    }
+
+    @Override
+    public void deleteTableEntities(@NotNull ClientStorageAccount storageAccount, @NotNull String tableName,
+                                    @NotNull List<TableEntity> tableEntities)
+            throws AzureCmdException {
+        try {
+            CloudTableClient client = getCloudTableClient(storageAccount);
+            CloudTable cloudTable = client.getTableReference(tableName);
+
+            TableBatchOperation batch = new TableBatchOperation();
+
+            for (TableEntity tableEntity : tableEntities) {
+                DynamicTableEntity entity = getDynamicTableEntity(tableEntity);
+
+                if (Strings.isNullOrEmpty(entity.getEtag())) {
+                    entity.setEtag("*");
+                }
+
+                batch.delete(entity);
+            }
+
+            TableRequestOptions tro = new TableRequestOptions();
+            tro.setTablePayloadFormat(TablePayloadFormat.JsonNoMetadata);
+
+            cloudTable.execute(batch, tro, null);
+        } catch (Throwable t) {
+            throw new AzureCmdException("Error deleting the Table Entities", t);
+        }
+    }
+
     @NotNull
     private static CloudBlobClient getCloudBlobClient(@NotNull ClientStorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = AzureSDKHelper.getCloudStorageAccount(storageAccount);
-
-        return csa.createCloudBlobClient();
+        return StorageClientRegistry.getBlobClient(storageAccount);
     }
 
     @NotNull
     private static CloudQueueClient getCloudQueueClient(@NotNull ClientStorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = AzureSDKHelper.getCloudStorageAccount(storageAccount);
-
-        return csa.createCloudQueueClient();
+        return StorageClientRegistry.getQueueClient(storageAccount);
     }
 
     @NotNull
     private static CloudTableClient getCloudTableClient(@NotNull ClientStorageAccount storageAccount)
             throws Exception {
-        CloudStorageAccount csa = AzureSDKHelper.getCloudStorageAccount(storageAccount);
+        return StorageClientRegistry.getTableClient(storageAccount);
+    }
+
+    @NotNull
+    static BlobFile getBlobFile(@NotNull CloudBlob blob, @NotNull String containerName, @NotNull String delimiter)
+            throws URISyntaxException {
+        String uri = blob.getUri() != null ? blob.getUri().toString() : "";
+
+        String name = extractBlobItemName(blob.getName(), delimiter);
+        String path = Strings.nullToEmpty(blob.getName());
+        String type = "";
+        String cacheControlHeader = "";
+        String contentEncoding = "";
+        String contentLanguage = "";
+        String contentType = "";
+        String contentMD5Header = "";
+        String eTag = "";
+        Calendar lastModified = new GregorianCalendar();
+        long size = 0;
+
+        BlobProperties properties = blob.getProperties();
+
+        if (properties != null) {
+            if (properties.getBlobType() != null) {
+                type = properties.getBlobType().toString();
+            }
 
-        return csa.createCloudTableClient();
+            cacheControlHeader = Strings.nullToEmpty(properties.getCacheControl());
+            contentEncoding = Strings.nullToEmpty(properties.getContentEncoding());
+            contentLanguage = Strings.nullToEmpty(properties.getContentLanguage());
+            contentType = Strings.nullToEmpty(properties.getContentType());
+            contentMD5Header = Strings.nullToEmpty(properties.getContentMD5());
+            eTag = Strings.nullToEmpty(properties.getEtag());
+
+            if (properties.getLastModified() != null) {
+                lastModified.setTime(properties.getLastModified());
+            }
+
+            size = properties.getLength();
+        }
+
+        return new BlobFile(name, uri, containerName, path, type, cacheControlHeader, contentEncoding,
+                contentLanguage, contentType, contentMD5Header, eTag, lastModified, size);
+    }
+
+    @NotNull
+    private static QueueMessage getQueueMessage(@NotNull CloudQueueMessage cqm, @NotNull String queueName)
+            throws StorageException {
+        String id = Strings.nullToEmpty(cqm.getId());
+        String content = Strings.nullToEmpty(cqm.getMessageContentAsString());
+
+        Calendar insertionTime = new GregorianCalendar();
+
+        if (cqm.getInsertionTime() != null) {
+            insertionTime.setTime(cqm.getInsertionTime());
+        }
+
+        Calendar expirationTime = new GregorianCalendar();
+
+        if (cqm.getExpirationTime() != null) {
+            expirationTime.setTime(cqm.getExpirationTime());
+        }
+
+        int dequeueCount = cqm.getDequeueCount();
+
+        return new QueueMessage(id, queueName, content, insertionTime, expirationTime, dequeueCount);
     }
 
     @NotNull
     private static CloudBlob getCloudBlob(@NotNull CloudBlobContainer container,
                                           @NotNull BlobFile blobFile)
             throws URISyntaxException, StorageException {
+        return getCloudBlob(container, blobFile.getPath(), blobFile.getType());
+    }
+
+    @NotNull
+    private static CloudBlob getCloudBlob(@NotNull CloudBlobContainer container,
+                                          @NotNull String blobPath,
+                                          @NotNull String blobType)
+            throws URISyntaxException, StorageException {
         CloudBlob blob;
 
-        if (blobFile.getType().equals(BlobType.BLOCK_BLOB.toString())) {
-            blob = container.getBlockBlobReference(blobFile.getPath());
+        if (blobType.equals(BlobType.BLOCK_BLOB.toString())) {
+            blob = container.getBlockBlobReference(blobPath);
+        } else if (blobType.equals(BlobType.APPEND_BLOB.toString())) {
+            blob = container.getAppendBlobReference(blobPath);
         } else {
-            blob = container.getPageBlobReference(blobFile.getPath());
+            blob = container.getPageBlobReference(blobPath);
         }
 
         return blob;
@@ -783,6 +1448,8 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
 
         if (blobFile.getType().equals(BlobType.BLOCK_BLOB.toString())) {
             blob = parentDirectory.getBlockBlobReference(blobFile.getName());
+        } else if (blobFile.getType().equals(BlobType.APPEND_BLOB.toString())) {
+            blob = parentDirectory.getAppendBlobReference(blobFile.getName());
         } else {
             blob = parentDirectory.getPageBlobReference(blobFile.getName());
         }
@@ -861,8 +1528,8 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
     }
 
     @NotNull
-    private static TableEntity getTableEntity(@NotNull String tableName,
-                                              @NotNull DynamicTableEntity dte) {
+    static TableEntity getTableEntity(@NotNull String tableName,
+                                      @NotNull DynamicTableEntity dte) {
         String partitionKey = Strings.nullToEmpty(dte.getPartitionKey());
         String rowKey = Strings.nullToEmpty(dte.getRowKey());
         String eTag = Strings.nullToEmpty(dte.getEtag());
@@ -878,39 +1545,7 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
         if (dte.getProperties() != null) {
             for (Entry<String, EntityProperty> entry : dte.getProperties().entrySet()) {
                 if (entry.getKey() != null && entry.getValue() != null) {
-                    String key = entry.getKey();
-                    Property property;
-
-                    switch (entry.getValue().getEdmType()) {
-                        case BOOLEAN:
-                            property = new Property(entry.getValue().getValueAsBooleanObject());
-                            break;
-                        case DATE_TIME:
-                            Calendar value = new GregorianCalendar();
-                            value.setTime(entry.getValue().getValueAsDate());
-                            property = new Property(value);
-                            break;
-                        case DOUBLE:
-                            property = new Property(entry.getValue().getValueAsDoubleObject());
-                            break;
-                        case GUID:
-                            property = new Property(entry.getValue().getValueAsUUID());
-                            break;
-                        case INT32:
-                            property = new Property(entry.getValue().getValueAsIntegerObject());
-                            break;
-                        case INT64:
-                            property = new Property(entry.getValue().getValueAsLongObject());
-                            break;
-                        case STRING:
-                            property = new Property(entry.getValue().getValueAsString());
-                            break;
-                        default:
-                            property = new Property(entry.getValue().getValueAsString());
-                            break;
-                    }
-
-                    properties.put(key, property);
+                    properties.put(entry.getKey(), getProperty(entry.getValue()));
                 }
             }
         }
@@ -918,6 +1553,30 @@ public class StorageClientSDKManagerImpl implements StorageClientSDKManager {
         return new TableEntity(partitionKey, rowKey, tableName, eTag, timestamp, properties);
     }
 
+    @NotNull
+    private static Property getProperty(@NotNull EntityProperty entityProperty) {
+        switch (entityProperty.getEdmType()) {
+            case BOOLEAN:
+                return new Property(entityProperty.getValueAsBooleanObject());
+            case DATE_TIME:
+                Calendar value = new GregorianCalendar();
+                value.setTime(entityProperty.getValueAsDate());
+                return new Property(value);
+            case DOUBLE:
+                return new Property(entityProperty.getValueAsDoubleObject());
+            case GUID:
+                return new Property(entityProperty.getValueAsUUID());
+            case INT32:
+                return new Property(entityProperty.getValueAsIntegerObject());
+            case INT64:
+                return new Property(entityProperty.getValueAsLongObject());
+            case STRING:
+                return new Property(entityProperty.getValueAsString());
+            default:
+                return new Property(entityProperty.getValueAsString());
+        }
+    }
+
     @NotNull
     private static DynamicTableEntity getDynamicTableEntity(@NotNull TableEntity tableEntity)
             throws AzureCmdException {
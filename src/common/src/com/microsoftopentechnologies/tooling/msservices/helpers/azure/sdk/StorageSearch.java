@@ -0,0 +1,372 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExternalStorageHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManager;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.*;
+
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches every storage account we know of, both those of the selected subscriptions and the
+ * attached external ones, for containers, queues and tables whose name contains the search text and
+ * optionally for blobs whose path starts with it. Accounts are searched in parallel with a bounded
+ * number of listings per account, and matches are reported as soon as they are found.
+ */
+public class StorageSearch {
+    public enum MatchKind {
+        Container, Queue, Table, Blob
+    }
+
+    public static class Match {
+        private final ClientStorageAccount storageAccount;
+        private final MatchKind kind;
+        private final StorageServiceTreeItem item;
+        private final String name;
+        private final String uri;
+
+        private Match(@NotNull ClientStorageAccount storageAccount, @NotNull MatchKind kind,
+                      @NotNull StorageServiceTreeItem item, @NotNull String name, @NotNull String uri) {
+            this.storageAccount = storageAccount;
+            this.kind = kind;
+            this.item = item;
+            this.name = name;
+            this.uri = uri;
+        }
+
+        @NotNull
+        public ClientStorageAccount getStorageAccount() {
+            return storageAccount;
+        }
+
+        @NotNull
+        public MatchKind getKind() {
+            return kind;
+        }
+
+        /**
+         * The matching container, queue or table. For blobs, the container holding the blob.
+         */
+        @NotNull
+        public StorageServiceTreeItem getItem() {
+            return item;
+        }
+
+        @NotNull
+        public String getName() {
+            return name;
+        }
+
+        @NotNull
+        public String getUri() {
+            return uri;
+        }
+    }
+
+    public interface SearchListener {
+        void matchFound(@NotNull Match match);
+
+        void accountFailed(@NotNull ClientStorageAccount storageAccount, @NotNull Throwable error);
+
+        void searchCompleted(boolean cancelled);
+    }
+
+    private static class AccountWork {
+        private final ClientStorageAccount storageAccount;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger lanes = new AtomicInteger();
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        private AccountWork(@NotNull ClientStorageAccount storageAccount) {
+            this.storageAccount = storageAccount;
+        }
+    }
+
+    private static final int MAX_CONCURRENCY = 16;
+    private static final int MAX_CONCURRENCY_PER_ACCOUNT = 3;
+    private static final int MAX_BLOB_MATCHES_PER_CONTAINER = 100;
+    // premium account types, like Premium_LRS, only offer the blob service
+    private static final String PREMIUM_TYPE_PREFIX = "Premium";
+
+    private final String text;
+    private final String lowerText;
+    private final boolean searchBlobs;
+    private final SearchListener listener;
+    private final ExecutorService executor;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicBoolean completed = new AtomicBoolean();
+
+    private volatile boolean cancelled;
+
+    public StorageSearch(@NotNull String text, boolean searchBlobs, @NotNull SearchListener listener) {
+        this.text = text;
+        this.lowerText = text.toLowerCase(Locale.ENGLISH);
+        this.searchBlobs = searchBlobs;
+        this.listener = listener;
+        this.executor = Executors.newFixedThreadPool(MAX_CONCURRENCY, new ThreadFactoryBuilder()
+                .setNameFormat("Storage search %d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Starts the search in the background and returns immediately.
+     */
+    public void start() {
+        submitCounted(new Runnable() {
+            @Override
+            public void run() {
+                listAccounts();
+            }
+        });
+    }
+
+    /**
+     * Stops the search. Listings in flight are interrupted and nothing is reported after this returns,
+     * except for the completion of the search itself.
+     */
+    public void cancel() {
+        cancelled = true;
+        executor.shutdownNow();
+
+        if (completed.compareAndSet(false, true)) {
+            listener.searchCompleted(true);
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    private void listAccounts() {
+        AzureManager manager = AzureManagerImpl.getManager();
+
+        try {
+            for (final Subscription subscription : manager.getSubscriptionList()) {
+                submitCounted(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (StorageAccount storageAccount : AzureManagerImpl.getManager().getStorageAccounts(subscription.getId())) {
+                                // premium accounts have no queue or table service, only blob containers
+                                searchAccount(storageAccount, !isPremium(storageAccount.getType()));
+                            }
+                        } catch (Throwable ignored) {
+                            // a subscription we can't list has no accounts to search
+                        }
+                    }
+                });
+            }
+        } catch (Throwable ignored) {
+            // not signed in, only the external accounts can be searched
+        }
+
+        for (ClientStorageAccount clientStorageAccount : ExternalStorageHelper.getList()) {
+            searchAccount(StorageClientSDKManagerImpl.getManager().getStorageAccount(clientStorageAccount.getConnectionString()), true);
+        }
+    }
+
+    private void searchAccount(@NotNull final ClientStorageAccount storageAccount, boolean searchQueuesAndTables) {
+        final AccountWork work = new AccountWork(storageAccount);
+        final StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+
+        submit(work, new AccountTask(work) {
+            @Override
+            protected void execute() throws Exception {
+                for (final BlobContainer container : manager.getBlobContainers(storageAccount)) {
+                    if (container.getName().toLowerCase(Locale.ENGLISH).contains(lowerText)) {
+                        report(new Match(storageAccount, MatchKind.Container, container, container.getName(), container.getUri()));
+                    }
+
+                    if (searchBlobs) {
+                        submit(work, new AccountTask(work) {
+                            @Override
+                            protected void execute() throws Exception {
+                                searchBlobs(storageAccount, container);
+                            }
+                        });
+                    }
+                }
+            }
+        });
+
+        if (!searchQueuesAndTables) {
+            return;
+        }
+
+        submit(work, new AccountTask(work) {
+            @Override
+            protected void execute() throws Exception {
+                for (com.microsoftopentechnologies.tooling.msservices.model.storage.Queue queue : manager.getQueues(storageAccount)) {
+                    if (queue.getName().toLowerCase(Locale.ENGLISH).contains(lowerText)) {
+                        report(new Match(storageAccount, MatchKind.Queue, queue, queue.getName(), queue.getUri()));
+                    }
+                }
+            }
+        });
+
+        submit(work, new AccountTask(work) {
+            @Override
+            protected void execute() throws Exception {
+                for (Table table : manager.getTables(storageAccount)) {
+                    if (table.getName().toLowerCase(Locale.ENGLISH).contains(lowerText)) {
+                        report(new Match(storageAccount, MatchKind.Table, table, table.getName(), table.getUri()));
+                    }
+                }
+            }
+        });
+    }
+
+    private void searchBlobs(@NotNull final ClientStorageAccount storageAccount, @NotNull final BlobContainer container)
+            throws Exception {
+        final AtomicInteger matches = new AtomicInteger();
+
+        StorageClientSDKManagerImpl.getManager().scanBlobFiles(storageAccount, container.getName(), text,
+                new CallableSingleArg<Boolean, BlobFile>() {
+                    @Override
+                    public Boolean call(BlobFile blobFile) throws Exception {
+                        report(new Match(storageAccount, MatchKind.Blob, container,
+                                container.getName() + "/" + blobFile.getPath(), blobFile.getUri()));
+
+                        return !cancelled && matches.incrementAndGet() < MAX_BLOB_MATCHES_PER_CONTAINER;
+                    }
+                });
+    }
+
+    private abstract class AccountTask implements Runnable {
+        private final AccountWork work;
+
+        private AccountTask(@NotNull AccountWork work) {
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            try {
+                execute();
+            } catch (Throwable t) {
+                // report each account once, its other listings are likely to fail the same way
+                if (!cancelled && work.failed.compareAndSet(false, true)) {
+                    listener.accountFailed(work.storageAccount, t);
+                }
+            }
+        }
+
+        protected abstract void execute() throws Exception;
+    }
+
+    private void submit(@NotNull AccountWork work, @NotNull Runnable task) {
+        outstanding.incrementAndGet();
+        work.tasks.add(task);
+        startLanes(work);
+    }
+
+    /**
+     * Starts workers for the account until it has as many as it is allowed. Each worker runs the
+     * account's queued tasks one after the other and stops when there are none left.
+     */
+    private void startLanes(@NotNull final AccountWork work) {
+        while (!cancelled) {
+            int lanes = work.lanes.get();
+
+            if (lanes >= MAX_CONCURRENCY_PER_ACCOUNT || work.tasks.isEmpty()) {
+                return;
+            }
+
+            if (work.lanes.compareAndSet(lanes, lanes + 1)) {
+                submitShared(new Runnable() {
+                    @Override
+                    public void run() {
+                        Runnable task;
+
+                        while ((task = work.tasks.poll()) != null) {
+                            try {
+                                task.run();
+                            } finally {
+                                taskDone();
+                            }
+                        }
+
+                        work.lanes.decrementAndGet();
+
+                        // a task may have been queued after the poll above found none
+                        startLanes(work);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Runs a task that isn't bound to an account, keeping the search open until it completes.
+     */
+    private void submitCounted(@NotNull final Runnable runnable) {
+        outstanding.incrementAndGet();
+
+        submitShared(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runnable.run();
+                } finally {
+                    taskDone();
+                }
+            }
+        });
+    }
+
+    private void submitShared(@NotNull final Runnable runnable) {
+        try {
+            executor.execute(runnable);
+        } catch (Throwable ignored) {
+            // rejected once the search is cancelled
+        }
+    }
+
+    private void report(@NotNull Match match) {
+        if (!cancelled) {
+            listener.matchFound(match);
+        }
+    }
+
+    private void taskDone() {
+        if (outstanding.decrementAndGet() == 0 && completed.compareAndSet(false, true)) {
+            executor.shutdown();
+            listener.searchCompleted(false);
+        }
+    }
+
+    private static boolean isPremium(@Nullable String type) {
+        return type != null && type.startsWith(PREMIUM_TYPE_PREFIX);
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.microsoft.azure.storage.StorageException;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes a stream of table entities as entity group transactions. Entities are grouped by partition key
+ * into batches of up to 100, and batches of different partitions are sent concurrently. Batches of the
+ * same partition are sent one after the other, in the order they were filled, so a later write of an
+ * entity never races an earlier one. A batch that fails with a server error or a timeout is retried with
+ * exponential backoff.
+ * <p/>
+ * Memory use is bounded: at most {@link #MAX_BUFFERED_ENTITIES} entities wait for their batch to fill
+ * up, after which the oldest partial batch is sent, and {@link #add} blocks while too many batches are
+ * in flight. Entities have to be added from a single thread, and the writer has to be finished with
+ * either {@link #close} or {@link #abort}.
+ */
+public class TableBatchWriter {
+    public enum Operation {
+        UPSERT,
+        DELETE
+    }
+
+    public static final int MAX_BATCH_SIZE = 100;
+    public static final int MAX_BUFFERED_ENTITIES = 10000;
+
+    private static final int MAX_ATTEMPTS = 4;
+    private static final long INITIAL_BACKOFF_MS = 500;
+
+    private final ClientStorageAccount storageAccount;
+    private final String tableName;
+    private final Operation operation;
+    private final int maxBatchesInFlight;
+    private final ExecutorService executor;
+    private final Semaphore batchesInFlight;
+    private final Map<String, Map<String, TableEntity>> buffers = new LinkedHashMap<String, Map<String, TableEntity>>();
+    private final Map<String, Deque<List<TableEntity>>> partitionsInFlight = new HashMap<String, Deque<List<TableEntity>>>();
+    private int bufferedCount;
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    public TableBatchWriter(@NotNull ClientStorageAccount storageAccount,
+                            @NotNull String tableName,
+                            @NotNull Operation operation,
+                            int maxConcurrency) {
+        this.storageAccount = storageAccount;
+        this.tableName = tableName;
+        this.operation = operation;
+
+        int concurrency = Math.max(1, maxConcurrency);
+        maxBatchesInFlight = concurrency * 2;
+        batchesInFlight = new Semaphore(maxBatchesInFlight);
+        executor = Executors.newFixedThreadPool(concurrency, new ThreadFactoryBuilder()
+                .setNameFormat("Table batch " + tableName + " %d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Queues an entity. Adding an entity with the same keys as one still waiting for its batch
+     * replaces it, since a transaction can't touch the same entity twice.
+     */
+    public void add(@NotNull TableEntity tableEntity)
+            throws AzureCmdException {
+        checkFailure();
+
+        String partitionKey = tableEntity.getPartitionKey();
+        Map<String, TableEntity> buffer = buffers.get(partitionKey);
+
+        if (buffer == null) {
+            buffer = new LinkedHashMap<String, TableEntity>();
+            buffers.put(partitionKey, buffer);
+        }
+
+        if (buffer.put(tableEntity.getRowKey(), tableEntity) == null) {
+            bufferedCount++;
+        }
+
+        if (buffer.size() == MAX_BATCH_SIZE) {
+            buffers.remove(partitionKey);
+            submit(partitionKey, buffer.values());
+        } else if (bufferedCount >= MAX_BUFFERED_ENTITIES) {
+            Iterator<Map.Entry<String, Map<String, TableEntity>>> oldest = buffers.entrySet().iterator();
+            Map.Entry<String, Map<String, TableEntity>> partial = oldest.next();
+            oldest.remove();
+            submit(partial.getKey(), partial.getValue().values());
+        }
+    }
+
+    /**
+     * The number of entities written so far.
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * Sends the remaining partial batches and waits for every batch to complete. Only call this once
+     * every entity was added successfully; use {@link #abort} when adding failed or was cancelled.
+     */
+    public void close()
+            throws AzureCmdException {
+        try {
+            if (failure.get() == null) {
+                for (Map.Entry<String, Map<String, TableEntity>> buffer :
+                        new ArrayList<Map.Entry<String, Map<String, TableEntity>>>(buffers.entrySet())) {
+                    submit(buffer.getKey(), buffer.getValue().values());
+                }
+            }
+
+            buffers.clear();
+
+            batchesInFlight.acquire(maxBatchesInFlight);
+            batchesInFlight.release(maxBatchesInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AzureCmdException("Writing the Table Entities was interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        checkFailure();
+    }
+
+    /**
+     * Drops the partial batches that were not sent yet and stops sending queued ones, without flushing
+     * anything. Batches already on the wire may still complete. Never throws, so it can be called from a
+     * finally block without hiding the original exception.
+     */
+    public void abort() {
+        failure.compareAndSet(null, new AzureCmdException("Writing the Table Entities was aborted"));
+        buffers.clear();
+        bufferedCount = 0;
+
+        synchronized (partitionsInFlight) {
+            partitionsInFlight.clear();
+        }
+
+        executor.shutdownNow();
+    }
+
+    private void submit(@NotNull String partitionKey, @NotNull Collection<TableEntity> tableEntities)
+            throws AzureCmdException {
+        List<TableEntity> batch = new ArrayList<TableEntity>(tableEntities);
+        bufferedCount -= batch.size();
+
+        try {
+            batchesInFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AzureCmdException("Writing the Table Entities was interrupted", e);
+        }
+
+        synchronized (partitionsInFlight) {
+            Deque<List<TableEntity>> pending = partitionsInFlight.get(partitionKey);
+
+            if (pending != null) {
+                // the worker sending this partition picks the batch up when it is done with the current one
+                pending.add(batch);
+                return;
+            }
+
+            partitionsInFlight.put(partitionKey, new ArrayDeque<List<TableEntity>>());
+        }
+
+        executor.execute(getPartitionWorker(partitionKey, batch));
+    }
+
+    @NotNull
+    private Runnable getPartitionWorker(@NotNull final String partitionKey, @NotNull final List<TableEntity> first) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                List<TableEntity> batch = first;
+
+                while (batch != null) {
+                    try {
+                        if (failure.get() == null) {
+                            execute(batch);
+                            writtenCount.addAndGet(batch.size());
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        batchesInFlight.release();
+                    }
+
+                    synchronized (partitionsInFlight) {
+                        Deque<List<TableEntity>> pending = partitionsInFlight.get(partitionKey);
+                        batch = pending != null ? pending.poll() : null;
+
+                        if (batch == null) {
+                            partitionsInFlight.remove(partitionKey);
+                        }
+                    }
+                }
+            }
+        };
+    }
+
+    private void execute(@NotNull List<TableEntity> batch)
+            throws AzureCmdException, InterruptedException {
+        StorageClientSDKManager manager = StorageClientSDKManagerImpl.getManager();
+        long backoff = INITIAL_BACKOFF_MS;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                if (operation == Operation.UPSERT) {
+                    manager.upsertTableEntities(storageAccount, tableName, batch);
+                } else {
+                    manager.deleteTableEntities(storageAccount, tableName, batch);
+                }
+
+                return;
+            } catch (AzureCmdException e) {
+                if (attempt == MAX_ATTEMPTS || !isRetryable(e) || failure.get() != null) {
+                    throw e;
+                }
+            }
+
+            Thread.sleep(backoff);
+            backoff *= 2;
+        }
+    }
+
+    private static boolean isRetryable(@NotNull Throwable throwable) {
+        for (Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof StorageException) {
+                int status = ((StorageException) cause).getHttpStatusCode();
+
+                return status >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                        || status == HttpURLConnection.HTTP_CLIENT_TIMEOUT
+                        || status <= 0;
+            }
+
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void checkFailure()
+            throws AzureCmdException {
+        Throwable t = failure.get();
+
+        if (t != null) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
+
+            throw new AzureCmdException("Error writing the Table Entities", t);
+        }
+    }
+}
@@ -0,0 +1,518 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.google.common.base.Charsets;
+import com.google.gson.*;
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.Table;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity.Property;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity.PropertyType;
+
+import java.io.*;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * Streams table entities between a table and a CSV or JSON lines file. Imports are written with
+ * {@link TableBatchWriter} and exports read with {@link TableScanner}, so neither keeps more than a
+ * bounded number of entities in memory.
+ * <p/>
+ * In JSON lines files every entity is an object with its keys, timestamp and typed properties. CSV files
+ * have a header row with the {@code PartitionKey} and {@code RowKey} columns and one column per property,
+ * named {@code name@Type}; untyped columns are read as strings. An empty cell is a property the entity
+ * doesn't have and is left out of it, whatever the column's type, while an empty string is written as a
+ * quoted empty field ({@code ""}). CSV exports take their columns from the first
+ * {@link #CSV_SCHEMA_SAMPLE_SIZE} entities.
+ */
+public class TableEntityTransfer {
+    public enum Format {
+        CSV,
+        JSONL;
+
+        @NotNull
+        public static Format fromFile(@NotNull File file) {
+            return file.getName().toLowerCase(Locale.ENGLISH).endsWith(".csv") ? CSV : JSONL;
+        }
+    }
+
+    public interface ProgressListener {
+        void progress(long processed);
+
+        boolean isCancelled();
+    }
+
+    public static final int CSV_SCHEMA_SAMPLE_SIZE = 1000;
+
+    private static final String PARTITION_KEY = "PartitionKey";
+    private static final String ROW_KEY = "RowKey";
+    private static final String TIMESTAMP = "Timestamp";
+    private static final String PROPERTIES = "Properties";
+    private static final String TYPE = "Type";
+    private static final String VALUE = "Value";
+    private static final char TYPE_SEPARATOR = '@';
+    private static final int PROGRESS_INTERVAL = 1000;
+    private static final int DEFAULT_CONCURRENCY = 8;
+
+    private final ClientStorageAccount storageAccount;
+    private final Table table;
+    private final SimpleDateFormat dateFormat;
+
+    public TableEntityTransfer(@NotNull ClientStorageAccount storageAccount, @NotNull Table table) {
+        this.storageAccount = storageAccount;
+        this.table = table;
+
+        dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    }
+
+    /**
+     * Inserts or replaces every entity of the file. Returns the number of entities written. A cancelled
+     * import stops right away: entities still waiting for their batch are not sent.
+     */
+    public long importEntities(@NotNull File file, @Nullable ProgressListener listener)
+            throws AzureCmdException {
+        Format format = Format.fromFile(file);
+        TableBatchWriter writer = new TableBatchWriter(storageAccount, table.getName(),
+                TableBatchWriter.Operation.UPSERT, DEFAULT_CONCURRENCY);
+        long read = 0;
+        boolean completed = false;
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), Charsets.UTF_8));
+
+            try {
+                List<String> header = format == Format.CSV ? readCsvRecord(reader) : null;
+                TableEntity tableEntity;
+
+                while (!isCancelled(listener) && (tableEntity = readEntity(reader, format, header)) != null) {
+                    writer.add(tableEntity);
+
+                    if (++read % PROGRESS_INTERVAL == 0 && listener != null) {
+                        listener.progress(read);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+
+            completed = !isCancelled(listener);
+        } catch (IOException e) {
+            throw new AzureCmdException("Error reading the Table Entities file", e);
+        } catch (ParseException e) {
+            throw new AzureCmdException("Invalid Table Entity on record " + (read + 1), e);
+        } finally {
+            if (!completed) {
+                writer.abort();
+            }
+        }
+
+        if (completed) {
+            writer.close();
+        }
+
+        return writer.getWrittenCount();
+    }
+
+    /**
+     * Writes every entity matching the filter to the file, scanning partition ranges concurrently.
+     * Returns the number of entities written.
+     */
+    public long exportEntities(@NotNull File file, @NotNull String filter, @Nullable final ProgressListener listener)
+            throws AzureCmdException {
+        final Format format = Format.fromFile(file);
+        TableScanner scanner = new TableScanner(storageAccount, table);
+        List<TableScanner.PartitionRange> ranges = scanner.sampleRanges(TableScanner.DEFAULT_SAMPLE_PREFIXES,
+                TableScanner.DEFAULT_PARALLELISM * 2);
+
+        try {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), Charsets.UTF_8));
+            final CsvSchema csvSchema = format == Format.CSV ? new CsvSchema() : null;
+
+            try {
+                final long[] written = {0};
+
+                scanner.scan(ranges, filter, TableScanner.DEFAULT_PARALLELISM, new CallableSingleArg<Boolean, TableEntity>() {
+                    @Override
+                    public Boolean call(TableEntity tableEntity) throws Exception {
+                        if (csvSchema != null) {
+                            csvSchema.write(writer, tableEntity);
+                        } else {
+                            writer.write(toJson(tableEntity).toString());
+                            writer.write('\n');
+                        }
+
+                        if (++written[0] % PROGRESS_INTERVAL == 0 && listener != null) {
+                            listener.progress(written[0]);
+                        }
+
+                        return !isCancelled(listener);
+                    }
+                });
+
+                if (csvSchema != null) {
+                    csvSchema.flush(writer);
+                }
+
+                return written[0];
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            throw new AzureCmdException("Error writing the Table Entities file", e);
+        }
+    }
+
+    /**
+     * Holds back the first entities of a CSV export until the columns are known.
+     */
+    private class CsvSchema {
+        private final Map<String, PropertyType> columns = new TreeMap<String, PropertyType>();
+        private List<TableEntity> sample = new ArrayList<TableEntity>();
+
+        private void write(@NotNull Writer writer, @NotNull TableEntity tableEntity)
+                throws IOException, AzureCmdException {
+            if (sample != null) {
+                addColumns(tableEntity);
+                sample.add(tableEntity);
+
+                if (sample.size() == CSV_SCHEMA_SAMPLE_SIZE) {
+                    flush(writer);
+                }
+            } else {
+                for (Map.Entry<String, Property> entry : tableEntity.getProperties().entrySet()) {
+                    if (entry.getValue().getType() != columns.get(entry.getKey())) {
+                        throw new AzureCmdException(String.format("Property %s of entity %s/%s is not among the CSV " +
+                                "columns taken from the first %d entities, export to JSON lines instead",
+                                entry.getKey(), tableEntity.getPartitionKey(), tableEntity.getRowKey(),
+                                CSV_SCHEMA_SAMPLE_SIZE));
+                    }
+                }
+
+                writeRecord(writer, tableEntity);
+            }
+        }
+
+        private void flush(@NotNull Writer writer)
+                throws IOException, AzureCmdException {
+            if (sample == null) {
+                return;
+            }
+
+            List<String> header = new ArrayList<String>();
+            header.add(PARTITION_KEY);
+            header.add(ROW_KEY);
+            header.add(TIMESTAMP);
+
+            for (Map.Entry<String, PropertyType> column : columns.entrySet()) {
+                header.add(column.getKey() + TYPE_SEPARATOR + column.getValue().name());
+            }
+
+            writeCsvRecord(writer, header);
+
+            for (TableEntity tableEntity : sample) {
+                writeRecord(writer, tableEntity);
+            }
+
+            sample = null;
+        }
+
+        private void addColumns(@NotNull TableEntity tableEntity)
+                throws AzureCmdException {
+            for (Map.Entry<String, Property> entry : tableEntity.getProperties().entrySet()) {
+                PropertyType type = columns.get(entry.getKey());
+
+                if (type == null) {
+                    columns.put(entry.getKey(), entry.getValue().getType());
+                } else if (type != entry.getValue().getType()) {
+                    throw new AzureCmdException(String.format("Property %s has different types in different " +
+                            "entities, export to JSON lines instead", entry.getKey()));
+                }
+            }
+        }
+
+        private void writeRecord(@NotNull Writer writer, @NotNull TableEntity tableEntity)
+                throws IOException, AzureCmdException {
+            List<String> record = new ArrayList<String>();
+            record.add(tableEntity.getPartitionKey());
+            record.add(tableEntity.getRowKey());
+            record.add(dateFormat.format(tableEntity.getTimestamp().getTime()));
+
+            for (String column : columns.keySet()) {
+                Property property = tableEntity.getProperties().get(column);
+                record.add(property != null ? formatValue(property) : null);
+            }
+
+            writeCsvRecord(writer, record);
+        }
+    }
+
+    @Nullable
+    private TableEntity readEntity(@NotNull BufferedReader reader, @NotNull Format format, @Nullable List<String> header)
+            throws IOException, ParseException, AzureCmdException {
+        if (format == Format.JSONL) {
+            String line;
+
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+
+            return line != null ? fromJson(line) : null;
+        }
+
+        if (header == null) {
+            return null;
+        }
+
+        List<String> record;
+
+        do {
+            record = readCsvRecord(reader);
+        } while (record != null && record.size() == 1 && record.get(0) == null);
+
+        if (record == null) {
+            return null;
+        }
+
+        String partitionKey = null;
+        String rowKey = null;
+        Map<String, Property> properties = new HashMap<String, Property>();
+
+        for (int i = 0; i < header.size() && i < record.size(); i++) {
+            String column = header.get(i);
+            String value = record.get(i);
+
+            if (column == null) {
+                continue;
+            }
+
+            if (column.equals(PARTITION_KEY)) {
+                partitionKey = value != null ? value : "";
+            } else if (column.equals(ROW_KEY)) {
+                rowKey = value != null ? value : "";
+            } else if (!column.equals(TIMESTAMP)) {
+                int separator = column.lastIndexOf(TYPE_SEPARATOR);
+                PropertyType type = PropertyType.String;
+
+                if (separator >= 0) {
+                    type = PropertyType.valueOf(column.substring(separator + 1));
+                    column = column.substring(0, separator);
+                }
+
+                // an empty cell is a missing property, an empty string is quoted
+                if (value != null) {
+                    properties.put(column, parseValue(type, value));
+                }
+            }
+        }
+
+        if (partitionKey == null || rowKey == null) {
+            throw new AzureCmdException("The CSV file needs PartitionKey and RowKey columns");
+        }
+
+        return new TableEntity(partitionKey, rowKey, table.getName(), "", new GregorianCalendar(), properties);
+    }
+
+    @NotNull
+    private JsonObject toJson(@NotNull TableEntity tableEntity)
+            throws AzureCmdException {
+        JsonObject properties = new JsonObject();
+
+        for (Map.Entry<String, Property> entry : tableEntity.getProperties().entrySet()) {
+            JsonObject property = new JsonObject();
+            property.addProperty(TYPE, entry.getValue().getType().name());
+            property.addProperty(VALUE, formatValue(entry.getValue()));
+
+            properties.add(entry.getKey(), property);
+        }
+
+        JsonObject json = new JsonObject();
+        json.addProperty(PARTITION_KEY, tableEntity.getPartitionKey());
+        json.addProperty(ROW_KEY, tableEntity.getRowKey());
+        json.addProperty(TIMESTAMP, dateFormat.format(tableEntity.getTimestamp().getTime()));
+        json.add(PROPERTIES, properties);
+
+        return json;
+    }
+
+    @NotNull
+    private TableEntity fromJson(@NotNull String line)
+            throws ParseException, AzureCmdException {
+        try {
+            JsonObject json = new JsonParser().parse(line).getAsJsonObject();
+            Map<String, Property> properties = new HashMap<String, Property>();
+
+            if (json.has(PROPERTIES)) {
+                for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject(PROPERTIES).entrySet()) {
+                    JsonObject property = entry.getValue().getAsJsonObject();
+                    PropertyType type = PropertyType.valueOf(property.get(TYPE).getAsString());
+
+                    properties.put(entry.getKey(), parseValue(type, property.get(VALUE).getAsString()));
+                }
+            }
+
+            return new TableEntity(json.get(PARTITION_KEY).getAsString(), json.get(ROW_KEY).getAsString(),
+                    table.getName(), "", new GregorianCalendar(), properties);
+        } catch (RuntimeException e) {
+            throw new AzureCmdException("Invalid JSON Table Entity", e);
+        }
+    }
+
+    @NotNull
+    private String formatValue(@NotNull Property property)
+            throws AzureCmdException {
+        switch (property.getType()) {
+            case Boolean:
+                return property.getValueAsBoolean().toString();
+            case DateTime:
+                return dateFormat.format(property.getValueAsCalendar().getTime());
+            case Double:
+                return property.getValueAsDouble().toString();
+            case Uuid:
+                return property.getValueAsUuid().toString();
+            case Integer:
+                return property.getValueAsInteger().toString();
+            case Long:
+                return property.getValueAsLong().toString();
+            default:
+                return property.getValueAsString();
+        }
+    }
+
+    @NotNull
+    private Property parseValue(@NotNull PropertyType type, @NotNull String value)
+            throws ParseException {
+        try {
+            switch (type) {
+                case Boolean:
+                    return new Property(Boolean.valueOf(value));
+                case DateTime:
+                    Calendar calendar = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+                    calendar.setTime(dateFormat.parse(value));
+                    return new Property(calendar);
+                case Double:
+                    return new Property(Double.valueOf(value));
+                case Uuid:
+                    return new Property(UUID.fromString(value));
+                case Integer:
+                    return new Property(Integer.valueOf(value));
+                case Long:
+                    return new Property(Long.valueOf(value));
+                default:
+                    return new Property(value);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Invalid " + type + " value: " + value, 0);
+        }
+    }
+
+    /**
+     * Reads one RFC 4180 record, which may span several lines when quoted fields contain line breaks.
+     * Empty fields are null, unless they are quoted. Returns null at the end of the input.
+     */
+    @Nullable
+    private static List<String> readCsvRecord(@NotNull Reader reader)
+            throws IOException {
+        List<String> record = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        boolean empty = true;
+        int c;
+
+        while ((c = reader.read()) != -1) {
+            empty = false;
+
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                wasQuoted = true;
+            } else if (c == ',') {
+                record.add(getCsvField(field, wasQuoted));
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+
+        if (empty) {
+            return null;
+        }
+
+        record.add(getCsvField(field, wasQuoted));
+
+        return record;
+    }
+
+    @Nullable
+    private static String getCsvField(@NotNull StringBuilder field, boolean quoted) {
+        return field.length() > 0 || quoted ? field.toString() : null;
+    }
+
+    /**
+     * Writes one record, with an empty field for every null and a quoted one for every empty string.
+     */
+    private static void writeCsvRecord(@NotNull Writer writer, @NotNull List<String> record)
+            throws IOException {
+        for (int i = 0; i < record.size(); i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            String field = record.get(i);
+
+            if (field == null) {
+                continue;
+            }
+
+            if (field.isEmpty() || field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+                    || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+
+        writer.write("\r\n");
+    }
+
+    private static boolean isCancelled(@Nullable ProgressListener listener) {
+        return listener != null && listener.isCancelled();
+    }
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoft.azure.storage.table.TableQuery;
+import com.microsoft.azure.storage.table.TableQuery.Operators;
+import com.microsoft.azure.storage.table.TableQuery.QueryComparisons;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.Table;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scans a table by splitting it into partition key ranges and querying the ranges concurrently,
+ * instead of following a single chain of continuation tokens.
+ * <p/>
+ * Split points either come from the caller or are sampled by probing which single-character partition
+ * key prefixes hold any entity. The ranges always cover the whole key space, so sampling only affects
+ * how evenly the work is spread. Entities are handed to the consumer on the calling thread through a
+ * bounded queue, so a slow consumer holds back the range queries instead of buffering the table.
+ */
+public class TableScanner {
+    public static class PartitionRange {
+        private final String fromPartitionKey;
+        private final String toPartitionKey;
+
+        public PartitionRange(@Nullable String fromPartitionKey, @Nullable String toPartitionKey) {
+            this.fromPartitionKey = fromPartitionKey;
+            this.toPartitionKey = toPartitionKey;
+        }
+
+        /**
+         * The inclusive lower bound, or null when the range is unbounded below.
+         */
+        @Nullable
+        public String getFromPartitionKey() {
+            return fromPartitionKey;
+        }
+
+        /**
+         * The exclusive upper bound, or null when the range is unbounded above.
+         */
+        @Nullable
+        public String getToPartitionKey() {
+            return toPartitionKey;
+        }
+
+        @NotNull
+        public String getFilter(@NotNull String filter) {
+            String rangeFilter = "";
+
+            if (fromPartitionKey != null) {
+                rangeFilter = TableQuery.generateFilterCondition(PARTITION_KEY,
+                        QueryComparisons.GREATER_THAN_OR_EQUAL, fromPartitionKey);
+            }
+
+            if (toPartitionKey != null) {
+                rangeFilter = combineFilters(rangeFilter,
+                        TableQuery.generateFilterCondition(PARTITION_KEY, QueryComparisons.LESS_THAN, toPartitionKey));
+            }
+
+            return combineFilters(rangeFilter, filter);
+        }
+
+        @Override
+        public String toString() {
+            return "[" + (fromPartitionKey != null ? fromPartitionKey : "") + ", "
+                    + (toPartitionKey != null ? toPartitionKey : "") + ")";
+        }
+    }
+
+    public static final String DEFAULT_SAMPLE_PREFIXES =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private static final String PARTITION_KEY = "PartitionKey";
+    private static final int SAMPLE_PARALLELISM = 8;
+    private static final int QUEUE_CAPACITY = 2000;
+    private static final long POLL_INTERVAL_MS = 100;
+    private static final Object END_OF_RANGES = new Object();
+
+    private final ClientStorageAccount storageAccount;
+    private final Table table;
+
+    public TableScanner(@NotNull ClientStorageAccount storageAccount, @NotNull Table table) {
+        this.storageAccount = storageAccount;
+        this.table = table;
+    }
+
+    /**
+     * Builds contiguous ranges covering the whole key space from sorted, user-supplied split points.
+     */
+    @NotNull
+    public static List<PartitionRange> getRanges(@NotNull List<String> splitPoints) {
+        List<String> sorted = new ArrayList<String>(splitPoints);
+        Collections.sort(sorted);
+
+        List<PartitionRange> ranges = new ArrayList<PartitionRange>();
+        String from = null;
+
+        for (String splitPoint : sorted) {
+            if (splitPoint.isEmpty() || splitPoint.equals(from)) {
+                continue;
+            }
+
+            ranges.add(new PartitionRange(from, splitPoint));
+            from = splitPoint;
+        }
+
+        ranges.add(new PartitionRange(from, null));
+
+        return ranges;
+    }
+
+    /**
+     * Samples which of the given single-character prefixes hold any partition, and splits the table
+     * into at most {@code maxRanges} ranges at the occupied prefixes.
+     */
+    @NotNull
+    public List<PartitionRange> sampleRanges(@NotNull String prefixes, int maxRanges)
+            throws AzureCmdException {
+        List<String> candidates = new ArrayList<String>();
+
+        for (char prefix : prefixes.toCharArray()) {
+            candidates.add(String.valueOf(prefix));
+        }
+
+        Collections.sort(candidates);
+
+        List<String> probes;
+
+        try {
+            probes = ParallelRequestRunner.run(candidates, SAMPLE_PARALLELISM,
+                    new ParallelRequestRunner.Request<String, String>() {
+                        @NotNull
+                        @Override
+                        public String execute(@NotNull String prefix) throws Throwable {
+                            String upperBound = String.valueOf((char) (prefix.charAt(0) + 1));
+                            String filter = new PartitionRange(prefix, upperBound).getFilter("");
+                            String partitionKey = StorageClientSDKManagerImpl.getManager()
+                                    .getFirstPartitionKey(storageAccount, table, filter);
+
+                            return partitionKey != null ? prefix : "";
+                        }
+                    }, null);
+        } catch (Throwable t) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
+
+            throw new AzureCmdException("Error sampling the Table partitions", t);
+        }
+
+        List<String> occupied = new ArrayList<String>();
+
+        for (String prefix : probes) {
+            if (!prefix.isEmpty()) {
+                occupied.add(prefix);
+            }
+        }
+
+        // the first occupied prefix doesn't split anything, everything before it is empty
+        List<String> splitPoints = new ArrayList<String>();
+        int count = Math.min(Math.max(1, maxRanges), occupied.size());
+
+        for (int i = 1; i < count; i++) {
+            splitPoints.add(occupied.get(i * occupied.size() / count));
+        }
+
+        return getRanges(splitPoints);
+    }
+
+    /**
+     * Queries the ranges with up to {@code parallelism} concurrent queries and hands every entity
+     * matching the filter to the consumer, until the consumer returns false. Entities of different
+     * ranges are interleaved. Returns the number of entities consumed.
+     */
+    public long scan(@NotNull List<PartitionRange> ranges,
+                     @NotNull final String filter,
+                     int parallelism,
+                     @NotNull CallableSingleArg<Boolean, TableEntity> consumer)
+            throws AzureCmdException {
+        final List<PartitionRange> pending = new ArrayList<PartitionRange>(ranges);
+        final BlockingQueue<Object> entities = new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        int workers = Math.max(1, Math.min(parallelism, pending.size()));
+        long consumed = 0;
+
+        for (int i = 0; i < workers; i++) {
+            DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int index;
+
+                        while (!stopped.get() && (index = next.getAndIncrement()) < pending.size()) {
+                            StorageClientSDKManagerImpl.getManager().scanTableEntities(storageAccount, table,
+                                    pending.get(index).getFilter(filter),
+                                    new CallableSingleArg<Boolean, TableEntity>() {
+                                        @Override
+                                        public Boolean call(TableEntity tableEntity) throws Exception {
+                                            return offer(entities, tableEntity, stopped);
+                                        }
+                                    });
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                        stopped.set(true);
+                    } finally {
+                        try {
+                            offer(entities, END_OF_RANGES, stopped);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+                }
+            });
+        }
+
+        try {
+            int finished = 0;
+
+            while (finished < workers && !stopped.get()) {
+                Object item = entities.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+                if (item == END_OF_RANGES) {
+                    finished++;
+                } else if (item != null) {
+                    consumed++;
+
+                    if (!consumer.call((TableEntity) item)) {
+                        stopped.set(true);
+                    }
+                }
+            }
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        } finally {
+            stopped.set(true);
+        }
+
+        Throwable t = failure.get();
+
+        if (t != null) {
+            if (t instanceof AzureCmdException) {
+                throw (AzureCmdException) t;
+            }
+
+            throw new AzureCmdException("Error scanning the Table", t);
+        }
+
+        return consumed;
+    }
+
+    private static boolean offer(@NotNull BlockingQueue<Object> queue, @NotNull Object item, @NotNull AtomicBoolean stopped)
+            throws InterruptedException {
+        while (!stopped.get()) {
+            if (queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @NotNull
+    private static String combineFilters(@NotNull String first, @NotNull String second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+
+        if (second.isEmpty()) {
+            return first;
+        }
+
+        return TableQuery.combineFilters(first, Operators.AND, second);
+    }
+}
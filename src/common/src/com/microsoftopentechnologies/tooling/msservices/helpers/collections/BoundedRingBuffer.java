@@ -0,0 +1,97 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.collections;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Fixed capacity FIFO buffer. Once full, adding an item evicts the oldest one, so memory use stays
+ * constant no matter how long the producer keeps running.
+ */
+public class BoundedRingBuffer<T> {
+    private final Object[] items;
+    private int head;
+    private int size;
+
+    public BoundedRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+
+        items = new Object[capacity];
+    }
+
+    public synchronized void add(T item) {
+        items[(head + size) % items.length] = item;
+
+        if (size < items.length) {
+            size++;
+        } else {
+            head = (head + 1) % items.length;
+        }
+    }
+
+    public synchronized void addAll(@NotNull Collection<? extends T> newItems) {
+        for (T item : newItems) {
+            add(item);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+
+        return (T) items[(head + index) % items.length];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < items.length; i++) {
+            items[i] = null;
+        }
+
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * Returns a copy of the buffer contents, oldest item first.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public synchronized List<T> snapshot() {
+        List<T> result = new ArrayList<T>(size);
+
+        for (int i = 0; i < size; i++) {
+            result.add((T) items[(head + i) % items.length]);
+        }
+
+        return result;
+    }
+}
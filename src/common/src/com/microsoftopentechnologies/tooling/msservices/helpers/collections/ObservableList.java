@@ -18,15 +18,11 @@ package com.microsoftopentechnologies.tooling.msservices.helpers.collections;
 
 import com.google.common.collect.ForwardingList;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 public class ObservableList<E> extends ForwardingList<E> {
     private final List<E> delegate = new ArrayList<E>();
     protected List<ListChangeListener> changeListeners = new ArrayList<ListChangeListener>();
-    private boolean freezeEvents = false;
 
     @Override
     protected List<E> delegate() {
@@ -40,10 +36,9 @@ public class ObservableList<E> extends ForwardingList<E> {
 
     @Override
     public boolean addAll(Collection<? extends E> c) {
-        freezeEvents = true;
-        boolean changed = standardAddAll(c);
+        // a single event for the whole batch
+        boolean changed = delegate.addAll(c);
         if(changed) {
-            freezeEvents = false;
             fireChangeListenerEvent(ListChangedAction.add, c, null);
         }
 
@@ -52,10 +47,8 @@ public class ObservableList<E> extends ForwardingList<E> {
 
     @Override
     public boolean addAll(int index, Collection<? extends E> c) {
-        freezeEvents = true;
-        boolean changed = standardAddAll(index, c);
+        boolean changed = delegate.addAll(index, c);
         if(changed) {
-            freezeEvents = false;
             fireChangeListenerEvent(ListChangedAction.add, c, null);
         }
 
@@ -83,14 +76,35 @@ public class ObservableList<E> extends ForwardingList<E> {
 
     @Override
     public boolean removeAll(Collection<?> c) {
-        freezeEvents = true;
-        boolean changed = standardRemoveAll(c);
-        if(changed) {
-            freezeEvents = false;
-            fireChangeListenerEvent(ListChangedAction.remove, null, c);
+        List<E> removed = new ArrayList<E>();
+        List<E> retained = new ArrayList<E>(delegate.size());
+        Set<?> toRemove = new HashSet<Object>(c);
+
+        // removing through the iterator shifts the tail of the list for every match
+        for (E element : delegate) {
+            if (toRemove.contains(element)) {
+                removed.add(element);
+            } else {
+                retained.add(element);
+            }
+        }
+
+        if(!removed.isEmpty()) {
+            delegate.clear();
+            delegate.addAll(retained);
+            fireChangeListenerEvent(ListChangedAction.remove, null, removed);
         }
 
-        return standardRemoveAll(c);
+        return !removed.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        if(!delegate.isEmpty()) {
+            List<E> removed = new ArrayList<E>(delegate);
+            delegate.clear();
+            fireChangeListenerEvent(ListChangedAction.remove, null, removed);
+        }
     }
 
     @Override
@@ -109,7 +123,7 @@ public class ObservableList<E> extends ForwardingList<E> {
     private void fireChangeListenerEvent(ListChangedAction action,
                                          Collection<?> newItems,
                                          Collection<?> oldItems) {
-        if(!changeListeners.isEmpty() && !freezeEvents) {
+        if(!changeListeners.isEmpty()) {
             ListChangedEvent listChangedEvent = new ListChangedEvent(
                     this,
                     action,
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.model.ms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class LogEntryPage {
+    private List<LogEntry> entries = new ArrayList<LogEntry>();
+    private String continuationToken;
+
+    public List<LogEntry> getEntries() {
+        return entries;
+    }
+
+    public void setEntries(List<LogEntry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Set when the service has more (older) entries matching the request; pass it back to fetch them.
+     */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+}
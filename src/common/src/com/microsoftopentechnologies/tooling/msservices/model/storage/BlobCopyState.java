@@ -0,0 +1,68 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.model.storage;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+
+public class BlobCopyState {
+    public enum Status {
+        Pending, Success, Aborted, Failed
+    }
+
+    private String copyId;
+    private Status status;
+    private long bytesCopied;
+    private long totalBytes;
+    private String statusDescription;
+
+    public BlobCopyState(@NotNull String copyId,
+                         @NotNull Status status,
+                         long bytesCopied,
+                         long totalBytes,
+                         @NotNull String statusDescription) {
+        this.copyId = copyId;
+        this.status = status;
+        this.bytesCopied = bytesCopied;
+        this.totalBytes = totalBytes;
+        this.statusDescription = statusDescription;
+    }
+
+    @NotNull
+    public String getCopyId() {
+        return copyId;
+    }
+
+    @NotNull
+    public Status getStatus() {
+        return status;
+    }
+
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    /**
+     * The size of the source blob, or -1 until the service reports it.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @NotNull
+    public String getStatusDescription() {
+        return statusDescription;
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.model.storage;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+
+import java.util.*;
+
+/**
+ * A blob listing stored column by column. Repetitive values such as the container name, content type
+ * and encoding are dictionary encoded, names and URIs are derived from the blob path where possible
+ * and timestamps are kept as epoch milliseconds. {@link BlobFile} instances are only created by
+ * {@link #get(int)}, so a view that shows a page of a million blob listing only pays for that page.
+ */
+public class CompactBlobList extends AbstractList<BlobFile> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringDictionary dictionary = new StringDictionary();
+    private final Map<Integer, String> irregularNames = new HashMap<Integer, String>();
+    private final Map<Integer, String> irregularUris = new HashMap<Integer, String>();
+
+    private int count;
+    private String[] paths = new String[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY];
+    private int[] uriPrefixes = new int[INITIAL_CAPACITY];
+    private int[] containerNames = new int[INITIAL_CAPACITY];
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] cacheControlHeaders = new int[INITIAL_CAPACITY];
+    private int[] contentEncodings = new int[INITIAL_CAPACITY];
+    private int[] contentLanguages = new int[INITIAL_CAPACITY];
+    private int[] contentTypes = new int[INITIAL_CAPACITY];
+    private String[] contentMD5Headers = new String[INITIAL_CAPACITY];
+    private String[] eTags = new String[INITIAL_CAPACITY];
+    private long[] lastModified = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+
+    public CompactBlobList() {
+    }
+
+    public CompactBlobList(@NotNull Collection<BlobFile> blobFiles) {
+        ensureCapacity(blobFiles.size());
+
+        for (BlobFile blobFile : blobFiles) {
+            add(blobFile);
+        }
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    @Override
+    public boolean add(@NotNull BlobFile blobFile) {
+        ensureCapacity(count + 1);
+
+        String path = blobFile.getPath();
+        String name = blobFile.getName();
+        String uri = blobFile.getUri();
+
+        paths[count] = path;
+
+        if (path.endsWith(name)) {
+            nameOffsets[count] = path.length() - name.length();
+        } else {
+            nameOffsets[count] = -1;
+            irregularNames.put(count, name);
+        }
+
+        if (uri.endsWith(path)) {
+            uriPrefixes[count] = dictionary.encode(uri.substring(0, uri.length() - path.length()));
+        } else {
+            // paths with characters that are escaped in the URI
+            uriPrefixes[count] = -1;
+            irregularUris.put(count, uri);
+        }
+
+        containerNames[count] = dictionary.encode(blobFile.getContainerName());
+        types[count] = dictionary.encode(blobFile.getType());
+        cacheControlHeaders[count] = dictionary.encode(blobFile.getCacheControlHeader());
+        contentEncodings[count] = dictionary.encode(blobFile.getContentEncoding());
+        contentLanguages[count] = dictionary.encode(blobFile.getContentLanguage());
+        contentTypes[count] = dictionary.encode(blobFile.getContentType());
+        contentMD5Headers[count] = blobFile.getContentMD5Header();
+        eTags[count] = blobFile.getETag();
+        lastModified[count] = blobFile.getLastModified().getTimeInMillis();
+        sizes[count] = blobFile.getSize();
+
+        count++;
+        modCount++;
+
+        return true;
+    }
+
+    /**
+     * Creates a {@link BlobFile} for the listing at the index. Each call returns a new instance.
+     */
+    @NotNull
+    @Override
+    public BlobFile get(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        String path = paths[index];
+        String name = nameOffsets[index] >= 0 ? path.substring(nameOffsets[index]) : irregularNames.get(index);
+        String uri = uriPrefixes[index] >= 0 ? dictionary.decode(uriPrefixes[index]) + path : irregularUris.get(index);
+
+        Calendar calendar = new GregorianCalendar();
+        calendar.setTimeInMillis(lastModified[index]);
+
+        return new BlobFile(name,
+                uri,
+                dictionary.decode(containerNames[index]),
+                path,
+                dictionary.decode(types[index]),
+                dictionary.decode(cacheControlHeaders[index]),
+                dictionary.decode(contentEncodings[index]),
+                dictionary.decode(contentLanguages[index]),
+                dictionary.decode(contentTypes[index]),
+                contentMD5Headers[index],
+                eTags[index],
+                calendar,
+                sizes[index]);
+    }
+
+    /**
+     * The size of the blob at the index, without creating a {@link BlobFile}.
+     */
+    public long getSize(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        return sizes[index];
+    }
+
+    /**
+     * The path of the blob at the index, without creating a {@link BlobFile}.
+     */
+    @NotNull
+    public String getPath(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        return paths[index];
+    }
+
+    /**
+     * The last modified time of the blob at the index in epoch milliseconds, without creating a
+     * {@link BlobFile}.
+     */
+    public long getLastModified(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        return lastModified[index];
+    }
+
+    /**
+     * The ETag of the blob at the index, without creating a {@link BlobFile}.
+     */
+    @NotNull
+    public String getETag(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+
+        return eTags[index];
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        Arrays.fill(paths, null);
+        Arrays.fill(contentMD5Headers, null);
+        Arrays.fill(eTags, null);
+        irregularNames.clear();
+        irregularUris.clear();
+        modCount++;
+    }
+
+    public void trimToSize() {
+        resize(count);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > paths.length) {
+            resize(Math.max(capacity, paths.length + (paths.length >> 1)));
+        }
+    }
+
+    private void resize(int capacity) {
+        paths = Arrays.copyOf(paths, capacity);
+        nameOffsets = Arrays.copyOf(nameOffsets, capacity);
+        uriPrefixes = Arrays.copyOf(uriPrefixes, capacity);
+        containerNames = Arrays.copyOf(containerNames, capacity);
+        types = Arrays.copyOf(types, capacity);
+        cacheControlHeaders = Arrays.copyOf(cacheControlHeaders, capacity);
+        contentEncodings = Arrays.copyOf(contentEncodings, capacity);
+        contentLanguages = Arrays.copyOf(contentLanguages, capacity);
+        contentTypes = Arrays.copyOf(contentTypes, capacity);
+        contentMD5Headers = Arrays.copyOf(contentMD5Headers, capacity);
+        eTags = Arrays.copyOf(eTags, capacity);
+        lastModified = Arrays.copyOf(lastModified, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+    }
+}
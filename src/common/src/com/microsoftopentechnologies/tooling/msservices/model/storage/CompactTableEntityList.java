@@ -0,0 +1,540 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.model.storage;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity.Property;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.TableEntity.PropertyType;
+
+import java.util.*;
+
+/**
+ * The entities of one table stored column by column against a schema shared by every row. Each
+ * distinct property name and type becomes a column; numeric, boolean and date values are kept in
+ * primitive arrays and partition keys are dictionary encoded. A column only stores the rows that have a
+ * value, so a sparse schema costs the values it holds rather than one slot per column and row.
+ * <p/>
+ * Rows can be added straight from a listing with {@link #addRow} and {@link #setProperty}, so no
+ * {@link TableEntity} is created while loading. {@link TableEntity} instances, with their property maps,
+ * are only created by {@link #get(int)} for the rows that are actually used.
+ */
+public class CompactTableEntityList extends AbstractList<TableEntity> implements RandomAccess {
+    /**
+     * The values of one column. While every row so far has a value, the value of row {@code i} is at
+     * index {@code i}; after the first gap the rows holding a value are kept, sorted, in {@code rows}.
+     */
+    private static class Column {
+        private final String name;
+        private final PropertyType type;
+        private int size;
+        private int[] rows;
+        private long[] primitives;
+        private Object[] references;
+
+        private Column(@NotNull String name, @NotNull PropertyType type) {
+            this.name = name;
+            this.type = type;
+
+            if (isPrimitive(type)) {
+                primitives = new long[INITIAL_COLUMN_CAPACITY];
+            } else {
+                references = new Object[INITIAL_COLUMN_CAPACITY];
+            }
+        }
+
+        /**
+         * The index of the row's value, or {@code -(insertion point) - 1} if the row has none.
+         */
+        private int indexOf(int row) {
+            if (rows == null) {
+                return row < size ? row : -size - 1;
+            }
+
+            return Arrays.binarySearch(rows, 0, size, row);
+        }
+
+        private boolean has(int row) {
+            return indexOf(row) >= 0;
+        }
+
+        private void put(int row, @NotNull Property property)
+                throws AzureCmdException {
+            int index = indexOf(row);
+
+            if (index < 0) {
+                index = -index - 1;
+
+                if (rows == null && row != size) {
+                    materializeRows();
+                }
+
+                ensureCapacity(size + 1);
+
+                if (index < size) {
+                    shift(index, index + 1, size - index);
+                }
+
+                if (rows != null) {
+                    rows[index] = row;
+                }
+
+                size++;
+            }
+
+            switch (type) {
+                case Boolean:
+                    primitives[index] = property.getValueAsBoolean() ? 1 : 0;
+                    break;
+                case DateTime:
+                    primitives[index] = property.getValueAsCalendar().getTimeInMillis();
+                    break;
+                case Double:
+                    primitives[index] = Double.doubleToRawLongBits(property.getValueAsDouble());
+                    break;
+                case Integer:
+                    primitives[index] = property.getValueAsInteger();
+                    break;
+                case Long:
+                    primitives[index] = property.getValueAsLong();
+                    break;
+                case Uuid:
+                    references[index] = property.getValueAsUuid();
+                    break;
+                default:
+                    references[index] = property.getValueAsString();
+            }
+        }
+
+        @Nullable
+        private Property get(int row) {
+            int index = indexOf(row);
+
+            if (index < 0) {
+                return null;
+            }
+
+            switch (type) {
+                case Boolean:
+                    return new Property(primitives[index] != 0);
+                case DateTime:
+                    Calendar calendar = new GregorianCalendar();
+                    calendar.setTimeInMillis(primitives[index]);
+                    return new Property(calendar);
+                case Double:
+                    return new Property(Double.longBitsToDouble(primitives[index]));
+                case Integer:
+                    return new Property((int) primitives[index]);
+                case Long:
+                    return new Property(primitives[index]);
+                case Uuid:
+                    return new Property((UUID) references[index]);
+                default:
+                    return new Property((String) references[index]);
+            }
+        }
+
+        private void remove(int row) {
+            int index = indexOf(row);
+
+            if (index >= 0) {
+                if (rows == null && index != size - 1) {
+                    materializeRows();
+                }
+
+                shift(index + 1, index, size - index - 1);
+                size--;
+
+                if (references != null) {
+                    references[size] = null;
+                }
+            }
+        }
+
+        /**
+         * Drops the values of removed rows and renumbers the others, given the new index of every row or
+         * -1 for a removed one.
+         */
+        private void renumber(@NotNull int[] newRows) {
+            int kept = 0;
+
+            for (int index = 0; index < size; index++) {
+                int newRow = newRows[rows != null ? rows[index] : index];
+
+                if (newRow < 0) {
+                    continue;
+                }
+
+                if (rows != null) {
+                    rows[kept] = newRow;
+                }
+
+                if (primitives != null) {
+                    primitives[kept] = primitives[index];
+                } else {
+                    references[kept] = references[index];
+                }
+
+                kept++;
+            }
+
+            if (references != null) {
+                Arrays.fill(references, kept, size, null);
+            }
+
+            size = kept;
+
+            if (rows != null && (size == 0 || rows[size - 1] == size - 1)) {
+                // rows are sorted and distinct, so the last one being size - 1 means there is no gap left
+                rows = null;
+            }
+        }
+
+        private void materializeRows() {
+            rows = new int[primitives != null ? primitives.length : references.length];
+
+            for (int i = 0; i < size; i++) {
+                rows[i] = i;
+            }
+        }
+
+        private void shift(int from, int to, int length) {
+            if (rows != null) {
+                System.arraycopy(rows, from, rows, to, length);
+            }
+
+            if (primitives != null) {
+                System.arraycopy(primitives, from, primitives, to, length);
+            } else {
+                System.arraycopy(references, from, references, to, length);
+            }
+        }
+
+        private void ensureCapacity(int required) {
+            int capacity = primitives != null ? primitives.length : references.length;
+
+            if (required > capacity) {
+                resize(Math.max(required, capacity + (capacity >> 1)));
+            }
+        }
+
+        private void resize(int capacity) {
+            if (rows != null) {
+                rows = Arrays.copyOf(rows, capacity);
+            }
+
+            if (primitives != null) {
+                primitives = Arrays.copyOf(primitives, capacity);
+            } else {
+                references = Arrays.copyOf(references, capacity);
+            }
+        }
+
+        private static boolean isPrimitive(@NotNull PropertyType type) {
+            return type != PropertyType.String && type != PropertyType.Uuid;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int INITIAL_COLUMN_CAPACITY = 8;
+
+    private final String tableName;
+    private final StringDictionary partitionKeyDictionary = new StringDictionary();
+    private final List<Column> columns = new ArrayList<Column>();
+    // the same name can hold values of different types in different rows, so a name can have several columns
+    private final Map<String, List<Column>> columnsByName = new LinkedHashMap<String, List<Column>>();
+
+    private int count;
+    private int[] partitionKeys = new int[INITIAL_CAPACITY];
+    private String[] rowKeys = new String[INITIAL_CAPACITY];
+    private String[] eTags = new String[INITIAL_CAPACITY];
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+
+    public CompactTableEntityList(@NotNull String tableName) {
+        this.tableName = tableName;
+    }
+
+    @NotNull
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public int size() {
+        return count;
+    }
+
+    /**
+     * The names of the properties found in any row, in the order they were first seen.
+     */
+    @NotNull
+    public Set<String> getPropertyNames() {
+        return Collections.unmodifiableSet(columnsByName.keySet());
+    }
+
+    @Override
+    public boolean add(@NotNull TableEntity entity) {
+        int row = addRow(entity.getPartitionKey(), entity.getRowKey(), entity.getETag(),
+                entity.getTimestamp().getTimeInMillis());
+
+        setProperties(row, entity.getProperties());
+
+        return true;
+    }
+
+    /**
+     * Appends a row without properties and returns its index. Properties are then added with
+     * {@link #setProperty}.
+     */
+    public int addRow(@NotNull String partitionKey, @NotNull String rowKey, @NotNull String eTag, long timestamp) {
+        ensureCapacity(count + 1);
+
+        partitionKeys[count] = partitionKeyDictionary.encode(partitionKey);
+        rowKeys[count] = rowKey;
+        eTags[count] = eTag;
+        timestamps[count] = timestamp;
+
+        modCount++;
+
+        return count++;
+    }
+
+    /**
+     * Sets a property of a row, replacing any value it had for the same name.
+     */
+    public void setProperty(int index, @NotNull String name, @NotNull Property property) {
+        checkIndex(index);
+
+        List<Column> named = columnsByName.get(name);
+
+        if (named == null) {
+            named = new ArrayList<Column>(1);
+            columnsByName.put(name, named);
+        }
+
+        Column column = null;
+
+        for (Column other : named) {
+            if (other.type == property.getType()) {
+                column = other;
+            } else {
+                other.remove(index);
+            }
+        }
+
+        if (column == null) {
+            column = new Column(name, property.getType());
+            named.add(column);
+            columns.add(column);
+        }
+
+        try {
+            column.put(index, property);
+        } catch (AzureCmdException e) {
+            throw new IllegalArgumentException("Invalid value for property " + name, e);
+        }
+    }
+
+    /**
+     * Creates a {@link TableEntity} for the row at the index. Each call returns a new instance.
+     */
+    @NotNull
+    @Override
+    public TableEntity get(int index) {
+        checkIndex(index);
+
+        Map<String, Property> properties = new LinkedHashMap<String, Property>();
+
+        for (Column column : columns) {
+            Property property = column.get(index);
+
+            if (property != null) {
+                properties.put(column.name, property);
+            }
+        }
+
+        Calendar timestamp = new GregorianCalendar();
+        timestamp.setTimeInMillis(timestamps[index]);
+
+        return new TableEntity(partitionKeyDictionary.decode(partitionKeys[index]),
+                rowKeys[index],
+                tableName,
+                eTags[index],
+                timestamp,
+                properties);
+    }
+
+    /**
+     * Replaces the row at the index with the entity and returns the previous one.
+     */
+    @NotNull
+    @Override
+    public TableEntity set(int index, @NotNull TableEntity entity) {
+        TableEntity previous = get(index);
+
+        partitionKeys[index] = partitionKeyDictionary.encode(entity.getPartitionKey());
+        rowKeys[index] = entity.getRowKey();
+        eTags[index] = entity.getETag();
+        timestamps[index] = entity.getTimestamp().getTimeInMillis();
+
+        for (Column column : columns) {
+            column.remove(index);
+        }
+
+        setProperties(index, entity.getProperties());
+
+        return previous;
+    }
+
+    @NotNull
+    @Override
+    public TableEntity remove(int index) {
+        TableEntity removed = get(index);
+        removeRows(new int[]{index});
+
+        return removed;
+    }
+
+    /**
+     * Removes several rows in a single pass over the columns, rather than one pass per row.
+     */
+    public void removeRows(@NotNull int[] indexes) {
+        boolean[] removed = new boolean[count];
+
+        for (int index : indexes) {
+            checkIndex(index);
+            removed[index] = true;
+        }
+
+        int[] newRows = new int[count];
+        int kept = 0;
+
+        for (int row = 0; row < count; row++) {
+            if (removed[row]) {
+                newRows[row] = -1;
+                continue;
+            }
+
+            newRows[row] = kept;
+            partitionKeys[kept] = partitionKeys[row];
+            rowKeys[kept] = rowKeys[row];
+            eTags[kept] = eTags[row];
+            timestamps[kept] = timestamps[row];
+            kept++;
+        }
+
+        Arrays.fill(rowKeys, kept, count, null);
+        Arrays.fill(eTags, kept, count, null);
+
+        for (Column column : columns) {
+            column.renumber(newRows);
+        }
+
+        count = kept;
+        modCount++;
+    }
+
+    @NotNull
+    public String getPartitionKey(int index) {
+        checkIndex(index);
+
+        return partitionKeyDictionary.decode(partitionKeys[index]);
+    }
+
+    @NotNull
+    public String getRowKey(int index) {
+        checkIndex(index);
+
+        return rowKeys[index];
+    }
+
+    /**
+     * The timestamp of the row at the index in epoch milliseconds, without creating a {@link TableEntity}.
+     */
+    public long getTimestamp(int index) {
+        checkIndex(index);
+
+        return timestamps[index];
+    }
+
+    /**
+     * The value of one property of the row at the index, or null if the row doesn't have it, without
+     * creating a {@link TableEntity}.
+     */
+    @Nullable
+    public Property getProperty(int index, @NotNull String name) {
+        checkIndex(index);
+
+        List<Column> named = columnsByName.get(name);
+
+        if (named != null) {
+            for (Column column : named) {
+                if (column.has(index)) {
+                    return column.get(index);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    @Override
+    public void clear() {
+        count = 0;
+        Arrays.fill(rowKeys, null);
+        Arrays.fill(eTags, null);
+        columns.clear();
+        columnsByName.clear();
+
+        modCount++;
+    }
+
+    public void trimToSize() {
+        resize(count);
+
+        for (Column column : columns) {
+            column.resize(column.size);
+        }
+    }
+
+    private void setProperties(int index, @NotNull Map<String, Property> properties) {
+        for (Map.Entry<String, Property> entry : properties.entrySet()) {
+            if (entry.getValue() != null) {
+                setProperty(index, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required > rowKeys.length) {
+            resize(Math.max(required, rowKeys.length + (rowKeys.length >> 1)));
+        }
+    }
+
+    private void resize(int newCapacity) {
+        partitionKeys = Arrays.copyOf(partitionKeys, newCapacity);
+        rowKeys = Arrays.copyOf(rowKeys, newCapacity);
+        eTags = Arrays.copyOf(eTags, newCapacity);
+        timestamps = Arrays.copyOf(timestamps, newCapacity);
+    }
+}
@@ -16,6 +16,7 @@
 package com.microsoftopentechnologies.tooling.msservices.model.storage;
 
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
 import com.microsoftopentechnologies.tooling.msservices.model.ServiceTreeItem;
 
 import java.util.Calendar;
@@ -28,6 +29,7 @@ public class QueueMessage implements ServiceTreeItem {
     private Calendar insertionTime;
     private Calendar expirationTime;
     private int dequeueCount;
+    private String popReceipt;
 
     public QueueMessage(@NotNull String id,
                         @NotNull String queueName,
@@ -106,6 +108,18 @@ public class QueueMessage implements ServiceTreeItem {
         this.dequeueCount = dequeueCount;
     }
 
+    /**
+     * The pop receipt of a received message, needed to delete it. Peeked messages don't have one.
+     */
+    @Nullable
+    public String getPopReceipt() {
+        return popReceipt;
+    }
+
+    public void setPopReceipt(@Nullable String popReceipt) {
+        this.popReceipt = popReceipt;
+    }
+
     @Override
     public String toString() {
         return id + (loading ? " (loading...)" : "");
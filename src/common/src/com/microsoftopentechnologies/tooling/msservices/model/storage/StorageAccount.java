@@ -35,6 +35,8 @@ public class StorageAccount extends ClientStorageAccount {
     private String secondaryRegionStatus = "";
     private Calendar lastFailover = new GregorianCalendar();
     private String subscriptionId;
+    // set after the keys, so a thread that sees it also sees them
+    private volatile boolean keysLoaded;
 
     public StorageAccount(@NotNull String name,
                           @NotNull String subscriptionId) {
@@ -163,4 +165,16 @@ public class StorageAccount extends ClientStorageAccount {
     public String getSubscriptionId() {
         return subscriptionId;
     }
-}
\ No newline at end of file
+
+    /**
+     * Account listings only carry metadata; the access keys are filled in on demand.
+     * Call {@link #setKeysLoaded} only after both keys have been set.
+     */
+    public boolean isKeysLoaded() {
+        return keysLoaded;
+    }
+
+    public void setKeysLoaded(boolean keysLoaded) {
+        this.keysLoaded = keysLoaded;
+    }
+}
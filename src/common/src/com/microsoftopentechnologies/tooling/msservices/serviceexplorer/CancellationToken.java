@@ -0,0 +1,142 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.serviceexplorer;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Signals that the result of some work is no longer wanted, e.g. a refresh started before the selected
+ * subscriptions changed. Work polls {@link #isCancelled()} (or {@link #isEventTriggered()}, which
+ * existing refresh code already checks) and listeners run when the token is cancelled, so nothing has
+ * to block waiting for the cancellation.
+ * <p/>
+ * Child tokens are cancelled with their parent; they should be released once their work is done so
+ * long-lived parents don't keep them around. The token of the refresh running on the current thread
+ * is available through {@link #getCurrent()}, which lets nested refreshes derive theirs from it.
+ */
+public class CancellationToken implements EventHelper.EventStateHandle {
+    private static final ThreadLocal<CancellationToken> current = new ThreadLocal<CancellationToken>();
+
+    private final CancellationToken parent;
+    private final Set<Runnable> listeners = new LinkedHashSet<Runnable>();
+    private final Runnable cancelAction = new Runnable() {
+        @Override
+        public void run() {
+            cancel();
+        }
+    };
+    private volatile boolean cancelled;
+
+    public CancellationToken() {
+        this(null);
+    }
+
+    private CancellationToken(@Nullable CancellationToken parent) {
+        this.parent = parent;
+    }
+
+    @Nullable
+    public static CancellationToken getCurrent() {
+        return current.get();
+    }
+
+    /**
+     * Makes a token current on this thread, returning the previous one so it can be restored.
+     */
+    @Nullable
+    public static CancellationToken setCurrent(@Nullable CancellationToken token) {
+        CancellationToken previous = current.get();
+
+        if (token != null) {
+            current.set(token);
+        } else {
+            current.remove();
+        }
+
+        return previous;
+    }
+
+    @NotNull
+    public CancellationToken createChild() {
+        CancellationToken child = new CancellationToken(this);
+        addListener(child.cancelAction);
+
+        return child;
+    }
+
+    /**
+     * Detaches the token from its parent once the work it guards is done.
+     */
+    public void release() {
+        if (parent != null) {
+            parent.removeListener(cancelAction);
+        }
+    }
+
+    public boolean isCancelled() {
+        // released children still see the cancellation of their ancestors
+        return cancelled || (parent != null && parent.isCancelled());
+    }
+
+    @Override
+    public boolean isEventTriggered() {
+        return isCancelled();
+    }
+
+    public void cancel() {
+        List<Runnable> toRun;
+
+        synchronized (listeners) {
+            if (cancelled) {
+                return;
+            }
+
+            cancelled = true;
+            toRun = new ArrayList<Runnable>(listeners);
+            listeners.clear();
+        }
+
+        for (Runnable listener : toRun) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Runs the listener when the token is cancelled, right away if it already is.
+     */
+    public void addListener(@NotNull Runnable listener) {
+        synchronized (listeners) {
+            if (!cancelled) {
+                listeners.add(listener);
+                return;
+            }
+        }
+
+        listener.run();
+    }
+
+    public void removeListener(@NotNull Runnable listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+}
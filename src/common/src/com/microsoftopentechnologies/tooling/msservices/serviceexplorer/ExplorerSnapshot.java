@@ -0,0 +1,271 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.serviceexplorer;
+
+import com.google.common.io.Files;
+import com.microsoftopentechnologies.tooling.msservices.components.AppSettingsNames;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A compact copy of the last-known service explorer tree, persisted per project so the tree can be
+ * rendered on startup before any module has been loaded.
+ * <p/>
+ * Only the id, name, icon and type of each node are written, never the model behind it, so the
+ * file holds no keys or credentials. Types and icons repeat across siblings and go to a string
+ * table written once up front; the nodes follow as a depth-first walk that is read back with plain
+ * stream reads and no reflection, which keeps loading trees of tens of thousands of nodes in the
+ * millisecond range.
+ */
+public class ExplorerSnapshot {
+    public static class Entry {
+        private final String type;
+        private final String id;
+        private final String name;
+        private final String iconPath;
+        private final List<Entry> children;
+
+        public Entry(@NotNull String type, @Nullable String id, @Nullable String name, @Nullable String iconPath,
+                     @NotNull List<Entry> children) {
+            this.type = type;
+            this.id = id;
+            this.name = name;
+            this.iconPath = iconPath;
+            this.children = children;
+        }
+
+        /**
+         * The class name of the node this entry was captured from.
+         */
+        @NotNull
+        public String getType() {
+            return type;
+        }
+
+        @Nullable
+        public String getId() {
+            return id;
+        }
+
+        @Nullable
+        public String getName() {
+            return name;
+        }
+
+        @Nullable
+        public String getIconPath() {
+            return iconPath;
+        }
+
+        @NotNull
+        public List<Entry> getChildren() {
+            return children;
+        }
+    }
+
+    private static final int MAGIC = 0x45585053;
+    private static final int VERSION = 1;
+    private static final int NO_STRING = -1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @NotNull
+    public static File getSnapshotFile(@NotNull Object project) {
+        String snapshotId = DefaultLoader.getIdeHelper().getProperty(project, AppSettingsNames.EXPLORER_SNAPSHOT_ID);
+
+        if (snapshotId == null || snapshotId.isEmpty()) {
+            snapshotId = UUID.randomUUID().toString();
+            DefaultLoader.getIdeHelper().setProperty(project, AppSettingsNames.EXPLORER_SNAPSHOT_ID, snapshotId);
+        }
+
+        return new File(System.getProperty("java.io.tmpdir") + File.separator + "TempAzure" + File.separator
+                + "explorer", snapshotId + ".snapshot");
+    }
+
+    /**
+     * Captures the given nodes and their loaded descendants. Nodes restored from a previous snapshot
+     * keep the type they were recorded with.
+     */
+    @NotNull
+    public static List<Entry> capture(@NotNull Collection<? extends Node> nodes) {
+        List<Entry> entries = new ArrayList<Entry>(nodes.size());
+
+        for (Node node : nodes) {
+            String type = node instanceof SnapshotNode
+                    ? ((SnapshotNode) node).getType()
+                    : node.getClass().getName();
+
+            // a node captured mid-refresh is saved under its own name, not the loading one
+            String name = node.getName();
+            if (name != null && name.endsWith(RefreshableNode.REFRESHING_SUFFIX)) {
+                name = name.substring(0, name.length() - RefreshableNode.REFRESHING_SUFFIX.length());
+            }
+
+            entries.add(new Entry(type, node.getId(), name, node.getIconPath(),
+                    capture(new ArrayList<Node>(node.getChildNodes()))));
+        }
+
+        return entries;
+    }
+
+    /**
+     * Returns the entries saved in the file, or null when there is no usable snapshot.
+     */
+    @Nullable
+    public static List<Entry> load(@NotNull File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+
+        try {
+            // read the file in one go, the many small field reads below are then served from memory
+            in = new DataInputStream(new ByteArrayInputStream(Files.toByteArray(file)));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+
+            String[] strings = new String[in.readInt()];
+
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = in.readUTF();
+            }
+
+            return readEntries(in, strings);
+        } catch (Throwable ignored) {
+            // a corrupt or truncated snapshot only costs an empty tree until the modules load
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    public static void save(@NotNull File file, @NotNull List<Entry> entries)
+            throws IOException {
+        File dir = file.getParentFile();
+
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create directory " + dir.getPath());
+        }
+
+        Map<String, Integer> stringTable = new LinkedHashMap<String, Integer>();
+        collectStrings(entries, stringTable);
+
+        // write next to the snapshot and swap it in so a reader never sees a partial file
+        File tempFile = new File(dir, file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(stringTable.size());
+
+            for (String value : stringTable.keySet()) {
+                out.writeUTF(value);
+            }
+
+            writeEntries(out, entries, stringTable);
+        } finally {
+            out.close();
+        }
+
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Unable to replace " + file.getPath());
+        }
+
+        Files.move(tempFile, file);
+    }
+
+    private static void collectStrings(@NotNull List<Entry> entries, @NotNull Map<String, Integer> stringTable) {
+        for (Entry entry : entries) {
+            addString(entry.type, stringTable);
+            addString(entry.iconPath, stringTable);
+            collectStrings(entry.children, stringTable);
+        }
+    }
+
+    private static void addString(@Nullable String value, @NotNull Map<String, Integer> stringTable) {
+        if (value != null && !stringTable.containsKey(value)) {
+            stringTable.put(value, stringTable.size());
+        }
+    }
+
+    private static void writeEntries(@NotNull DataOutputStream out, @NotNull List<Entry> entries,
+                                     @NotNull Map<String, Integer> stringTable)
+            throws IOException {
+        out.writeInt(entries.size());
+
+        for (Entry entry : entries) {
+            out.writeInt(stringTable.get(entry.type));
+            out.writeInt(entry.iconPath != null ? stringTable.get(entry.iconPath) : NO_STRING);
+            writeNullableString(out, entry.name);
+
+            // most nodes are identified by their name
+            boolean idIsName = entry.id != null && entry.id.equals(entry.name);
+            out.writeBoolean(idIsName);
+
+            if (!idIsName) {
+                writeNullableString(out, entry.id);
+            }
+
+            writeEntries(out, entry.children, stringTable);
+        }
+    }
+
+    @NotNull
+    private static List<Entry> readEntries(@NotNull DataInputStream in, @NotNull String[] strings)
+            throws IOException {
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<Entry>(count);
+
+        for (int i = 0; i < count; i++) {
+            String type = strings[in.readInt()];
+            int iconIndex = in.readInt();
+            String name = readNullableString(in);
+            String id = in.readBoolean() ? name : readNullableString(in);
+
+            entries.add(new Entry(type, id, name, iconIndex != NO_STRING ? strings[iconIndex] : null,
+                    readEntries(in, strings)));
+        }
+
+        return entries;
+    }
+
+    private static void writeNullableString(@NotNull DataOutputStream out, @Nullable String value)
+            throws IOException {
+        out.writeBoolean(value != null);
+
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(@NotNull DataInputStream in)
+            throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -26,6 +26,7 @@ import java.beans.PropertyChangeSupport;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -131,17 +132,19 @@ public class Node {
     }
 
     public void removeAllChildNodes() {
-        while (!childNodes.isEmpty()) {
-            Node node = childNodes.get(0);
+        if (childNodes.isEmpty()) {
+            return;
+        }
 
-            // remove this node's child nodes (so they get an
-            // opportunity to clean up after them)
+        // remove the child nodes of every child first (so they get an
+        // opportunity to clean up after them)
+        for (Node node : childNodes) {
             node.removeAllChildNodes();
-
-            // this remove call should cause the NodeListChangeListener object
-            // registered on it's child nodes to fire
-            childNodes.remove(0);
         }
+
+        // a single remove event for all children instead of one per child;
+        // every event is a round trip to the dispatch thread in the tree view
+        childNodes.clear();
     }
 
     public String getIconPath() {
@@ -158,6 +161,22 @@ public class Node {
         childNodes.add(child);
     }
 
+    // adds all the nodes with a single change event; prefer this over
+    // addChildNode when a refresh creates many children
+    public void addChildNodes(Collection<? extends Node> children) {
+        if (!children.isEmpty()) {
+            childNodes.addAll(children);
+        }
+    }
+
+    // swaps the current children for a freshly loaded list; refreshes use this
+    // instead of clearing up front so the previous (possibly stale) children stay
+    // visible until the new ones are ready
+    public void replaceChildNodes(Collection<? extends Node> children) {
+        removeAllChildNodes();
+        addChildNodes(children);
+    }
+
     public void addAction(NodeAction action) {
         nodeActions.add(action);
     }
@@ -317,4 +336,10 @@ public class Node {
     public void setLoading(boolean loading) {
         this.loading = loading;
     }
+
+    // true for nodes restored from a previous session which haven't been
+    // revalidated against the service yet
+    public boolean isStale() {
+        return false;
+    }
 }
\ No newline at end of file
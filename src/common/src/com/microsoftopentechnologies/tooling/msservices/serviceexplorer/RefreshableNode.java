@@ -20,11 +20,19 @@ import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 
 import java.util.List;
+import java.util.concurrent.CancellationException;
 
 public abstract class RefreshableNode extends Node {
+    /**
+     * Appended to the name of a node while it is loading.
+     */
+    public static final String REFRESHING_SUFFIX = " (Refreshing...)";
+
     public RefreshableNode(String id, String name, Node parent, String iconPath) {
         super(id, name, parent, iconPath);
     }
@@ -65,16 +73,42 @@ public abstract class RefreshableNode extends Node {
         }
     }
 
+    // Sub-classes are expected to override this method to tie refreshes started
+    // outside of another refresh to a longer-lived token.
+    @NotNull
+    protected CancellationToken createCancellationToken() {
+        return new CancellationToken();
+    }
+
     public ListenableFuture<List<Node>> load() {
         final RefreshableNode node = this;
         final SettableFuture<List<Node>> future = SettableFuture.create();
+        // a load started from within another refresh shares its cancellation
+        final CancellationToken parentToken = CancellationToken.getCurrent();
 
-        DefaultLoader.getIdeHelper().runInBackground(getProject(), "Loading " + getName() + "...", false, true, null,
+        // refreshes queue behind work the user is waiting for; the node name shows the progress
+        // and the IDE progress indicator, whose cancel button cancels the refresh
+        ExecutionService.getManager().submit(ExecutionService.Pool.IO, ExecutionService.Priority.Background,
                 new Runnable() {
                     @Override
                     public void run() {
                         final String nodeName = node.getName();
-                        node.setName(nodeName + " (Refreshing...)");
+                        node.setName(nodeName + REFRESHING_SUFFIX);
+
+                        final CancellationToken token = parentToken != null
+                                ? parentToken.createChild()
+                                : createCancellationToken();
+                        token.addListener(new Runnable() {
+                            @Override
+                            public void run() {
+                                future.cancel(false);
+                            }
+                        });
+
+                        // nested loads are covered by the indicator of the refresh that started them
+                        if (parentToken == null) {
+                            DefaultLoader.getIdeHelper().showProgress(getProject(), "Loading " + nodeName + "...", token, future);
+                        }
 
                         Futures.addCallback(future, new FutureCallback<List<Node>>() {
                             @Override
@@ -93,7 +127,7 @@ public abstract class RefreshableNode extends Node {
                                     public void run() {
                                         node.setName(nodeName);
 
-                                        if (throwable != null) {
+                                        if (throwable != null && !(throwable instanceof CancellationException)) {
                                             DefaultLoader.getUIHelper().showException("An error occurred while loading " + node.getName() + ".",
                                                     throwable,
                                                     "Error Loading " + node.getName(),
@@ -105,7 +139,14 @@ public abstract class RefreshableNode extends Node {
                             }
                         });
 
-                        node.refreshItems(future);
+                        CancellationToken previous = CancellationToken.setCurrent(token);
+
+                        try {
+                            node.refreshItems(future);
+                        } finally {
+                            CancellationToken.setCurrent(previous);
+                            token.release();
+                        }
                     }
                 }
         );
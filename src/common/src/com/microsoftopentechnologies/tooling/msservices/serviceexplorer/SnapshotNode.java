@@ -0,0 +1,61 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.serviceexplorer;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A node restored from an {@link ExplorerSnapshot}. It only carries what the snapshot recorded,
+ * has no actions and is replaced by a live node once its module has been refreshed.
+ */
+public class SnapshotNode extends Node {
+    private final String type;
+
+    public SnapshotNode(Node parent, @NotNull ExplorerSnapshot.Entry entry) {
+        super(entry.getId(), entry.getName(), parent, entry.getIconPath(), true);
+        this.type = entry.getType();
+
+        // not attached to the tree yet, so this doesn't notify anyone
+        addChildNodes(create(this, entry.getChildren()));
+    }
+
+    @NotNull
+    public static List<Node> create(Node parent, @NotNull List<ExplorerSnapshot.Entry> entries) {
+        List<Node> nodes = new ArrayList<Node>(entries.size());
+
+        for (ExplorerSnapshot.Entry entry : entries) {
+            nodes.add(new SnapshotNode(parent, entry));
+        }
+
+        return nodes;
+    }
+
+    /**
+     * The class name of the node this one stands in for.
+     */
+    @NotNull
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public boolean isStale() {
+        return true;
+    }
+}
@@ -18,10 +18,8 @@ package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure;
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventHandler;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventStateHandle;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.NodeActionEvent;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.NodeActionListenerAsync;
@@ -50,31 +48,22 @@ public abstract class AzureNodeActionListener extends NodeActionListenerAsync {
 
     @Override
     protected void actionPerformed(final NodeActionEvent e) throws AzureCmdException {
-        EventHelper.runInterruptible(new EventHandler() {
-            @Override
-            public EventWaitHandle registerEvent()
-                    throws AzureCmdException {
-                return AzureManagerImpl.getManager().registerSubscriptionsChanged();
-            }
-
-            @Override
-            public void unregisterEvent(@NotNull EventWaitHandle waitHandle)
-                    throws AzureCmdException {
-                AzureManagerImpl.getManager().unregisterSubscriptionsChanged(waitHandle);
-            }
+        CancellationToken token = AzureManagerImpl.getManager().getSubscriptionsChangedToken().createChild();
 
-            @Override
-            public void interruptibleAction(@NotNull EventStateHandle stateHandle)
-                    throws AzureCmdException {
-                azureNodeAction(e, stateHandle);
+        try {
+            azureNodeAction(e, token);
+        } catch (AzureCmdException ex) {
+            // errors of an action overtaken by a subscription change are moot
+            if (!token.isCancelled()) {
+                throw ex;
             }
+        } finally {
+            token.release();
+        }
 
-            @Override
-            public void eventTriggeredAction()
-                    throws AzureCmdException {
-                onSubscriptionsChanged(e);
-            }
-        });
+        if (token.isCancelled()) {
+            onSubscriptionsChanged(e);
+        }
     }
 
     protected abstract void azureNodeAction(NodeActionEvent e, @NotNull EventStateHandle stateHandle)
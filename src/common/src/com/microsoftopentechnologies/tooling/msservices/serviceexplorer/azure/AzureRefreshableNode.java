@@ -18,10 +18,8 @@ package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure;
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventHandler;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventStateHandle;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.RefreshableNode;
 
@@ -34,35 +32,21 @@ public abstract class AzureRefreshableNode extends RefreshableNode {
         super(id, name, parent, iconPath, delayActionLoading);
     }
 
+    @NotNull
+    @Override
+    protected CancellationToken createCancellationToken() {
+        // refreshed items are stale once the selected subscriptions change
+        return AzureManagerImpl.getManager().getSubscriptionsChangedToken().createChild();
+    }
+
     @Override
     protected void refreshItems()
             throws AzureCmdException {
-        EventHelper.runInterruptible(new EventHandler() {
-            @Override
-            public EventHelper.EventWaitHandle registerEvent()
-                    throws AzureCmdException {
-                return AzureManagerImpl.getManager().registerSubscriptionsChanged();
-            }
-
-            @Override
-            public void unregisterEvent(@NotNull EventWaitHandle waitHandle)
-                    throws AzureCmdException {
-                AzureManagerImpl.getManager().unregisterSubscriptionsChanged(waitHandle);
-            }
-
-            @Override
-            public void interruptibleAction(@NotNull EventStateHandle eventState)
-                    throws AzureCmdException {
-                refresh(eventState);
-            }
+        CancellationToken token = CancellationToken.getCurrent();
 
-            @Override
-            public void eventTriggeredAction()
-                    throws AzureCmdException {
-            }
-        });
+        refresh(token != null ? token : AzureManagerImpl.getManager().getSubscriptionsChangedToken());
     }
 
     protected abstract void refresh(@NotNull EventStateHandle eventState)
             throws AzureCmdException;
-}
\ No newline at end of file
+}
@@ -15,31 +15,74 @@
  */
 package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
 import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
-import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventWaitHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.ExplorerSnapshot;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.RefreshableNode;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.SnapshotNode;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.mobileservice.MobileServiceModule;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.storage.StorageModule;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.vm.VMServiceModule;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class AzureServiceModule extends RefreshableNode {
     private static final String AZURE_SERVICE_MODULE_ID = AzureServiceModule.class.getName();
     private static final String ICON_PATH = "azure.png";
     private static final String BASE_MODULE_NAME = "Azure";
+    private static final int SNAPSHOT_DELAY_SECONDS = 5;
 
     private Object project;
     private MobileServiceModule mobileServiceModule = new MobileServiceModule(this);
     private VMServiceModule vmServiceModule = new VMServiceModule(this);
     private StorageModule storageServiceModule = new StorageModule(this);
-    private EventWaitHandle subscriptionsChanged;
-    private boolean registeredSubscriptionsChanged;
+    private CancellationToken subscriptionsChanged;
     private final Object subscriptionsChangedSync = new Object();
+    private final Runnable subscriptionsChangedListener = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (subscriptionsChangedSync) {
+                if (subscriptionsChanged == null) {
+                    return;
+                }
+
+                // the manager replaces the token before cancelling it, so this one is for the next change
+                subscriptionsChanged = AzureManagerImpl.getManager().getSubscriptionsChangedToken();
+                subscriptionsChanged.addListener(this);
+            }
+
+            // listeners run on the thread changing the selection, which may be the dispatch thread
+            ExecutionService.getManager().submit(ExecutionService.Pool.IO, ExecutionService.Priority.User,
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            reloadSubscriptions();
+                        }
+                    });
+        }
+    };
+    private final AtomicBoolean snapshotPending = new AtomicBoolean();
+    private final FutureCallback<List<Node>> saveSnapshotCallback = new FutureCallback<List<Node>>() {
+        @Override
+        public void onSuccess(List<Node> nodes) {
+            saveSnapshotLater();
+        }
+
+        @Override
+        public void onFailure(Throwable throwable) {
+        }
+    };
 
     public AzureServiceModule(Object project) {
         this(null, ICON_PATH, null);
@@ -77,7 +120,7 @@ public class AzureServiceModule extends RefreshableNode {
                 addChildNode(mobileServiceModule);
             }
 
-            mobileServiceModule.load();
+            Futures.addCallback(mobileServiceModule.load(), saveSnapshotCallback);
         }
 
         if (!vmServiceModule.isLoading()) {
@@ -85,7 +128,7 @@ public class AzureServiceModule extends RefreshableNode {
                 addChildNode(vmServiceModule);
             }
 
-            vmServiceModule.load();
+            Futures.addCallback(vmServiceModule.load(), saveSnapshotCallback);
         }
 
 
@@ -94,8 +137,55 @@ public class AzureServiceModule extends RefreshableNode {
                 addChildNode(storageServiceModule);
             }
 
-            storageServiceModule.load();
+            Futures.addCallback(storageServiceModule.load(), saveSnapshotCallback);
+        }
+    }
+
+    /**
+     * Adds the service modules filled with the nodes saved by the last session, so the tree can be
+     * rendered before anything is loaded. The restored nodes are marked stale and get replaced as
+     * each module revalidates them on {@link #load()}.
+     */
+    public void restoreSnapshot() {
+        List<ExplorerSnapshot.Entry> snapshot = project != null
+                ? ExplorerSnapshot.load(ExplorerSnapshot.getSnapshotFile(project))
+                : null;
+
+        for (RefreshableNode module : Arrays.asList(mobileServiceModule, vmServiceModule, storageServiceModule)) {
+            if (!isDirectChild(module)) {
+                addChildNode(module);
+            }
+
+            if (snapshot != null && !module.hasChildNodes()) {
+                for (ExplorerSnapshot.Entry entry : snapshot) {
+                    if (module.getId().equals(entry.getId())) {
+                        module.addChildNodes(SnapshotNode.create(module, entry.getChildren()));
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    // modules finishing close together share one write
+    private void saveSnapshotLater() {
+        if (project == null || !snapshotPending.compareAndSet(false, true)) {
+            return;
         }
+
+        ExecutionService.getManager().schedule(new Runnable() {
+            @Override
+            public void run() {
+                snapshotPending.set(false);
+
+                try {
+                    ExplorerSnapshot.save(ExplorerSnapshot.getSnapshotFile(project),
+                            ExplorerSnapshot.capture(new ArrayList<Node>(getChildNodes())));
+                } catch (Throwable ignored) {
+                    // e.g. the tree changed while it was being captured; the next load writes it again
+                }
+            }
+        }, SNAPSHOT_DELAY_SECONDS, TimeUnit.SECONDS);
     }
 
     @Override
@@ -103,52 +193,40 @@ public class AzureServiceModule extends RefreshableNode {
         return project;
     }
 
-    public void registerSubscriptionsChanged()
-            throws AzureCmdException {
+    /**
+     * Rebuilds the tree whenever the selected subscriptions change.
+     */
+    public void registerSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
             if (subscriptionsChanged == null) {
-                subscriptionsChanged = AzureManagerImpl.getManager().registerSubscriptionsChanged();
+                subscriptionsChanged = AzureManagerImpl.getManager().getSubscriptionsChangedToken();
+                subscriptionsChanged.addListener(subscriptionsChangedListener);
             }
-
-            registeredSubscriptionsChanged = true;
-
-            DefaultLoader.getIdeHelper().executeOnPooledThread(new Runnable() {
-                @Override
-                public void run() {
-                    while (registeredSubscriptionsChanged) {
-                        try {
-                            subscriptionsChanged.waitEvent(new Runnable() {
-                                @Override
-                                public void run() {
-                                    if (registeredSubscriptionsChanged) {
-                                        removeAllChildNodes();
-
-                                        mobileServiceModule = new MobileServiceModule(AzureServiceModule.this);
-                                        vmServiceModule = new VMServiceModule(AzureServiceModule.this);
-                                        storageServiceModule = new StorageModule(AzureServiceModule.this);
-
-                                        load();
-                                    }
-                                }
-                            });
-                        } catch (AzureCmdException ignored) {
-                            break;
-                        }
-                    }
-                }
-            });
         }
     }
 
-    public void unregisterSubscriptionsChanged()
-            throws AzureCmdException {
+    public void unregisterSubscriptionsChanged() {
         synchronized (subscriptionsChangedSync) {
-            registeredSubscriptionsChanged = false;
-
             if (subscriptionsChanged != null) {
-                AzureManagerImpl.getManager().unregisterSubscriptionsChanged(subscriptionsChanged);
+                subscriptionsChanged.removeListener(subscriptionsChangedListener);
                 subscriptionsChanged = null;
             }
         }
     }
+
+    private void reloadSubscriptions() {
+        synchronized (subscriptionsChangedSync) {
+            if (subscriptionsChanged == null) {
+                return;
+            }
+        }
+
+        removeAllChildNodes();
+
+        mobileServiceModule = new MobileServiceModule(this);
+        vmServiceModule = new VMServiceModule(this);
+        storageServiceModule = new StorageModule(this);
+
+        load();
+    }
 }
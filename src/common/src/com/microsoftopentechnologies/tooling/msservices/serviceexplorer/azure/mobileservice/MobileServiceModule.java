@@ -24,6 +24,7 @@ import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHel
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class MobileServiceModule extends AzureRefreshableNode {
@@ -38,11 +39,9 @@ public class MobileServiceModule extends AzureRefreshableNode {
     @Override
     protected void refresh(@NotNull EventStateHandle eventState)
             throws AzureCmdException {
-        // remove all child mobile service nodes
-        removeAllChildNodes();
-
         // load all mobile services
         List<Subscription> subscriptionList = AzureManagerImpl.getManager().getSubscriptionList();
+        List<Node> nodes = new ArrayList<Node>();
 
         for (Subscription subscription : subscriptionList) {
             List<MobileService> mobileServices = AzureManagerImpl.getManager().getMobileServiceList(subscription.getId());
@@ -52,8 +51,11 @@ public class MobileServiceModule extends AzureRefreshableNode {
             }
 
             for (MobileService mobileService : mobileServices) {
-                addChildNode(new MobileServiceNode(this, mobileService));
+                nodes.add(new MobileServiceNode(this, mobileService));
             }
         }
+
+        // the current nodes, possibly restored from a snapshot, stay until the new ones are ready
+        replaceChildNodes(nodes);
     }
 }
\ No newline at end of file
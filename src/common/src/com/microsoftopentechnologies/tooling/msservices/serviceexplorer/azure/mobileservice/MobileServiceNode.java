@@ -22,6 +22,7 @@ import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManager;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.MobileServiceScriptSync;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.AzureRestAPIHelper;
 import com.microsoftopentechnologies.tooling.msservices.model.ms.CustomAPI;
 import com.microsoftopentechnologies.tooling.msservices.model.ms.Job;
@@ -31,11 +32,13 @@ import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHel
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.NodeActionEvent;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.NodeActionListener;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureNodeActionListener;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureNodeActionPromptListener;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -69,6 +72,47 @@ public class MobileServiceNode extends AzureRefreshableNode {
         }
     }
 
+    public class SyncScriptsAction extends AzureNodeActionListener {
+        public SyncScriptsAction() {
+            super(MobileServiceNode.this, "Synchronizing Mobile Service Scripts");
+        }
+
+        @Override
+        protected void azureNodeAction(NodeActionEvent e, @NotNull EventStateHandle stateHandle)
+                throws AzureCmdException {
+            MobileServiceScriptSync.SyncResult result = new MobileServiceScriptSync(getProject(), mobileService)
+                    .sync(stateHandle);
+
+            if (!result.getConflicts().isEmpty() || !result.getOpenInEditor().isEmpty()
+                    || !result.getFailures().isEmpty()) {
+                StringBuilder sb = new StringBuilder(result.toString());
+
+                if (!result.getConflicts().isEmpty()) {
+                    sb.append("\nChanged both locally and remotely: ").append(result.getConflicts());
+                }
+
+                if (!result.getOpenInEditor().isEmpty()) {
+                    sb.append("\nNot downloaded, close the editors and sync again: ").append(result.getOpenInEditor());
+                }
+
+                if (!result.getFailures().isEmpty()) {
+                    sb.append("\nFailed: ").append(result.getFailures().keySet());
+                }
+
+                DefaultLoader.getUIHelper().showError(sb.toString(), "Service Explorer");
+            }
+        }
+
+        @Override
+        protected void onSubscriptionsChanged(NodeActionEvent e)
+                throws AzureCmdException {
+            // scripts synced before the change are consistent with the manifest, the rest are
+            // picked up by the next sync once the service is selected again
+            DefaultLoader.getUIHelper().showError(String.format("Synchronizing the scripts of %s was interrupted " +
+                    "because the selected subscriptions changed.", mobileService.getName()), "Service Explorer");
+        }
+    }
+
     private static final String ICON_PATH = "service.png";
     public static final String TABLES = "Tables";
     public static final String CUSTOM_APIS = "Custom APIs";
@@ -187,9 +231,11 @@ public class MobileServiceNode extends AzureRefreshableNode {
 
         // create child table nodes for this node
         Constructor<N> constructor = nodeClass.getConstructor(Node.class, modelClass);
+        List<Node> nodes = new ArrayList<Node>(nodesList.size());
         for (E nodeElement : nodesList) {
-            parentNode.addChildNode((Node) constructor.newInstance(parentNode, nodeElement));
+            nodes.add((Node) constructor.newInstance(parentNode, nodeElement));
         }
+        parentNode.addChildNodes(nodes);
 
         return parentNode;
 
@@ -199,6 +245,7 @@ public class MobileServiceNode extends AzureRefreshableNode {
     protected Map<String, Class<? extends NodeActionListener>> initActions() {
         if (isNodeRuntime()) {
             addAction("Delete", new DeleteMobileServiceAction());
+            addAction("Sync scripts", new SyncScriptsAction());
             super.initActions();
 
             return null;
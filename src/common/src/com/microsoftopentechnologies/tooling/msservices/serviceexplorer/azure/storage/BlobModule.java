@@ -21,8 +21,10 @@ import com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk.Storag
 import com.microsoftopentechnologies.tooling.msservices.model.storage.BlobContainer;
 import com.microsoftopentechnologies.tooling.msservices.model.storage.ClientStorageAccount;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHelper.EventStateHandle;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class BlobModule extends AzureRefreshableNode {
@@ -46,9 +48,13 @@ public class BlobModule extends AzureRefreshableNode {
             return;
         }
 
+        List<Node> nodes = new ArrayList<Node>(blobContainers.size());
+
         for (BlobContainer blobContainer : blobContainers) {
-            addChildNode(new ContainerNode(this, storageAccount, blobContainer));
+            nodes.add(new ContainerNode(this, storageAccount, blobContainer));
         }
+
+        addChildNodes(nodes);
     }
 
     public ClientStorageAccount getStorageAccount() {
@@ -24,6 +24,7 @@ import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHel
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class QueueModule extends AzureRefreshableNode {
@@ -48,9 +49,13 @@ public class QueueModule extends AzureRefreshableNode {
             return;
         }
 
+        List<Node> nodes = new ArrayList<Node>(queues.size());
+
         for (Queue queue : queues) {
-            addChildNode(new QueueNode(this, storageAccount, queue));
+            nodes.add(new QueueNode(this, storageAccount, queue));
         }
+
+        addChildNodes(nodes);
     }
 
     public ClientStorageAccount getStorageAccount() {
@@ -28,12 +28,14 @@ import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHel
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class StorageModule extends AzureRefreshableNode {
     private static final String STORAGE_MODULE_ID = StorageModule.class.getName();
     private static final String ICON_PATH = "storage.png";
     private static final String BASE_MODULE_NAME = "Storage";
+    private static final int KEY_PREFETCH_COUNT = 25;
 
     public StorageModule(Node parent) {
         super(STORAGE_MODULE_ID, BASE_MODULE_NAME, parent, ICON_PATH);
@@ -42,10 +44,10 @@ public class StorageModule extends AzureRefreshableNode {
     @Override
     protected void refresh(@NotNull EventStateHandle eventState)
             throws AzureCmdException {
-        removeAllChildNodes();
-
         // load all Storage Accounts
         List<Subscription> subscriptionList = AzureManagerImpl.getManager().getSubscriptionList();
+        List<StorageAccount> prefetchList = new ArrayList<StorageAccount>();
+        List<Node> nodes = new ArrayList<Node>();
 
         for (Subscription subscription : subscriptionList) {
             List<StorageAccount> storageAccounts = AzureManagerImpl.getManager().getStorageAccounts(subscription.getId());
@@ -62,11 +64,23 @@ public class StorageModule extends AzureRefreshableNode {
                         || type.equals(StorageAccountTypes.STANDARD_RAGRS)
                         || type.equals(StorageAccountTypes.STANDARD_ZRS)) {
 
-                    addChildNode(new StorageNode(this, sm));
+                    nodes.add(new StorageNode(this, sm));
+
+                    if (prefetchList.size() < KEY_PREFETCH_COUNT) {
+                        prefetchList.add(sm);
+                    }
                 }
             }
         }
 
+        // the current nodes, possibly restored from a snapshot, stay until the new ones are ready
+        replaceChildNodes(nodes);
+
+        // the first accounts are the ones shown when this node is expanded, warm up their keys
+        AzureManagerImpl.getManager().prefetchStorageAccountKeys(prefetchList);
+
+        nodes = new ArrayList<Node>();
+
         // load External Accounts
         for (ClientStorageAccount clientStorageAccount : ExternalStorageHelper.getList()) {
             ClientStorageAccount storageAccount = StorageClientSDKManagerImpl.getManager().getStorageAccount(clientStorageAccount.getConnectionString());
@@ -75,7 +89,9 @@ public class StorageModule extends AzureRefreshableNode {
                 return;
             }
 
-            addChildNode(new ExternalStorageNode(this, storageAccount));
+            nodes.add(new ExternalStorageNode(this, storageAccount));
         }
+
+        addChildNodes(nodes);
     }
 }
\ No newline at end of file
@@ -75,6 +75,14 @@ public class StorageNode extends ClientStorageNode {
             throws AzureCmdException {
         removeAllChildNodes();
 
+        if (!storageAccount.isKeysLoaded()) {
+            AzureManagerImpl.getManager().loadStorageAccountKeys(storageAccount);
+
+            if (eventState.isEventTriggered()) {
+                return;
+            }
+        }
+
         fillChildren(eventState);
     }
 
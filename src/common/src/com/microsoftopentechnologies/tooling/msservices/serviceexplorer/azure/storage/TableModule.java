@@ -24,6 +24,7 @@ import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHel
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public class TableModule extends AzureRefreshableNode {
@@ -48,9 +49,13 @@ public class TableModule extends AzureRefreshableNode {
             return;
         }
 
+        List<Node> nodes = new ArrayList<Node>(tables.size());
+
         for (Table table : tables) {
-            addChildNode(new TableNode(this, storageAccount, table));
+            nodes.add(new TableNode(this, storageAccount, table));
         }
+
+        addChildNodes(nodes);
     }
 
     public ClientStorageAccount getStorageAccount() {
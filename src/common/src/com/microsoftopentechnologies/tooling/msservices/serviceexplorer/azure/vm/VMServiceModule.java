@@ -15,6 +15,7 @@
  */
 package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.vm;
 
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
 import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureCmdException;
 import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
@@ -24,7 +25,11 @@ import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.EventHel
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
 import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure.AzureRefreshableNode;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class VMServiceModule extends AzureRefreshableNode {
     private static final String VM_SERVICE_MODULE_ID = VMServiceModule.class.getName();
@@ -36,23 +41,54 @@ public class VMServiceModule extends AzureRefreshableNode {
     }
 
     @Override
-    protected void refresh(@NotNull EventStateHandle eventState)
+    protected void refresh(@NotNull final EventStateHandle eventState)
             throws AzureCmdException {
-        // remove all child nodes
-        removeAllChildNodes();
-
-        // load all VMs
+        // load all VMs; the current nodes, possibly restored from a snapshot,
+        // are replaced when the first batch arrives
         List<Subscription> subscriptionList = AzureManagerImpl.getManager().getSubscriptionList();
+        final AtomicBoolean replaced = new AtomicBoolean();
+        // a hosted service reported twice, e.g. when a request is sent again after an expired token, adds its VMs once
+        final Set<String> added = new HashSet<String>();
 
         for (Subscription subscription : subscriptionList) {
-            List<VirtualMachine> virtualMachines = AzureManagerImpl.getManager().getVirtualMachines(subscription.getId());
+            // hosted services are loaded in parallel, add their VMs as soon as each one completes
+            AzureManagerImpl.getManager().getVirtualMachines(subscription.getId(),
+                    new CallableSingleArg<Void, List<VirtualMachine>>() {
+                        @Override
+                        public Void call(List<VirtualMachine> virtualMachines) throws Exception {
+                            if (eventState.isEventTriggered()) {
+                                return null;
+                            }
+
+                            synchronized (VMServiceModule.this) {
+                                List<Node> nodes = new ArrayList<Node>(virtualMachines.size());
+
+                                for (VirtualMachine vm : virtualMachines) {
+                                    if (added.add(vm.getSubscriptionId() + "/" + vm.getServiceName() + "/" + vm.getName())) {
+                                        nodes.add(new VMNode(VMServiceModule.this, vm));
+                                    }
+                                }
+
+                                if (replaced.compareAndSet(false, true)) {
+                                    replaceChildNodes(nodes);
+                                } else {
+                                    addChildNodes(nodes);
+                                }
+                            }
+
+                            return null;
+                        }
+                    });
 
             if (eventState.isEventTriggered()) {
                 return;
             }
+        }
 
-            for (VirtualMachine vm : virtualMachines) {
-                addChildNode(new VMNode(this, vm));
+        synchronized (this) {
+            // no VMs at all
+            if (replaced.compareAndSet(false, true)) {
+                removeAllChildNodes();
             }
         }
     }
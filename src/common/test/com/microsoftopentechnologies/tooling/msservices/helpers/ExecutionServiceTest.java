@@ -0,0 +1,83 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService.Pool;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService.Priority;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ExecutionServiceTest {
+    private static final Runnable NOTHING = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @Test
+    public void runsSubmittedWork() throws Exception {
+        ExecutionService executionService = new ExecutionService();
+
+        try {
+            Future<String> future = executionService.submit(Pool.IO, Priority.Background, new Callable<String>() {
+                @Override
+                public String call() {
+                    return "done";
+                }
+            });
+
+            assertEquals("done", future.get(10, TimeUnit.SECONDS));
+        } finally {
+            executionService.shutdown();
+        }
+    }
+
+    @Test
+    public void refusesWorkOnceShutDown() {
+        ExecutionService executionService = new ExecutionService();
+        executionService.shutdown();
+        assertTrue(executionService.isShutdown());
+
+        for (Pool pool : Pool.values()) {
+            try {
+                executionService.submit(pool, Priority.User, NOTHING);
+                fail("accepted work on the " + pool + " pool after shutdown");
+            } catch (RejectedExecutionException expected) {
+            }
+        }
+
+        try {
+            executionService.schedule(NOTHING, 1, TimeUnit.SECONDS);
+            fail("scheduled work after shutdown");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        try {
+            executionService.scheduleWithFixedDelay(NOTHING, 1, 1, TimeUnit.SECONDS);
+            fail("scheduled periodic work after shutdown");
+        } catch (RejectedExecutionException expected) {
+        }
+
+        // a second shutdown is harmless
+        executionService.shutdown();
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers;
+
+import org.junit.Test;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import javax.xml.xpath.XPathConstants;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class XmlHelperTest {
+    @Test
+    public void sharesParsersAcrossThreads() throws Exception {
+        // many more threads than pooled builders, each asking for the size of its own document
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+            for (int i = 0; i < 2000; i++) {
+                final int items = i % 50;
+
+                results.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        return ((NodeList) XmlHelper.getXMLValue(getItems(items), "//Item",
+                                XPathConstants.NODESET)).getLength();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals(i % 50, results.get(i).get(30, TimeUnit.SECONDS).intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evaluatesQueriesPastTheCacheLimit() throws Exception {
+        String xml = getItems(200);
+
+        for (int i = 1; i <= 200; i++) {
+            assertEquals("item" + (i - 1),
+                    XmlHelper.getXMLValue(xml, "//Item[" + i + "]/Name/text()", XPathConstants.STRING));
+        }
+    }
+
+    @Test
+    public void keepsWorkingAfterMalformedDocuments() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            try {
+                XmlHelper.getXMLValue("<Items><Item>", "//Item", XPathConstants.NODESET);
+                fail("the document is not well formed");
+            } catch (SAXException expected) {
+            }
+        }
+
+        assertEquals(3, ((NodeList) XmlHelper.getXMLValue(getItems(3), "//Item", XPathConstants.NODESET)).getLength());
+    }
+
+    private static String getItems(int items) {
+        StringBuilder sb = new StringBuilder("<Items>");
+
+        for (int i = 0; i < items; i++) {
+            sb.append("<Item><Name>item").append(i).append("</Name></Item>");
+        }
+
+        return sb.append("</Items>").toString();
+    }
+}
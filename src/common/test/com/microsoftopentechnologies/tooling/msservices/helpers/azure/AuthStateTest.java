@@ -0,0 +1,304 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.auth.UserInfo;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AuthState.AuthData;
+import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class AuthStateTest {
+    private static final int READERS = 8;
+    private static final int WRITERS = 4;
+    private static final int UPDATES_PER_WRITER = 500;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    private static final SSLSocketFactory SSL_SOCKET_FACTORY = (SSLSocketFactory) SSLSocketFactory.getDefault();
+
+    /**
+     * Checks each store happens under the write lock, right after the snapshot it persists was published.
+     */
+    private static class RecordingStore implements AuthState.Store {
+        private AuthState state;
+        private final AtomicInteger stores = new AtomicInteger();
+        private final Queue<String> errors = new ConcurrentLinkedQueue<String>();
+        private volatile AuthData lastStored;
+
+        @Override
+        public void storeSubscriptions(@NotNull AuthData data) {
+            record(data);
+        }
+
+        @Override
+        public void storeUserInfo(@NotNull AuthData data) {
+            record(data);
+        }
+
+        private void record(@NotNull AuthData data) {
+            if (state.get() != data) {
+                errors.add("stored a snapshot which is not the published one");
+            }
+
+            stores.incrementAndGet();
+            lastStored = data;
+        }
+    }
+
+    @Test
+    public void concurrentUpdatesAreNotLost() throws Exception {
+        RecordingStore store = new RecordingStore();
+        final AuthState state = new AuthState(emptyData(), store);
+        store.state = state;
+
+        final AtomicBoolean writing = new AtomicBoolean(true);
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + WRITERS);
+        List<Future<?>> readers = new ArrayList<Future<?>>();
+        List<Future<?>> writers = new ArrayList<Future<?>>();
+
+        for (int i = 0; i < READERS; i++) {
+            readers.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    AuthData last = state.get();
+                    Map<String, Boolean> lastSelection = getSelection(last);
+
+                    while (writing.get()) {
+                        AuthData data = state.get();
+                        checkSnapshot(data, failures);
+
+                        // subscriptions are only ever added in this test
+                        if (data.subscriptions.size() < last.subscriptions.size()) {
+                            failures.add(new AssertionError("a reader saw subscriptions disappear"));
+                        }
+
+                        // published subscriptions are copied, never changed in place
+                        if (!lastSelection.equals(getSelection(last))) {
+                            failures.add(new AssertionError("a published subscription was modified"));
+                        }
+
+                        last = data;
+                        lastSelection = getSelection(data);
+                    }
+                }
+            }));
+        }
+
+        final CyclicBarrier start = new CyclicBarrier(WRITERS);
+
+        for (int i = 0; i < WRITERS; i++) {
+            final int writer = i;
+
+            writers.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+
+                    for (int j = 0; j < UPDATES_PER_WRITER; j++) {
+                        String id = writer + "-" + j;
+
+                        switch (j % 3) {
+                            case 0:
+                                state.updateSubscription(subscription("user-" + id, "tenant-" + id),
+                                        new UserInfo("tenant-" + id, "user@" + id));
+                                break;
+                            case 1:
+                                state.updateSubscription(subscription("cert-" + id, null), SSL_SOCKET_FACTORY);
+                                break;
+                            default:
+                                state.setSelectedSubscriptions(Arrays.asList("user-" + writer + "-" + (j - 2)));
+                                break;
+                        }
+
+                        state.setAccessToken(new UserInfo("tenant-" + writer, "user"), "token-" + j);
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : writers) {
+                future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } finally {
+            writing.set(false);
+        }
+
+        for (Future<?> future : readers) {
+            future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.peek());
+        }
+
+        assertTrue(store.errors.toString(), store.errors.isEmpty());
+
+        AuthData data = state.get();
+        checkSnapshot(data, failures);
+        assertTrue(failures.isEmpty());
+        assertSame(data, store.lastStored);
+
+        int userUpdates = 0;
+        int certUpdates = 0;
+
+        for (int writer = 0; writer < WRITERS; writer++) {
+            for (int j = 0; j < UPDATES_PER_WRITER; j++) {
+                String id = writer + "-" + j;
+
+                if (j % 3 == 0) {
+                    userUpdates++;
+                    assertEquals("tenant-" + id, data.subscriptions.get("user-" + id).getTenantId());
+                    assertEquals(new UserInfo("tenant-" + id, "user@" + id),
+                            data.userInfoBySubscriptionId.get("user-" + id));
+                } else if (j % 3 == 1) {
+                    certUpdates++;
+                    assertSame(SSL_SOCKET_FACTORY, data.sslSocketFactoryBySubscriptionId.get("cert-" + id));
+                }
+            }
+
+            assertEquals("token-" + (UPDATES_PER_WRITER - 1),
+                    state.getAccessToken(new UserInfo("tenant-" + writer, "user")));
+        }
+
+        assertEquals(userUpdates + certUpdates, data.subscriptions.size());
+        // user updates store both the user info and the subscriptions
+        assertEquals(2 * userUpdates + certUpdates + WRITERS * (UPDATES_PER_WRITER / 3), store.stores.get());
+    }
+
+    @Test
+    public void signOutRacingSignInLeavesNoUnusedSubscriptions() throws Exception {
+        RecordingStore store = new RecordingStore();
+        final AuthState state = new AuthState(emptyData(), store);
+        store.state = state;
+
+        final Queue<Throwable> failures = new ConcurrentLinkedQueue<Throwable>();
+        final CountDownLatch done = new CountDownLatch(2);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 2);
+
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                    state.updateSubscription(subscription("user-" + i, "tenant"), new UserInfo("tenant", "user"));
+                    state.updateSubscription(subscription("cert-" + i, null), SSL_SOCKET_FACTORY);
+                }
+
+                done.countDown();
+            }
+        });
+
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+                    state.setUserInfo(i % 2 == 0 ? null : new UserInfo("tenant", "user"));
+                }
+
+                done.countDown();
+            }
+        });
+
+        for (int i = 0; i < READERS; i++) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    while (done.getCount() > 0) {
+                        checkSnapshot(state.get(), failures);
+                    }
+                }
+            });
+        }
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.peek());
+        }
+
+        assertTrue(store.errors.toString(), store.errors.isEmpty());
+
+        // certificate subscriptions survive signing out
+        AuthData data = state.get();
+
+        for (int i = 0; i < UPDATES_PER_WRITER; i++) {
+            assertTrue(data.subscriptions.containsKey("cert-" + i));
+        }
+    }
+
+    /**
+     * Every published snapshot only holds subscriptions with credentials, and only credentials of known
+     * subscriptions.
+     */
+    private static void checkSnapshot(@NotNull AuthData data, @NotNull Queue<Throwable> failures) {
+        try {
+            for (Map.Entry<String, Subscription> entry : data.subscriptions.entrySet()) {
+                String subscriptionId = entry.getKey();
+                assertEquals(subscriptionId, entry.getValue().getId());
+                assertTrue("subscription without credentials: " + subscriptionId,
+                        data.userInfoBySubscriptionId.containsKey(subscriptionId) ||
+                                data.sslSocketFactoryBySubscriptionId.containsKey(subscriptionId));
+            }
+
+            assertTrue(data.subscriptions.keySet().containsAll(data.userInfoBySubscriptionId.keySet()));
+            assertTrue(data.subscriptions.keySet().containsAll(data.sslSocketFactoryBySubscriptionId.keySet()));
+        } catch (Throwable t) {
+            failures.add(t);
+        }
+    }
+
+    @NotNull
+    private static Map<String, Boolean> getSelection(@NotNull AuthData data) {
+        Map<String, Boolean> selection = new HashMap<String, Boolean>();
+
+        for (Subscription subscription : data.subscriptions.values()) {
+            selection.put(subscription.getId(), subscription.isSelected());
+        }
+
+        return selection;
+    }
+
+    @NotNull
+    private static AuthData emptyData() {
+        return new AuthData(new HashMap<String, Subscription>(), null, new HashMap<String, UserInfo>(),
+                new HashMap<String, SSLSocketFactory>());
+    }
+
+    @NotNull
+    private static Subscription subscription(@NotNull String id, String tenantId) {
+        Subscription subscription = new Subscription();
+        subscription.setId(id);
+        subscription.setName(id);
+        subscription.setTenantId(tenantId);
+
+        return subscription;
+    }
+}
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure;
+
+import com.microsoft.windowsazure.core.pipeline.filter.ServiceRequestContext;
+import com.microsoft.windowsazure.core.pipeline.filter.ServiceResponseContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class RequestSchedulerTest {
+    private static final String SUBSCRIPTION_ID = "subscription";
+    private static final long TIMEOUT_SECONDS = 30;
+
+    /**
+     * Like the SDK's contexts, the request and the response of an exchange share their properties.
+     */
+    private static class Exchange implements ServiceRequestContext, ServiceResponseContext {
+        private final Map<String, Object> properties = new HashMap<String, Object>();
+        private int status;
+
+        @Override
+        public Object getProperty(String name) {
+            return properties.get(name);
+        }
+
+        @Override
+        public void setProperty(String name, Object value) {
+            properties.put(name, value);
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public String getMethod() {
+            return "GET";
+        }
+
+        @Override
+        public void setMethod(String method) {
+        }
+
+        @Override
+        public URI getURI() {
+            return URI.create("https://management.core.windows.net/" + SUBSCRIPTION_ID);
+        }
+
+        @Override
+        public void setURI(URI uri) {
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return null;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+        }
+
+        @Override
+        public void removeHeader(String name) {
+        }
+
+        @Override
+        public Object getEntity() {
+            return null;
+        }
+
+        @Override
+        public void setEntity(Object entity) {
+        }
+
+        @Override
+        public boolean hasEntity() {
+            return false;
+        }
+
+        @Override
+        public InputStream getEntityInputStream() {
+            return null;
+        }
+
+        @Override
+        public void setEntityInputStream(InputStream inputStream) {
+        }
+    }
+
+    private ExecutorService pool;
+
+    @Before
+    public void setUp() {
+        pool = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void connectionFailureOnPooledThreadGivesBackItsSlot() throws Exception {
+        final RequestScheduler scheduler = new RequestScheduler(TimeUnit.HOURS.toMillis(1));
+        final RequestScheduler.SchedulingFilter filter = scheduler.getFilter(SUBSCRIPTION_ID);
+
+        // as many failures as there are slots, each of which would otherwise be held for good
+        for (int i = 0; i < 4; i++) {
+            Future<?> failed = pool.submit(scheduler.wrap(new Runnable() {
+                @Override
+                public void run() {
+                    filter.filter(new Exchange());
+                    throw new IllegalStateException("Connection refused");
+                }
+            }));
+
+            try {
+                failed.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                fail("the exchange should have failed");
+            } catch (ExecutionException e) {
+                assertEquals("Connection refused", e.getCause().getMessage());
+            }
+
+            assertEquals(0, scheduler.getInFlight(SUBSCRIPTION_ID));
+        }
+
+        pool.submit(scheduler.wrap(new Runnable() {
+            @Override
+            public void run() {
+                respond(filter, 200);
+            }
+        })).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0, scheduler.getInFlight(SUBSCRIPTION_ID));
+    }
+
+    @Test
+    public void responseOnAnotherThreadGivesBackTheSlotOnce() throws Exception {
+        final RequestScheduler scheduler = new RequestScheduler(TimeUnit.HOURS.toMillis(1));
+        final RequestScheduler.SchedulingFilter filter = scheduler.getFilter(SUBSCRIPTION_ID);
+
+        for (int i = 0; i < 3; i++) {
+            // the request is sent on a thread of the SDK and its response handled on another one
+            final Exchange exchange = new Exchange();
+            pool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    filter.filter(exchange);
+                }
+            }).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+            assertEquals(1, scheduler.getInFlight(SUBSCRIPTION_ID));
+
+            exchange.setStatus(200);
+            filter.filter(null, exchange);
+
+            assertEquals(0, scheduler.getInFlight(SUBSCRIPTION_ID));
+        }
+
+        // the next request of the SDK thread must not give back the slot of the answered exchange again
+        pool.submit(scheduler.wrap(new Runnable() {
+            @Override
+            public void run() {
+                respond(filter, 200);
+            }
+        })).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0, scheduler.getInFlight(SUBSCRIPTION_ID));
+    }
+
+    @Test
+    public void expiredExchangesAreGivenBack() throws Exception {
+        RequestScheduler scheduler = new RequestScheduler(100);
+        final RequestScheduler.SchedulingFilter filter = scheduler.getFilter(SUBSCRIPTION_ID);
+
+        // exchanges on threads nobody closes, like the SDK's own, fill every slot
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    filter.filter(new Exchange());
+                }
+            });
+            thread.start();
+            thread.join();
+        }
+
+        assertEquals(4, scheduler.getInFlight(SUBSCRIPTION_ID));
+
+        Future<?> next = pool.submit(scheduler.wrap(new Runnable() {
+            @Override
+            public void run() {
+                respond(filter, 200);
+            }
+        }));
+        next.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertEquals(0, scheduler.getInFlight(SUBSCRIPTION_ID));
+    }
+
+    private static void respond(RequestScheduler.SchedulingFilter filter, int status) {
+        Exchange exchange = new Exchange();
+        filter.filter(exchange);
+        exchange.setStatus(status);
+        filter.filter(null, exchange);
+    }
+}
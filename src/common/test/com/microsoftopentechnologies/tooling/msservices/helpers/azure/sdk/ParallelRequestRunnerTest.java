@@ -0,0 +1,120 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.helpers.azure.sdk;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService.Pool;
+import com.microsoftopentechnologies.tooling.msservices.helpers.ExecutionService.Priority;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ParallelRequestRunnerTest {
+    private static final int ITEMS = 50;
+
+    private static final ParallelRequestRunner.Request<Integer, Integer> SQUARE =
+            new ParallelRequestRunner.Request<Integer, Integer>() {
+                @NotNull
+                @Override
+                public Integer execute(@NotNull Integer input) throws Throwable {
+                    Thread.sleep(1);
+                    return input * input;
+                }
+            };
+
+    @Test
+    public void returnsResultsInInputOrder() throws Throwable {
+        List<Integer> results = ParallelRequestRunner.run(getItems(), ParallelRequestRunner.DEFAULT_PARALLELISM,
+                SQUARE, null);
+
+        for (int i = 0; i < ITEMS; i++) {
+            assertEquals(i * i, (int) results.get(i));
+        }
+    }
+
+    @Test
+    public void rethrowsTheFirstFailure() {
+        final AtomicInteger started = new AtomicInteger();
+
+        try {
+            ParallelRequestRunner.run(getItems(), 2, new ParallelRequestRunner.Request<Integer, Integer>() {
+                @NotNull
+                @Override
+                public Integer execute(@NotNull Integer input) throws Throwable {
+                    started.incrementAndGet();
+
+                    if (input == 3) {
+                        throw new IllegalStateException("item 3");
+                    }
+
+                    return input;
+                }
+            }, null);
+            fail("the failure was swallowed");
+        } catch (Throwable t) {
+            assertEquals("item 3", t.getMessage());
+        }
+
+        assertTrue(started.get() < ITEMS);
+    }
+
+    /**
+     * Refreshes running on every I/O thread each fan out to the same pool; none of their workers can
+     * start, so the callers have to get through the items on their own.
+     */
+    @Test(timeout = 60000)
+    public void completesWhenTheIOPoolIsSaturated() throws Exception {
+        ExecutionService executionService = ExecutionService.getManager();
+        List<Future<List<Integer>>> refreshes = new ArrayList<Future<List<Integer>>>();
+
+        for (int i = 0; i < 64; i++) {
+            refreshes.add(executionService.submit(Pool.IO, Priority.Background, new Callable<List<Integer>>() {
+                @Override
+                public List<Integer> call() throws Exception {
+                    try {
+                        return ParallelRequestRunner.run(getItems(), ParallelRequestRunner.DEFAULT_PARALLELISM,
+                                SQUARE, null);
+                    } catch (Throwable t) {
+                        throw new Exception(t);
+                    }
+                }
+            }));
+        }
+
+        for (Future<List<Integer>> refresh : refreshes) {
+            assertEquals(ITEMS, refresh.get(60, TimeUnit.SECONDS).size());
+        }
+    }
+
+    @NotNull
+    private static List<Integer> getItems() {
+        List<Integer> items = new ArrayList<Integer>();
+
+        for (int i = 0; i < ITEMS; i++) {
+            items.add(i);
+        }
+
+        return items;
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.replay;
+
+import com.google.common.io.ByteStreams;
+import com.microsoft.azure.storage.CloudStorageAccount;
+import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import com.microsoft.azure.storage.queue.CloudQueue;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.XmlHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.RequestScheduler;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.rest.MobileServiceJsonReader;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.MobileService;
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import javax.xml.xpath.XPathConstants;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ReplayServerTest {
+    private static class Response {
+        private int status;
+        private String retryAfter;
+        private String body;
+    }
+
+    private ReplayServer server;
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void scalesSubscriptionsAndStorageAccounts() throws Exception {
+        ReplayOptions options = new ReplayOptions();
+        options.setSubscriptions(50);
+        options.setStorageAccountsPerSubscription(1000);
+        start(options);
+
+        Response subscriptions = get("/subscriptions");
+        assertEquals(200, subscriptions.status);
+        NodeList subscriptionList = (NodeList) XmlHelper.getXMLValue(subscriptions.body, "//Subscription",
+                XPathConstants.NODESET);
+        assertEquals(50, subscriptionList.getLength());
+        assertEquals(ReplayServer.getSubscriptionId(49), getChildText(subscriptionList.item(49), "SubscriptionID"));
+        assertEquals(ReplayServer.TENANT_ID, getChildText(subscriptionList.item(0), "AADTenantID"));
+
+        String subscriptionId = ReplayServer.getSubscriptionId(7);
+        Response storageServices = get("/" + subscriptionId + "/services/storageservices");
+        NodeList names = (NodeList) XmlHelper.getXMLValue(storageServices.body, "//StorageService/ServiceName",
+                XPathConstants.NODESET);
+        assertEquals(1000, names.getLength());
+
+        Set<String> distinctNames = new HashSet<String>();
+
+        for (int i = 0; i < names.getLength(); i++) {
+            distinctNames.add(names.item(i).getTextContent());
+        }
+
+        assertEquals(1000, distinctNames.size());
+        assertTrue(storageServices.body.contains(
+                "https://management.core.windows.net/" + subscriptionId + "/services/storageservices/replaystore999"));
+    }
+
+    @Test
+    public void servesMobileServicesTheReaderCanDecode() throws Exception {
+        ReplayOptions options = new ReplayOptions();
+        options.setMobileServicesPerSubscription(25);
+        start(options);
+
+        String subscriptionId = ReplayServer.getSubscriptionId(0);
+        Response response = get("/" + subscriptionId + "/services/mobileservices/mobileservices");
+        List<MobileService> services = MobileServiceJsonReader.readMobileServices(new StringReader(response.body),
+                subscriptionId);
+
+        assertEquals(25, services.size());
+        assertEquals("replaytodo0", services.get(0).getName());
+        assertEquals(MobileService.NET_RUNTIME, services.get(1).getRuntime());
+        assertEquals("replaytodo24", services.get(24).getName());
+    }
+
+    @Test
+    public void servesStorageListingsThroughTheStorageClient() throws Exception {
+        ReplayOptions options = new ReplayOptions();
+        options.setContainersPerAccount(300);
+        options.setQueuesPerAccount(40);
+        start(options);
+
+        String template = server.getStorageEndpointTemplate();
+        String account = "replaystore3";
+        CloudStorageAccount storageAccount = CloudStorageAccount.parse(String.format(
+                "DefaultEndpointsProtocol=https;BlobEndpoint=%s;QueueEndpoint=%s;TableEndpoint=%s;AccountName=%s;AccountKey=%s",
+                getStorageEndpoint(template, account, "blob"),
+                getStorageEndpoint(template, account, "queue"),
+                getStorageEndpoint(template, account, "table"),
+                account,
+                "cmVwbGF5LXByaW1hcnkta2V5LXJlcGxheS1wcmltYXJ5LWtleS1yZXBsYXktcHJpbWFyeS1rZXk="));
+
+        SSLSocketFactory defaultSocketFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        HttpsURLConnection.setDefaultSSLSocketFactory(server.getClientSocketFactory());
+
+        try {
+            List<String> containers = new ArrayList<String>();
+
+            for (CloudBlobContainer container : storageAccount.createCloudBlobClient().listContainers()) {
+                containers.add(container.getName());
+            }
+
+            assertEquals(300, containers.size());
+            assertEquals("replaycontainer299", containers.get(299));
+
+            int queues = 0;
+
+            for (CloudQueue ignored : storageAccount.createCloudQueueClient().listQueues()) {
+                queues++;
+            }
+
+            assertEquals(40, queues);
+        } finally {
+            HttpsURLConnection.setDefaultSSLSocketFactory(defaultSocketFactory);
+        }
+    }
+
+    @Test
+    public void throttlesWithRetryAfter() throws Exception {
+        ReplayOptions options = new ReplayOptions();
+        options.setThrottleRate(1);
+        options.setRetryAfterSeconds(3);
+        start(options);
+
+        Response response = get("/subscriptions");
+
+        assertTrue(RequestScheduler.isThrottled(response.status));
+        assertEquals(3000, RequestScheduler.parseRetryAfterMillis(response.retryAfter));
+        assertTrue(response.body.contains("ServerBusy"));
+        assertEquals(1, server.getThrottledCount());
+    }
+
+    @Test
+    public void injectsErrorsAtTheConfiguredRate() throws Exception {
+        ReplayOptions options = new ReplayOptions();
+        options.setErrorRate(0.3);
+        start(options);
+
+        int errors = 0;
+
+        for (int i = 0; i < 200; i++) {
+            Response response = get("/subscriptions");
+
+            if (response.status == 500) {
+                errors++;
+            } else {
+                assertEquals(200, response.status);
+            }
+        }
+
+        assertEquals(server.getErrorCount(), errors);
+        assertTrue("errors: " + errors, errors > 30 && errors < 90);
+    }
+
+    @Test
+    public void addsLatencyAndLimitsBandwidth() throws Exception {
+        ReplayOptions options = new ReplayOptions();
+        options.setLatencyMillis(200);
+        start(options);
+
+        long startMillis = System.currentTimeMillis();
+        get("/subscriptions");
+        assertTrue(System.currentTimeMillis() - startMillis >= 200);
+
+        server.stop();
+
+        options = new ReplayOptions();
+        options.setStorageAccountsPerSubscription(100);
+        options.setBandwidthBytesPerSecond(200 * 1024);
+        start(options);
+
+        startMillis = System.currentTimeMillis();
+        Response response = get("/" + ReplayServer.getSubscriptionId(0) + "/services/storageservices");
+        long elapsedMillis = System.currentTimeMillis() - startMillis;
+        long expectedMillis = response.body.length() * 1000L / (200 * 1024);
+
+        assertTrue(expectedMillis > 300);
+        assertTrue(elapsedMillis + " < " + expectedMillis, elapsedMillis >= expectedMillis * 9 / 10);
+    }
+
+    @Test
+    public void answersUnknownPathsWithNotFound() throws Exception {
+        start(new ReplayOptions());
+
+        assertEquals(404, get("/" + ReplayServer.getSubscriptionId(0) + "/services/hostedservices/missing").status);
+    }
+
+    private void start(@NotNull ReplayOptions options) throws Exception {
+        server = new ReplayServer(options);
+        server.start();
+    }
+
+    @NotNull
+    private Response get(@NotNull String path) throws Exception {
+        HttpsURLConnection connection = (HttpsURLConnection) new URL(server.getManagementEndpoint() + path)
+                .openConnection();
+        connection.setSSLSocketFactory(server.getClientSocketFactory());
+
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        response.retryAfter = connection.getHeaderField("Retry-After");
+
+        InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+
+        try {
+            response.body = new String(ByteStreams.toByteArray(in), "UTF-8");
+        } finally {
+            in.close();
+        }
+
+        return response;
+    }
+
+    @NotNull
+    private static String getChildText(@NotNull Node node, @NotNull String name) {
+        return ((Element) node).getElementsByTagName(name).item(0).getTextContent();
+    }
+
+    @NotNull
+    private static String getStorageEndpoint(@NotNull String template, @NotNull String account,
+                                             @NotNull String service) {
+        return template.replace("{account}", account).replace("{service}", service);
+    }
+}
@@ -0,0 +1,492 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure;
+
+import com.google.common.collect.ImmutableList;
+import com.microsoftopentechnologies.tooling.msservices.components.DefaultLoader;
+import com.microsoftopentechnologies.tooling.msservices.helpers.IDEHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+import com.microsoftopentechnologies.tooling.msservices.helpers.UIHelper;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManagerImpl;
+import com.microsoftopentechnologies.tooling.msservices.helpers.collections.ListChangeListener;
+import com.microsoftopentechnologies.tooling.msservices.helpers.collections.ListChangedEvent;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.Node;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.NodeActionListener;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.RefreshableNode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.MutableTreeNode;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Refreshes the Azure explorer against {@link FakeAzureManager} with growing numbers of storage accounts,
+ * virtual machines and mobile services, and fails when a refresh goes over one of its budgets. The tree
+ * view is stood in for by a mirror that, like the tool window, updates a Swing tree model on a single
+ * dispatch thread for every node change, so the time the dispatch thread is blocked is measured too.
+ * <p/>
+ * Run it with {@code ant soak.module.common}. The resource counts and budgets are read from system
+ * properties, e.g. {@code -Dsoak.resources=100000 -Dsoak.budget.edtMillis=50}:
+ * <ul>
+ * <li>{@code soak.resources}: the number of resources of each kind, comma separated</li>
+ * <li>{@code soak.cycles}: refreshes per resource count, all of them are held to the budgets</li>
+ * <li>{@code soak.budget.wallMillis} and {@code soak.budget.wallMillisPer1000}: the wall time of a refresh</li>
+ * <li>{@code soak.budget.heapMB} and {@code soak.budget.heapMBPer1000}: the peak heap in use</li>
+ * <li>{@code soak.budget.allocationMBPerSecond}: the allocation rate of all threads</li>
+ * <li>{@code soak.budget.threads}: the peak number of live threads</li>
+ * <li>{@code soak.budget.edtMillis} and {@code soak.budget.edtMillisPer1000}: the longest time the dispatch
+ * thread is blocked by one task</li>
+ * <li>{@code soak.budget.retainedGrowthMB}: the heap retained after the last refresh over the first</li>
+ * </ul>
+ */
+@RunWith(Parameterized.class)
+public class ExplorerSoak {
+    private static final int MAX_SUBSCRIPTIONS = 50;
+    private static final int RESOURCES_PER_SUBSCRIPTION = 2000;
+    private static final long REFRESH_TIMEOUT_MINUTES = 10;
+    private static final double MB = 1024 * 1024;
+
+    private final int resources;
+    private final int subscriptions;
+
+    private DispatchThread dispatchThread;
+    private FakeIdeHelper ideHelper;
+    private final List<String> errors = new CopyOnWriteArrayList<String>();
+
+    public ExplorerSoak(int resources) {
+        // spread over more subscriptions as the tenant grows, the way large tenants are organized
+        this.subscriptions = Math.max(1, Math.min(MAX_SUBSCRIPTIONS, resources / RESOURCES_PER_SUBSCRIPTION));
+        this.resources = resources / subscriptions * subscriptions;
+    }
+
+    @Parameterized.Parameters(name = "{0} resources")
+    public static Collection<Object[]> getResourceCounts() {
+        List<Object[]> counts = new ArrayList<Object[]>();
+
+        for (String count : System.getProperty("soak.resources", "10,1000,10000,100000").split(",")) {
+            counts.add(new Object[]{Integer.parseInt(count.trim())});
+        }
+
+        return counts;
+    }
+
+    @Before
+    public void setUp() {
+        dispatchThread = new DispatchThread();
+        ideHelper = new FakeIdeHelper(dispatchThread);
+
+        DefaultLoader.setIdeHelper((IDEHelper) Proxy.newProxyInstance(IDEHelper.class.getClassLoader(),
+                new Class<?>[]{IDEHelper.class}, ideHelper));
+        DefaultLoader.setUiHelper(new UIHelper() {
+            @Override
+            public void showException(@NotNull String message, @Nullable Throwable ex) {
+                errors.add(message + ": " + ex);
+            }
+
+            @Override
+            public void showException(@NotNull String message, @Nullable Throwable ex, @NotNull String title) {
+                showException(message, ex);
+            }
+
+            @Override
+            public void showException(@NotNull String message, Throwable ex, @NotNull String title,
+                                      boolean appendEx, boolean suggestDetail) {
+                showException(message, ex);
+            }
+
+            @Override
+            public void showError(@NotNull String message, @NotNull String title) {
+                errors.add(message);
+            }
+        });
+        DefaultLoader.setNode2Actions(
+                new HashMap<Class<? extends Node>, ImmutableList<Class<? extends NodeActionListener>>>());
+        AzureManagerImpl.setManager(FakeAzureManager.create(subscriptions, resources / subscriptions));
+    }
+
+    @After
+    public void tearDown() {
+        AzureManagerImpl.setManager(null);
+        ideHelper.shutdown();
+        dispatchThread.shutdown();
+    }
+
+    @Test
+    public void refreshesWithinBudgets() throws Exception {
+        int cycles = Integer.getInteger("soak.cycles", 3);
+        long wallBudget = getBudget("wallMillis", 2000) + getBudget("wallMillisPer1000", 100) * resources / 1000;
+        long heapBudget = (long) ((getBudget("heapMB", 128) + getBudget("heapMBPer1000", 28) * resources / 1000) * MB);
+        long allocationRateBudget = (long) (getBudget("allocationMBPerSecond", 2000) * MB);
+        long threadBudget = getBudget("threads", 64);
+        long edtBudget = getBudget("edtMillis", 250) + getBudget("edtMillisPer1000", 25) * resources / 1000;
+        long retainedGrowthBudget = (long) (getBudget("retainedGrowthMB", 32) * MB);
+
+        SoakMonitor monitor = new SoakMonitor();
+        final AzureServiceModule azureServiceModule = new AzureServiceModule((Object) null);
+        final TreeMirror treeMirror = new TreeMirror(dispatchThread);
+        dispatchThread.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                treeMirror.setRoot(azureServiceModule);
+            }
+        });
+
+        List<String> overBudget = new ArrayList<String>();
+        long firstRetainedBytes = 0;
+        long retainedBytes = 0;
+
+        for (int cycle = 1; cycle <= cycles; cycle++) {
+            monitor.getRetainedHeapBytes();
+            dispatchThread.resetStatistics();
+            CountDownLatch modulesLoaded = treeMirror.expectRefreshes(3);
+            monitor.start();
+
+            azureServiceModule.load().get(REFRESH_TIMEOUT_MINUTES, TimeUnit.MINUTES);
+            assertTrue("the modules did not finish refreshing",
+                    modulesLoaded.await(REFRESH_TIMEOUT_MINUTES, TimeUnit.MINUTES));
+            // the last tree update may still be queued behind the name change
+            dispatchThread.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+
+            SoakMonitor.Sample sample = monitor.stop();
+            retainedBytes = monitor.getRetainedHeapBytes();
+
+            if (cycle == 1) {
+                firstRetainedBytes = retainedBytes;
+            }
+
+            System.out.println(String.format("%d resources x 3 in %d subscriptions, refresh %d: wall %d ms, " +
+                            "peak heap %.0f MB, retained %.0f MB, allocated %.0f MB (%.0f MB/s), peak threads %d, " +
+                            "longest dispatch thread task %d ms, dispatch thread busy %d ms",
+                    resources, subscriptions, cycle, sample.wallMillis, sample.peakHeapBytes / MB,
+                    retainedBytes / MB, sample.allocatedBytes / MB, sample.getAllocationRate() / MB,
+                    sample.peakThreads, dispatchThread.getLongestTaskMillis(), dispatchThread.getBusyMillis()));
+
+            assertTrue(errors.toString(), errors.isEmpty());
+
+            for (Node module : azureServiceModule.getChildNodes()) {
+                assertEquals(module.getName(), resources, module.getChildNodes().size());
+                assertEquals(module.getName(), resources, treeMirror.getChildCount(module));
+            }
+
+            checkBudget(overBudget, cycle, "wall time", sample.wallMillis, wallBudget, "ms");
+            checkBudget(overBudget, cycle, "peak heap", sample.peakHeapBytes / MB, heapBudget / MB, "MB");
+            checkBudget(overBudget, cycle, "allocation rate", sample.getAllocationRate() / MB,
+                    allocationRateBudget / MB, "MB/s");
+            checkBudget(overBudget, cycle, "peak threads", sample.peakThreads, threadBudget, "");
+            checkBudget(overBudget, cycle, "dispatch thread blocked", dispatchThread.getLongestTaskMillis(),
+                    edtBudget, "ms");
+        }
+
+        checkBudget(overBudget, cycles, "retained heap growth", (retainedBytes - firstRetainedBytes) / MB,
+                retainedGrowthBudget / MB, "MB");
+
+        assertTrue(resources + " resources: " + overBudget, overBudget.isEmpty());
+    }
+
+    private static long getBudget(@NotNull String name, long defaultValue) {
+        return Long.getLong("soak.budget." + name, defaultValue);
+    }
+
+    private static void checkBudget(@NotNull List<String> overBudget, int cycle, @NotNull String name,
+                                    double value, double budget, @NotNull String unit) {
+        if (value > budget) {
+            overBudget.add(String.format("refresh %d: %s %.0f%s over the budget of %.0f%s",
+                    cycle, name, value, unit, budget, unit));
+        }
+    }
+
+    /**
+     * A single thread standing in for the event dispatch thread, timing every task it runs.
+     */
+    private static class DispatchThread {
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                thread = new Thread(runnable, "soak-dispatch-thread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        private volatile Thread thread;
+        private volatile long longestTaskNanos;
+        private volatile long busyNanos;
+
+        boolean isDispatchThread() {
+            return Thread.currentThread() == thread;
+        }
+
+        void invokeLater(@NotNull final Runnable runnable) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+
+                    try {
+                        runnable.run();
+                    } finally {
+                        long nanos = System.nanoTime() - start;
+                        longestTaskNanos = Math.max(longestTaskNanos, nanos);
+                        busyNanos += nanos;
+                    }
+                }
+            });
+        }
+
+        void invokeAndWait(@NotNull Runnable runnable) {
+            if (isDispatchThread()) {
+                runnable.run();
+                return;
+            }
+
+            FutureTask<Void> task = new FutureTask<Void>(runnable, null);
+            invokeLater(task);
+
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        long getLongestTaskMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(longestTaskNanos);
+        }
+
+        long getBusyMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(busyNanos);
+        }
+
+        void resetStatistics() {
+            invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+            longestTaskNanos = 0;
+            busyNanos = 0;
+        }
+
+        void shutdown() {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Keeps a Swing tree model in step with the explorer nodes the way the service explorer tool window
+     * does: every child list and property change is applied on the dispatch thread, with an
+     * invokeAndWait from the thread that made it. It also reports when a module's "Refreshing" suffix
+     * is taken off its name, i.e. when its refresh is complete.
+     */
+    private static class TreeMirror implements PropertyChangeListener {
+        private final DispatchThread dispatchThread;
+        private final DefaultTreeModel treeModel = new DefaultTreeModel(null);
+        private volatile CountDownLatch refreshes = new CountDownLatch(0);
+
+        TreeMirror(@NotNull DispatchThread dispatchThread) {
+            this.dispatchThread = dispatchThread;
+        }
+
+        void setRoot(@NotNull Node root) {
+            treeModel.setRoot(createTreeNode(root));
+        }
+
+        @NotNull
+        CountDownLatch expectRefreshes(int count) {
+            return refreshes = new CountDownLatch(count);
+        }
+
+        int getChildCount(@NotNull final Node node) {
+            final int[] count = new int[1];
+            dispatchThread.invokeAndWait(new Runnable() {
+                @Override
+                public void run() {
+                    count[0] = ((DefaultMutableTreeNode) node.getViewData()).getChildCount();
+                }
+            });
+
+            return count[0];
+        }
+
+        @NotNull
+        private DefaultMutableTreeNode createTreeNode(@NotNull Node node) {
+            DefaultMutableTreeNode treeNode = new DefaultMutableTreeNode(node, true);
+            node.setViewData(treeNode);
+            node.addPropertyChangeListener(this);
+            node.getChildNodes().addChangeListener(new NodeListChangeListener(treeNode));
+
+            for (Node childNode : node.getChildNodes()) {
+                treeNode.add(createTreeNode(childNode));
+            }
+
+            return treeNode;
+        }
+
+        private void removeEventHandlers(@NotNull Node node) {
+            node.removePropertyChangeListener(this);
+            node.getChildNodes().removeAllChangeListeners();
+
+            for (Node childNode : node.getChildNodes()) {
+                removeEventHandlers(childNode);
+            }
+        }
+
+        @Override
+        public void propertyChange(final PropertyChangeEvent evt) {
+            if (!dispatchThread.isDispatchThread()) {
+                dispatchThread.invokeAndWait(new Runnable() {
+                    @Override
+                    public void run() {
+                        propertyChange(evt);
+                    }
+                });
+
+                return;
+            }
+
+            Node node = (Node) evt.getSource();
+            treeModel.nodeChanged((DefaultMutableTreeNode) node.getViewData());
+
+            if (node instanceof RefreshableNode && node.getParent() instanceof AzureServiceModule
+                    && "name".equals(evt.getPropertyName())
+                    && String.valueOf(evt.getOldValue()).endsWith(RefreshableNode.REFRESHING_SUFFIX)
+                    && !String.valueOf(evt.getNewValue()).endsWith(RefreshableNode.REFRESHING_SUFFIX)) {
+                refreshes.countDown();
+            }
+        }
+
+        private class NodeListChangeListener implements ListChangeListener {
+            private final DefaultMutableTreeNode treeNode;
+
+            NodeListChangeListener(@NotNull DefaultMutableTreeNode treeNode) {
+                this.treeNode = treeNode;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public void listChanged(final ListChangedEvent e) {
+                if (!dispatchThread.isDispatchThread()) {
+                    dispatchThread.invokeAndWait(new Runnable() {
+                        @Override
+                        public void run() {
+                            listChanged(e);
+                        }
+                    });
+
+                    return;
+                }
+
+                switch (e.getAction()) {
+                    case add:
+                        for (Node childNode : (Collection<Node>) e.getNewItems()) {
+                            treeNode.add(createTreeNode(childNode));
+                        }
+                        break;
+                    case remove:
+                        Collection<Node> oldItems = (Collection<Node>) e.getOldItems();
+
+                        for (Node childNode : oldItems) {
+                            removeEventHandlers(childNode);
+                        }
+
+                        if (oldItems.size() == treeNode.getChildCount()) {
+                            treeNode.removeAllChildren();
+                        } else {
+                            for (Node childNode : oldItems) {
+                                treeNode.remove((MutableTreeNode) childNode.getViewData());
+                            }
+                        }
+                        break;
+                }
+
+                treeModel.reload(treeNode);
+            }
+        }
+    }
+
+    /**
+     * Runs the dispatch thread calls on {@link DispatchThread} and pooled work on a cached pool, and
+     * answers property lookups with their defaults. Nothing else is used while refreshing.
+     */
+    private static class FakeIdeHelper implements InvocationHandler {
+        private final DispatchThread dispatchThread;
+        private final ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(@NotNull Runnable runnable) {
+                Thread thread = new Thread(runnable, "soak-pooled-thread");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        FakeIdeHelper(@NotNull DispatchThread dispatchThread) {
+            this.dispatchThread = dispatchThread;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+
+            if (method.getDeclaringClass() == Object.class) {
+                return name.equals("equals") ? proxy == args[0]
+                        : name.equals("hashCode") ? System.identityHashCode(proxy) : "FakeIdeHelper";
+            } else if (name.equals("invokeLater")) {
+                dispatchThread.invokeLater((Runnable) args[0]);
+                return null;
+            } else if (name.equals("invokeAndWait")) {
+                dispatchThread.invokeAndWait((Runnable) args[0]);
+                return null;
+            } else if (name.equals("executeOnPooledThread")) {
+                pool.execute((Runnable) args[0]);
+                return null;
+            } else if (name.equals("getProperty")) {
+                // the default value, the last argument of getProperty(name, default) and of
+                // getProperty(project, name, default)
+                Class<?>[] parameterTypes = method.getParameterTypes();
+                return parameterTypes.length == 3 || parameterTypes[0] == String.class && parameterTypes.length == 2
+                        ? args[args.length - 1]
+                        : null;
+            } else if (name.equals("getProperties") || name.equals("showProgress")) {
+                return null;
+            }
+
+            throw new UnsupportedOperationException(name);
+        }
+
+        void shutdown() {
+            pool.shutdownNow();
+        }
+    }
+}
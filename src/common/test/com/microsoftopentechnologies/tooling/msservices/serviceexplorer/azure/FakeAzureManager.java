@@ -0,0 +1,165 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure;
+
+import com.microsoft.windowsazure.management.storage.models.StorageAccountTypes;
+import com.microsoftopentechnologies.tooling.msservices.helpers.CallableSingleArg;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.azure.AzureManager;
+import com.microsoftopentechnologies.tooling.msservices.model.Subscription;
+import com.microsoftopentechnologies.tooling.msservices.model.ms.MobileService;
+import com.microsoftopentechnologies.tooling.msservices.model.storage.StorageAccount;
+import com.microsoftopentechnologies.tooling.msservices.model.vm.Endpoint;
+import com.microsoftopentechnologies.tooling.msservices.model.vm.VirtualMachine;
+import com.microsoftopentechnologies.tooling.msservices.serviceexplorer.CancellationToken;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serves synthetic subscriptions, storage accounts, virtual machines and mobile services from memory, with
+ * the same number of each kind of resource in every subscription. Only the calls the explorer modules make
+ * while refreshing are answered, anything else throws {@link UnsupportedOperationException}. Every call
+ * builds new model objects, the way the real manager decodes a new response.
+ */
+class FakeAzureManager implements InvocationHandler {
+    private static final int VMS_PER_CLOUD_SERVICE = 20;
+
+    private final List<Subscription> subscriptions = new ArrayList<Subscription>();
+    private final int resourcesPerSubscription;
+    private final CancellationToken subscriptionsChangedToken = new CancellationToken();
+
+    private FakeAzureManager(int subscriptionCount, int resourcesPerSubscription) {
+        this.resourcesPerSubscription = resourcesPerSubscription;
+
+        for (int i = 0; i < subscriptionCount; i++) {
+            Subscription subscription = new Subscription();
+            subscription.setId(String.format("00000000-0000-0000-0000-%012d", i));
+            subscription.setName("subscription" + i);
+            subscription.setTenantId("tenant");
+            subscription.setSelected(true);
+            subscriptions.add(subscription);
+        }
+    }
+
+    /**
+     * A manager with the given number of storage accounts, virtual machines and mobile services in each
+     * subscription.
+     */
+    @NotNull
+    static AzureManager create(int subscriptions, int resourcesPerSubscription) {
+        return (AzureManager) Proxy.newProxyInstance(AzureManager.class.getClassLoader(),
+                new Class<?>[]{AzureManager.class},
+                new FakeAzureManager(subscriptions, resourcesPerSubscription));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+
+        if (method.getDeclaringClass() == Object.class) {
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            } else if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            } else {
+                return "FakeAzureManager";
+            }
+        } else if (name.equals("getSubscriptionList")) {
+            return new ArrayList<Subscription>(subscriptions);
+        } else if (name.equals("getSubscriptionsChangedToken")) {
+            return subscriptionsChangedToken;
+        } else if (name.equals("getStorageAccounts")) {
+            return getStorageAccounts((String) args[0]);
+        } else if (name.equals("prefetchStorageAccountKeys")) {
+            return null;
+        } else if (name.equals("getMobileServiceList")) {
+            return getMobileServices((String) args[0]);
+        } else if (name.equals("getVirtualMachines") && args.length == 2) {
+            return getVirtualMachines((String) args[0], (CallableSingleArg<Void, List<VirtualMachine>>) args[1]);
+        }
+
+        throw new UnsupportedOperationException(name);
+    }
+
+    @NotNull
+    private List<StorageAccount> getStorageAccounts(@NotNull String subscriptionId) {
+        List<StorageAccount> storageAccounts = new ArrayList<StorageAccount>(resourcesPerSubscription);
+
+        for (int i = 0; i < resourcesPerSubscription; i++) {
+            StorageAccount storageAccount = new StorageAccount(
+                    String.format("storage%s%06d", subscriptionId.substring(24), i), subscriptionId);
+            storageAccount.setType(StorageAccountTypes.STANDARD_LRS);
+            storageAccounts.add(storageAccount);
+        }
+
+        return storageAccounts;
+    }
+
+    @NotNull
+    private List<MobileService> getMobileServices(@NotNull String subscriptionId) {
+        List<MobileService> mobileServices = new ArrayList<MobileService>(resourcesPerSubscription);
+
+        for (int i = 0; i < resourcesPerSubscription; i++) {
+            MobileService mobileService = new MobileService();
+            mobileService.setName(String.format("mobile%s%06d", subscriptionId.substring(24), i));
+            mobileService.setSubcriptionId(subscriptionId);
+            mobileService.setType("MobileService");
+            mobileService.setState("Healthy");
+            mobileService.setRegion("West US");
+            mobileService.setRuntime("Node.js");
+            mobileServices.add(mobileService);
+        }
+
+        return mobileServices;
+    }
+
+    /**
+     * Reports the virtual machines one cloud service at a time, the way the real manager reports each
+     * hosted service as soon as it has been loaded.
+     */
+    @NotNull
+    private List<VirtualMachine> getVirtualMachines(@NotNull String subscriptionId,
+                                                    CallableSingleArg<Void, List<VirtualMachine>> partialResults)
+            throws Exception {
+        List<VirtualMachine> virtualMachines = new ArrayList<VirtualMachine>(resourcesPerSubscription);
+
+        for (int start = 0; start < resourcesPerSubscription; start += VMS_PER_CLOUD_SERVICE) {
+            String serviceName = String.format("service%s%06d", subscriptionId.substring(24), start);
+            List<VirtualMachine> cloudService = new ArrayList<VirtualMachine>(VMS_PER_CLOUD_SERVICE);
+
+            for (int i = start; i < Math.min(start + VMS_PER_CLOUD_SERVICE, resourcesPerSubscription); i++) {
+                VirtualMachine vm = new VirtualMachine(String.format("vm%06d", i), serviceName, serviceName, "",
+                        "", "Small", VirtualMachine.Status.Ready, subscriptionId);
+                vm.getEndpoints().add(new Endpoint("RemoteDesktop", "tcp", 3389, 50000 + i % 10000));
+                vm.getEndpoints().add(new Endpoint("SSH", "tcp", 22, 40000 + i % 10000));
+                cloudService.add(vm);
+            }
+
+            if (partialResults != null) {
+                partialResults.call(cloudService);
+            }
+
+            virtualMachines.addAll(cloudService);
+        }
+
+        return virtualMachines;
+    }
+}
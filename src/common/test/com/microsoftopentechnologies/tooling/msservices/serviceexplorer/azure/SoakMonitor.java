@@ -0,0 +1,134 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.serviceexplorer.azure;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the JVM while a refresh runs: the peak heap in use, the bytes allocated by all threads and the
+ * peak number of live threads. Allocations are summed from the per-thread counters, sampled every few
+ * milliseconds, so a thread ending between two samples loses what it allocated after the last one.
+ */
+class SoakMonitor {
+    private static final long SAMPLE_INTERVAL_MILLIS = 5;
+
+    static class Sample {
+        long wallMillis;
+        long peakHeapBytes;
+        long allocatedBytes;
+        int peakThreads;
+
+        /**
+         * Bytes allocated per second of wall time.
+         */
+        double getAllocationRate() {
+            return allocatedBytes * 1000.0 / Math.max(1, wallMillis);
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final Map<Long, Long> startAllocatedBytes = new HashMap<Long, Long>();
+    private final Map<Long, Long> allocatedBytes = new HashMap<Long, Long>();
+    private long peakHeapBytes;
+    private long startNanos;
+    private volatile boolean sampling;
+    private Thread sampler;
+
+    void start() {
+        startAllocatedBytes.clear();
+        allocatedBytes.clear();
+        sampleAllocations(startAllocatedBytes);
+        peakHeapBytes = memory.getHeapMemoryUsage().getUsed();
+        threads.resetPeakThreadCount();
+
+        sampling = true;
+        sampler = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (sampling) {
+                    sample();
+
+                    try {
+                        Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+            }
+        }, "soak-monitor");
+        sampler.setDaemon(true);
+        startNanos = System.nanoTime();
+        sampler.start();
+    }
+
+    @NotNull
+    Sample stop() throws InterruptedException {
+        Sample result = new Sample();
+        result.wallMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+        sampling = false;
+        sampler.join();
+        sample();
+
+        for (Map.Entry<Long, Long> entry : allocatedBytes.entrySet()) {
+            Long start = startAllocatedBytes.get(entry.getKey());
+            result.allocatedBytes += entry.getValue() - (start != null ? start : 0);
+        }
+
+        result.peakHeapBytes = peakHeapBytes;
+        // the sampler itself is one of them
+        result.peakThreads = threads.getPeakThreadCount() - 1;
+
+        return result;
+    }
+
+    /**
+     * The heap in use once the garbage has been collected, i.e. what the explorer retains.
+     */
+    long getRetainedHeapBytes() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private synchronized void sample() {
+        peakHeapBytes = Math.max(peakHeapBytes, memory.getHeapMemoryUsage().getUsed());
+        sampleAllocations(allocatedBytes);
+    }
+
+    private void sampleAllocations(@NotNull Map<Long, Long> bytesByThread) {
+        long[] ids = threads.getAllThreadIds();
+        long[] bytes = threads.getThreadAllocatedBytes(ids);
+
+        for (int i = 0; i < ids.length; i++) {
+            // -1 for a thread that ended since the ids were read
+            if (bytes[i] >= 0) {
+                bytesByThread.put(ids[i], bytes[i]);
+            }
+        }
+    }
+}
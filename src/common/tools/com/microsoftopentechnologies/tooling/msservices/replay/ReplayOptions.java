@@ -0,0 +1,223 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.replay;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+
+/**
+ * Settings of a {@link ReplayServer}: how many resources each listing holds and the faults injected into
+ * the responses. Every count defaults to one and no fault is injected by default.
+ */
+public class ReplayOptions {
+    private static final String PROPERTY_PREFIX = "replay.";
+
+    private int port;
+    private int subscriptions = 1;
+    private int storageAccountsPerSubscription = 1;
+    private int mobileServicesPerSubscription = 1;
+    private int containersPerAccount = 1;
+    private int queuesPerAccount = 1;
+    private int tablesPerAccount = 1;
+    private long latencyMillis;
+    private long latencyJitterMillis;
+    private long bandwidthBytesPerSecond;
+    private double throttleRate;
+    private double errorRate;
+    private int retryAfterSeconds = 1;
+    private long seed = 42;
+
+    /**
+     * Reads the options from "replay."-prefixed system properties, e.g. {@code -Dreplay.subscriptions=50}.
+     */
+    @NotNull
+    public static ReplayOptions fromSystemProperties() {
+        ReplayOptions options = new ReplayOptions();
+        options.port = Integer.getInteger(PROPERTY_PREFIX + "port", 8443);
+        options.subscriptions = Integer.getInteger(PROPERTY_PREFIX + "subscriptions", options.subscriptions);
+        options.storageAccountsPerSubscription = Integer.getInteger(PROPERTY_PREFIX + "storageAccountsPerSubscription",
+                options.storageAccountsPerSubscription);
+        options.mobileServicesPerSubscription = Integer.getInteger(PROPERTY_PREFIX + "mobileServicesPerSubscription",
+                options.mobileServicesPerSubscription);
+        options.containersPerAccount = Integer.getInteger(PROPERTY_PREFIX + "containersPerAccount",
+                options.containersPerAccount);
+        options.queuesPerAccount = Integer.getInteger(PROPERTY_PREFIX + "queuesPerAccount", options.queuesPerAccount);
+        options.tablesPerAccount = Integer.getInteger(PROPERTY_PREFIX + "tablesPerAccount", options.tablesPerAccount);
+        options.latencyMillis = Long.getLong(PROPERTY_PREFIX + "latencyMillis", options.latencyMillis);
+        options.latencyJitterMillis = Long.getLong(PROPERTY_PREFIX + "latencyJitterMillis", options.latencyJitterMillis);
+        options.bandwidthBytesPerSecond = Long.getLong(PROPERTY_PREFIX + "bandwidthBytesPerSecond",
+                options.bandwidthBytesPerSecond);
+        options.throttleRate = Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "throttleRate",
+                String.valueOf(options.throttleRate)));
+        options.errorRate = Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "errorRate",
+                String.valueOf(options.errorRate)));
+        options.retryAfterSeconds = Integer.getInteger(PROPERTY_PREFIX + "retryAfterSeconds", options.retryAfterSeconds);
+        options.seed = Long.getLong(PROPERTY_PREFIX + "seed", options.seed);
+
+        return options;
+    }
+
+    /**
+     * The port to listen on, 0 for any free port.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public int getSubscriptions() {
+        return subscriptions;
+    }
+
+    public void setSubscriptions(int subscriptions) {
+        this.subscriptions = subscriptions;
+    }
+
+    public int getStorageAccountsPerSubscription() {
+        return storageAccountsPerSubscription;
+    }
+
+    public void setStorageAccountsPerSubscription(int storageAccountsPerSubscription) {
+        this.storageAccountsPerSubscription = storageAccountsPerSubscription;
+    }
+
+    public int getMobileServicesPerSubscription() {
+        return mobileServicesPerSubscription;
+    }
+
+    public void setMobileServicesPerSubscription(int mobileServicesPerSubscription) {
+        this.mobileServicesPerSubscription = mobileServicesPerSubscription;
+    }
+
+    public int getContainersPerAccount() {
+        return containersPerAccount;
+    }
+
+    public void setContainersPerAccount(int containersPerAccount) {
+        this.containersPerAccount = containersPerAccount;
+    }
+
+    public int getQueuesPerAccount() {
+        return queuesPerAccount;
+    }
+
+    public void setQueuesPerAccount(int queuesPerAccount) {
+        this.queuesPerAccount = queuesPerAccount;
+    }
+
+    public int getTablesPerAccount() {
+        return tablesPerAccount;
+    }
+
+    public void setTablesPerAccount(int tablesPerAccount) {
+        this.tablesPerAccount = tablesPerAccount;
+    }
+
+    /**
+     * Time added before every response is sent.
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Upper bound of a random delay added to the latency.
+     */
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    public void setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+    }
+
+    /**
+     * Rate response bodies are written at, 0 for no limit.
+     */
+    public long getBandwidthBytesPerSecond() {
+        return bandwidthBytesPerSecond;
+    }
+
+    public void setBandwidthBytesPerSecond(long bandwidthBytesPerSecond) {
+        this.bandwidthBytesPerSecond = bandwidthBytesPerSecond;
+    }
+
+    /**
+     * Share of the requests answered with 503 Server Busy and a Retry-After header.
+     */
+    public double getThrottleRate() {
+        return throttleRate;
+    }
+
+    public void setThrottleRate(double throttleRate) {
+        this.throttleRate = throttleRate;
+    }
+
+    /**
+     * Share of the requests answered with 500 Internal Error.
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Seed of the faults and jitter, so a run can be repeated.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    int getCount(@NotNull Route.Scale scale) {
+        switch (scale) {
+            case Subscriptions:
+                return subscriptions;
+            case StorageAccounts:
+                return storageAccountsPerSubscription;
+            case MobileServices:
+                return mobileServicesPerSubscription;
+            case Containers:
+                return containersPerAccount;
+            case Queues:
+                return queuesPerAccount;
+            case Tables:
+                return tablesPerAccount;
+            default:
+                return 1;
+        }
+    }
+}
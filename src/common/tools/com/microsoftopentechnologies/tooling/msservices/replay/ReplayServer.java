@@ -0,0 +1,485 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.replay;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local HTTPS stand-in for the service management, storage and mobile services endpoints, serving the
+ * recorded responses under {@code recordings/} so refreshes can be measured without Azure.
+ * <p/>
+ * Listings are scaled up synthetically, e.g. 50 subscriptions of 1,000 storage accounts each, and
+ * responses can be delayed, slowed to a given bandwidth, throttled or failed, see {@link ReplayOptions}.
+ * Point the plugin at it with the {@code managementEndpointOverride} and {@code storageEndpointOverride}
+ * plugin settings, using {@link #getManagementEndpoint()} and {@link #getStorageEndpointTemplate()}, and
+ * trust its self-signed certificate, e.g. with {@link #getClientSocketFactory()} or the key store as
+ * {@code javax.net.ssl.trustStore}.
+ */
+public class ReplayServer {
+    public static final String TENANT_ID = "00000000-0000-0000-0000-0000000000aa";
+
+    private static final String KEY_STORE_PASSWORD = "replay";
+    private static final String RECORDINGS = "recordings/";
+    private static final String XML = "application/xml; charset=utf-8";
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{(\\w+)\\}");
+    private static final int CHUNK_SIZE = 4096;
+
+    private final ReplayOptions options;
+    private final List<Route> routes = new CopyOnWriteArrayList<Route>();
+    // listings are rendered once per path, so a large synthetic listing costs the server nothing the next time
+    private final ConcurrentMap<String, byte[]> bodies = new ConcurrentHashMap<String, byte[]>();
+    private final Map<String, String> recordings = new ConcurrentHashMap<String, String>();
+    private final Random random;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final AtomicInteger throttledCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+
+    private HttpsServer server;
+    private ExecutorService executor;
+    private File keyStoreFile;
+    private SSLSocketFactory clientSocketFactory;
+
+    public ReplayServer(@NotNull ReplayOptions options) {
+        this.options = options;
+        this.random = new Random(options.getSeed());
+
+        routes.add(new Route("GET", "/subscriptions", null,
+                "management/subscriptions.xml", XML, "Subscription", Route.Scale.Subscriptions));
+        routes.add(new Route("GET", "/{subscriptionId}/services/storageservices", null,
+                "management/storageservices.xml", XML, "StorageService", Route.Scale.StorageAccounts));
+        routes.add(new Route("GET", "/{subscriptionId}/services/storageservices/{account}/keys", null,
+                "management/storageservice-keys.xml", XML, null, Route.Scale.None));
+        routes.add(new Route("GET", "/{subscriptionId}/services/mobileservices/mobileservices", null,
+                "management/mobileservices.json", JSON, "", Route.Scale.MobileServices));
+        routes.add(new Route("GET", "/{account}/blob", "comp=list",
+                "storage/containers.xml", XML, "Container", Route.Scale.Containers));
+        routes.add(new Route("GET", "/{account}/queue", "comp=list",
+                "storage/queues.xml", XML, "Queue", Route.Scale.Queues));
+        routes.add(new Route("GET", "/{account}/table/Tables", null,
+                "storage/tables.json", JSON, "value", Route.Scale.Tables));
+    }
+
+    /**
+     * Adds a route, which takes precedence over the recorded ones.
+     */
+    public void addRoute(@NotNull Route route) {
+        routes.add(0, route);
+    }
+
+    public synchronized void start()
+            throws IOException, GeneralSecurityException {
+        keyStoreFile = createKeyStore();
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream in = new FileInputStream(keyStoreFile);
+
+        try {
+            keyStore.load(in, KEY_STORE_PASSWORD.toCharArray());
+        } finally {
+            in.close();
+        }
+
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, KEY_STORE_PASSWORD.toCharArray());
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(keyManagerFactory.getKeyManagers(), null, new SecureRandom());
+
+        TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(
+                TrustManagerFactory.getDefaultAlgorithm());
+        trustManagerFactory.init(keyStore);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagerFactory.getTrustManagers(), new SecureRandom());
+        clientSocketFactory = clientContext.getSocketFactory();
+
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("Replay server %d")
+                .setDaemon(true)
+                .build());
+
+        server = HttpsServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), options.getPort()), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(sslContext));
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    serve(exchange);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            keyStoreFile.delete();
+            server = null;
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @NotNull
+    public String getManagementEndpoint() {
+        return "https://localhost:" + getPort();
+    }
+
+    /**
+     * The storage endpoint template, with the account and the service as the first path segments.
+     */
+    @NotNull
+    public String getStorageEndpointTemplate() {
+        return getManagementEndpoint() + "/{account}/{service}";
+    }
+
+    /**
+     * A socket factory trusting the server's self-signed certificate.
+     */
+    @NotNull
+    public SSLSocketFactory getClientSocketFactory() {
+        return clientSocketFactory;
+    }
+
+    /**
+     * The JKS key store holding the server certificate, password "replay".
+     */
+    @NotNull
+    public File getKeyStoreFile() {
+        return keyStoreFile;
+    }
+
+    /**
+     * The id of the subscription at the given position of the synthetic subscription list.
+     */
+    @NotNull
+    public static String getSubscriptionId(int index) {
+        return String.format("00000000-0000-0000-0000-%012d", index);
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public int getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    private void serve(@NotNull HttpExchange exchange)
+            throws IOException, InterruptedException {
+        requestCount.incrementAndGet();
+        ByteStreams.copy(exchange.getRequestBody(), ByteStreams.nullOutputStream());
+
+        double fault;
+        long delay = options.getLatencyMillis();
+
+        synchronized (random) {
+            fault = random.nextDouble();
+
+            if (options.getLatencyJitterMillis() > 0) {
+                delay += (long) (random.nextDouble() * options.getLatencyJitterMillis());
+            }
+        }
+
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+
+        exchange.getResponseHeaders().set("x-ms-request-id", UUID.randomUUID().toString());
+
+        if (fault < options.getThrottleRate()) {
+            throttledCount.incrementAndGet();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(options.getRetryAfterSeconds()));
+            send(exchange, 503, XML, getError("ServerBusy", "The server is busy."));
+            return;
+        }
+
+        if (fault < options.getThrottleRate() + options.getErrorRate()) {
+            errorCount.incrementAndGet();
+            send(exchange, 500, XML, getError("InternalError", "The server encountered an internal error."));
+            return;
+        }
+
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getRawQuery();
+
+        for (Route route : routes) {
+            Map<String, String> variables = route.match(method, path, query);
+
+            if (variables != null) {
+                String key = route.getRecording() + " " + path + "?" + query;
+                byte[] body = bodies.get(key);
+
+                if (body == null) {
+                    body = render(route, variables).getBytes("UTF-8");
+                    bodies.putIfAbsent(key, body);
+                }
+
+                send(exchange, 200, route.getContentType(), body);
+                return;
+            }
+        }
+
+        send(exchange, 404, XML, getError("ResourceNotFound", "No recording for " + method + " " + path + "."));
+    }
+
+    private void send(@NotNull HttpExchange exchange, int status, @NotNull String contentType, @NotNull byte[] body)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        long bandwidth = options.getBandwidthBytesPerSecond();
+        long startNanos = System.nanoTime();
+
+        for (int offset = 0; offset < body.length; offset += CHUNK_SIZE) {
+            int length = Math.min(CHUNK_SIZE, body.length - offset);
+            out.write(body, offset, length);
+
+            if (bandwidth > 0) {
+                out.flush();
+                long dueNanos = startNanos + TimeUnit.SECONDS.toNanos(offset + length) / bandwidth;
+                long waitNanos = dueNanos - System.nanoTime();
+
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            }
+        }
+
+        out.close();
+    }
+
+    @NotNull
+    private String render(@NotNull Route route, @NotNull Map<String, String> variables) throws IOException {
+        Map<String, String> values = new HashMap<String, String>(variables);
+        values.put("tenantId", TENANT_ID);
+
+        String recording = getRecording(route.getRecording());
+        String repeatedElement = route.getRepeatedElement();
+
+        if (repeatedElement == null) {
+            return substitute(recording, values);
+        }
+
+        int count = options.getCount(route.getScale());
+
+        if (route.isJson()) {
+            JsonElement document = new JsonParser().parse(recording);
+            JsonArray recorded = repeatedElement.isEmpty()
+                    ? document.getAsJsonArray()
+                    : document.getAsJsonObject().getAsJsonArray(repeatedElement);
+            JsonArray listing = new JsonArray();
+
+            for (int i = 0; i < count; i++) {
+                String element = recorded.get(i % recorded.size()).toString();
+                listing.add(new JsonParser().parse(substitute(element, getCopyValues(route, values, i))));
+            }
+
+            if (repeatedElement.isEmpty()) {
+                return listing.toString();
+            }
+
+            JsonObject object = new JsonParser().parse(substitute(recording, values)).getAsJsonObject();
+            object.add(repeatedElement, listing);
+
+            return object.toString();
+        }
+
+        Matcher matcher = Pattern.compile("<" + repeatedElement + ">.*?</" + repeatedElement + ">", Pattern.DOTALL)
+                .matcher(recording);
+        List<String> recorded = new ArrayList<String>();
+        int start = -1;
+        int end = -1;
+
+        while (matcher.find()) {
+            recorded.add(matcher.group());
+            start = start < 0 ? matcher.start() : start;
+            end = matcher.end();
+        }
+
+        if (recorded.isEmpty()) {
+            throw new IOException("No " + repeatedElement + " element in " + route.getRecording());
+        }
+
+        StringBuilder listing = new StringBuilder(substitute(recording.substring(0, start), values));
+
+        for (int i = 0; i < count; i++) {
+            listing.append(substitute(recorded.get(i % recorded.size()), getCopyValues(route, values, i)));
+        }
+
+        return listing.append(substitute(recording.substring(end), values)).toString();
+    }
+
+    @NotNull
+    private static Map<String, String> getCopyValues(@NotNull Route route, @NotNull Map<String, String> values,
+                                                     int index) {
+        Map<String, String> copyValues = new HashMap<String, String>(values);
+        copyValues.put("index", String.valueOf(index));
+
+        if (route.getScale() == Route.Scale.Subscriptions) {
+            copyValues.put("subscriptionId", getSubscriptionId(index));
+        }
+
+        return copyValues;
+    }
+
+    @NotNull
+    private static String substitute(@NotNull String text, @NotNull Map<String, String> values) {
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        StringBuffer result = new StringBuffer();
+
+        while (matcher.find()) {
+            String value = values.get(matcher.group(1));
+            matcher.appendReplacement(result, Matcher.quoteReplacement(value != null ? value : matcher.group()));
+        }
+
+        matcher.appendTail(result);
+
+        return result.toString();
+    }
+
+    @NotNull
+    private String getRecording(@NotNull String name) throws IOException {
+        String recording = recordings.get(name);
+
+        if (recording == null) {
+            InputStream in = ReplayServer.class.getResourceAsStream(RECORDINGS + name);
+
+            if (in == null) {
+                throw new FileNotFoundException(RECORDINGS + name);
+            }
+
+            Reader reader = new InputStreamReader(in, "UTF-8");
+
+            try {
+                recording = CharStreams.toString(reader);
+            } finally {
+                reader.close();
+            }
+
+            if (name.endsWith(".xml")) {
+                // the recordings are indented for review, the services send them without whitespace
+                recording = recording.replaceAll(">\\s+<", "><").trim();
+            }
+
+            recordings.put(name, recording);
+        }
+
+        return recording;
+    }
+
+    @NotNull
+    private static byte[] getError(@NotNull String code, @NotNull String message) throws UnsupportedEncodingException {
+        return String.format("<Error xmlns=\"http://schemas.microsoft.com/windowsazure\" " +
+                "xmlns:i=\"http://www.w3.org/2001/XMLSchema-instance\"><Code>%s</Code><Message>%s</Message></Error>",
+                code, message).getBytes("UTF-8");
+    }
+
+    /**
+     * Generates a self-signed certificate for localhost with the JDK's keytool.
+     */
+    @NotNull
+    private static File createKeyStore() throws IOException {
+        File file = File.createTempFile("replay", ".jks");
+        file.delete();
+
+        String keytool = new File(new File(System.getProperty("java.home"), "bin"), "keytool").getPath();
+        Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "replay", "-keyalg", "RSA",
+                "-keysize", "2048", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-validity", "30", "-storetype", "JKS", "-keystore", file.getPath(),
+                "-storepass", KEY_STORE_PASSWORD, "-keypass", KEY_STORE_PASSWORD)
+                .redirectErrorStream(true)
+                .start();
+        String output = CharStreams.toString(new InputStreamReader(process.getInputStream()));
+
+        try {
+            if (process.waitFor() != 0) {
+                throw new IOException("keytool failed: " + output);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while creating the replay key store");
+        }
+
+        file.deleteOnExit();
+
+        return file;
+    }
+
+    /**
+     * Runs the server with the options given as "replay."-prefixed system properties until the process
+     * is stopped.
+     */
+    public static void main(String[] args) throws Exception {
+        final ReplayServer server = new ReplayServer(ReplayOptions.fromSystemProperties());
+        server.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.stop();
+            }
+        });
+
+        System.out.println("Replay server listening on " + server.getManagementEndpoint());
+        System.out.println("Plugin settings:");
+        System.out.println("  \"managementEndpointOverride\": \"" + server.getManagementEndpoint() + "\"");
+        System.out.println("  \"storageEndpointOverride\": \"" + server.getStorageEndpointTemplate() + "\"");
+        System.out.println("Trust its certificate with -Djavax.net.ssl.trustStore=" +
+                server.getKeyStoreFile().getPath() + " -Djavax.net.ssl.trustStorePassword=" + KEY_STORE_PASSWORD);
+
+        new CountDownLatch(1).await();
+    }
+}
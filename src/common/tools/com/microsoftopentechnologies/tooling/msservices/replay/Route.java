@@ -0,0 +1,135 @@
+/**
+ * Copyright 2014 Microsoft Open Technologies Inc.
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.microsoftopentechnologies.tooling.msservices.replay;
+
+import com.microsoftopentechnologies.tooling.msservices.helpers.NotNull;
+import com.microsoftopentechnologies.tooling.msservices.helpers.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maps requests to a recorded response. The path template may hold "{name}" segments, which are matched
+ * against the request path and substituted for "${name}" in the recording.
+ * <p/>
+ * A listing route names the element its recording repeats: an XML tag, or for JSON the property holding
+ * the array, empty for a top-level array. The recorded elements are cycled through until the listing
+ * holds the count the {@link ReplayOptions} give for the route's {@link Scale}, "${index}" standing for
+ * the number of each copy.
+ */
+public class Route {
+    public enum Scale {
+        None, Subscriptions, StorageAccounts, MobileServices, Containers, Queues, Tables
+    }
+
+    private static final Pattern VARIABLE = Pattern.compile("\\{(\\w+)\\}");
+
+    private final String method;
+    private final Pattern pathPattern;
+    private final List<String> variables = new ArrayList<String>();
+    private final String query;
+    private final String recording;
+    private final String contentType;
+    private final String repeatedElement;
+    private final Scale scale;
+
+    /**
+     * @param query a parameter the request query must contain, e.g. "comp=list", or null
+     */
+    public Route(@NotNull String method,
+                 @NotNull String pathTemplate,
+                 @Nullable String query,
+                 @NotNull String recording,
+                 @NotNull String contentType,
+                 @Nullable String repeatedElement,
+                 @NotNull Scale scale) {
+        this.method = method;
+        this.query = query;
+        this.recording = recording;
+        this.contentType = contentType;
+        this.repeatedElement = repeatedElement;
+        this.scale = scale;
+
+        StringBuilder regex = new StringBuilder();
+        Matcher matcher = VARIABLE.matcher(pathTemplate);
+        int start = 0;
+
+        while (matcher.find()) {
+            regex.append(Pattern.quote(pathTemplate.substring(start, matcher.start()))).append("([^/]+)");
+            variables.add(matcher.group(1));
+            start = matcher.end();
+        }
+
+        regex.append(Pattern.quote(pathTemplate.substring(start))).append("/?");
+        pathPattern = Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Returns the path variables of a matching request, null if the route does not match it.
+     */
+    @Nullable
+    Map<String, String> match(@NotNull String method, @NotNull String path, @Nullable String query) {
+        if (!this.method.equals(method)) {
+            return null;
+        }
+
+        if (this.query != null && (query == null || !("&" + query + "&").contains("&" + this.query + "&"))) {
+            return null;
+        }
+
+        Matcher matcher = pathPattern.matcher(path);
+
+        if (!matcher.matches()) {
+            return null;
+        }
+
+        Map<String, String> values = new HashMap<String, String>();
+
+        for (int i = 0; i < variables.size(); i++) {
+            values.put(variables.get(i), matcher.group(i + 1));
+        }
+
+        return values;
+    }
+
+    @NotNull
+    String getRecording() {
+        return recording;
+    }
+
+    @NotNull
+    String getContentType() {
+        return contentType;
+    }
+
+    @Nullable
+    String getRepeatedElement() {
+        return repeatedElement;
+    }
+
+    @NotNull
+    Scale getScale() {
+        return scale;
+    }
+
+    boolean isJson() {
+        return contentType.contains("json");
+    }
+}